@@ -0,0 +1,46 @@
+package com.example.s3sync.config;
+
+import javax.sql.DataSource;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.sql.init.dependency.DependsOnDatabaseInitialization;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.DataSourceInitializer;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+
+/**
+ * Installs the trigger-based change journal when <code>sync.journal.enabled</code> is {@code true}.
+ *
+ * <p>On startup, after the schema migrations, the idempotent script {@code db/change-journal.sql}
+ * creates the {@code sync_change_journal} table and the triggers on {@code kunde} and {@code
+ * auftraege}. The script is sent as a single statement because the trigger function body contains
+ * semicolons.
+ *
+ * <p>Rows changed before the triggers existed are not in the journal; run one full diff before
+ * switching a populated database to journal mode.
+ */
+@Configuration
+@ConditionalOnProperty(name = "sync.journal.enabled", havingValue = "true")
+public class ChangeJournalConfig {
+
+  /**
+   * Create the initializer that runs the change journal script against the application database.
+   *
+   * @param dataSource application data source
+   * @return initializer executing {@code db/change-journal.sql} on startup
+   */
+  @Bean
+  @DependsOnDatabaseInitialization
+  public DataSourceInitializer changeJournalInitializer(DataSource dataSource) {
+    ResourceDatabasePopulator populator =
+        new ResourceDatabasePopulator(new ClassPathResource("db/change-journal.sql"));
+    populator.setSeparator(ScriptUtils.EOF_STATEMENT_SEPARATOR);
+
+    DataSourceInitializer initializer = new DataSourceInitializer();
+    initializer.setDataSource(dataSource);
+    initializer.setDatabasePopulator(populator);
+    return initializer;
+  }
+}
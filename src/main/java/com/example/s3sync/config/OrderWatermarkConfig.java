@@ -0,0 +1,45 @@
+package com.example.s3sync.config;
+
+import javax.sql.DataSource;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.sql.init.dependency.DependsOnDatabaseInitialization;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.DataSourceInitializer;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+
+/**
+ * Installs the schema of the high-water-mark order sync when <code>sync.watermark.enabled</code> is
+ * {@code true}.
+ *
+ * <p>On startup, after the schema migrations, the idempotent script {@code db/order-watermark.sql}
+ * creates the {@code sync_watermark} table. The immutable {@code sync_lastchange_ts} function and
+ * the expression index on {@code auftraege} the sync queries with are created by the migration
+ * {@code V2__sync_indexes.sql}; {@code V6__strict_lastchange_ts.sql} restricts the function to ISO
+ * 8601 values.
+ */
+@Configuration
+@ConditionalOnProperty(name = "sync.watermark.enabled", havingValue = "true")
+public class OrderWatermarkConfig {
+
+  /**
+   * Create the initializer that runs the watermark script against the application database.
+   *
+   * @param dataSource application data source
+   * @return initializer executing {@code db/order-watermark.sql} on startup
+   */
+  @Bean
+  @DependsOnDatabaseInitialization
+  public DataSourceInitializer orderWatermarkInitializer(DataSource dataSource) {
+    ResourceDatabasePopulator populator =
+        new ResourceDatabasePopulator(new ClassPathResource("db/order-watermark.sql"));
+    populator.setSeparator(ScriptUtils.EOF_STATEMENT_SEPARATOR);
+
+    DataSourceInitializer initializer = new DataSourceInitializer();
+    initializer.setDataSource(dataSource);
+    initializer.setDatabasePopulator(populator);
+    return initializer;
+  }
+}
@@ -0,0 +1,136 @@
+package com.example.s3sync.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Clock;
+import java.time.Duration;
+import javax.sql.DataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.flyway.FlywayDataSource;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+/**
+ * Routes read-only transactions to a read replica when <code>sync.replica.enabled</code> is {@code
+ * true}.
+ *
+ * <p>The application {@link DataSource} becomes a {@link LazyConnectionDataSourceProxy} over the
+ * primary pool (configured by <code>spring.datasource.*</code> as before) whose read-only variant
+ * is a {@link ReplicaRoutingDataSource}. The proxy fetches the physical connection on the first
+ * statement, after the transaction manager marked the connection read-only, so
+ *
+ * <ul>
+ *   <li>read-only transactions, i.e. the diff scans of {@code kunde} / {@code auftraege}, the
+ *       Spring Data read methods and the loads of the in-memory filters and snapshots, read from
+ *       the replica while the {@link ReplicaLagGuard} accepts it and from the primary otherwise;
+ *   <li>read-write transactions, i.e. the tracking table writes, and statements outside of
+ *       transactions go to the primary. The schema migrations run on the primary pool.
+ * </ul>
+ *
+ * <p>Rows read from a replica may be up to <code>sync.replica.max-lag</code> old. Changes younger
+ * than that are picked up by a later run; tracking rows younger than that cause at most a repeated
+ * export. Keep <code>sync.replica.max-lag</code> below <code>sync.watermark.overlap</code> when the
+ * watermark sync is used.
+ *
+ * <p>Configuration:
+ *
+ * <ul>
+ *   <li><code>sync.replica.url</code>, <code>sync.replica.username</code>, <code>
+ *       sync.replica.password</code> - connection of the replica; the pool gets the maximum size of
+ *       the primary pool.
+ *   <li><code>sync.replica.max-lag</code> - maximum replay lag at which the replica is used
+ *       (default: <code>30s</code>).
+ *   <li><code>sync.replica.lag-check-interval</code> - minimum time between two lag measurements
+ *       (default: <code>10s</code>).
+ * </ul>
+ */
+@Configuration
+@ConditionalOnProperty(name = "sync.replica.enabled", havingValue = "true")
+public class ReadReplicaConfig {
+
+  /**
+   * Create the pool of the primary from the regular datasource properties.
+   *
+   * @param properties <code>spring.datasource.*</code> properties
+   * @return primary pool, also used by the schema migrations
+   */
+  @Bean
+  @FlywayDataSource
+  @ConfigurationProperties("spring.datasource.hikari")
+  public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+    HikariDataSource dataSource =
+        properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    dataSource.setPoolName("primary");
+    return dataSource;
+  }
+
+  /**
+   * Create the read-only pool of the replica.
+   *
+   * @param primary pool of the primary, whose maximum size the replica pool takes over
+   * @param url JDBC URL of the replica (<code>sync.replica.url</code>)
+   * @param username user of the replica (<code>sync.replica.username</code>)
+   * @param password password of the replica (<code>sync.replica.password</code>)
+   * @return replica pool
+   */
+  @Bean
+  public HikariDataSource replicaDataSource(
+      @Qualifier("primaryDataSource") HikariDataSource primary,
+      @Value("${sync.replica.url}") String url,
+      @Value("${sync.replica.username:${spring.datasource.username:}}") String username,
+      @Value("${sync.replica.password:${spring.datasource.password:}}") String password) {
+    HikariDataSource dataSource = new HikariDataSource();
+    dataSource.setPoolName("replica");
+    dataSource.setJdbcUrl(url);
+    dataSource.setUsername(username);
+    dataSource.setPassword(password);
+    dataSource.setMaximumPoolSize(primary.getMaximumPoolSize());
+    dataSource.setReadOnly(true);
+    return dataSource;
+  }
+
+  /**
+   * Create the guard measuring the replay lag of the replica.
+   *
+   * @param replica pool of the replica
+   * @param maxLag maximum replay lag at which the replica is used
+   * @param checkInterval minimum time between two lag measurements
+   * @param meterRegistry registry receiving the lag gauges
+   * @return lag guard
+   */
+  @Bean
+  public ReplicaLagGuard replicaLagGuard(
+      @Qualifier("replicaDataSource") HikariDataSource replica,
+      @Value("${sync.replica.max-lag:30s}") Duration maxLag,
+      @Value("${sync.replica.lag-check-interval:10s}") Duration checkInterval,
+      MeterRegistry meterRegistry) {
+    return new ReplicaLagGuard(
+        new JdbcTemplate(replica), maxLag, checkInterval, meterRegistry, Clock.systemUTC());
+  }
+
+  /**
+   * Create the application data source routing read-only transactions.
+   *
+   * @param primary pool of the primary
+   * @param replica pool of the replica
+   * @param lagGuard decides whether the replica is recent enough
+   * @return data source used by JPA and the JDBC templates
+   */
+  @Bean
+  @Primary
+  public DataSource dataSource(
+      @Qualifier("primaryDataSource") HikariDataSource primary,
+      @Qualifier("replicaDataSource") HikariDataSource replica,
+      ReplicaLagGuard lagGuard) {
+    LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(primary);
+    dataSource.setReadOnlyDataSource(new ReplicaRoutingDataSource(primary, replica, lagGuard));
+    return dataSource;
+  }
+}
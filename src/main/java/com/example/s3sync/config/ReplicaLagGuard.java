@@ -0,0 +1,115 @@
+package com.example.s3sync.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Decides whether the read replica is recent enough to serve the reads of the sync.
+ *
+ * <p>The replay lag is measured on the replica at most once per check interval and cached in
+ * between. A replica that has replayed all WAL it received, or that is not in recovery at all,
+ * counts as not lagging; otherwise the lag is the time since the last replayed transaction. The
+ * replica is usable while the lag is at most the configured maximum. It is not usable when the lag
+ * cannot be determined, e.g. because the replica is down.
+ *
+ * <p>Metrics:
+ *
+ * <ul>
+ *   <li><code>sync.replica.lag</code> - last measured replay lag in seconds, {@code NaN} when
+ *       unknown.
+ *   <li><code>sync.replica.usable</code> - {@code 1} while reads go to the replica, {@code 0} while
+ *       they fall back to the primary.
+ * </ul>
+ */
+@Slf4j
+public class ReplicaLagGuard {
+
+  static final String LAG_QUERY =
+      "SELECT CASE WHEN NOT pg_is_in_recovery()"
+          + " OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0"
+          + " ELSE EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) END";
+
+  private final JdbcTemplate replicaJdbcTemplate;
+  private final Duration maxLag;
+  private final Duration checkInterval;
+  private final Clock clock;
+
+  private volatile boolean usable;
+  private volatile double lagSeconds = Double.NaN;
+  private volatile Instant nextCheck = Instant.MIN;
+  private boolean checked;
+
+  /**
+   * Create the guard and register its metrics.
+   *
+   * @param replicaJdbcTemplate template on the replica pool
+   * @param maxLag maximum replay lag at which the replica is still used
+   * @param checkInterval minimum time between two lag measurements
+   * @param meterRegistry registry receiving the lag gauges
+   * @param clock clock deciding when the lag is measured again
+   */
+  public ReplicaLagGuard(
+      JdbcTemplate replicaJdbcTemplate,
+      Duration maxLag,
+      Duration checkInterval,
+      MeterRegistry meterRegistry,
+      Clock clock) {
+    this.replicaJdbcTemplate = replicaJdbcTemplate;
+    this.maxLag = maxLag;
+    this.checkInterval = checkInterval;
+    this.clock = clock;
+    Gauge.builder("sync.replica.lag", this, guard -> guard.lagSeconds)
+        .baseUnit("seconds")
+        .description("Replay lag of the read replica")
+        .register(meterRegistry);
+    Gauge.builder("sync.replica.usable", this, guard -> guard.usable ? 1 : 0)
+        .description("Whether read-only transactions are routed to the read replica")
+        .register(meterRegistry);
+  }
+
+  /**
+   * @return {@code true} when read-only transactions may use the replica
+   */
+  public boolean isReplicaUsable() {
+    if (!clock.instant().isBefore(nextCheck)) {
+      check();
+    }
+    return usable;
+  }
+
+  /** Measure the lag unless another thread did so since the interval elapsed. */
+  private synchronized void check() {
+    Instant now = clock.instant();
+    if (now.isBefore(nextCheck)) {
+      return;
+    }
+    nextCheck = now.plus(checkInterval);
+    boolean wasUsable = usable;
+    boolean firstCheck = !checked;
+    checked = true;
+    try {
+      Double lag = replicaJdbcTemplate.queryForObject(LAG_QUERY, Double.class);
+      lagSeconds = lag == null ? Double.NaN : lag;
+      usable = lag != null && lag <= maxLag.toMillis() / 1000.0;
+      if ((wasUsable || firstCheck) && !usable) {
+        log.warn(
+            "Read replica lags {} s behind (max {}), reading from the primary", lagSeconds, maxLag);
+      }
+    } catch (DataAccessException e) {
+      lagSeconds = Double.NaN;
+      usable = false;
+      if (wasUsable || firstCheck) {
+        log.warn("Read replica unavailable, reading from the primary: {}", e.getMessage());
+      }
+    }
+    if (!wasUsable && usable) {
+      log.info("Reading from the read replica (lag {} s)", lagSeconds);
+    }
+  }
+}
@@ -0,0 +1,40 @@
+package com.example.s3sync.config;
+
+import java.util.Map;
+import javax.sql.DataSource;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+/**
+ * Read-only target of the application {@link DataSource}: the replica while the {@link
+ * ReplicaLagGuard} accepts it, the primary otherwise.
+ *
+ * <p>The decision is made per physical connection, i.e. once per read-only transaction.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+  private static final String PRIMARY = "primary";
+  private static final String REPLICA = "replica";
+
+  private final ReplicaLagGuard lagGuard;
+
+  /**
+   * Create the routing data source.
+   *
+   * @param primary pool of the primary
+   * @param replica pool of the read replica
+   * @param lagGuard decides whether the replica is recent enough
+   */
+  public ReplicaRoutingDataSource(
+      DataSource primary, DataSource replica, ReplicaLagGuard lagGuard) {
+    this.lagGuard = lagGuard;
+    setTargetDataSources(Map.of(PRIMARY, primary, REPLICA, replica));
+    setDefaultTargetDataSource(primary);
+    setLenientFallback(false);
+    afterPropertiesSet();
+  }
+
+  @Override
+  protected Object determineCurrentLookupKey() {
+    return lagGuard.isReplicaUsable() ? REPLICA : PRIMARY;
+  }
+}
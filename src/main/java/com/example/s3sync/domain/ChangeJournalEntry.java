@@ -0,0 +1,38 @@
+package com.example.s3sync.domain;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+import lombok.*;
+
+/**
+ * Entry of the opt-in change journal written by database triggers on {@code kunde} and {@code
+ * auftraege}.
+ *
+ * <p>Entries are only read and deleted by the application; they are created by the trigger function
+ * installed from {@code db/change-journal.sql}.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "sync_change_journal")
+public class ChangeJournalEntry {
+
+  /** Journal sequence number. Entries are consumed in ascending order. */
+  @Id
+  @Column(name = "id", nullable = false)
+  private Long id;
+
+  /** Name of the table the change happened in ({@code kunde} or {@code auftraege}). */
+  @Column(name = "table_name", nullable = false, length = 63)
+  private String tableName;
+
+  /** Primary key of the changed row, as text. */
+  @Column(name = "row_key", nullable = false, length = 255)
+  private String rowKey;
+
+  /** Time the change was recorded. */
+  @Column(name = "changed_at", nullable = false)
+  private Instant changedAt;
+}
@@ -0,0 +1,47 @@
+package com.example.s3sync.domain;
+
+import java.util.function.Function;
+
+/**
+ * Exported customer columns besides the key, in the order of the customer CSV.
+ *
+ * <p>Every column has its own fingerprint in {@link SyncedCustomerHash#getColumnHashes()}, stored
+ * at {@code ordinal() * }{@link #FINGERPRINT_LENGTH}, so the diff can tell which columns of a
+ * changed customer differ from the last export.
+ */
+public enum CustomerColumn {
+  FIRMA("firma", Customer::getFirmenname),
+  STRASSE("strasse", Customer::getStrasse),
+  STRASSENZUSATZ("strassenzusatz", Customer::getStrassenzusatz),
+  ORT("ort", Customer::getOrt),
+  LAND("land", Customer::getLand),
+  PLZ("plz", Customer::getPlz),
+  VORNAME("vorname", Customer::getVorname),
+  NACHNAME("nachname", Customer::getNachname);
+
+  /** Length of one column fingerprint in bytes. */
+  public static final int FINGERPRINT_LENGTH = 4;
+
+  private final String csvName;
+  private final Function<Customer, String> value;
+
+  CustomerColumn(String csvName, Function<Customer, String> value) {
+    this.csvName = csvName;
+    this.value = value;
+  }
+
+  /**
+   * @return column name used in CSV exports
+   */
+  public String csvName() {
+    return csvName;
+  }
+
+  /**
+   * @param customer the customer
+   * @return value of this column
+   */
+  public String value(Customer customer) {
+    return value.apply(customer);
+  }
+}
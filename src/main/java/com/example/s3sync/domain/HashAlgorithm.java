@@ -0,0 +1,31 @@
+package com.example.s3sync.domain;
+
+/**
+ * Algorithm used by {@link com.example.s3sync.service.HashService} to compute row hashes and order
+ * markers.
+ *
+ * <p>The algorithm for new hashes is selected with the <code>sync.hash.algorithm</code> property;
+ * values are matched leniently, so <code>murmur3-128</code> and <code>MURMUR3_128</code> are both
+ * accepted. Every tracking row stores the algorithm its hash was computed with in {@code
+ * hash_algo}, so hashes of another algorithm stay valid and are compared with that algorithm until
+ * the row is synced again.
+ *
+ * <p>Change detection does not need a cryptographic hash: the hashes are never exposed and an
+ * attacker able to craft collisions could change the source tables directly.
+ */
+public enum HashAlgorithm {
+
+  /**
+   * SHA-256, 32-byte digest. Required by {@link com.example.s3sync.service.DiffMode#IN_DATABASE}.
+   */
+  SHA256,
+
+  /**
+   * 128-bit MurmurHash3 (x64 variant, seed 0), 16-byte digest. Non-cryptographic and the cheapest
+   * option per row.
+   */
+  MURMUR3_128,
+
+  /** BLAKE3, 32-byte digest. Cryptographic, for setups that want to keep collision resistance. */
+  BLAKE3
+}
@@ -14,8 +14,25 @@ import org.hibernate.annotations.UuidGenerator;
 @EqualsAndHashCode(onlyExplicitlyIncluded = true)
 @Entity
 @Table(name = "auftraege")
+@SqlResultSetMapping(
+    name = Order.UNMANAGED_MAPPING,
+    classes =
+        @ConstructorResult(
+            targetClass = Order.class,
+            columns = {
+              @ColumnResult(name = "auftragid"),
+              @ColumnResult(name = "artikelnummer"),
+              @ColumnResult(name = "lastchange"),
+              @ColumnResult(name = "kundeid")
+            }))
 public class Order {
 
+  /**
+   * Result set mapping building unmanaged orders from the columns {@code auftragid, artikelnummer,
+   * lastchange, kundeid} of a native query.
+   */
+  public static final String UNMANAGED_MAPPING = "Order.unmanaged";
+
   /** Order identifier (primary key). */
   @Id
   @EqualsAndHashCode.Include
@@ -39,4 +56,17 @@ public class Order {
   /** Customer (kundeid). Stored as String. */
   @Column(name = "kundeid", nullable = false, length = 255)
   private String kundeid;
+
+  /**
+   * Create an order without {@code created}, for projections that read only the columns needed by
+   * the diff and the export.
+   *
+   * @param id order identifier
+   * @param artikelnummer article number
+   * @param lastchange last modification timestamp
+   * @param kundeid customer id
+   */
+  public Order(String id, String artikelnummer, String lastchange, String kundeid) {
+    this(id, artikelnummer, null, lastchange, kundeid);
+  }
 }
@@ -0,0 +1,41 @@
+package com.example.s3sync.domain;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+import lombok.*;
+
+/**
+ * High-water mark of an incremental sync: the greatest change timestamp of a source table that has
+ * been exported.
+ *
+ * <p>Created by {@code db/order-watermark.sql} and only advanced after the rows up to the mark have
+ * been synced.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "sync_watermark")
+public class SyncWatermark {
+
+  /** Source table the mark belongs to (e.g. {@code auftraege}). */
+  @Id
+  @Column(name = "table_name", nullable = false, length = 63)
+  private String tableName;
+
+  /** Greatest exported change timestamp. */
+  @Column(name = "high_water", nullable = false)
+  private Instant highWater;
+
+  /** Time the mark was last advanced. */
+  @Column(name = "updated_at", nullable = false)
+  private Instant updatedAt;
+
+  /** Lifecycle callback updating {@link #updatedAt} before the mark is written. */
+  @PrePersist
+  @PreUpdate
+  public void updateTimestamp() {
+    this.updatedAt = Instant.now();
+  }
+}
@@ -19,11 +19,39 @@ public class SyncedCustomerHash {
   private Long kundenId;
 
   /**
-   * Hex-encoded row hash. Used to detect changes in the exported customer representation. Length
-   * limited to 128 characters to allow common hash encodings (SHA-1/256/512 in hex/base64, etc.).
+   * Row hash as raw digest bytes ({@code bytea}, 16 or 32 bytes depending on {@link #hashAlgo}).
+   * Used to detect changes in the exported customer representation.
    */
-  @Column(name = "row_hash", nullable = false, length = 128)
-  private String rowHash;
+  @Column(name = "row_hash", nullable = false)
+  private byte[] rowHash;
+
+  /**
+   * Algorithm the hash was computed with. Hashes are compared with this algorithm, so changing
+   * <code>sync.hash.algorithm</code> does not invalidate existing rows; a row switches to the new
+   * algorithm when it is synced again. Defaults to {@link HashAlgorithm#SHA256}, the algorithm of
+   * rows written before the column existed.
+   */
+  @Builder.Default
+  @Enumerated(EnumType.STRING)
+  @Column(name = "hash_algo", nullable = false, length = 16)
+  private HashAlgorithm hashAlgo = HashAlgorithm.SHA256;
+
+  /**
+   * Per-column fingerprints of the exported row, {@link CustomerColumn#FINGERPRINT_LENGTH} bytes
+   * per {@link CustomerColumn} in declaration order. Used to report which columns of a changed
+   * customer differ; {@code null} for rows synced before the column existed, which are treated as
+   * changed in every column.
+   */
+  @Column(name = "column_hashes")
+  private byte[] columnHashes;
+
+  /**
+   * Country the row was last exported under. Kept so that a tombstone can be exported to the same
+   * per-country file after the source row was deleted; {@code null} for rows synced before the
+   * column existed.
+   */
+  @Column(name = "land", length = 255)
+  private String land;
 
   /**
    * Timestamp of the last successful sync for this row.
@@ -21,10 +21,29 @@ public class SyncedOrderHash {
   /**
    * Hash/marker for the exported order row. Used to detect changes.
    *
-   * <p>Hex/base64 values fit into the 128 character limit used here.
+   * <p>Stored as raw digest bytes ({@code bytea}, 16 or 32 bytes depending on {@link #hashAlgo}).
    */
-  @Column(name = "marker_hash", nullable = false, length = 128)
-  private String markerHash;
+  @Column(name = "marker_hash", nullable = false)
+  private byte[] markerHash;
+
+  /**
+   * Algorithm the hash was computed with. Hashes are compared with this algorithm, so changing
+   * <code>sync.hash.algorithm</code> does not invalidate existing rows; a row switches to the new
+   * algorithm when it is synced again. Defaults to {@link HashAlgorithm#SHA256}, the algorithm of
+   * rows written before the column existed.
+   */
+  @Builder.Default
+  @Enumerated(EnumType.STRING)
+  @Column(name = "hash_algo", nullable = false, length = 16)
+  private HashAlgorithm hashAlgo = HashAlgorithm.SHA256;
+
+  /**
+   * Country the row was last exported under. Kept so that a tombstone can be exported to the same
+   * per-country file after the source row was deleted; {@code null} for rows synced before the
+   * column existed.
+   */
+  @Column(name = "land", length = 255)
+  private String land;
 
   /**
    * Time when this order was last synced. Automatically updated on persist and update to reflect
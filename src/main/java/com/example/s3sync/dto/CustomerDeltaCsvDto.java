@@ -0,0 +1,21 @@
+package com.example.s3sync.dto;
+
+import lombok.Builder;
+
+/**
+ * Data Transfer Object used for the delta CSV export of customer data.
+ *
+ * <p>One record describes one changed column of one customer, so a customer whose address changed
+ * is exported as a few small records instead of a full row.
+ */
+@Builder
+public record CustomerDeltaCsvDto(
+
+    /** Customer id as string (CSV column: kundenId). */
+    String kundenId,
+
+    /** Name of the changed column as in the full customer CSV (CSV column: column). */
+    String column,
+
+    /** New value of the column (CSV column: value). */
+    String value) {}
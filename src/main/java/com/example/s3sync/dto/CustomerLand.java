@@ -0,0 +1,12 @@
+package com.example.s3sync.dto;
+
+/**
+ * Projection of a customer's country, used to group orders by the country of their customer without
+ * loading the customers.
+ */
+public record CustomerLand(
+    /** Customer id ({@code kundenid}). */
+    Long kundenId,
+
+    /** Country of the customer. */
+    String land) {}
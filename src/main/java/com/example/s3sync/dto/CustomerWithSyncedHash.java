@@ -0,0 +1,50 @@
+package com.example.s3sync.dto;
+
+import com.example.s3sync.domain.Customer;
+import com.example.s3sync.domain.HashAlgorithm;
+
+/**
+ * Projection pairing a customer with the row hash stored for it in {@code synced_kunde_hash}.
+ *
+ * <p>Produced by a single left join so the diff can be computed without one lookup per customer.
+ * The query selects the customer columns rather than the entity, so the customer is a plain object
+ * outside the persistence context.
+ */
+public record CustomerWithSyncedHash(
+    /** The customer row as currently stored in {@code kunde}. */
+    Customer customer,
+
+    /** Stored row hash, or {@code null} when the customer has never been synced. */
+    byte[] syncedRowHash,
+
+    /**
+     * Algorithm of the stored row hash, or {@code null} when the customer has never been synced.
+     */
+    HashAlgorithm syncedHashAlgo,
+
+    /** Stored column fingerprints, or {@code null} when unknown or never synced. */
+    byte[] syncedColumnHashes) {
+
+  /** Constructor used by the JPQL constructor expression, taking the customer column by column. */
+  public CustomerWithSyncedHash(
+      Long id,
+      String vorname,
+      String nachname,
+      String email,
+      String strasse,
+      String strassenzusatz,
+      String ort,
+      String land,
+      String plz,
+      String firmenname,
+      byte[] syncedRowHash,
+      HashAlgorithm syncedHashAlgo,
+      byte[] syncedColumnHashes) {
+    this(
+        new Customer(
+            id, vorname, nachname, email, strasse, strassenzusatz, ort, land, plz, firmenname),
+        syncedRowHash,
+        syncedHashAlgo,
+        syncedColumnHashes);
+  }
+}
@@ -0,0 +1,19 @@
+package com.example.s3sync.dto;
+
+import java.time.Instant;
+import lombok.Builder;
+
+/**
+ * Data Transfer Object used for CSV export of deleted rows.
+ *
+ * <p>A tombstone tells downstream consumers that a previously exported customer or order no longer
+ * exists in the source table.
+ */
+@Builder
+public record TombstoneCsvDto(
+
+    /** Id of the deleted customer or order (CSV column: id). */
+    String id,
+
+    /** Time the deletion was detected (CSV column: deletedAt, ISO-8601). */
+    Instant deletedAt) {}
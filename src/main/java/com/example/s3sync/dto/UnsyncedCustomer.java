@@ -0,0 +1,36 @@
+package com.example.s3sync.dto;
+
+import com.example.s3sync.domain.Customer;
+import com.example.s3sync.domain.CustomerColumn;
+import java.util.Set;
+
+/**
+ * Diff result pairing a customer that requires synchronization with its current row hash.
+ *
+ * <p>The diff already hashes every candidate to compare it with the stored hash, so the sync
+ * services persist this hash instead of computing it a second time. The diff also reports which
+ * exported columns differ from the last export, based on the stored column fingerprints.
+ */
+public record UnsyncedCustomer(
+    /** The customer row as currently stored in {@code kunde}. */
+    Customer customer,
+
+    /** Current row hash of the customer, computed with the configured hash algorithm. */
+    byte[] rowHash,
+
+    /** Current per-column fingerprints, see {@code HashService#customerColumnHashes}. */
+    byte[] columnHashes,
+
+    /**
+     * Exported columns that differ from the last export. All columns for customers that were never
+     * synced or have no stored fingerprints; empty when only non-exported fields changed.
+     */
+    Set<CustomerColumn> changedColumns) {
+
+  /**
+   * @return {@code true} when every exported column changed, e.g. for a new customer
+   */
+  public boolean allColumnsChanged() {
+    return changedColumns.size() == CustomerColumn.values().length;
+  }
+}
@@ -0,0 +1,18 @@
+package com.example.s3sync.dto;
+
+import com.example.s3sync.domain.Order;
+
+/**
+ * Diff result pairing an order that requires synchronization with its current marker hash.
+ *
+ * <p>Counterpart of {@link UnsyncedCustomer} for orders.
+ */
+public record UnsyncedOrder(
+    /**
+     * The order row as currently stored in {@code auftraege}, read without {@code created}, which
+     * no diff or export path uses.
+     */
+    Order order,
+
+    /** Current marker hash of the order, computed with the configured hash algorithm. */
+    byte[] markerHash) {}
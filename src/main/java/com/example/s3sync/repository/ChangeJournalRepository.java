@@ -0,0 +1,24 @@
+package com.example.s3sync.repository;
+
+import com.example.s3sync.domain.ChangeJournalEntry;
+import java.util.List;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+/**
+ * Repository for {@link ChangeJournalEntry} entities.
+ *
+ * <p>Used to read pending journal entries in batches and to acknowledge consumed entries by
+ * deleting them (see {@link #deleteAllByIdInBatch(Iterable)}).
+ */
+public interface ChangeJournalRepository extends JpaRepository<ChangeJournalEntry, Long> {
+
+  /**
+   * Load the oldest pending journal entries of the given table.
+   *
+   * @param tableName source table name ({@code kunde} or {@code auftraege})
+   * @param limit maximum number of entries to return
+   * @return pending entries ordered by journal id
+   */
+  List<ChangeJournalEntry> findByTableNameOrderByIdAsc(String tableName, Limit limit);
+}
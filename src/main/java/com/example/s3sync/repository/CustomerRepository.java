@@ -1,7 +1,17 @@
 package com.example.s3sync.repository;
 
 import com.example.s3sync.domain.Customer;
+import com.example.s3sync.dto.CustomerLand;
+import com.example.s3sync.dto.CustomerWithSyncedHash;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 /**
  * Repository for {@link Customer} entities.
@@ -10,4 +20,214 @@ import org.springframework.data.jpa.repository.JpaRepository;
  * pagination for {@code Customer} entities. Additional query methods (if needed) can be declared
  * here following Spring Data's method name conventions or using {@code @Query} annotations.
  */
-public interface CustomerRepository extends JpaRepository<Customer, Long> {}
+public interface CustomerRepository extends JpaRepository<Customer, Long> {
+
+  /**
+   * Characters removed from both ends of every field by {@link String#trim()}: all code points up
+   * to and including U+0020 (U+0000 cannot occur in Postgres text). Passed to {@code btrim} so the
+   * SQL row hash trims exactly like {@code HashService}.
+   */
+  String JAVA_TRIM_CHARACTERS =
+      IntStream.rangeClosed(1, ' ').mapToObj(Character::toString).collect(Collectors.joining());
+
+  /**
+   * SQL expression computing the canonical customer row hash of {@code kunde k} inside Postgres.
+   *
+   * <p>Mirrors {@code HashService.customerRowHash}: the ten fields are trimmed, joined with {@code
+   * |}, encoded as UTF-8 and hashed with SHA-256; the result is the raw 32-byte digest. Requires
+   * the named parameter {@code :trimChars} bound to {@link #JAVA_TRIM_CHARACTERS}.
+   */
+  String DATABASE_ROW_HASH =
+      "sha256(convert_to(concat_ws('|', "
+          + "btrim(k.firmenname, :trimChars), "
+          + "btrim(k.strasse, :trimChars), "
+          + "btrim(k.strassenzusatz, :trimChars), "
+          + "btrim(k.ort, :trimChars), "
+          + "btrim(k.land, :trimChars), "
+          + "btrim(k.plz, :trimChars), "
+          + "btrim(k.vorname, :trimChars), "
+          + "btrim(k.nachname, :trimChars), "
+          + "btrim(k.email, :trimChars), "
+          + "CAST(k.kundenid AS text)), 'UTF8'))";
+
+  /**
+   * JPQL select list of all {@link Customer} columns in the order of its all-args constructor, for
+   * constructor expressions over {@code Customer c}.
+   */
+  String CUSTOMER_COLUMNS =
+      "c.id, c.vorname, c.nachname, c.email, c.strasse, c.strassenzusatz, c.ort, c.land, c.plz,"
+          + " c.firmenname";
+
+  /**
+   * Load all customers as unmanaged instances.
+   *
+   * <p>Unlike {@link #findAll()} the rows are read with a constructor expression: the customers are
+   * plain objects that are neither registered in the persistence context nor kept with a loaded
+   * state snapshot for dirty checking, so the heap holds one object per row and the flush at the
+   * end of the transaction has nothing to compare. Changes to the returned objects are never
+   * written back.
+   *
+   * @return every customer, not attached to the persistence context
+   */
+  @Query("select new com.example.s3sync.domain.Customer(" + CUSTOMER_COLUMNS + ") from Customer c")
+  List<Customer> findAllUnmanaged();
+
+  /**
+   * Load the countries of the given customers in one query, without loading the customers.
+   *
+   * <p>Runs in a read-write transaction so that it reads the primary even with a read replica
+   * configured: orders may reference customers created after the replica's last replay.
+   *
+   * @param ids customer ids
+   * @return id and country of every existing customer among {@code ids}; unknown ids are absent
+   */
+  @Transactional
+  @Query(
+      "select new com.example.s3sync.dto.CustomerLand(c.id, c.land) from Customer c"
+          + " where c.id in :ids")
+  List<CustomerLand> findLandsByIdIn(@Param("ids") Collection<Long> ids);
+
+  /**
+   * Load all customers together with their stored row hash in one query.
+   *
+   * <p>The customer table is left joined with {@code synced_kunde_hash}; customers without a
+   * tracking entry are returned with a {@code null} hash and algorithm. Like {@link
+   * #findAllUnmanaged()} the customers are built from their columns and are not managed.
+   *
+   * @return every customer paired with its stored row hash
+   */
+  @Query(
+      "select new com.example.s3sync.dto.CustomerWithSyncedHash("
+          + CUSTOMER_COLUMNS
+          + ", s.rowHash, s.hashAlgo, s.columnHashes) "
+          + "from Customer c left join SyncedCustomerHash s on s.kundenId = c.id")
+  List<CustomerWithSyncedHash> findAllWithSyncedHash();
+
+  /**
+   * Load the customers of an id range, i.e. {@code WHERE kundenid >= :from AND kundenid < :to ORDER
+   * BY kundenid}.
+   *
+   * <p>Like {@link #findAllUnmanaged()} the customers are built with a constructor expression and
+   * are not managed.
+   *
+   * @param from smallest id of the range
+   * @param to exclusive upper bound of the range
+   * @return the customers of the range ordered by id
+   */
+  @Query(
+      "select new com.example.s3sync.domain.Customer("
+          + CUSTOMER_COLUMNS
+          + ") from Customer c"
+          + " where c.id >= :from and c.id < :to order by c.id")
+  List<Customer> findByIdGreaterThanEqualAndIdLessThanOrderByIdAsc(
+      @Param("from") Long from, @Param("to") Long to);
+
+  /**
+   * Load the first keyset page of customers ordered by id.
+   *
+   * <p>Like all keyset and range pages below, the customers are built with a constructor expression
+   * and are not managed.
+   *
+   * @param limit maximum number of customers to return
+   * @return the customers with the lowest ids
+   */
+  @Query(
+      "select new com.example.s3sync.domain.Customer("
+          + CUSTOMER_COLUMNS
+          + ") from Customer c"
+          + " order by c.id")
+  List<Customer> findAllByOrderByIdAsc(Limit limit);
+
+  /**
+   * Load the next keyset page of customers, i.e. {@code WHERE kundenid > :id ORDER BY kundenid
+   * LIMIT n}.
+   *
+   * @param id last customer id of the previous page
+   * @param limit maximum number of customers to return
+   * @return customers with an id greater than {@code id}, ordered by id
+   */
+  @Query(
+      "select new com.example.s3sync.domain.Customer("
+          + CUSTOMER_COLUMNS
+          + ") from Customer c"
+          + " where c.id > :id order by c.id")
+  List<Customer> findByIdGreaterThanOrderByIdAsc(@Param("id") Long id, Limit limit);
+
+  /**
+   * Load only new or changed customers, hashing every row inside Postgres.
+   *
+   * <p>The row hash is computed with {@link #DATABASE_ROW_HASH} and compared with {@code
+   * synced_kunde_hash.row_hash} in the query, so unchanged rows never cross the wire. Postgres can
+   * only compute SHA-256, so customers whose stored hash uses another {@code hash_algo} are always
+   * returned; they are exported once more and stored with SHA-256.
+   *
+   * @return customers without tracking entry, with a differing SHA-256 row hash or with a row hash
+   *     of another algorithm
+   */
+  default List<Customer> findUnsyncedByDatabaseHash() {
+    return findUnsyncedByDatabaseHash(JAVA_TRIM_CHARACTERS);
+  }
+
+  /**
+   * See {@link #findUnsyncedByDatabaseHash()}.
+   *
+   * @param trimChars characters to trim, always {@link #JAVA_TRIM_CHARACTERS}
+   * @return customers without tracking entry or with a differing row hash
+   */
+  @Query(
+      value =
+          "SELECT k.* FROM kunde k "
+              + "LEFT JOIN synced_kunde_hash s ON s.kundenid = k.kundenid "
+              + "WHERE s.kundenid IS NULL OR s.hash_algo <> 'SHA256' OR s.row_hash <> "
+              + DATABASE_ROW_HASH,
+      nativeQuery = true)
+  List<Customer> findUnsyncedByDatabaseHash(@Param("trimChars") String trimChars);
+
+  /**
+   * Split the customers into {@code parts} ranges of (nearly) equal size and return the greatest
+   * {@code kundenid} of every range, using {@code ntile} over the primary key.
+   *
+   * @param parts number of ranges
+   * @return upper bounds (inclusive) of the ranges in ascending order; fewer than {@code parts}
+   *     when there are fewer customers
+   */
+  @Query(
+      value =
+          "SELECT max(kundenid) FROM ("
+              + "SELECT kundenid, ntile(:parts) OVER (ORDER BY kundenid) AS part FROM kunde"
+              + ") ranges GROUP BY part ORDER BY 1",
+      nativeQuery = true)
+  List<Long> findRangeUpperBounds(@Param("parts") int parts);
+
+  /**
+   * Load the first keyset page of a range, i.e. {@code WHERE kundenid <= :to ORDER BY kundenid
+   * LIMIT n}.
+   *
+   * @param to inclusive upper bound of the range
+   * @param limit maximum number of customers to return
+   * @return customers with an id up to {@code to}, ordered by id
+   */
+  @Query(
+      "select new com.example.s3sync.domain.Customer("
+          + CUSTOMER_COLUMNS
+          + ") from Customer c"
+          + " where c.id <= :to order by c.id")
+  List<Customer> findByIdLessThanEqualOrderByIdAsc(@Param("to") Long to, Limit limit);
+
+  /**
+   * Load the next keyset page of a range, i.e. {@code WHERE kundenid > :id AND kundenid <= :to
+   * ORDER BY kundenid LIMIT n}.
+   *
+   * @param id last customer id of the previous page or exclusive lower bound of the range
+   * @param to inclusive upper bound of the range
+   * @param limit maximum number of customers to return
+   * @return customers in {@code (id, to]}, ordered by id
+   */
+  @Query(
+      "select new com.example.s3sync.domain.Customer("
+          + CUSTOMER_COLUMNS
+          + ") from Customer c"
+          + " where c.id > :id and c.id <= :to order by c.id")
+  List<Customer> findByIdGreaterThanAndIdLessThanEqualOrderByIdAsc(
+      @Param("id") Long id, @Param("to") Long to, Limit limit);
+}
@@ -1,7 +1,13 @@
 package com.example.s3sync.repository;
 
 import com.example.s3sync.domain.Order;
+import java.time.Instant;
+import java.util.List;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.NativeQuery;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 /**
  * Repository for {@link Order} entities.
@@ -11,4 +17,139 @@ import org.springframework.data.jpa.repository.JpaRepository;
  * strings. Additional query methods (if needed) can be declared here following Spring Data's method
  * name conventions or using {@code @Query} annotations.
  */
-public interface OrderRepository extends JpaRepository<Order, String> {}
+public interface OrderRepository extends JpaRepository<Order, String> {
+
+  /**
+   * JPQL select list of the {@link Order} columns read by the diff and the export, in the order of
+   * the projection constructor of {@code Order}. {@code created} is not read.
+   */
+  String ORDER_COLUMNS = "o.id, o.artikelnummer, o.lastchange, o.kundeid";
+
+  /**
+   * Load all orders as unmanaged instances, built with a constructor expression.
+   *
+   * <p>See {@link CustomerRepository#findAllUnmanaged()}: the orders are neither registered in the
+   * persistence context nor snapshotted for dirty checking. Only {@link #ORDER_COLUMNS} are read,
+   * so {@code created} is {@code null}.
+   *
+   * @return every order, not attached to the persistence context
+   */
+  @Query("select new com.example.s3sync.domain.Order(" + ORDER_COLUMNS + ") from Order o")
+  List<Order> findAllUnmanaged();
+
+  /**
+   * Load the first keyset page of orders ordered by id.
+   *
+   * <p>Like {@link #findAllUnmanaged()} and all keyset and range pages below, the orders are built
+   * with a constructor expression, are not managed and have no {@code created}.
+   *
+   * @param limit maximum number of orders to return
+   * @return the orders with the lowest ids
+   */
+  @Query(
+      "select new com.example.s3sync.domain.Order("
+          + ORDER_COLUMNS
+          + ") from Order o"
+          + " order by o.id")
+  List<Order> findAllByOrderByIdAsc(Limit limit);
+
+  /**
+   * Load the next keyset page of orders, i.e. {@code WHERE auftragid > :id ORDER BY auftragid LIMIT
+   * n}.
+   *
+   * @param id last order id of the previous page
+   * @param limit maximum number of orders to return
+   * @return orders with an id greater than {@code id}, ordered by id
+   */
+  @Query(
+      "select new com.example.s3sync.domain.Order("
+          + ORDER_COLUMNS
+          + ") from Order o"
+          + " where o.id > :id order by o.id")
+  List<Order> findByIdGreaterThanOrderByIdAsc(@Param("id") String id, Limit limit);
+
+  /**
+   * Return the greatest parsed {@code lastchange} of all orders as microseconds since the epoch.
+   *
+   * <p>Answered from the {@code sync_lastchange_ts} expression index created by the migration
+   * {@code V2__sync_indexes.sql}. The value is returned as {@code bigint} so it converts to an
+   * {@link Instant} without loss.
+   *
+   * @return epoch microseconds of the newest order change, {@code null} when there are no orders
+   */
+  @Query(
+      value =
+          "SELECT CAST(EXTRACT(EPOCH FROM max(sync_lastchange_ts(lastchange))) * 1000000 AS bigint)"
+              + " FROM auftraege",
+      nativeQuery = true)
+  Long findMaxLastchangeMicros();
+
+  /**
+   * Load the orders whose parsed {@code lastchange} lies in {@code (from, to]}, plus all orders
+   * whose {@code lastchange} cannot be parsed.
+   *
+   * <p>A native query, so that Postgres answers it from the {@code sync_lastchange_ts} expression
+   * index. Its rows are mapped with the constructor result {@link Order#UNMANAGED_MAPPING}, so the
+   * orders are not managed either and have no {@code created}.
+   *
+   * @param from exclusive lower bound
+   * @param to inclusive upper bound
+   * @return orders changed in the window
+   */
+  @NativeQuery(
+      value =
+          "SELECT a.auftragid, a.artikelnummer, a.lastchange, a.kundeid FROM auftraege a"
+              + " WHERE (sync_lastchange_ts(a.lastchange) > :from"
+              + " AND sync_lastchange_ts(a.lastchange) <= :to)"
+              + " OR sync_lastchange_ts(a.lastchange) IS NULL",
+      sqlResultSetMapping = Order.UNMANAGED_MAPPING)
+  List<Order> findByLastchangeWindow(@Param("from") Instant from, @Param("to") Instant to);
+
+  /**
+   * Split the orders into {@code parts} ranges of (nearly) equal size and return the greatest
+   * {@code auftragid} of every range, using {@code ntile} over the primary key.
+   *
+   * @param parts number of ranges
+   * @return upper bounds (inclusive) of the ranges in ascending order; fewer than {@code parts}
+   *     when there are fewer orders
+   */
+  @Query(
+      value =
+          "SELECT max(auftragid) FROM ("
+              + "SELECT auftragid, ntile(:parts) OVER (ORDER BY auftragid) AS part FROM auftraege"
+              + ") ranges GROUP BY part ORDER BY 1",
+      nativeQuery = true)
+  List<String> findRangeUpperBounds(@Param("parts") int parts);
+
+  /**
+   * Load the first keyset page of a range, i.e. {@code WHERE auftragid <= :to ORDER BY auftragid
+   * LIMIT n}.
+   *
+   * @param to inclusive upper bound of the range
+   * @param limit maximum number of orders to return
+   * @return orders with an id up to {@code to}, ordered by id
+   */
+  @Query(
+      "select new com.example.s3sync.domain.Order("
+          + ORDER_COLUMNS
+          + ") from Order o"
+          + " where o.id <= :to order by o.id")
+  List<Order> findByIdLessThanEqualOrderByIdAsc(@Param("to") String to, Limit limit);
+
+  /**
+   * Load the next keyset page of a range, i.e. {@code WHERE auftragid > :id AND auftragid <= :to
+   * ORDER BY auftragid LIMIT n}.
+   *
+   * @param id last order id of the previous page or exclusive lower bound of the range
+   * @param to inclusive upper bound of the range
+   * @param limit maximum number of orders to return
+   * @return orders in {@code (id, to]}, ordered by id
+   */
+  @Query(
+      "select new com.example.s3sync.domain.Order("
+          + ORDER_COLUMNS
+          + ") from Order o"
+          + " where o.id > :id and o.id <= :to order by o.id")
+  List<Order> findByIdGreaterThanAndIdLessThanEqualOrderByIdAsc(
+      @Param("id") String id, @Param("to") String to, Limit limit);
+}
@@ -0,0 +1,12 @@
+package com.example.s3sync.repository;
+
+import com.example.s3sync.domain.SyncWatermark;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+/**
+ * Repository for {@link SyncWatermark} entities, keyed by source table name.
+ *
+ * <p>Used to read the current high-water mark before an incremental sync and to store the advanced
+ * mark afterwards.
+ */
+public interface SyncWatermarkRepository extends JpaRepository<SyncWatermark, String> {}
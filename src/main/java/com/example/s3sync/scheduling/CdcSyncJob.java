@@ -0,0 +1,88 @@
+package com.example.s3sync.scheduling;
+
+import com.example.s3sync.dto.UnsyncedCustomer;
+import com.example.s3sync.dto.UnsyncedOrder;
+import com.example.s3sync.service.CustomerSyncService;
+import com.example.s3sync.service.LogicalReplicationChangeSource;
+import com.example.s3sync.service.LogicalReplicationChangeSource.ChangeSet;
+import com.example.s3sync.service.OrderSyncService;
+import com.example.s3sync.service.SyncDiffService;
+import com.example.s3sync.service.TombstoneSyncService;
+import jakarta.annotation.PostConstruct;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Near-real-time sync driven by Postgres logical replication.
+ *
+ * <p>Active when <code>sync.cdc.enabled</code> is {@code true}. Every <code>sync.cdc.poll-interval
+ * </code> the job asks {@link LogicalReplicationChangeSource} for changed customer and order keys,
+ * lets {@link SyncDiffService} load those rows and drop the ones whose hash did not change, and
+ * hands the rest to {@link CustomerSyncService} and {@link OrderSyncService}. The replication slot
+ * is advanced only after both sync calls returned, so a failed poll is repeated from the same LSN.
+ *
+ * <p>Every poll labels its files with the last LSN of its change set ({@link
+ * ChangeSet#batchLabel()}), e.g. {@code kunde_<land>_<yyyyMMdd_HH>_lsn00000000016B3748.csv}, so the
+ * polls of one hour do not overwrite each other's exports. A repeated poll writes the same keys
+ * again.
+ *
+ * <p>When <code>sync.deletions.enabled</code> is {@code true} the poll also hands the changed keys
+ * to {@link TombstoneSyncService}, which exports tombstones for those of them that were deleted.
+ * Only the tracking rows of these keys are checked, not the whole tracking tables.
+ *
+ * <p>While CDC is enabled {@link SyncJob} skips its periodic full scan.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "sync.cdc.enabled", havingValue = "true")
+public class CdcSyncJob {
+
+  private final LogicalReplicationChangeSource changeSource;
+  private final SyncDiffService syncDiffService;
+  private final CustomerSyncService customerSyncService;
+  private final OrderSyncService orderSyncService;
+  private final TombstoneSyncService tombstoneSyncService;
+
+  /** Export tombstones for deleted keys (<code>sync.deletions.enabled</code>). */
+  @Value("${sync.deletions.enabled:false}")
+  private boolean deletionsEnabled;
+
+  /** Create the replication slot on startup so changes are captured from now on. */
+  @PostConstruct
+  public void createSlot() {
+    changeSource.ensureSlot();
+  }
+
+  /** Sync the rows changed since the last acknowledged LSN and advance the slot. */
+  @Scheduled(
+      fixedDelayString = "${sync.cdc.poll-interval:5s}",
+      initialDelayString = "${sync.cdc.poll-interval:5s}")
+  public void pollChanges() {
+    ChangeSet changes = changeSource.peekChanges();
+    if (changes.isEmpty()) {
+      return;
+    }
+
+    String batch = changes.batchLabel();
+    List<UnsyncedCustomer> customers = syncDiffService.getUnsyncedCustomers(changes.customerIds());
+    if (!customers.isEmpty()) {
+      customerSyncService.syncAndUpload(customers, batch);
+    }
+    List<UnsyncedOrder> orders = syncDiffService.getUnsyncedOrders(changes.orderIds());
+    if (!orders.isEmpty()) {
+      orderSyncService.syncAndUpload(orders, batch);
+    }
+    if (deletionsEnabled) {
+      tombstoneSyncService.syncDeletedCustomers(changes.customerIds(), batch);
+      tombstoneSyncService.syncDeletedOrders(changes.orderIds(), batch);
+    }
+
+    changeSource.acknowledge(changes);
+  }
+}
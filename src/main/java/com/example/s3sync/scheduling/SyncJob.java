@@ -1,13 +1,17 @@
 package com.example.s3sync.scheduling;
 
-import com.example.s3sync.domain.Customer;
-import com.example.s3sync.domain.Order;
+import com.example.s3sync.dto.UnsyncedCustomer;
+import com.example.s3sync.dto.UnsyncedOrder;
 import com.example.s3sync.service.CustomerSyncService;
 import com.example.s3sync.service.OrderSyncService;
+import com.example.s3sync.service.ParallelSyncDiffService;
+import com.example.s3sync.service.StreamingSyncDiffService;
 import com.example.s3sync.service.SyncDiffService;
+import com.example.s3sync.service.TombstoneSyncService;
 import java.util.List;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
@@ -23,6 +27,28 @@ import org.springframework.stereotype.Component;
  * `fixedRateString` and `initialDelayString` to read `scheduler.rate` and `scheduler.delay` from
  * the application configuration — this allows controlling execution frequency without recompiling
  * the application.
+ *
+ * <p>When <code>sync.diff.streaming</code> is {@code true} the job uses {@link
+ * StreamingSyncDiffService} instead, which walks the tables in keyset pages and hands only the
+ * changed rows to the sync services as a stream.
+ *
+ * <p>When <code>sync.diff.parallel.enabled</code> is {@code true} (and streaming is off) the full
+ * diff is computed by {@link ParallelSyncDiffService}, which splits the key space into ranges and
+ * diffs them on several workers.
+ *
+ * <p>When <code>sync.journal.enabled</code> is {@code true} the job does not scan the tables at
+ * all. It consumes the trigger-based change journal through {@link SyncDiffService} batch by batch
+ * and syncs each batch before it is acknowledged.
+ *
+ * <p>When <code>sync.watermark.enabled</code> is {@code true} orders are not scanned either: only
+ * orders whose <code>lastchange</code> is newer than the stored high-water mark (minus an overlap
+ * window) are compared, see {@link SyncDiffService#consumeOrdersSinceWatermark}.
+ *
+ * <p>When <code>sync.deletions.enabled</code> is {@code true} every run ends with a deletion pass
+ * in {@link TombstoneSyncService} that exports tombstones for deleted customers and orders.
+ *
+ * <p>When <code>sync.cdc.enabled</code> is {@code true} changes are picked up by {@link CdcSyncJob}
+ * and this job does nothing.
  */
 @Slf4j
 @Component
@@ -32,6 +58,33 @@ public class SyncJob {
   private final SyncDiffService syncDiffService;
   private final CustomerSyncService customerSyncService;
   private final OrderSyncService orderSyncService;
+  private final StreamingSyncDiffService streamingSyncDiffService;
+  private final ParallelSyncDiffService parallelSyncDiffService;
+  private final TombstoneSyncService tombstoneSyncService;
+
+  /** Use the keyset-paginated streaming diff (<code>sync.diff.streaming</code>). */
+  @Value("${sync.diff.streaming:false}")
+  private boolean streamingDiff;
+
+  /** Diff key ranges on several workers (<code>sync.diff.parallel.enabled</code>). */
+  @Value("${sync.diff.parallel.enabled:false}")
+  private boolean parallelDiff;
+
+  /** Consume the trigger-based change journal (<code>sync.journal.enabled</code>). */
+  @Value("${sync.journal.enabled:false}")
+  private boolean journalEnabled;
+
+  /** Select orders by their <code>lastchange</code> high-water mark. */
+  @Value("${sync.watermark.enabled:false}")
+  private boolean orderWatermark;
+
+  /** Detect deleted rows and export tombstones (<code>sync.deletions.enabled</code>). */
+  @Value("${sync.deletions.enabled:false}")
+  private boolean deletionsEnabled;
+
+  /** Changes are synced by {@link CdcSyncJob} (<code>sync.cdc.enabled</code>). */
+  @Value("${sync.cdc.enabled:false}")
+  private boolean cdcEnabled;
 
   /**
    * Runs the synchronization cycle.
@@ -45,24 +98,65 @@ public class SyncJob {
    *       OrderSyncService#syncAndUpload(List)}.
    * </ol>
    *
+   * <p>In streaming mode both steps pass the lazily evaluated streams of {@link
+   * StreamingSyncDiffService} straight to the sync services. In journal mode every journal batch is
+   * synced into its own files and acknowledged before the next batch is read. In watermark mode the
+   * order step only reads orders changed since the stored high-water mark.
+   *
    * <p>The method is annotated with a cron schedule that currently triggers execution every minute
    * at second 0 in the Europe/Berlin timezone.
    */
   @Scheduled(fixedRateString = "${scheduler.rate}", initialDelayString = "${scheduler.delay}")
   public void runSyncJob() {
+    if (cdcEnabled) {
+      log.info("Skipping sync job, changes are synced via logical replication");
+      return;
+    }
     log.info("Starting sync job");
-    List<Customer> unsyncedCustomers = syncDiffService.getUnsyncedCustomers();
-    if (!unsyncedCustomers.isEmpty()) {
-      customerSyncService.syncAndUpload(unsyncedCustomers);
+    if (journalEnabled) {
+      syncDiffService.consumeJournaledCustomers(customerSyncService::syncAndUpload);
+      syncDiffService.consumeJournaledOrders(orderSyncService::syncAndUpload);
+      syncDeletions();
+      log.info("Sync job completed");
+      return;
+    }
+    if (streamingDiff) {
+      customerSyncService.syncAndUpload(streamingSyncDiffService.streamUnsyncedCustomers());
     } else {
-      log.info("No unsynced customers found");
+      List<UnsyncedCustomer> unsyncedCustomers =
+          parallelDiff
+              ? parallelSyncDiffService.getUnsyncedCustomers()
+              : syncDiffService.getUnsyncedCustomers();
+      if (!unsyncedCustomers.isEmpty()) {
+        customerSyncService.syncAndUpload(unsyncedCustomers);
+      } else {
+        log.info("No unsynced customers found");
+      }
     }
-    List<Order> unsyncedOrders = syncDiffService.getUnsyncedOrders();
-    if (!unsyncedOrders.isEmpty()) {
-      orderSyncService.syncAndUpload(unsyncedOrders);
+    if (orderWatermark) {
+      syncDiffService.consumeOrdersSinceWatermark(orderSyncService::syncAndUpload);
+    } else if (streamingDiff) {
+      orderSyncService.syncAndUpload(streamingSyncDiffService.streamUnsyncedOrders());
     } else {
-      log.info("No unsynced orders found");
+      List<UnsyncedOrder> unsyncedOrders =
+          parallelDiff
+              ? parallelSyncDiffService.getUnsyncedOrders()
+              : syncDiffService.getUnsyncedOrders();
+      if (!unsyncedOrders.isEmpty()) {
+        orderSyncService.syncAndUpload(unsyncedOrders);
+      } else {
+        log.info("No unsynced orders found");
+      }
     }
+    syncDeletions();
     log.info("Sync job completed");
   }
+
+  /** Export tombstones for deleted customers and orders when deletion detection is enabled. */
+  private void syncDeletions() {
+    if (deletionsEnabled) {
+      tombstoneSyncService.syncDeletedCustomers();
+      tombstoneSyncService.syncDeletedOrders();
+    }
+  }
 }
@@ -1,23 +1,25 @@
 package com.example.s3sync.service;
 
 import com.example.s3sync.dto.CustomerCsvDto;
+import com.example.s3sync.dto.CustomerDeltaCsvDto;
 import com.example.s3sync.dto.OrderCsvDto;
-import java.io.ByteArrayOutputStream;
+import com.example.s3sync.dto.TombstoneCsvDto;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
-import java.util.List;
+import java.util.stream.Stream;
 import lombok.RequiredArgsConstructor;
-import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVPrinter;
 import org.springframework.stereotype.Service;
 
 /**
- * Service that renders DTO lists to CSV byte arrays.
+ * Service that renders DTO streams to CSV.
  *
- * <p>This service uses Apache Commons CSV to produce UTF-8 encoded CSV output. The helper methods
- * accept lists of DTOs and return the CSV content as a byte array suitable for uploading to S3 or
- * writing to disk.
+ * <p>This service uses Apache Commons CSV to produce UTF-8 encoded CSV output. The {@code write...}
+ * helpers write streams of DTOs to an {@link OutputStream}, e.g. a streamed S3 upload, without
+ * holding the whole CSV in memory.
  *
  * <p>CSV format details:
  *
@@ -27,7 +29,6 @@ import org.springframework.stereotype.Service;
  *   <li>No header row is produced by the current helpers.
  * </ul>
  */
-@Slf4j
 @Service
 @RequiredArgsConstructor
 public class CsvService {
@@ -36,63 +37,93 @@ public class CsvService {
       CSVFormat.DEFAULT.builder().setRecordSeparator("\n").build();
 
   /**
-   * Create a CSV from a list of {@link CustomerCsvDto} and return it as UTF-8 encoded bytes.
+   * Write {@link CustomerCsvDto} rows as UTF-8 encoded CSV to the given stream.
    *
    * <p>The CSV contains one record per DTO in the following column order: firma, strasse,
-   * strassenzusatz, ort, land, plz, vorname, nachname, kundenId.
+   * strassenzusatz, ort, land, plz, vorname, nachname, kundenId. The rows are written as they are
+   * consumed; the stream is flushed but not closed.
    *
-   * @param rows the customer rows to write
-   * @return CSV data encoded as UTF-8 bytes
-   * @throws RuntimeException if CSV generation fails
+   * @param rows the customer rows to write; consumed once
+   * @param out stream receiving the CSV data
+   * @throws IOException if writing to {@code out} fails
    */
-  public byte[] customersToCsv(List<CustomerCsvDto> rows) {
-    log.info("Create customer CSV");
-    ByteArrayOutputStream baos = new ByteArrayOutputStream();
-    try (OutputStreamWriter writer = new OutputStreamWriter(baos, StandardCharsets.UTF_8);
-        CSVPrinter csvPrinter = new CSVPrinter(writer, FORMAT)) {
-      for (CustomerCsvDto r : rows) {
-        csvPrinter.printRecord(
-            r.firma(),
-            r.strasse(),
-            r.strassenzusatz(),
-            r.ort(),
-            r.land(),
-            r.plz(),
-            r.vorname(),
-            r.nachname(),
-            r.kundenId());
-      }
-    } catch (Exception e) {
-      throw new RuntimeException("Customer CSV generation failed", e);
+  public void writeCustomers(Stream<CustomerCsvDto> rows, OutputStream out) throws IOException {
+    CSVPrinter csvPrinter = printer(out);
+    for (CustomerCsvDto r : (Iterable<CustomerCsvDto>) rows::iterator) {
+      csvPrinter.printRecord(
+          r.firma(),
+          r.strasse(),
+          r.strassenzusatz(),
+          r.ort(),
+          r.land(),
+          r.plz(),
+          r.vorname(),
+          r.nachname(),
+          r.kundenId());
     }
-    log.info("Customer CSV generation successful");
-    return baos.toByteArray();
+    csvPrinter.flush();
   }
 
   /**
-   * Create a CSV from a list of {@link OrderCsvDto} and return it as UTF-8 encoded bytes.
+   * Write {@link CustomerDeltaCsvDto} rows as UTF-8 encoded CSV to the given stream.
    *
-   * <p>The CSV contains one record per DTO in the following column order: auftragId, artikelnummer,
-   * kundeId.
+   * <p>The CSV contains one record per changed column in the following column order: kundenId,
+   * column, value. The rows are written as they are consumed; the stream is flushed but not closed.
    *
-   * @param rows the order rows to write
-   * @return CSV data encoded as UTF-8 bytes
-   * @throws RuntimeException if CSV generation fails
+   * @param rows the changed columns to write; consumed once
+   * @param out stream receiving the CSV data
+   * @throws IOException if writing to {@code out} fails
    */
-  public byte[] ordersToCsv(List<OrderCsvDto> rows) {
-    log.info("Create order CSV");
-    ByteArrayOutputStream baos = new ByteArrayOutputStream();
-    try (OutputStreamWriter writer = new OutputStreamWriter(baos, StandardCharsets.UTF_8);
-        CSVPrinter csvPrinter = new CSVPrinter(writer, FORMAT)) {
+  public void writeCustomerDeltas(Stream<CustomerDeltaCsvDto> rows, OutputStream out)
+      throws IOException {
+    CSVPrinter csvPrinter = printer(out);
+    for (CustomerDeltaCsvDto r : (Iterable<CustomerDeltaCsvDto>) rows::iterator) {
+      csvPrinter.printRecord(r.kundenId(), r.column(), r.value());
+    }
+    csvPrinter.flush();
+  }
 
-      for (OrderCsvDto r : rows) {
-        csvPrinter.printRecord(r.auftragId(), r.artikelnummer(), r.kundeId());
-      }
+  /**
+   * Write {@link OrderCsvDto} rows as UTF-8 encoded CSV to the given stream.
+   *
+   * <p>The CSV contains one record per DTO in the following column order: auftragId, artikelnummer,
+   * kundeId. The rows are written as they are consumed; the stream is flushed but not closed.
+   *
+   * @param rows the order rows to write; consumed once
+   * @param out stream receiving the CSV data
+   * @throws IOException if writing to {@code out} fails
+   */
+  public void writeOrders(Stream<OrderCsvDto> rows, OutputStream out) throws IOException {
+    CSVPrinter csvPrinter = printer(out);
+    for (OrderCsvDto r : (Iterable<OrderCsvDto>) rows::iterator) {
+      csvPrinter.printRecord(r.auftragId(), r.artikelnummer(), r.kundeId());
+    }
+    csvPrinter.flush();
+  }
 
-    } catch (Exception e) {
-      throw new RuntimeException("Order CSV generation failed", e);
+  /**
+   * Write {@link TombstoneCsvDto} rows as UTF-8 encoded CSV to the given stream.
+   *
+   * <p>The CSV contains one record per DTO in the following column order: id, deletedAt. The rows
+   * are written as they are consumed; the stream is flushed but not closed.
+   *
+   * @param rows the tombstones to write; consumed once
+   * @param out stream receiving the CSV data
+   * @throws IOException if writing to {@code out} fails
+   */
+  public void writeTombstones(Stream<TombstoneCsvDto> rows, OutputStream out) throws IOException {
+    CSVPrinter csvPrinter = printer(out);
+    for (TombstoneCsvDto r : (Iterable<TombstoneCsvDto>) rows::iterator) {
+      csvPrinter.printRecord(r.id(), r.deletedAt());
     }
-    log.info("Order CSV generation successful");
-    return baos.toByteArray();
+    csvPrinter.flush();
+  }
+
+  /**
+   * Create a printer writing UTF-8 to the given stream. Callers flush the printer instead of
+   * closing it, which would close the stream.
+   */
+  private static CSVPrinter printer(OutputStream out) throws IOException {
+    return new CSVPrinter(new OutputStreamWriter(out, StandardCharsets.UTF_8), FORMAT);
   }
 }
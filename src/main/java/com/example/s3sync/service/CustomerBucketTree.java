@@ -0,0 +1,298 @@
+package com.example.s3sync.service;
+
+import com.example.s3sync.repository.CustomerRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Merkle tree of bucket digests over {@code kundenid} ranges, used by {@link DiffMode#MERKLE}.
+ *
+ * <p>Level 0 buckets cover {@code 2^}{@value #LEAF_BITS} consecutive ids, every level above groups
+ * {@code 2^}{@value #FANOUT_BITS} buckets of the level below, up to level {@value #TOP_LEVEL}. A
+ * level 0 digest is the SHA-256 of the row hashes of its range concatenated in id order, a digest
+ * above that the SHA-256 of its child digests concatenated in bucket order.
+ *
+ * <p>The digests of the synced state are persisted in {@code synced_kunde_bucket}, next to {@code
+ * synced_kunde_hash}. A diff computes the digests of the current {@code kunde} rows in SQL with
+ * {@link CustomerRepository#DATABASE_ROW_HASH} and compares them level by level, descending only
+ * into buckets whose digest differs. This issues one aggregate query per level, and a single one
+ * when nothing changed; only the rows of differing level 0 buckets are loaded and diffed row by
+ * row.
+ *
+ * <p>Lifecycle:
+ *
+ * <ul>
+ *   <li>The table is built from {@code synced_kunde_hash} by the first diff that finds it empty.
+ *   <li>{@link CustomerSyncService} and {@link TombstoneSyncService} call {@link
+ *       #refresh(Collection)} in their transaction, which recomputes the buckets of the written ids
+ *       and their ancestors from the tracking table.
+ *   <li>Stored digests are built from SHA-256 row hashes. Buckets containing rows with another
+ *       {@code hash_algo} keep differing and are diffed row by row until those rows are synced
+ *       again.
+ * </ul>
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CustomerBucketTree {
+
+  /** Number of id bits covered by a level 0 bucket. */
+  static final int LEAF_BITS = 10;
+
+  /** Number of bucket bits grouped into one bucket of the next level. */
+  static final int FANOUT_BITS = 4;
+
+  /** Highest level; its buckets are compared first. */
+  static final int TOP_LEVEL = 3;
+
+  private static final String EMPTY_DIGEST_INPUT = "CAST('' AS bytea)";
+
+  private final NamedParameterJdbcTemplate jdbcTemplate;
+  private final PlatformTransactionManager transactionManager;
+
+  @PersistenceContext private EntityManager entityManager;
+
+  /** The tree is only maintained for the Merkle diff (<code>sync.diff.mode</code>). */
+  @Value("${sync.diff.mode:per-row}")
+  private DiffMode diffMode = DiffMode.PER_ROW;
+
+  /**
+   * Compare the current customers with the stored digests from the top level down.
+   *
+   * @return level 0 buckets whose digest differs, in ascending order; see {@link #firstId(long)}
+   */
+  public List<Long> findChangedBuckets() {
+    if (isEmpty()) {
+      rebuild();
+    }
+    List<Long> changed = changedBuckets(TOP_LEVEL, null);
+    log.info("{} of the level {} buckets differ", changed.size(), TOP_LEVEL);
+    for (int level = TOP_LEVEL - 1; level >= 0 && !changed.isEmpty(); level--) {
+      changed = changedBuckets(level, changed);
+      log.info("{} of the level {} buckets differ", changed.size(), level);
+    }
+    return changed;
+  }
+
+  /**
+   * Recompute the buckets of the given customers and their ancestors from {@code
+   * synced_kunde_hash}. Pending JPA changes are flushed first. Does nothing unless the Merkle diff
+   * is configured.
+   *
+   * @param kundenIds ids whose tracking entries were written or deleted in the current transaction
+   */
+  public void refresh(Collection<Long> kundenIds) {
+    if (diffMode != DiffMode.MERKLE || kundenIds.isEmpty()) {
+      return;
+    }
+    entityManager.flush();
+    SortedSet<Long> buckets =
+        kundenIds.stream()
+            .map(id -> id >> LEAF_BITS)
+            .collect(Collectors.toCollection(TreeSet::new));
+    for (int level = 0; level <= TOP_LEVEL; level++) {
+      Map<String, Object> params = Map.of("level", level, "buckets", arrayLiteral(buckets));
+      jdbcTemplate.update(
+          "DELETE FROM synced_kunde_bucket"
+              + " WHERE level = :level AND bucket = ANY(CAST(:buckets AS bigint[]))",
+          params);
+      jdbcTemplate.update(bucketDigests(level, true), params);
+      buckets =
+          buckets.stream()
+              .map(bucket -> bucket >> FANOUT_BITS)
+              .collect(Collectors.toCollection(TreeSet::new));
+    }
+  }
+
+  /** Rebuild all levels from {@code synced_kunde_hash} in one transaction. */
+  public void rebuild() {
+    new TransactionTemplate(transactionManager)
+        .executeWithoutResult(
+            status -> {
+              jdbcTemplate.update("DELETE FROM synced_kunde_bucket", Map.of());
+              for (int level = 0; level <= TOP_LEVEL; level++) {
+                jdbcTemplate.update(bucketDigests(level, false), Map.of("level", level));
+              }
+            });
+    log.info("Rebuilt customer bucket digests");
+  }
+
+  /**
+   * @param bucket level 0 bucket
+   * @return smallest customer id of the bucket
+   */
+  public static long firstId(long bucket) {
+    return bucket << LEAF_BITS;
+  }
+
+  /**
+   * @param bucket level 0 bucket
+   * @return smallest customer id of the next bucket
+   */
+  public static long endId(long bucket) {
+    return (bucket + 1) << LEAF_BITS;
+  }
+
+  /**
+   * @return {@code true} when no digests are stored, e.g. before the first Merkle diff
+   */
+  private boolean isEmpty() {
+    return !Boolean.TRUE.equals(
+        jdbcTemplate.queryForObject(
+            "SELECT EXISTS (SELECT 1 FROM synced_kunde_bucket)", Map.of(), Boolean.class));
+  }
+
+  /**
+   * Compute the current digests of one level and return the buckets that differ from the stored
+   * ones, including buckets that exist on one side only.
+   *
+   * @param level level to compare
+   * @param parents differing buckets of the level above, {@code null} to compare the whole level
+   * @return differing buckets in ascending order
+   */
+  private List<Long> changedBuckets(int level, List<Long> parents) {
+    boolean restricted = parents != null;
+    String sql =
+        currentDigests(level, restricted)
+            + " SELECT coalesce(c.bucket, s.bucket) FROM l"
+            + level
+            + " c FULL JOIN (SELECT bucket, digest FROM synced_kunde_bucket WHERE level = :level"
+            + (restricted
+                ? " AND (bucket >> " + FANOUT_BITS + ") = ANY(CAST(:parents AS bigint[]))"
+                : "")
+            + ") s ON s.bucket = c.bucket WHERE c.digest IS DISTINCT FROM s.digest ORDER BY 1";
+    return jdbcTemplate.queryForList(
+        sql,
+        Map.of(
+            "trimChars",
+            CustomerRepository.JAVA_TRIM_CHARACTERS,
+            "level",
+            level,
+            "parents",
+            restricted ? arrayLiteral(parents) : "{}"),
+        Long.class);
+  }
+
+  /**
+   * Common table expressions {@code l0} to {@code l<level>} with the digests of the current {@code
+   * kunde} rows.
+   *
+   * @param level highest level to compute
+   * @param restricted only read the ranges of the buckets {@code :parents} of level {@code level +
+   *     1}
+   * @return {@code WITH} clause
+   */
+  private static String currentDigests(int level, boolean restricted) {
+    StringBuilder sql =
+        new StringBuilder("WITH l0 AS (SELECT k.kundenid >> ")
+            .append(LEAF_BITS)
+            .append(" AS bucket, sha256(string_agg(")
+            .append(CustomerRepository.DATABASE_ROW_HASH)
+            .append(", ")
+            .append(EMPTY_DIGEST_INPUT)
+            .append(" ORDER BY k.kundenid)) AS digest FROM kunde k");
+    if (restricted) {
+      int shift = LEAF_BITS + FANOUT_BITS * (level + 1);
+      sql.append(" JOIN unnest(CAST(:parents AS bigint[])) AS p(bucket) ON k.kundenid >= (p.bucket")
+          .append(" << ")
+          .append(shift)
+          .append(") AND k.kundenid < ((p.bucket + 1) << ")
+          .append(shift)
+          .append(")");
+    }
+    sql.append(" GROUP BY k.kundenid >> ").append(LEAF_BITS).append(")");
+    for (int l = 1; l <= level; l++) {
+      sql.append(", l")
+          .append(l)
+          .append(" AS (")
+          .append(parentDigests("l" + (l - 1) + " c", "", ""))
+          .append(")");
+    }
+    return sql.toString();
+  }
+
+  /**
+   * {@code INSERT} statement storing the digests of one level of the synced state.
+   *
+   * @param level level to store; the level below must already be stored
+   * @param restricted only compute the buckets {@code :buckets}
+   * @return statement with the parameter {@code :level} (and {@code :buckets})
+   */
+  private static String bucketDigests(int level, boolean restricted) {
+    String insert = "INSERT INTO synced_kunde_bucket (level, bucket, digest) ";
+    if (level > 0) {
+      String children = "synced_kunde_bucket c";
+      if (restricted) {
+        children +=
+            " JOIN unnest(CAST(:buckets AS bigint[])) AS b(bucket) ON c.bucket >= (b.bucket << "
+                + FANOUT_BITS
+                + ") AND c.bucket < ((b.bucket + 1) << "
+                + FANOUT_BITS
+                + ")";
+      }
+      return insert + parentDigests(children, ":level, ", " WHERE c.level = :level - 1");
+    }
+    String rows = "synced_kunde_hash h";
+    if (restricted) {
+      rows =
+          "unnest(CAST(:buckets AS bigint[])) AS b(bucket) JOIN synced_kunde_hash h"
+              + " ON h.kundenid >= (b.bucket << "
+              + LEAF_BITS
+              + ") AND h.kundenid < ((b.bucket + 1) << "
+              + LEAF_BITS
+              + ")";
+    }
+    return insert
+        + "SELECT :level, h.kundenid >> "
+        + LEAF_BITS
+        + ", sha256(string_agg(h.row_hash, "
+        + EMPTY_DIGEST_INPUT
+        + " ORDER BY h.kundenid)) FROM "
+        + rows
+        + " GROUP BY h.kundenid >> "
+        + LEAF_BITS;
+  }
+
+  /**
+   * Query aggregating child digests {@code c.bucket, c.digest} into the digests of their parents.
+   *
+   * @param children {@code FROM} item exposing the children as {@code c}
+   * @param prefix select list items before bucket and digest
+   * @param where {@code WHERE} clause filtering the children, may be empty
+   * @return query selecting parent bucket and digest
+   */
+  private static String parentDigests(String children, String prefix, String where) {
+    return "SELECT "
+        + prefix
+        + "c.bucket >> "
+        + FANOUT_BITS
+        + " AS bucket, sha256(string_agg(c.digest, "
+        + EMPTY_DIGEST_INPUT
+        + " ORDER BY c.bucket)) AS digest FROM "
+        + children
+        + where
+        + " GROUP BY c.bucket >> "
+        + FANOUT_BITS;
+  }
+
+  /**
+   * @param values bucket numbers
+   * @return Postgres array literal, bound as text and cast to {@code bigint[]}
+   */
+  private static String arrayLiteral(Collection<Long> values) {
+    return values.stream().map(String::valueOf).collect(Collectors.joining(",", "{", "}"));
+  }
+}
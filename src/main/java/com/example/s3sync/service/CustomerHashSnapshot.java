@@ -0,0 +1,178 @@
+package com.example.s3sync.service;
+
+import com.example.s3sync.domain.HashAlgorithm;
+import com.example.s3sync.util.LongHashTable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * In-memory snapshot of {@code synced_kunde_hash} used by {@link DiffMode#SNAPSHOT}.
+ *
+ * <p>The snapshot maps {@code kundenid} to the {@link HashAlgorithm} and raw row hash (up to 32
+ * bytes) in a {@link LongHashTable} instead of holding {@code SyncedCustomerHash} entities with
+ * boxed ids and hash arrays, which keeps it at roughly 41 bytes per customer plus table slack.
+ *
+ * <p>Lifecycle:
+ *
+ * <ul>
+ *   <li>The table is loaded lazily on first use with one streamed query.
+ *   <li>{@link CustomerSyncService} calls {@link #update(Map, HashAlgorithm)} after a sync
+ *       transaction committed, so the snapshot always reflects the committed tracking table.
+ *   <li>{@link TombstoneSyncService} calls {@link #remove(Collection)} after it pruned the tracking
+ *       rows of deleted customers.
+ *   <li>Updates before the first load are ignored; the load reads them from the database.
+ *   <li>Changes made to {@code synced_kunde_hash} by other processes are not seen until {@link
+ *       #invalidate()} is called or the application restarts.
+ * </ul>
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CustomerHashSnapshot {
+
+  private static final int FETCH_SIZE = 10_000;
+  private static final HashAlgorithm[] ALGORITHMS = HashAlgorithm.values();
+
+  /** Entry layout: one byte {@link HashAlgorithm} ordinal, then the hash, zero-padded. */
+  private static final int ENTRY_LENGTH = 1 + 32;
+
+  private final JdbcTemplate jdbcTemplate;
+  private final PlatformTransactionManager transactionManager;
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private LongHashTable hashes;
+
+  /**
+   * Check whether the committed row hash of the customer equals its current row hash.
+   *
+   * @param kundenId customer id
+   * @param rowHash computes the current row hash with the algorithm of the committed hash, e.g.
+   *     with {@link HashService#customerRowHash}; not called for unknown customers
+   * @return {@code false} when the customer was never synced or its row hash changed
+   */
+  public boolean isUnchanged(long kundenId, Function<HashAlgorithm, byte[]> rowHash) {
+    byte[] entry = new byte[ENTRY_LENGTH];
+    boolean loaded;
+    boolean found = false;
+    lock.readLock().lock();
+    try {
+      loaded = hashes != null;
+      if (loaded) {
+        found = hashes.get(kundenId, entry);
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+    if (!loaded) {
+      load();
+      return isUnchanged(kundenId, rowHash);
+    }
+    if (!found) {
+      return false;
+    }
+    byte[] hash = rowHash.apply(ALGORITHMS[entry[0]]);
+    return Arrays.equals(entry, 1, 1 + hash.length, hash, 0, hash.length);
+  }
+
+  /**
+   * Record the row hashes of a committed sync.
+   *
+   * @param rowHashes row hashes by customer id
+   * @param algorithm algorithm the hashes were computed with
+   */
+  public void update(Map<Long, byte[]> rowHashes, HashAlgorithm algorithm) {
+    lock.writeLock().lock();
+    try {
+      if (hashes == null) {
+        return;
+      }
+      rowHashes.forEach((id, rowHash) -> hashes.put(id, entry(algorithm, rowHash)));
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Drop the row hashes of customers whose tracking rows were deleted.
+   *
+   * @param kundenIds customer ids
+   */
+  public void remove(Collection<Long> kundenIds) {
+    lock.writeLock().lock();
+    try {
+      if (hashes != null) {
+        kundenIds.forEach(hashes::remove);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** Drop the snapshot; the next lookup reloads it from the database. */
+  public void invalidate() {
+    lock.writeLock().lock();
+    try {
+      hashes = null;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** Load {@code synced_kunde_hash} into a new table unless another thread already did. */
+  private void load() {
+    lock.writeLock().lock();
+    try {
+      if (hashes != null) {
+        return;
+      }
+      TransactionTemplate tx = new TransactionTemplate(transactionManager);
+      tx.setReadOnly(true);
+      hashes =
+          tx.execute(
+              status -> {
+                Integer count =
+                    jdbcTemplate.queryForObject(
+                        "SELECT count(*) FROM synced_kunde_hash", Integer.class);
+                LongHashTable table = new LongHashTable(count == null ? 0 : count, ENTRY_LENGTH);
+                JdbcTemplate streaming = new JdbcTemplate(jdbcTemplate.getDataSource());
+                streaming.setFetchSize(FETCH_SIZE);
+                streaming.query(
+                    "SELECT kundenid, row_hash, hash_algo FROM synced_kunde_hash",
+                    (RowCallbackHandler)
+                        rs ->
+                            table.put(
+                                rs.getLong(1),
+                                entry(HashAlgorithm.valueOf(rs.getString(3)), rs.getBytes(2))));
+                return table;
+              });
+      log.info("Loaded snapshot of {} synced customer hashes", hashes.size());
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Encode a table entry.
+   *
+   * @param algorithm algorithm of the hash
+   * @param rowHash hash of at most 32 bytes
+   * @return entry of {@link #ENTRY_LENGTH} bytes
+   */
+  private static byte[] entry(HashAlgorithm algorithm, byte[] rowHash) {
+    byte[] entry = new byte[ENTRY_LENGTH];
+    entry[0] = (byte) algorithm.ordinal();
+    System.arraycopy(rowHash, 0, entry, 1, rowHash.length);
+    return entry;
+  }
+}
@@ -0,0 +1,112 @@
+package com.example.s3sync.service;
+
+import com.example.s3sync.repository.CustomerRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Size-bounded cache of the country ({@code kunde.land}) per customer id, shared across sync runs.
+ *
+ * <p>{@link OrderSyncService} groups orders by the country of their customer. Repeated runs with
+ * large order deltas mostly reference customers seen before, so only ids missing from the cache are
+ * read from {@code kunde}, with one {@code IN} query per {@value #LOOKUP_BATCH_SIZE} ids. {@link
+ * CustomerSyncService} puts the country of every exported customer after its transaction committed;
+ * as customers are synced before orders, a changed country is in the cache before the orders of
+ * that customer are grouped. Ids without a customer are not cached.
+ *
+ * <p>When the cache is full the least valuable entries (Caffeine's W-TinyLFU policy) are evicted.
+ *
+ * <p>Configuration:
+ *
+ * <ul>
+ *   <li><code>sync.land-cache.max-size</code> - maximum number of cached customers (default: <code>
+ *       1000000</code>); {@code 0} disables caching.
+ * </ul>
+ *
+ * <p>Metrics: the Micrometer cache metrics tagged with <code>cache=customer-land</code>, e.g.
+ * <code>cache.gets</code> (<code>result</code> {@code hit} or {@code miss}), <code>cache.evictions
+ * </code> and <code>cache.size</code>.
+ */
+@Slf4j
+@Service
+public class CustomerLandCache {
+
+  /** Maximum number of customer ids resolved per query. */
+  static final int LOOKUP_BATCH_SIZE = 1000;
+
+  private final CustomerRepository customerRepository;
+  private final Cache<Long, String> cache;
+
+  /**
+   * Create the cache and register its metrics.
+   *
+   * @param customerRepository repository the missing countries are read from
+   * @param meterRegistry registry receiving the cache metrics
+   * @param maxSize maximum number of cached customers (<code>sync.land-cache.max-size</code>)
+   */
+  public CustomerLandCache(
+      CustomerRepository customerRepository,
+      MeterRegistry meterRegistry,
+      @Value("${sync.land-cache.max-size:1000000}") long maxSize) {
+    this.customerRepository = customerRepository;
+    this.cache = Caffeine.newBuilder().maximumSize(maxSize).recordStats().build();
+    CaffeineCacheMetrics.monitor(meterRegistry, cache, "customer-land");
+  }
+
+  /**
+   * Resolve the countries of the given customers, reading the uncached ones from {@code kunde}.
+   *
+   * @param kundenIds customer ids
+   * @return country by customer id; ids that belong to no customer are absent
+   */
+  public Map<Long, String> getLands(Collection<Long> kundenIds) {
+    return cache.getAll(kundenIds, this::load);
+  }
+
+  /**
+   * Record the countries of exported customers. Called after the sync transaction committed.
+   *
+   * @param lands country by customer id
+   */
+  public void putAll(Map<Long, String> lands) {
+    cache.putAll(lands);
+  }
+
+  /**
+   * Forget the countries of deleted customers. Called after their tracking rows were pruned.
+   *
+   * @param kundenIds customer ids
+   */
+  public void invalidateAll(Collection<Long> kundenIds) {
+    cache.invalidateAll(kundenIds);
+  }
+
+  /**
+   * Read the countries of customers missing from the cache.
+   *
+   * @param kundenIds uncached customer ids
+   * @return country by customer id of the existing customers
+   */
+  private Map<Long, String> load(Set<? extends Long> kundenIds) {
+    List<Long> ids = new ArrayList<>(kundenIds);
+    Map<Long, String> lands = new HashMap<>();
+    for (int from = 0; from < ids.size(); from += LOOKUP_BATCH_SIZE) {
+      customerRepository
+          .findLandsByIdIn(ids.subList(from, Math.min(from + LOOKUP_BATCH_SIZE, ids.size())))
+          .forEach(customer -> lands.put(customer.kundenId(), customer.land()));
+    }
+    log.debug("Loaded the countries of {} of {} uncached customers", lands.size(), ids.size());
+    return lands;
+  }
+}
@@ -1,9 +1,11 @@
 package com.example.s3sync.service;
 
 import com.example.s3sync.domain.Customer;
+import com.example.s3sync.domain.HashAlgorithm;
 import com.example.s3sync.domain.SyncedCustomerHash;
 import com.example.s3sync.dto.CustomerCsvDto;
-import com.example.s3sync.repository.SyncedCustomerHashRepository;
+import com.example.s3sync.dto.CustomerDeltaCsvDto;
+import com.example.s3sync.dto.UnsyncedCustomer;
 import com.example.s3sync.util.DomainDataMapper;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
@@ -12,29 +14,48 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.support.TransactionSynchronization;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 /**
  * Service that persists customer sync markers and uploads per-country CSVs.
  *
  * <p>This component accepts a list of customers determined to be unsynced, groups them by country,
- * computes and persists a stable row-hash for each customer, renders CSV files per country and
+ * persists the row-hash computed by the diff for each customer, renders CSV files per country and
  * uploads those files to S3. The CSV uploads are performed in a transaction hook so that uploaded
- * objects are removed when the surrounding transaction rolls back.
+ * objects are removed when the transaction rolls back. A run is committed in one transaction or,
+ * with chunking configured in the {@link SyncChunker}, in one transaction per chunk.
  *
  * <p>Notes:
  *
  * <ul>
- *   <li>Method {@link #syncAndUpload(List)} is {@link Transactional} and registers a {@link
- *       TransactionSynchronization} to perform S3 uploads in {@code beforeCommit} and cleanup in
- *       {@code afterCompletion}.
- *   <li>The service persists {@link SyncedCustomerHash} entries (row hashes) for each processed
- *       customer before attempting S3 uploads.
+ *   <li>Every transaction registers a {@link TransactionSynchronization} to perform the S3 uploads
+ *       of its chunk in {@code beforeCommit} and cleanup in {@code afterCompletion}. After a commit
+ *       the persisted row hashes of the chunk are also applied to the {@link CustomerHashSnapshot}
+ *       and the countries of its customers to the {@link CustomerLandCache}. The {@link
+ *       CustomerBucketTree} is refreshed inside the transaction.
+ *   <li>The transactions join a transaction of the caller, if there is one; chunking then has no
+ *       effect.
+ *   <li>The service persists {@link SyncedCustomerHash} entries (row hashes and column
+ *       fingerprints) for each processed customer before attempting S3 uploads. They are upserted
+ *       in JDBC batches by the {@link SyncedHashWriter}.
+ * </ul>
+ *
+ * <p>Configuration:
+ *
+ * <ul>
+ *   <li><code>sync.export.customer-delta.enabled</code> - export customers of which only some
+ *       columns changed as {@code kunde_delta_<land>_<yyyyMMdd_HH>.csv} with one {@code
+ *       kundenId,column,value} record per changed column instead of the full row (default: <code>
+ *       false</code>). Customers with all columns changed, e.g. new ones, are still exported in
+ *       full.
  * </ul>
  */
 @Slf4j
@@ -42,10 +63,22 @@ import org.springframework.transaction.support.TransactionSynchronizationManager
 @RequiredArgsConstructor
 public class CustomerSyncService {
 
-  private final SyncedCustomerHashRepository syncedCustomerHashRepository;
+  private final SyncedHashWriter syncedHashWriter;
   private final HashService hashService;
   private final CsvService csvService;
   private final S3UploaderService s3Uploader;
+  private final CustomerHashSnapshot customerHashSnapshot;
+  private final CustomerBucketTree customerBucketTree;
+  private final CustomerLandCache customerLandCache;
+  private final SyncChunker syncChunker;
+  private final PlatformTransactionManager transactionManager;
+
+  /**
+   * Export partially changed customers as delta CSV (<code>sync.export.customer-delta.enabled
+   * </code>).
+   */
+  @Value("${sync.export.customer-delta.enabled:false}")
+  private boolean deltaExport;
 
   /**
    * Persist sync markers for the provided customers and upload per-country CSVs.
@@ -54,62 +87,138 @@ public class CustomerSyncService {
    *
    * <ol>
    *   <li>Group {@code unsyncedCustomers} by {@link Customer#getLand()}.
-   *   <li>For each customer compute a stable row-hash and persist a {@link SyncedCustomerHash}
-   *       entry.
-   *   <li>Render a CSV for each country and schedule S3 uploads inside a transaction
-   *       synchronization. Uploads happen in {@code beforeCommit} so they only occur when the
-   *       transaction successfully commits; uploaded files are deleted in {@code afterCompletion}
-   *       if the transaction rolled back.
+   *   <li>For each customer persist a {@link SyncedCustomerHash} entry with the row-hash and column
+   *       fingerprints the diff computed; customers are not hashed again. All entries are upserted
+   *       together in JDBC batches.
+   *   <li>Schedule a CSV for each country (with delta export enabled, a full CSV and a delta CSV)
+   *       for upload inside a transaction synchronization. Uploads happen in {@code beforeCommit}
+   *       so they only occur when the transaction successfully commits; uploaded files are deleted
+   *       in {@code afterCompletion} if the transaction rolled back. Each CSV is rendered while it
+   *       is streamed to S3, so at most one upload part of it is held in memory.
    * </ol>
    *
-   * @param unsyncedCustomers list of customers that need to be synchronized
+   * <p>Steps 2 and 3 run once per chunk of the {@link SyncChunker}, each in its own transaction. A
+   * failing chunk is rolled back and ends the run; the chunks committed before it stay synced.
+   *
+   * @param unsyncedCustomers customers that need to be synchronized, with their current row hash
    */
-  @Transactional
-  public void syncAndUpload(List<Customer> unsyncedCustomers) {
-
-    Map<String, List<Customer>> byCountry =
-        unsyncedCustomers.stream().collect(Collectors.groupingBy(Customer::getLand));
-
-    Map<String, byte[]> csvToBeUploaded = new HashMap<>();
-
-    for (Map.Entry<String, List<Customer>> entry : byCountry.entrySet()) {
-      String country = entry.getKey();
-      List<Customer> customers = entry.getValue();
-
-      for (Customer customer : customers) {
-        String rowHash =
-            hashService.customerRowHash(
-                customer.getFirmenname(),
-                customer.getStrasse(),
-                customer.getStrassenzusatz(),
-                customer.getOrt(),
-                customer.getLand(),
-                customer.getPlz(),
-                customer.getVorname(),
-                customer.getNachname(),
-                customer.getEmail(),
-                customer.getId().toString());
-
-        syncedCustomerHashRepository.save(
-            SyncedCustomerHash.builder().kundenId(customer.getId()).rowHash(rowHash).build());
-      }
+  public void syncAndUpload(List<UnsyncedCustomer> unsyncedCustomers) {
+    syncAndUpload(unsyncedCustomers, "");
+  }
+
+  /**
+   * Persist sync markers for one batch of customers and upload per-country CSVs.
+   *
+   * <p>Same behavior as {@link #syncAndUpload(List)}, but every file name carries {@code _<batch>}
+   * after the hour. Used by callers that sync several batches within one hour, so that a batch does
+   * not overwrite the files of an earlier one.
+   *
+   * @param unsyncedCustomers customers that need to be synchronized
+   * @param batch label of the batch, unique within the hour
+   */
+  public void syncAndUpload(List<UnsyncedCustomer> unsyncedCustomers, String batch) {
+    Map<String, List<UnsyncedCustomer>> byCountry =
+        unsyncedCustomers.stream()
+            .collect(Collectors.groupingBy(unsynced -> unsynced.customer().getLand()));
+
+    if (byCountry.isEmpty()) {
+      log.info("No unsynced customers found");
+      return;
+    }
+
+    String hour = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HH"));
+    HashAlgorithm hashAlgorithm = hashService.algorithm();
+    List<List<SyncChunker.Part<UnsyncedCustomer>>> chunks = syncChunker.split(byCountry, batch);
+    if (chunks.size() > 1) {
+      log.info("Syncing customers in {} transactions", chunks.size());
+    }
+    TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+    for (List<SyncChunker.Part<UnsyncedCustomer>> chunk : chunks) {
+      transactionTemplate.executeWithoutResult(status -> syncChunk(chunk, hour, hashAlgorithm));
+    }
+  }
 
-      List<CustomerCsvDto> customerDtos =
-          entry.getValue().stream()
-              .map(DomainDataMapper::customerToDto)
-              .collect(Collectors.toList());
+  /**
+   * Persist sync markers for the streamed customers and upload per-country CSVs.
+   *
+   * <p>Same behavior as {@link #syncAndUpload(List)}, but accepts the lazily evaluated stream
+   * produced by {@link StreamingSyncDiffService}. The stream is consumed in pages of the {@link
+   * SyncChunker}: every page of changed customers is grouped, persisted and uploaded before the
+   * next one is read, so only one page is held in memory. With more than one page, every page is a
+   * batch of its own ({@link #syncAndUpload(List, String)}) and committed before the next one.
+   *
+   * @param unsyncedCustomers stream of customers that need to be synchronized, with their current
+   *     row hash; consumed once
+   */
+  public void syncAndUpload(Stream<UnsyncedCustomer> unsyncedCustomers) {
+    syncChunker.page(unsyncedCustomers, this::syncAndUpload);
+  }
 
-      byte[] csvBytes = csvService.customersToCsv(customerDtos);
+  /**
+   * Persist the sync markers of one chunk and schedule its uploads in the current transaction.
+   *
+   * @param parts per-country parts of the chunk
+   * @param hour hour of the run, used in the file names
+   * @param hashAlgorithm algorithm the row hashes were computed with
+   */
+  private void syncChunk(
+      List<SyncChunker.Part<UnsyncedCustomer>> parts, String hour, HashAlgorithm hashAlgorithm) {
+    Map<String, S3UploaderService.CsvContent> csvToBeUploaded = new HashMap<>();
+    Map<Long, byte[]> syncedRowHashes = new HashMap<>();
+    Map<Long, String> syncedLands = new HashMap<>();
+    List<SyncedCustomerHash> syncedHashes = new ArrayList<>();
 
-      String filename =
-          "kunde_"
-              + country
-              + "_"
-              + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HH"))
-              + ".csv";
+    for (SyncChunker.Part<UnsyncedCustomer> part : parts) {
+      String country = part.country();
+      List<UnsyncedCustomer> customers = part.rows();
 
-      csvToBeUploaded.put(filename, csvBytes);
+      for (UnsyncedCustomer unsynced : customers) {
+        Customer customer = unsynced.customer();
+        byte[] rowHash = unsynced.rowHash();
+
+        syncedHashes.add(
+            SyncedCustomerHash.builder()
+                .kundenId(customer.getId())
+                .rowHash(rowHash)
+                .hashAlgo(hashAlgorithm)
+                .columnHashes(unsynced.columnHashes())
+                .land(country)
+                .build());
+        syncedRowHashes.put(customer.getId(), rowHash);
+        syncedLands.put(customer.getId(), country);
+      }
+
+      if (customers.stream().anyMatch(unsynced -> !deltaExport || unsynced.allColumnsChanged())) {
+        csvToBeUploaded.put(
+            "kunde_" + country + "_" + hour + part.fileSuffix() + ".csv",
+            out -> {
+              Stream<CustomerCsvDto> customerDtos =
+                  customers.stream()
+                      .filter(unsynced -> !deltaExport || unsynced.allColumnsChanged())
+                      .map(UnsyncedCustomer::customer)
+                      .map(DomainDataMapper::customerToDto);
+              csvService.writeCustomers(customerDtos, out);
+            });
+      }
+
+      if (deltaExport && !customers.stream().allMatch(UnsyncedCustomer::allColumnsChanged)) {
+        csvToBeUploaded.put(
+            "kunde_delta_" + country + "_" + hour + part.fileSuffix() + ".csv",
+            out -> {
+              Stream<CustomerDeltaCsvDto> deltaDtos =
+                  customers.stream()
+                      .filter(unsynced -> !unsynced.allColumnsChanged())
+                      .flatMap(
+                          unsynced ->
+                              DomainDataMapper.customerToDeltaDtos(
+                                  unsynced.customer(), unsynced.changedColumns())
+                                  .stream());
+              csvService.writeCustomerDeltas(deltaDtos, out);
+            });
+      }
     }
+    syncedHashWriter.upsertCustomerHashes(syncedHashes);
+    customerBucketTree.refresh(syncedRowHashes.keySet());
 
     TransactionSynchronizationManager.registerSynchronization(
         new TransactionSynchronization() {
@@ -117,15 +226,21 @@ public class CustomerSyncService {
 
           @Override
           public void beforeCommit(boolean readOnly) {
-            for (Map.Entry<String, byte[]> entry : csvToBeUploaded.entrySet()) {
+            for (Map.Entry<String, S3UploaderService.CsvContent> entry :
+                csvToBeUploaded.entrySet()) {
               String filename = entry.getKey();
-              byte[] csvBytes = entry.getValue();
 
-              s3Uploader.uploadCsvBytes(csvBytes, filename);
+              s3Uploader.uploadCsv(filename, entry.getValue());
               uploadedCsvFiles.add(filename);
             }
           }
 
+          @Override
+          public void afterCommit() {
+            customerHashSnapshot.update(syncedRowHashes, hashAlgorithm);
+            customerLandCache.putAll(syncedLands);
+          }
+
           @Override
           public void afterCompletion(int status) {
             if (status == STATUS_ROLLED_BACK) {
@@ -0,0 +1,42 @@
+package com.example.s3sync.service;
+
+/**
+ * Strategy used by {@link SyncDiffService} to detect unsynced customers.
+ *
+ * <p>The mode is selected with the <code>sync.diff.mode</code> property. Values are matched
+ * leniently, so both <code>set-based</code> and <code>SET_BASED</code> are accepted.
+ */
+public enum DiffMode {
+
+  /**
+   * Load every customer and look up its tracking entry one by one. Issues two queries per customer
+   * and is kept as a fallback.
+   */
+  PER_ROW,
+
+  /**
+   * Load all customers together with their stored row hash in a single left join between {@code
+   * kunde} and {@code synced_kunde_hash}.
+   */
+  SET_BASED,
+
+  /**
+   * Compute the canonical row hash inside Postgres and compare it with the stored hash in the same
+   * query, so only new or changed customers are transferred.
+   */
+  IN_DATABASE,
+
+  /**
+   * Load all customers and compare their row hash against the in-memory {@link
+   * CustomerHashSnapshot} of {@code synced_kunde_hash}, which is loaded once and kept up to date
+   * after every committed sync. No tracking-table query is issued per run.
+   */
+  SNAPSHOT,
+
+  /**
+   * Compare SQL-computed digests of {@code kundenid} ranges against the {@link CustomerBucketTree}
+   * persisted in {@code synced_kunde_bucket}, descending only into differing ranges, and diff the
+   * rows of the differing leaf ranges one page at a time.
+   */
+  MERKLE
+}
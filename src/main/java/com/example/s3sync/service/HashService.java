@@ -1,31 +1,67 @@
 package com.example.s3sync.service;
 
-import java.nio.charset.StandardCharsets;
+import com.example.s3sync.domain.Customer;
+import com.example.s3sync.domain.CustomerColumn;
+import com.example.s3sync.domain.HashAlgorithm;
+import java.security.DigestException;
 import java.security.MessageDigest;
-import java.util.HexFormat;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.digest.Blake3;
+import org.apache.commons.codec.digest.MurmurHash3;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 /**
  * Utility service that computes stable hashes for domain rows.
  *
  * <p>The service provides helper methods to compute a row-level hash for customers and a
- * marker/hash for orders. Hashes are computed using SHA-256 and returned as lower-case hex strings.
- * The produced values are stable for identical input content and suitable for change detection
- * (e.g. comparing against previously stored hashes).
+ * marker/hash for orders. Hashes are computed with a {@link HashAlgorithm} and returned as raw
+ * digest bytes (16 or 32 bytes), which is also how they are stored. The produced values are stable
+ * for identical input content and algorithm and suitable for change detection (e.g. comparing
+ * against previously stored hashes).
+ *
+ * <p>New hashes use the algorithm configured with <code>sync.hash.algorithm</code> (default: <code>
+ * sha256</code>, see {@link #algorithm()}). Stored hashes are compared with the algorithm they were
+ * computed with, using the overloads taking a {@link HashAlgorithm}.
+ *
+ * <p>In addition to the row hash, {@link #customerColumnHashes(Customer)} produces one short
+ * fingerprint per exported column, which lets the diff tell which columns of a changed customer
+ * differ.
+ *
+ * <p>Hashing runs on the diff hot path, so every thread reuses its digests and buffers. The trimmed
+ * fields are UTF-8 encoded straight into a reused byte buffer without building substrings, a joined
+ * string or its byte array; the only allocation per hash is the returned digest.
  */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class HashService {
 
+  private static final char SEPARATOR = '|';
+
+  private final ThreadLocal<Hasher> hashers = ThreadLocal.withInitial(Hasher::new);
+
+  /** Algorithm for new hashes (<code>sync.hash.algorithm</code>). */
+  @Value("${sync.hash.algorithm:sha256}")
+  private HashAlgorithm algorithm = HashAlgorithm.SHA256;
+
+  /**
+   * @return algorithm used by the overloads without {@link HashAlgorithm} parameter, to be stored
+   *     next to the hashes they produce
+   */
+  public HashAlgorithm algorithm() {
+    return algorithm;
+  }
+
   /**
    * Compute a hash for a customer row using the provided fields.
    *
    * <p>Fields are trimmed and joined with a pipe character (<code>|</code>) before hashing to
-   * produce a reproducible single string representation of the row. The returned string is the
-   * SHA-256 hex digest of that representation.
+   * produce a reproducible single string representation of the row. The returned value is the
+   * digest of that representation using the configured {@link #algorithm()}.
    *
    * @param firma company name
    * @param strasse street
@@ -37,9 +73,9 @@ public class HashService {
    * @param nachname family name
    * @param email email address
    * @param kundenId customer id
-   * @return hex-encoded SHA-256 digest representing the customer row
+   * @return digest representing the customer row
    */
-  public String customerRowHash(
+  public byte[] customerRowHash(
       String firma,
       String strasse,
       String strassenzusatz,
@@ -50,51 +86,269 @@ public class HashService {
       String nachname,
       String email,
       String kundenId) {
+    return customerRowHash(
+        algorithm,
+        firma,
+        strasse,
+        strassenzusatz,
+        ort,
+        land,
+        plz,
+        vorname,
+        nachname,
+        email,
+        kundenId);
+  }
 
-    String joined =
-        String.join(
-            "|",
-            firma.trim(),
-            strasse.trim(),
-            strassenzusatz.trim(),
-            ort.trim(),
-            land.trim(),
-            plz.trim(),
-            vorname.trim(),
-            nachname.trim(),
-            email.trim(),
-            kundenId.trim());
-
-    return hashOfFields(joined);
+  /**
+   * Compute a hash for a customer row with the given algorithm, e.g. to compare it with a stored
+   * hash of that algorithm. See {@link #customerRowHash(String, String, String, String, String,
+   * String, String, String, String, String)}.
+   *
+   * @param hashAlgorithm algorithm to use
+   * @param firma company name
+   * @param strasse street
+   * @param strassenzusatz street addition
+   * @param ort city
+   * @param land country
+   * @param plz postal code
+   * @param vorname given name
+   * @param nachname family name
+   * @param email email address
+   * @param kundenId customer id
+   * @return digest representing the customer row
+   */
+  public byte[] customerRowHash(
+      HashAlgorithm hashAlgorithm,
+      String firma,
+      String strasse,
+      String strassenzusatz,
+      String ort,
+      String land,
+      String plz,
+      String vorname,
+      String nachname,
+      String email,
+      String kundenId) {
+    log.debug("Hashing customer row {}", kundenId);
+    Hasher hasher = hashers.get().reset();
+    hasher.updateTrimmed(firma);
+    hasher.update(SEPARATOR);
+    hasher.updateTrimmed(strasse);
+    hasher.update(SEPARATOR);
+    hasher.updateTrimmed(strassenzusatz);
+    hasher.update(SEPARATOR);
+    hasher.updateTrimmed(ort);
+    hasher.update(SEPARATOR);
+    hasher.updateTrimmed(land);
+    hasher.update(SEPARATOR);
+    hasher.updateTrimmed(plz);
+    hasher.update(SEPARATOR);
+    hasher.updateTrimmed(vorname);
+    hasher.update(SEPARATOR);
+    hasher.updateTrimmed(nachname);
+    hasher.update(SEPARATOR);
+    hasher.updateTrimmed(email);
+    hasher.update(SEPARATOR);
+    hasher.updateTrimmed(kundenId);
+    return hasher.digest(hashAlgorithm);
+  }
+
+  /**
+   * Compute the per-column fingerprints of a customer.
+   *
+   * <p>Every {@link CustomerColumn} is trimmed and hashed on its own with 32-bit MurmurHash3 (x86),
+   * independent of {@link #algorithm()}. The fingerprints only narrow down which columns of a
+   * customer with a differing row hash changed; the row hash remains the change criterion.
+   *
+   * @param customer the customer
+   * @return {@link CustomerColumn#FINGERPRINT_LENGTH} bytes per column in declaration order
+   */
+  public byte[] customerColumnHashes(Customer customer) {
+    CustomerColumn[] columns = CustomerColumn.values();
+    byte[] hashes = new byte[columns.length * CustomerColumn.FINGERPRINT_LENGTH];
+    Hasher hasher = hashers.get().reset();
+    for (CustomerColumn column : columns) {
+      hasher.updateTrimmed(column.value(customer));
+      int fingerprint = hasher.fingerprint();
+      int offset = column.ordinal() * CustomerColumn.FINGERPRINT_LENGTH;
+      for (int i = 0; i < CustomerColumn.FINGERPRINT_LENGTH; i++) {
+        hashes[offset + i] = (byte) (fingerprint >>> (24 - 8 * i));
+      }
+    }
+    return hashes;
   }
 
   /**
    * Compute a marker hash for an order row.
    *
    * <p>Currently the marker is derived from the <code>lastchange</code> timestamp string (trimmed)
-   * and hashed using SHA-256. This provides a compact representation that can be compared to detect
-   * changes in the order state.
+   * and hashed using the configured {@link #algorithm()}. This provides a compact representation
+   * that can be compared to detect changes in the order state.
    *
    * @param lastchange the last-change timestamp or marker string from the upstream system
-   * @return hex-encoded SHA-256 digest representing the order marker
+   * @return digest representing the order marker
    */
-  public String orderMarkerHash(String lastchange) {
-    return hashOfFields(lastchange.trim());
+  public byte[] orderMarkerHash(String lastchange) {
+    return orderMarkerHash(algorithm, lastchange);
   }
 
   /**
-   * Compute SHA-256 hex digest of the given input string (UTF-8).
+   * Compute a marker hash for an order row with the given algorithm, e.g. to compare it with a
+   * stored marker of that algorithm.
    *
-   * @param input the input string to hash
-   * @return lower-case hex representation of the SHA-256 digest
+   * @param hashAlgorithm algorithm to use
+   * @param lastchange the last-change timestamp or marker string from the upstream system
+   * @return digest representing the order marker
+   */
+  public byte[] orderMarkerHash(HashAlgorithm hashAlgorithm, String lastchange) {
+    log.debug("Hashing order marker {}", lastchange);
+    Hasher hasher = hashers.get().reset();
+    hasher.updateTrimmed(lastchange);
+    return hasher.digest(hashAlgorithm);
+  }
+
+  /**
+   * Per-thread hashing state: the input buffer, one instance of every algorithm and the output
+   * buffer.
+   *
+   * <p>Characters are UTF-8 encoded directly into the input buffer, which grows to the largest row
+   * seen. Unpaired surrogates are replaced with <code>?</code>, exactly as {@link
+   * String#getBytes(java.nio.charset.Charset)} does, so the hashes equal those of the UTF-8 bytes
+   * of the joined string.
    */
-  private String hashOfFields(String input) {
-    try {
-      log.debug("Hashing {}", input);
-      MessageDigest digest = MessageDigest.getInstance("SHA-256");
-      return HexFormat.of().formatHex(digest.digest(input.getBytes(StandardCharsets.UTF_8)));
-    } catch (Exception e) {
-      throw new RuntimeException("Hashing failed", e);
+  private static final class Hasher {
+
+    private final MessageDigest sha256;
+    private final Blake3 blake3 = Blake3.initHash();
+    private byte[] buffer = new byte[1024];
+    private int position;
+    private final byte[] digestBytes = new byte[32];
+
+    Hasher() {
+      try {
+        sha256 = MessageDigest.getInstance("SHA-256");
+      } catch (NoSuchAlgorithmException e) {
+        throw new IllegalStateException("SHA-256 not available", e);
+      }
+    }
+
+    /**
+     * Discard buffered input. Every hash starts with this, so bytes left behind by a hash that
+     * failed halfway, e.g. on a {@code null} field, never leak into the next hash of the thread.
+     *
+     * @return this hasher
+     */
+    Hasher reset() {
+      position = 0;
+      return this;
+    }
+
+    /**
+     * Feed {@code value} with leading and trailing whitespace removed, as {@link String#trim()}
+     * would.
+     *
+     * @param value field value
+     */
+    void updateTrimmed(String value) {
+      int start = 0;
+      int end = value.length();
+      while (start < end && value.charAt(start) <= ' ') {
+        start++;
+      }
+      while (end > start && value.charAt(end - 1) <= ' ') {
+        end--;
+      }
+      for (int i = start; i < end; i++) {
+        if (position > buffer.length - 4) {
+          buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        char c = value.charAt(i);
+        if (c < 0x80) {
+          buffer[position++] = (byte) c;
+        } else if (c < 0x800) {
+          buffer[position++] = (byte) (0xC0 | c >> 6);
+          buffer[position++] = (byte) (0x80 | c & 0x3F);
+        } else if (!Character.isSurrogate(c)) {
+          buffer[position++] = (byte) (0xE0 | c >> 12);
+          buffer[position++] = (byte) (0x80 | c >> 6 & 0x3F);
+          buffer[position++] = (byte) (0x80 | c & 0x3F);
+        } else if (Character.isHighSurrogate(c)
+            && i + 1 < end
+            && Character.isLowSurrogate(value.charAt(i + 1))) {
+          int codePoint = Character.toCodePoint(c, value.charAt(++i));
+          buffer[position++] = (byte) (0xF0 | codePoint >> 18);
+          buffer[position++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+          buffer[position++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+          buffer[position++] = (byte) (0x80 | codePoint & 0x3F);
+        } else {
+          buffer[position++] = '?';
+        }
+      }
+    }
+
+    /**
+     * Feed a single ASCII character.
+     *
+     * @param c character below {@code 0x80}
+     */
+    void update(char c) {
+      if (position == buffer.length) {
+        buffer = Arrays.copyOf(buffer, buffer.length * 2);
+      }
+      buffer[position++] = (byte) c;
+    }
+
+    /**
+     * Hash the buffered input and reset this hasher for the next value.
+     *
+     * @param hashAlgorithm algorithm to use
+     * @return the digest
+     */
+    byte[] digest(HashAlgorithm hashAlgorithm) {
+      int length =
+          switch (hashAlgorithm) {
+            case SHA256 -> sha256();
+            case MURMUR3_128 -> murmur3();
+            case BLAKE3 -> blake3();
+          };
+      position = 0;
+      return Arrays.copyOf(digestBytes, length);
+    }
+
+    /**
+     * Hash the buffered input with 32-bit MurmurHash3 (x86) and reset this hasher.
+     *
+     * @return the fingerprint
+     */
+    int fingerprint() {
+      int fingerprint = MurmurHash3.hash32x86(buffer, 0, position, 0);
+      position = 0;
+      return fingerprint;
+    }
+
+    private int sha256() {
+      sha256.update(buffer, 0, position);
+      try {
+        return sha256.digest(digestBytes, 0, digestBytes.length);
+      } catch (DigestException e) {
+        throw new IllegalStateException("Hashing failed", e);
+      }
+    }
+
+    /** MurmurHash3 x64 128, the two halves written big-endian. */
+    private int murmur3() {
+      long[] hash = MurmurHash3.hash128x64(buffer, 0, position, 0);
+      for (int i = 0; i < 8; i++) {
+        digestBytes[i] = (byte) (hash[0] >>> (56 - 8 * i));
+        digestBytes[8 + i] = (byte) (hash[1] >>> (56 - 8 * i));
+      }
+      return 16;
+    }
+
+    private int blake3() {
+      blake3.reset().update(buffer, 0, position).doFinalize(digestBytes, 0, 32);
+      return 32;
     }
   }
 }
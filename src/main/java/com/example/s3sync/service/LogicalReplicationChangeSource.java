@@ -0,0 +1,210 @@
+package com.example.s3sync.service;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+/**
+ * Change-data-capture source reading Postgres logical decoding output for {@code kunde} and {@code
+ * auftraege}.
+ *
+ * <p>The source owns a logical replication slot using the {@code test_decoding} output plugin. It
+ * peeks at the decoded changes through the SQL interface ({@code pg_logical_slot_peek_changes}),
+ * extracts the primary keys of changed customers and orders, and only moves the slot forward with
+ * {@code pg_replication_slot_advance} once the caller has synced those rows. The slot's confirmed
+ * LSN is the durable checkpoint: after a restart decoding resumes from the last acknowledged LSN,
+ * so changes are delivered at least once.
+ *
+ * <p>Configuration:
+ *
+ * <ul>
+ *   <li><code>sync.cdc.slot-name</code> - name of the replication slot (default: <code>s3sync
+ *       </code>).
+ *   <li><code>sync.cdc.max-changes</code> - upper bound of decoded changes read per poll (default:
+ *       <code>10000</code>). Postgres always returns complete transactions, so a poll can exceed
+ *       it.
+ * </ul>
+ *
+ * <p>Requirements and caveats:
+ *
+ * <ul>
+ *   <li>The server must run with {@code wal_level=logical} and the database user needs the {@code
+ *       REPLICATION} attribute (or superuser).
+ *   <li>An unconsumed slot retains WAL. Drop the slot ({@code pg_drop_replication_slot}) when CDC
+ *       is switched off permanently.
+ *   <li>{@code test_decoding} emits changes of all tables; rows of other tables are skipped.
+ * </ul>
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class LogicalReplicationChangeSource {
+
+  /** Primary key of a decoded {@code kunde} change, including the old key of a key update. */
+  private static final Pattern CUSTOMER_CHANGE =
+      Pattern.compile(
+          "^table [^ ]+\\.kunde: (?:INSERT|UPDATE|DELETE): "
+              + "(?:old-key: kundenid\\[bigint\\]:(\\d+) new-tuple: )?"
+              + "kundenid\\[bigint\\]:(\\d+)");
+
+  /** Primary key of a decoded {@code auftraege} change, including the old key of a key update. */
+  private static final Pattern ORDER_CHANGE =
+      Pattern.compile(
+          "^table [^ ]+\\.auftraege: (?:INSERT|UPDATE|DELETE): "
+              + "(?:old-key: auftragid\\[character varying\\]:'((?:[^']|'')*)' new-tuple: )?"
+              + "auftragid\\[character varying\\]:'((?:[^']|'')*)'");
+
+  private final JdbcTemplate jdbcTemplate;
+
+  /** Logical replication slot name (<code>sync.cdc.slot-name</code>). */
+  @Value("${sync.cdc.slot-name:s3sync}")
+  private String slotName = "s3sync";
+
+  /** Maximum number of decoded changes per poll (<code>sync.cdc.max-changes</code>). */
+  @Value("${sync.cdc.max-changes:10000}")
+  private int maxChanges = 10000;
+
+  /**
+   * Create the logical replication slot if it does not exist yet.
+   *
+   * <p>Changes committed before the slot was created are not decoded; run one full sync after
+   * creating the slot for the first time.
+   */
+  public void ensureSlot() {
+    Integer existing =
+        jdbcTemplate.queryForObject(
+            "SELECT count(*) FROM pg_replication_slots WHERE slot_name = ?",
+            Integer.class,
+            slotName);
+    if (existing != null && existing > 0) {
+      log.info("Using existing logical replication slot {}", slotName);
+      return;
+    }
+    jdbcTemplate.queryForList(
+        "SELECT pg_create_logical_replication_slot(?, 'test_decoding')", slotName);
+    log.info("Created logical replication slot {}", slotName);
+  }
+
+  /**
+   * Read the pending decoded changes without consuming them.
+   *
+   * @return keys of changed customers and orders and the LSN to acknowledge once they are synced
+   */
+  public ChangeSet peekChanges() {
+    List<DecodedChange> decoded =
+        jdbcTemplate.query(
+            "SELECT CAST(lsn AS text) AS lsn, data FROM pg_logical_slot_peek_changes("
+                + "?, NULL, ?, 'include-xids', '0', 'skip-empty-xacts', '1')",
+            (rs, rowNum) -> new DecodedChange(rs.getString("lsn"), rs.getString("data")),
+            slotName,
+            maxChanges);
+    ChangeSet changes = parse(decoded);
+    log.info(
+        "Decoded {} changes: {} customers, {} orders up to LSN {}",
+        decoded.size(),
+        changes.customerIds().size(),
+        changes.orderIds().size(),
+        changes.lastLsn());
+    return changes;
+  }
+
+  /**
+   * Durably move the slot past the given changes. Call only after the changes have been synced.
+   *
+   * @param changes change set returned by {@link #peekChanges()}
+   */
+  public void acknowledge(ChangeSet changes) {
+    if (changes.isEmpty()) {
+      return;
+    }
+    jdbcTemplate.queryForList(
+        "SELECT pg_replication_slot_advance(?, CAST(? AS pg_lsn))", slotName, changes.lastLsn());
+    log.info("Advanced logical replication slot {} to LSN {}", slotName, changes.lastLsn());
+  }
+
+  /**
+   * Extract the changed customer and order keys from {@code test_decoding} output.
+   *
+   * @param decoded decoded change rows in LSN order
+   * @return the distinct changed keys and the LSN of the last decoded row
+   */
+  static ChangeSet parse(List<DecodedChange> decoded) {
+    Set<Long> customerIds = new LinkedHashSet<>();
+    Set<String> orderIds = new LinkedHashSet<>();
+    for (DecodedChange change : decoded) {
+      Matcher customer = CUSTOMER_CHANGE.matcher(change.data());
+      if (customer.find()) {
+        if (customer.group(1) != null) {
+          customerIds.add(Long.valueOf(customer.group(1)));
+        }
+        customerIds.add(Long.valueOf(customer.group(2)));
+        continue;
+      }
+      Matcher order = ORDER_CHANGE.matcher(change.data());
+      if (order.find()) {
+        if (order.group(1) != null) {
+          orderIds.add(unquote(order.group(1)));
+        }
+        orderIds.add(unquote(order.group(2)));
+      }
+    }
+    String lastLsn = decoded.isEmpty() ? null : decoded.getLast().lsn();
+    return new ChangeSet(customerIds, orderIds, lastLsn);
+  }
+
+  /**
+   * Undo the quote doubling of a {@code test_decoding} text literal.
+   *
+   * @param literal literal content between the enclosing quotes
+   * @return the original text value
+   */
+  private static String unquote(String literal) {
+    return literal.replace("''", "'");
+  }
+
+  /**
+   * One row returned by {@code pg_logical_slot_peek_changes}.
+   *
+   * @param lsn LSN of the change, as text
+   * @param data decoded change in {@code test_decoding} format
+   */
+  record DecodedChange(String lsn, String data) {}
+
+  /**
+   * Keys changed since the last acknowledged LSN.
+   *
+   * @param customerIds ids of inserted, updated or deleted customers
+   * @param orderIds ids of inserted, updated or deleted orders
+   * @param lastLsn LSN of the last decoded change, {@code null} when nothing was decoded
+   */
+  public record ChangeSet(Set<Long> customerIds, Set<String> orderIds, String lastLsn) {
+
+    /**
+     * @return {@code true} when no change at all (of any table) was decoded
+     */
+    public boolean isEmpty() {
+      return lastLsn == null;
+    }
+
+    /**
+     * Label that tells the exports of this change set apart from those of other polls in the same
+     * hour. The LSN is written as 16 hex digits, so the labels sort in commit order.
+     *
+     * @return {@code lsn} followed by the zero-padded last LSN, e.g. {@code lsn00000000016B3748}
+     */
+    public String batchLabel() {
+      int slash = lastLsn.indexOf('/');
+      long lsn =
+          Long.parseLong(lastLsn.substring(0, slash), 16) << 32
+              | Long.parseLong(lastLsn.substring(slash + 1), 16);
+      return String.format("lsn%016X", lsn);
+    }
+  }
+}
@@ -1,43 +1,51 @@
 package com.example.s3sync.service;
 
 import com.example.s3sync.domain.Customer;
+import com.example.s3sync.domain.HashAlgorithm;
 import com.example.s3sync.domain.Order;
 import com.example.s3sync.domain.SyncedOrderHash;
 import com.example.s3sync.dto.OrderCsvDto;
-import com.example.s3sync.repository.CustomerRepository;
-import com.example.s3sync.repository.SyncedOrderHashRepository;
+import com.example.s3sync.dto.UnsyncedOrder;
 import com.example.s3sync.util.DomainDataMapper;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.support.TransactionSynchronization;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 /**
  * Service that persists order sync markers and uploads per-country CSVs.
  *
  * <p>This component accepts a list of orders determined to be unsynced, groups them by country
- * (resolved via the related customer's country), computes and persists a marker/hash for each
- * order, renders CSV files per country and uploads those files to S3. Uploads are scheduled in a
- * transaction synchronization so that objects are cleaned up if the surrounding transaction rolls
- * back.
+ * (resolved via the related customer's country), persists the marker/hash computed by the diff for
+ * each order, renders CSV files per country and uploads those files to S3. Uploads are scheduled in
+ * a transaction synchronization so that objects are cleaned up if the transaction rolls back. A run
+ * is committed in one transaction or, with chunking configured in the {@link SyncChunker}, in one
+ * transaction per chunk.
  *
  * <p>Notes:
  *
  * <ul>
- *   <li>The main method {@link #syncAndUpload(List)} is annotated with {@link Transactional} and
- *       registers a {@link TransactionSynchronization} to perform uploads in {@code beforeCommit}
- *       and cleanup on rollback.
+ *   <li>Every transaction registers a {@link TransactionSynchronization} to perform the uploads of
+ *       its chunk in {@code beforeCommit} and cleanup on rollback. After a commit the synced order
+ *       ids of the chunk are added to the {@link SyncedOrderIdFilter}.
+ *   <li>The transactions join a transaction of the caller, if there is one; chunking then has no
+ *       effect.
  *   <li>The service persists {@link SyncedOrderHash} entries (marker hashes) for each processed
- *       order prior to scheduling uploads.
+ *       order prior to scheduling uploads. They are upserted in JDBC batches by the {@link
+ *       SyncedHashWriter}.
  * </ul>
  */
 @Slf4j
@@ -45,11 +53,20 @@ import org.springframework.transaction.support.TransactionSynchronizationManager
 @RequiredArgsConstructor
 public class OrderSyncService {
 
-  private final CustomerRepository customerRepository;
-  private final SyncedOrderHashRepository syncedOrderHashRepository;
+  /**
+   * Country bucket of orders whose {@code kundeid} matches no customer. They are exported to {@code
+   * auftraege_orphaned_<yyyyMMdd_HH>.csv} and tracked like other orders.
+   */
+  static final String ORPHANED = "orphaned";
+
+  private final CustomerLandCache customerLandCache;
+  private final SyncedHashWriter syncedHashWriter;
   private final HashService hashService;
   private final CsvService csvService;
   private final S3UploaderService s3Uploader;
+  private final SyncedOrderIdFilter syncedOrderIdFilter;
+  private final SyncChunker syncChunker;
+  private final PlatformTransactionManager transactionManager;
 
   /**
    * Persist sync markers for the provided orders and upload per-country CSVs.
@@ -57,49 +74,129 @@ public class OrderSyncService {
    * <p>Behavior:
    *
    * <ol>
-   *   <li>Group {@code unsyncedOrders} by country, resolving the country via the related customer.
-   *   <li>For each order compute a stable marker/hash and persist a {@link SyncedOrderHash} entry.
-   *   <li>Render a CSV for each country and schedule S3 uploads inside a transaction
-   *       synchronization. Uploads happen in {@code beforeCommit} so they only occur when the
-   *       transaction successfully commits; uploaded files are deleted in {@code afterCompletion}
-   *       if the transaction rolled back.
+   *   <li>Group {@code unsyncedOrders} by country, resolving the countries of the related customers
+   *       through the {@link CustomerLandCache}. Orders without an existing customer are grouped
+   *       under {@value #ORPHANED}.
+   *   <li>For each order persist a {@link SyncedOrderHash} entry with the marker/hash the diff
+   *       computed; orders are not hashed again. All entries are upserted together in JDBC batches.
+   *   <li>Schedule a CSV for each country for upload inside a transaction synchronization. Uploads
+   *       happen in {@code beforeCommit} so they only occur when the transaction successfully
+   *       commits; uploaded files are deleted in {@code afterCompletion} if the transaction rolled
+   *       back. Each CSV is rendered while it is streamed to S3, so at most one upload part of it
+   *       is held in memory.
    * </ol>
    *
-   * @param unsyncedOrders list of orders that need to be synchronized
+   * <p>Steps 2 and 3 run once per chunk of the {@link SyncChunker}, each in its own transaction. A
+   * failing chunk is rolled back and ends the run; the chunks committed before it stay synced.
+   *
+   * @param unsyncedOrders orders that need to be synchronized, with their current marker hash
    */
-  @Transactional
-  public void syncAndUpload(List<Order> unsyncedOrders) {
+  public void syncAndUpload(List<UnsyncedOrder> unsyncedOrders) {
+    syncAndUpload(unsyncedOrders, "");
+  }
 
-    Map<String, List<Order>> byCountry =
-        unsyncedOrders.stream().collect(Collectors.groupingBy(this::getLand));
+  /**
+   * Persist sync markers for one batch of orders and upload per-country CSVs.
+   *
+   * <p>Same behavior as {@link #syncAndUpload(List)}, but every file name carries {@code _<batch>}
+   * after the hour. Used by callers that sync several batches within one hour, so that a batch does
+   * not overwrite the files of an earlier one.
+   *
+   * @param orders orders that need to be synchronized
+   * @param batch label of the batch, unique within the hour
+   */
+  public void syncAndUpload(List<UnsyncedOrder> orders, String batch) {
+    if (orders.isEmpty()) {
+      log.info("No unsynced orders found");
+      return;
+    }
 
-    Map<String, byte[]> csvToBeUploaded = new HashMap<>();
+    Map<String, String> lands =
+        getLands(
+            orders.stream().map(unsynced -> unsynced.order().getKundeid()).distinct().toList());
+    Map<String, List<UnsyncedOrder>> byCountry =
+        orders.stream()
+            .collect(
+                Collectors.groupingBy(
+                    unsynced -> lands.getOrDefault(unsynced.order().getKundeid(), ORPHANED)));
+    List<UnsyncedOrder> orphaned = byCountry.get(ORPHANED);
+    if (orphaned != null) {
+      log.warn(
+          "{} orders reference no existing customer and are exported as {}",
+          orphaned.size(),
+          ORPHANED);
+    }
 
-    for (Map.Entry<String, List<Order>> entry : byCountry.entrySet()) {
-      String country = entry.getKey();
-      List<Order> orders = entry.getValue();
+    String hour = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HH"));
+    HashAlgorithm hashAlgorithm = hashService.algorithm();
+    List<List<SyncChunker.Part<UnsyncedOrder>>> chunks = syncChunker.split(byCountry, batch);
+    if (chunks.size() > 1) {
+      log.info("Syncing orders in {} transactions", chunks.size());
+    }
+    TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+    for (List<SyncChunker.Part<UnsyncedOrder>> chunk : chunks) {
+      transactionTemplate.executeWithoutResult(status -> syncChunk(chunk, hour, hashAlgorithm));
+    }
+  }
 
-      for (Order order : orders) {
-        String markerHash = hashService.orderMarkerHash(order.getLastchange());
+  /**
+   * Persist sync markers for the streamed orders and upload per-country CSVs.
+   *
+   * <p>Same behavior as {@link #syncAndUpload(List)}, but accepts the lazily evaluated stream
+   * produced by {@link StreamingSyncDiffService}. The stream is consumed in pages of the {@link
+   * SyncChunker}: every page of changed orders is grouped, persisted and uploaded before the next
+   * one is read, so only one page is held in memory. With more than one page, every page is a batch
+   * of its own ({@link #syncAndUpload(List, String)}) and committed before the next one.
+   *
+   * @param unsyncedOrders stream of orders that need to be synchronized, with their current marker
+   *     hash; consumed once
+   */
+  public void syncAndUpload(Stream<UnsyncedOrder> unsyncedOrders) {
+    syncChunker.page(unsyncedOrders, this::syncAndUpload);
+  }
 
-        syncedOrderHashRepository.save(
-            SyncedOrderHash.builder().orderId(order.getId()).markerHash(markerHash).build());
-      }
+  /**
+   * Persist the sync markers of one chunk and schedule its uploads in the current transaction.
+   *
+   * @param parts per-country parts of the chunk
+   * @param hour hour of the run, used in the file names
+   * @param hashAlgorithm algorithm the marker hashes were computed with
+   */
+  private void syncChunk(
+      List<SyncChunker.Part<UnsyncedOrder>> parts, String hour, HashAlgorithm hashAlgorithm) {
+    Map<String, S3UploaderService.CsvContent> csvToBeUploaded = new HashMap<>();
+    List<String> syncedOrderIds = new ArrayList<>();
+    List<SyncedOrderHash> syncedHashes = new ArrayList<>();
 
-      List<OrderCsvDto> orderDtos =
-          entry.getValue().stream().map(DomainDataMapper::orderToDto).collect(Collectors.toList());
+    for (SyncChunker.Part<UnsyncedOrder> part : parts) {
+      String country = part.country();
+      List<UnsyncedOrder> orders = part.rows();
 
-      byte[] csvBytes = csvService.ordersToCsv(orderDtos);
+      for (UnsyncedOrder unsynced : orders) {
+        Order order = unsynced.order();
+        byte[] markerHash = unsynced.markerHash();
+
+        syncedHashes.add(
+            SyncedOrderHash.builder()
+                .orderId(order.getId())
+                .markerHash(markerHash)
+                .hashAlgo(hashAlgorithm)
+                .land(country)
+                .build());
+        syncedOrderIds.add(order.getId());
+      }
 
-      String filename =
-          "auftraege_"
-              + country
-              + "_"
-              + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HH"))
-              + ".csv";
+      String filename = "auftraege_" + country + "_" + hour + part.fileSuffix() + ".csv";
 
-      csvToBeUploaded.put(filename, csvBytes);
+      csvToBeUploaded.put(
+          filename,
+          out -> {
+            Stream<OrderCsvDto> orderDtos =
+                orders.stream().map(UnsyncedOrder::order).map(DomainDataMapper::orderToDto);
+            csvService.writeOrders(orderDtos, out);
+          });
     }
+    syncedHashWriter.upsertOrderHashes(syncedHashes);
 
     TransactionSynchronizationManager.registerSynchronization(
         new TransactionSynchronization() {
@@ -107,15 +204,20 @@ public class OrderSyncService {
 
           @Override
           public void beforeCommit(boolean readOnly) {
-            for (Map.Entry<String, byte[]> entry : csvToBeUploaded.entrySet()) {
+            for (Map.Entry<String, S3UploaderService.CsvContent> entry :
+                csvToBeUploaded.entrySet()) {
               String filename = entry.getKey();
-              byte[] csvBytes = entry.getValue();
 
-              s3Uploader.uploadCsvBytes(csvBytes, filename);
+              s3Uploader.uploadCsv(filename, entry.getValue());
               uploadedCsvFiles.add(filename);
             }
           }
 
+          @Override
+          public void afterCommit() {
+            syncedOrderIdFilter.add(syncedOrderIds);
+          }
+
           @Override
           public void afterCompletion(int status) {
             if (status == STATUS_ROLLED_BACK) {
@@ -132,16 +234,30 @@ public class OrderSyncService {
   }
 
   /**
-   * Resolve the country ('land') for the given order by loading the associated customer and
-   * returning its {@link Customer#getLand()} value.
-   *
-   * <p>Returns {@code null} if the customer cannot be found.
+   * Resolve the countries of the given customers through the {@link CustomerLandCache}.
    *
-   * @param order order whose customer's country should be returned
-   * @return country code/name from the related customer or {@code null}
+   * @param kundeIds {@code kundeid} values of the orders to group
+   * @return {@link Customer#getLand()} by {@code kundeid}; ids that are not numeric or belong to no
+   *     customer are absent
    */
-  String getLand(Order order) {
-    Customer customer = customerRepository.findById(Long.valueOf(order.getKundeid())).orElse(null);
-    return customer.getLand();
+  Map<String, String> getLands(Collection<String> kundeIds) {
+    Map<String, Long> ids = new HashMap<>();
+    for (String kundeId : kundeIds) {
+      try {
+        ids.put(kundeId, Long.valueOf(kundeId.trim()));
+      } catch (NumberFormatException e) {
+        log.debug("Order references non-numeric customer id {}", kundeId);
+      }
+    }
+    Map<Long, String> lands = customerLandCache.getLands(new HashSet<>(ids.values()));
+    Map<String, String> landsByKundeId = new HashMap<>();
+    ids.forEach(
+        (kundeId, id) -> {
+          String land = lands.get(id);
+          if (land != null) {
+            landsByKundeId.put(kundeId, land);
+          }
+        });
+    return landsByKundeId;
   }
 }
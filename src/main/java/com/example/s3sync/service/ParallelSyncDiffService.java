@@ -0,0 +1,211 @@
+package com.example.s3sync.service;
+
+import com.example.s3sync.domain.Customer;
+import com.example.s3sync.domain.Order;
+import com.example.s3sync.dto.UnsyncedCustomer;
+import com.example.s3sync.dto.UnsyncedOrder;
+import com.example.s3sync.repository.CustomerRepository;
+import com.example.s3sync.repository.OrderRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import javax.sql.DataSource;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Multi-threaded variant of {@link SyncDiffService} that diffs primary-key ranges in parallel.
+ *
+ * <p>The {@code kundenid} and {@code auftragid} key spaces are split into ranges of nearly equal
+ * row count ({@code ntile} over the primary key). Every range is diffed on its own worker thread in
+ * its own read-only transaction, and therefore on its own pooled connection: the worker walks its
+ * range in keyset pages of <code>sync.diff.chunk-size</code> rows, read as unmanaged projections,
+ * compares each page against the stored hashes with one {@code IN} query and clears the tracking
+ * entities from its persistence context afterwards. The changed rows of all ranges are merged in
+ * key order.
+ *
+ * <p>Configuration:
+ *
+ * <ul>
+ *   <li><code>sync.diff.parallel.workers</code> - number of ranges and worker threads (default:
+ *       number of available processors). Capped at the Hikari maximum pool size minus one, so one
+ *       connection stays available to the rest of the application.
+ *   <li><code>sync.diff.chunk-size</code> - keyset page size within a range (default: <code>1000
+ *       </code>).
+ * </ul>
+ *
+ * <p>Like {@link SyncDiffService} this service does not mutate the tracking tables.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ParallelSyncDiffService {
+
+  private final CustomerRepository customerRepository;
+  private final OrderRepository orderRepository;
+  private final SyncDiffService syncDiffService;
+  private final PlatformTransactionManager transactionManager;
+  private final DataSource dataSource;
+
+  @PersistenceContext private EntityManager entityManager;
+
+  /** Requested number of workers (<code>sync.diff.parallel.workers</code>). */
+  @Value("${sync.diff.parallel.workers:#{T(java.lang.Runtime).getRuntime().availableProcessors()}}")
+  private int workers = Runtime.getRuntime().availableProcessors();
+
+  /** Number of rows read per keyset page (<code>sync.diff.chunk-size</code>). */
+  @Value("${sync.diff.chunk-size:1000}")
+  private int chunkSize = 1000;
+
+  /**
+   * Return the customers that should be synchronized, diffing {@code kundenid} ranges in parallel.
+   *
+   * @return customers without tracking entry or with a differing row hash, ordered by id
+   */
+  public List<UnsyncedCustomer> getUnsyncedCustomers() {
+    List<UnsyncedCustomer> unsyncedCustomers =
+        diffRanges(
+            customerRepository::findRangeUpperBounds,
+            Customer::getId,
+            (from, to) ->
+                from == null
+                    ? customerRepository.findByIdLessThanEqualOrderByIdAsc(to, Limit.of(chunkSize))
+                    : customerRepository.findByIdGreaterThanAndIdLessThanEqualOrderByIdAsc(
+                        from, to, Limit.of(chunkSize)),
+            syncDiffService::filterUnsyncedCustomers);
+    log.info("Found {} unsynced customers", unsyncedCustomers.size());
+    return unsyncedCustomers;
+  }
+
+  /**
+   * Return the orders that should be synchronized, diffing {@code auftragid} ranges in parallel.
+   *
+   * @return orders without tracking entry or with a differing marker, ordered by id
+   */
+  public List<UnsyncedOrder> getUnsyncedOrders() {
+    List<UnsyncedOrder> unsyncedOrders =
+        diffRanges(
+            orderRepository::findRangeUpperBounds,
+            Order::getId,
+            (from, to) ->
+                from == null
+                    ? orderRepository.findByIdLessThanEqualOrderByIdAsc(to, Limit.of(chunkSize))
+                    : orderRepository.findByIdGreaterThanAndIdLessThanEqualOrderByIdAsc(
+                        from, to, Limit.of(chunkSize)),
+            syncDiffService::filterUnsyncedOrders);
+    log.info("Found {} unsynced orders", unsyncedOrders.size());
+    return unsyncedOrders;
+  }
+
+  /**
+   * Number of workers actually used: the configured count capped by the connection pool. The pool
+   * is unwrapped from the read-replica routing, whose replica pool has the same maximum size.
+   *
+   * @return worker count, at least one
+   */
+  int effectiveWorkers() {
+    int limit = workers;
+    try {
+      if (dataSource.isWrapperFor(HikariDataSource.class)) {
+        limit = Math.min(limit, dataSource.unwrap(HikariDataSource.class).getMaximumPoolSize() - 1);
+      }
+    } catch (SQLException e) {
+      log.debug("Could not determine the connection pool size", e);
+    }
+    return Math.max(1, limit);
+  }
+
+  /**
+   * Split the table into ranges, diff every range on its own worker and merge the results.
+   *
+   * @param upperBounds returns the inclusive upper bounds of the given number of ranges
+   * @param keyOf primary key of a row
+   * @param page loads the keyset page {@code (from, to]}; {@code from} is {@code null} at the start
+   *     of the first range
+   * @param diff keeps the unsynced rows of a page
+   * @return unsynced rows of all ranges in key order
+   */
+  private <T, K, R> List<R> diffRanges(
+      IntFunction<List<K>> upperBounds,
+      Function<T, K> keyOf,
+      BiFunction<K, K, List<T>> page,
+      Function<List<T>, List<R>> diff) {
+    int workerCount = effectiveWorkers();
+    List<K> bounds = upperBounds.apply(workerCount);
+    log.info("Diffing {} ranges on {} workers", bounds.size(), workerCount);
+    if (bounds.isEmpty()) {
+      return List.of();
+    }
+
+    List<R> unsynced = new ArrayList<>();
+    try (ExecutorService executor = Executors.newFixedThreadPool(workerCount)) {
+      List<Future<List<R>>> results = new ArrayList<>();
+      for (int i = 0; i < bounds.size(); i++) {
+        K from = i == 0 ? null : bounds.get(i - 1);
+        K to = bounds.get(i);
+        results.add(executor.submit(() -> diffRange(from, to, keyOf, page, diff)));
+      }
+      for (Future<List<R>> result : results) {
+        unsynced.addAll(result.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Parallel diff interrupted", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Parallel diff failed", e.getCause());
+    }
+    return unsynced;
+  }
+
+  /**
+   * Diff one range page by page inside a single read-only transaction.
+   *
+   * @param from exclusive lower bound, {@code null} for the first range
+   * @param to inclusive upper bound
+   * @param keyOf primary key of a row
+   * @param page loads the keyset page following a key
+   * @param diff keeps the unsynced rows of a page
+   * @return unsynced rows of the range in key order
+   */
+  private <T, K, R> List<R> diffRange(
+      K from,
+      K to,
+      Function<T, K> keyOf,
+      BiFunction<K, K, List<T>> page,
+      Function<List<T>, List<R>> diff) {
+    TransactionTemplate template = new TransactionTemplate(transactionManager);
+    template.setReadOnly(true);
+    template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    return template.execute(
+        status -> {
+          List<R> unsynced = new ArrayList<>();
+          K last = from;
+          List<T> rows;
+          do {
+            rows = page.apply(last, to);
+            if (!rows.isEmpty()) {
+              unsynced.addAll(diff.apply(rows));
+              last = keyOf.apply(rows.getLast());
+            }
+            entityManager.clear();
+          } while (rows.size() == chunkSize);
+          return unsynced;
+        });
+  }
+}
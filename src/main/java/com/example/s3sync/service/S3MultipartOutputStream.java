@@ -0,0 +1,215 @@
+package com.example.s3sync.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+
+/**
+ * Output stream that uploads everything written to it as one S3 object, holding at most one part in
+ * memory.
+ *
+ * <p>Bytes are collected in a buffer that starts at {@value #INITIAL_BUFFER_SIZE} bytes and doubles
+ * when full, up to the part size, so small files never allocate a whole part. Whenever the buffer
+ * holds a full part and more bytes follow, it is uploaded as the next part of a multipart upload,
+ * which is started with the first part. {@link #close()} uploads the rest as the last part and
+ * completes the upload. Output that fits into a single part is stored with one {@code PutObject}
+ * instead.
+ *
+ * <p>If writing or completing fails, the multipart upload is aborted so S3 drops the parts already
+ * uploaded; callers abort with {@link #abort()} when the content could not be produced. The stream
+ * is not thread-safe.
+ */
+@Slf4j
+class S3MultipartOutputStream extends OutputStream {
+
+  /** Initial capacity of the buffer, unless the part size is smaller. */
+  static final int INITIAL_BUFFER_SIZE = 8 * 1024;
+
+  private final S3Client s3;
+  private final String bucket;
+  private final String key;
+  private final String contentType;
+  private final int partSize;
+  private final List<CompletedPart> parts = new ArrayList<>();
+
+  private byte[] buffer;
+  private int size;
+  private String uploadId;
+  private String eTag;
+  private boolean closed;
+
+  /**
+   * Create a stream for one object.
+   *
+   * @param s3 client performing the uploads
+   * @param bucket target bucket
+   * @param key object key
+   * @param contentType content type of the object
+   * @param partSize bytes per part; S3 requires at least 5 MiB for all parts but the last
+   */
+  S3MultipartOutputStream(
+      S3Client s3, String bucket, String key, String contentType, int partSize) {
+    this.s3 = s3;
+    this.bucket = bucket;
+    this.key = key;
+    this.contentType = contentType;
+    this.partSize = partSize;
+    this.buffer = new byte[Math.min(INITIAL_BUFFER_SIZE, partSize)];
+  }
+
+  @Override
+  public void write(int b) {
+    ensureOpen();
+    if (size == buffer.length) {
+      makeRoom();
+    }
+    buffer[size++] = (byte) b;
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) {
+    ensureOpen();
+    while (len > 0) {
+      if (size == buffer.length) {
+        makeRoom();
+      }
+      int n = Math.min(len, buffer.length - size);
+      System.arraycopy(b, off, buffer, size, n);
+      size += n;
+      off += n;
+      len -= n;
+    }
+  }
+
+  /**
+   * Upload the buffered rest and complete the object. Does nothing if the stream is already closed
+   * or aborted.
+   *
+   * @throws SdkException if the upload fails; the multipart upload is aborted then
+   */
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try {
+      if (uploadId == null) {
+        eTag =
+            s3.putObject(
+                    PutObjectRequest.builder()
+                        .bucket(bucket)
+                        .key(key)
+                        .contentType(contentType)
+                        .build(),
+                    body())
+                .eTag();
+      } else {
+        uploadPart();
+        eTag =
+            s3.completeMultipartUpload(
+                    CompleteMultipartUploadRequest.builder()
+                        .bucket(bucket)
+                        .key(key)
+                        .uploadId(uploadId)
+                        .multipartUpload(CompletedMultipartUpload.builder().parts(parts).build())
+                        .build())
+                .eTag();
+        log.info("Completed multipart upload of {} in {} parts", key, parts.size());
+      }
+    } catch (RuntimeException e) {
+      abort();
+      throw e;
+    }
+  }
+
+  /** Close the stream without creating the object and drop the parts uploaded so far. */
+  public void abort() {
+    closed = true;
+    if (uploadId == null) {
+      return;
+    }
+    try {
+      s3.abortMultipartUpload(
+          AbortMultipartUploadRequest.builder().bucket(bucket).key(key).uploadId(uploadId).build());
+    } catch (SdkException e) {
+      log.warn("Failed to abort multipart upload of {}: {}", key, e.getMessage());
+    }
+    uploadId = null;
+  }
+
+  /**
+   * @return ETag of the object once the stream was closed successfully
+   */
+  public String eTag() {
+    return eTag;
+  }
+
+  /** Make room in the full buffer: grow it up to the part size, or upload it as the next part. */
+  private void makeRoom() {
+    if (buffer.length < partSize) {
+      buffer = Arrays.copyOf(buffer, (int) Math.min(2L * buffer.length, partSize));
+    } else {
+      uploadPart();
+    }
+  }
+
+  /** Upload the buffer as the next part, starting the multipart upload with the first part. */
+  private void uploadPart() {
+    try {
+      if (uploadId == null) {
+        uploadId =
+            s3.createMultipartUpload(
+                    CreateMultipartUploadRequest.builder()
+                        .bucket(bucket)
+                        .key(key)
+                        .contentType(contentType)
+                        .build())
+                .uploadId();
+      }
+      int partNumber = parts.size() + 1;
+      String partETag =
+          s3.uploadPart(
+                  UploadPartRequest.builder()
+                      .bucket(bucket)
+                      .key(key)
+                      .uploadId(uploadId)
+                      .partNumber(partNumber)
+                      .contentLength((long) size)
+                      .build(),
+                  body())
+              .eTag();
+      parts.add(CompletedPart.builder().partNumber(partNumber).eTag(partETag).build());
+      size = 0;
+    } catch (RuntimeException e) {
+      abort();
+      throw e;
+    }
+  }
+
+  /**
+   * @return request body reading the buffered bytes without copying them
+   */
+  private RequestBody body() {
+    return RequestBody.fromInputStream(new ByteArrayInputStream(buffer, 0, size), size);
+  }
+
+  private void ensureOpen() {
+    if (closed) {
+      throw new IllegalStateException("Upload of " + key + " is already closed");
+    }
+  }
+}
@@ -1,15 +1,16 @@
 package com.example.s3sync.service;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
 import software.amazon.awssdk.core.exception.SdkException;
-import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
-import software.amazon.awssdk.services.s3.model.PutObjectRequest;
-import software.amazon.awssdk.services.s3.model.PutObjectResponse;
 
 /**
  * Service responsible for uploading generated CSV data to S3.
@@ -22,6 +23,8 @@ import software.amazon.awssdk.services.s3.model.PutObjectResponse;
  *
  * <ul>
  *   <li><code>aws.s3.bucket</code> - target bucket for CSV uploads
+ *   <li><code>aws.s3.part-size</code> - size of the parts of streamed uploads (default: <code>8MB
+ *       </code>, minimum <code>5MB</code>); a streamed upload holds at most one part in memory
  * </ul>
  *
  * <p>Notes:
@@ -30,6 +33,9 @@ import software.amazon.awssdk.services.s3.model.PutObjectResponse;
  *   <li>Uploaded objects are set with content type <code>text/csv</code>.
  *   <li>The upload method returns the S3 ETag which can be used as a lightweight verification
  *       token.
+ *   <li>{@link #uploadCsv(String, CsvContent)} writes the CSV while uploading it, so exports never
+ *       exist as one byte array. Content larger than one part becomes a multipart upload, which is
+ *       aborted if writing the content fails.
  * </ul>
  */
 @Slf4j
@@ -37,6 +43,9 @@ import software.amazon.awssdk.services.s3.model.PutObjectResponse;
 @RequiredArgsConstructor
 public class S3UploaderService {
 
+  /** Smallest part size S3 accepts for all but the last part of a multipart upload. */
+  static final DataSize MIN_PART_SIZE = DataSize.ofMegabytes(5);
+
   /** AWS S3 client used to perform uploads. */
   private final S3Client s3;
 
@@ -44,25 +53,58 @@ public class S3UploaderService {
   @Value("${aws.s3.bucket}")
   private String bucket;
 
+  /** Part size of streamed uploads (<code>aws.s3.part-size</code>). */
+  @Value("${aws.s3.part-size:8MB}")
+  private DataSize partSize;
+
+  /** Writes the content of a CSV file to a stream. */
+  @FunctionalInterface
+  public interface CsvContent {
+
+    /**
+     * Write the CSV content.
+     *
+     * @param out stream to write the UTF-8 encoded CSV to; must not be closed
+     * @throws IOException if writing fails
+     */
+    void writeTo(OutputStream out) throws IOException;
+  }
+
   /**
-   * Upload the provided CSV bytes to S3 under the given object key.
+   * Stream CSV content to S3 under the given object key.
    *
-   * <p>The uploaded object will be stored in the configured bucket with content type <code>text/csv
-   * </code>. This method returns the ETag reported by S3 which can be used as a simple verification
-   * or logging token.
+   * <p>The content is written into a buffer that grows up to <code>aws.s3.part-size</code> bytes
+   * and is uploaded as the next part of a multipart upload whenever it is full, so generation and
+   * upload overlap and memory stays bounded by one part. Content that fits into one part is
+   * uploaded with a single {@code PutObject}. If the content cannot be written or the upload fails,
+   * the multipart upload is aborted and no object is created.
    *
-   * @param csvBytes CSV content as a byte array (UTF-8 encoding)
    * @param file destination object key inside the configured bucket
+   * @param content writes the CSV content
    * @return the S3 ETag of the uploaded object
    * @throws software.amazon.awssdk.core.exception.SdkException if the upload fails at the SDK level
+   * @throws UncheckedIOException if writing the content fails
    */
-  public String uploadCsvBytes(byte[] csvBytes, String file) {
-    log.info("Uploading CSV to S3 bucket {} with key {}", bucket, file);
-    PutObjectRequest req =
-        PutObjectRequest.builder().bucket(bucket).key(file).contentType("text/csv").build();
-
-    PutObjectResponse resp = s3.putObject(req, RequestBody.fromBytes(csvBytes));
-    return resp.eTag();
+  public String uploadCsv(String file, CsvContent content) {
+    log.info("Streaming CSV to S3 bucket {} with key {}", bucket, file);
+    S3MultipartOutputStream out =
+        new S3MultipartOutputStream(
+            s3,
+            bucket,
+            file,
+            "text/csv",
+            (int) Math.max(partSize.toBytes(), MIN_PART_SIZE.toBytes()));
+    try {
+      content.writeTo(out);
+      out.close();
+    } catch (IOException e) {
+      out.abort();
+      throw new UncheckedIOException("Writing CSV " + file + " failed", e);
+    } catch (RuntimeException e) {
+      out.abort();
+      throw e;
+    }
+    return out.eTag();
   }
 
   /**
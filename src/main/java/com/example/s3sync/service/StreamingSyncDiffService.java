@@ -0,0 +1,190 @@
+package com.example.s3sync.service;
+
+import com.example.s3sync.domain.Customer;
+import com.example.s3sync.domain.Order;
+import com.example.s3sync.dto.UnsyncedCustomer;
+import com.example.s3sync.dto.UnsyncedOrder;
+import com.example.s3sync.repository.CustomerRepository;
+import com.example.s3sync.repository.OrderRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Constant-memory variant of {@link SyncDiffService} that walks the source tables in keyset pages.
+ *
+ * <p>Instead of loading the whole {@code kunde} / {@code auftraege} table, the tables are read in
+ * pages of <code>sync.diff.chunk-size</code> rows ordered by primary key ({@code WHERE id > :last
+ * ORDER BY id LIMIT n}) as unmanaged projections. Every page is compared by {@link
+ * SyncDiffService}, which fetches the stored hashes with a single {@code IN} query, and the
+ * persistence context holding these tracking entities is cleared before the next page is read. Only
+ * the changed rows leave this service, paired with their current hash, as a lazily evaluated {@link
+ * Stream}.
+ *
+ * <p>Notes:
+ *
+ * <ul>
+ *   <li>Each page is read in its own short, read-only transaction, so the pages never pile up in
+ *       the persistence context of a caller's transaction.
+ *   <li>The returned streams are lazy: a page is only read when the consumer asks for more rows.
+ *       Consume them at most once.
+ *   <li>Like {@link SyncDiffService} this service does not mutate the tracking tables.
+ * </ul>
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StreamingSyncDiffService {
+
+  private final CustomerRepository customerRepository;
+  private final OrderRepository orderRepository;
+  private final SyncDiffService syncDiffService;
+  private final PlatformTransactionManager transactionManager;
+
+  @PersistenceContext private EntityManager entityManager;
+
+  /** Number of rows read per keyset page (<code>sync.diff.chunk-size</code>). */
+  @Value("${sync.diff.chunk-size:1000}")
+  private int chunkSize = 1000;
+
+  /**
+   * Stream the customers that should be synchronized.
+   *
+   * <p>A customer is returned when it has no tracking entry or when its stored row hash differs
+   * from the freshly computed one (using the algorithm of the stored hash).
+   *
+   * @return lazy stream of customers that require synchronization
+   */
+  public Stream<UnsyncedCustomer> streamUnsyncedCustomers() {
+    log.info("Streaming unsynced customers in chunks of {}", chunkSize);
+    return keysetStream(this::unsyncedCustomerChunk);
+  }
+
+  /**
+   * Stream the orders that should be synchronized.
+   *
+   * <p>An order is returned when it has no tracking entry or when its stored marker differs from
+   * the marker derived from <code>lastchange</code>.
+   *
+   * @return lazy stream of orders that require synchronization
+   */
+  public Stream<UnsyncedOrder> streamUnsyncedOrders() {
+    log.info("Streaming unsynced orders in chunks of {}", chunkSize);
+    return keysetStream(this::unsyncedOrderChunk);
+  }
+
+  /**
+   * Read the customer page following {@code lastId} and keep the unsynced customers.
+   *
+   * @param lastId last customer id of the previous page, {@code null} for the first page
+   * @return the changed customers of the page and the keyset position reached
+   */
+  private Chunk<UnsyncedCustomer, Long> unsyncedCustomerChunk(Long lastId) {
+    return inReadOnlyTransaction(
+        () -> {
+          List<Customer> page =
+              lastId == null
+                  ? customerRepository.findAllByOrderByIdAsc(Limit.of(chunkSize))
+                  : customerRepository.findByIdGreaterThanOrderByIdAsc(lastId, Limit.of(chunkSize));
+          if (page.isEmpty()) {
+            return Chunk.<UnsyncedCustomer, Long>last();
+          }
+          return new Chunk<>(
+              syncDiffService.filterUnsyncedCustomers(page),
+              page.getLast().getId(),
+              page.size() < chunkSize);
+        });
+  }
+
+  /**
+   * Read the order page following {@code lastId} and keep the unsynced orders.
+   *
+   * @param lastId last order id of the previous page, {@code null} for the first page
+   * @return the changed orders of the page and the keyset position reached
+   */
+  private Chunk<UnsyncedOrder, String> unsyncedOrderChunk(String lastId) {
+    return inReadOnlyTransaction(
+        () -> {
+          List<Order> page =
+              lastId == null
+                  ? orderRepository.findAllByOrderByIdAsc(Limit.of(chunkSize))
+                  : orderRepository.findByIdGreaterThanOrderByIdAsc(lastId, Limit.of(chunkSize));
+          if (page.isEmpty()) {
+            return Chunk.<UnsyncedOrder, String>last();
+          }
+          return new Chunk<>(
+              syncDiffService.filterUnsyncedOrders(page),
+              page.getLast().getId(),
+              page.size() < chunkSize);
+        });
+  }
+
+  /**
+   * Build a lazy stream that reads one chunk after another until the last page was reached.
+   *
+   * <p>The stream is seeded with an empty {@link Chunk#start()} chunk, so not even the first page
+   * is read before the consumer asks for rows.
+   *
+   * @param nextChunk reads the chunk following the given keyset position ({@code null} = start)
+   * @return flattened stream of the changed rows of all chunks
+   */
+  private static <T, K> Stream<T> keysetStream(Function<K, Chunk<T, K>> nextChunk) {
+    return Stream.iterate(
+            Chunk.<T, K>start(),
+            chunk -> chunk != null,
+            chunk -> chunk.exhausted() ? null : nextChunk.apply(chunk.lastKey()))
+        .flatMap(chunk -> chunk.changed().stream());
+  }
+
+  /**
+   * Run the given page read in a new read-only transaction and clear the persistence context
+   * afterwards, so the tracking entities loaded for the page are detached and can be garbage
+   * collected.
+   *
+   * @param read the page read
+   * @return the result of {@code read}
+   */
+  private <T> T inReadOnlyTransaction(Supplier<T> read) {
+    TransactionTemplate template = new TransactionTemplate(transactionManager);
+    template.setReadOnly(true);
+    template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    return template.execute(
+        status -> {
+          try {
+            return read.get();
+          } finally {
+            entityManager.clear();
+          }
+        });
+  }
+
+  /**
+   * Result of reading one keyset page.
+   *
+   * @param changed rows of the page that require synchronization
+   * @param lastKey primary key of the last row of the page
+   * @param exhausted {@code true} when no further page exists
+   */
+  private record Chunk<T, K>(List<T> changed, K lastKey, boolean exhausted) {
+
+    /** Empty chunk before the first page; its successor is read from the start of the table. */
+    static <T, K> Chunk<T, K> start() {
+      return new Chunk<>(List.of(), null, false);
+    }
+
+    static <T, K> Chunk<T, K> last() {
+      return new Chunk<>(List.of(), null, true);
+    }
+  }
+}
@@ -0,0 +1,134 @@
+package com.example.s3sync.service;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Splits the changed rows of a sync run into the units that {@link CustomerSyncService} and {@link
+ * OrderSyncService} commit in their own transaction.
+ *
+ * <p>By default a run is a single transaction, as before. With chunking, every transaction writes
+ * its tracking rows and uploads its CSV files on its own; a failure rolls back and removes the
+ * files of the failing chunk only, while the chunks committed before it are kept and not synced
+ * again by the next run.
+ *
+ * <p>Configuration:
+ *
+ * <ul>
+ *   <li><code>sync.transaction.per-country</code> - commit every country in its own transaction
+ *       (default: <code>false</code>).
+ *   <li><code>sync.transaction.chunk-size</code> - commit at most this many rows per transaction
+ *       (default: <code>0</code>, unlimited). Implies <code>per-country</code>. A country that
+ *       needs several chunks is uploaded as several files, numbered with a {@code _part<n>} suffix
+ *       before the extension.
+ *   <li><code>sync.diff.streaming-page-size</code> - number of changed rows collected from a
+ *       streaming diff before they are synced (default: <code>10000</code>). A stream with more
+ *       changed rows is synced page by page, every page as a batch labeled {@code page<n>}.
+ * </ul>
+ *
+ * <p>Callers that sync several batches within one hour, e.g. the change journal or the CDC sync,
+ * pass a batch label that is unique per batch. It is added to every file name as {@code _<batch>}
+ * before the part suffix, so a batch never overwrites the files of an earlier batch whose rows are
+ * already committed as synced.
+ */
+@Component
+public class SyncChunker {
+
+  /** Commit every country separately (<code>sync.transaction.per-country</code>). */
+  @Value("${sync.transaction.per-country:false}")
+  private boolean perCountry;
+
+  /** Maximum rows per transaction (<code>sync.transaction.chunk-size</code>), 0 for unlimited. */
+  @Value("${sync.transaction.chunk-size:0}")
+  private int chunkSize;
+
+  /** Changed rows per page of a stream (<code>sync.diff.streaming-page-size</code>). */
+  @Value("${sync.diff.streaming-page-size:10000}")
+  private int pageSize = 10000;
+
+  /**
+   * Consume a stream of changed rows page by page, so that at most one page is held in memory.
+   *
+   * <p>Every page is handed to {@code sink} with its batch label before the next page is read from
+   * the stream. A stream that fits into one page is synced without a label, as a list would be;
+   * otherwise the pages are labeled {@code page1}, {@code page2}, ... An empty stream is handed on
+   * as one empty page.
+   *
+   * @param rows changed rows; consumed once
+   * @param sink syncs one page with the given batch label
+   */
+  public <T> void page(Stream<T> rows, BiConsumer<List<T>, String> sink) {
+    Iterator<T> iterator = rows.iterator();
+    int page = 0;
+    do {
+      List<T> pageRows = new ArrayList<>();
+      while (pageRows.size() < pageSize && iterator.hasNext()) {
+        pageRows.add(iterator.next());
+      }
+      page++;
+      sink.accept(pageRows, page == 1 && !iterator.hasNext() ? "" : "page" + page);
+    } while (iterator.hasNext());
+  }
+
+  /**
+   * Split the rows of a run into transactions.
+   *
+   * @param byCountry changed rows grouped by country
+   * @return one list of parts per transaction, in country order; every part is exported to its own
+   *     files
+   */
+  public <T> List<List<Part<T>>> split(Map<String, List<T>> byCountry) {
+    return split(byCountry, "");
+  }
+
+  /**
+   * Split the rows of one batch into transactions.
+   *
+   * @param byCountry changed rows grouped by country
+   * @param batch label of the batch, added to every file name; empty for none
+   * @return one list of parts per transaction, in country order; every part is exported to its own
+   *     files
+   */
+  public <T> List<List<Part<T>>> split(Map<String, List<T>> byCountry, String batch) {
+    String batchSuffix = batch.isEmpty() ? "" : "_" + batch;
+    List<List<Part<T>>> chunks = new ArrayList<>();
+    if (!perCountry && chunkSize <= 0) {
+      List<Part<T>> all = new ArrayList<>();
+      byCountry.forEach((country, rows) -> all.add(new Part<>(country, batchSuffix, rows)));
+      chunks.add(all);
+      return chunks;
+    }
+    new TreeMap<>(byCountry)
+        .forEach(
+            (country, rows) -> {
+              int size = chunkSize > 0 ? chunkSize : rows.size();
+              int parts = (rows.size() + size - 1) / size;
+              for (int part = 0; part < parts; part++) {
+                chunks.add(
+                    List.of(
+                        new Part<>(
+                            country,
+                            parts == 1 ? batchSuffix : batchSuffix + "_part" + (part + 1),
+                            rows.subList(part * size, Math.min(rows.size(), (part + 1) * size)))));
+              }
+            });
+    return chunks;
+  }
+
+  /**
+   * Rows of one country exported together.
+   *
+   * @param country country of the rows
+   * @param fileSuffix appended to the file names before the extension: the batch label and, if the
+   *     country is split into several parts, the part number; empty for neither
+   * @param rows rows of the part
+   */
+  public record Part<T>(String country, String fileSuffix, List<T> rows) {}
+}
@@ -1,17 +1,42 @@
 package com.example.s3sync.service;
 
+import com.example.s3sync.domain.ChangeJournalEntry;
 import com.example.s3sync.domain.Customer;
+import com.example.s3sync.domain.CustomerColumn;
+import com.example.s3sync.domain.HashAlgorithm;
 import com.example.s3sync.domain.Order;
+import com.example.s3sync.domain.SyncWatermark;
 import com.example.s3sync.domain.SyncedCustomerHash;
 import com.example.s3sync.domain.SyncedOrderHash;
+import com.example.s3sync.dto.CustomerWithSyncedHash;
+import com.example.s3sync.dto.UnsyncedCustomer;
+import com.example.s3sync.dto.UnsyncedOrder;
+import com.example.s3sync.repository.ChangeJournalRepository;
 import com.example.s3sync.repository.CustomerRepository;
 import com.example.s3sync.repository.OrderRepository;
+import com.example.s3sync.repository.SyncWatermarkRepository;
 import com.example.s3sync.repository.SyncedCustomerHashRepository;
 import com.example.s3sync.repository.SyncedOrderHashRepository;
+import jakarta.annotation.PostConstruct;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 
 /**
@@ -25,45 +50,204 @@ import org.springframework.stereotype.Service;
  *   <li>Compare computed values against persisted sync markers stored in {@code synced_kunde_hash}
  *       / {@code synced_auftrag_hash}.
  *   <li>Return lists of entities that are either missing in the tracking table or whose computed
- *       marker differs from the persisted value.
+ *       marker differs from the persisted value, each paired with its current hash ({@link
+ *       UnsyncedCustomer}, {@link UnsyncedOrder}) so the sync services do not hash it again.
  * </ul>
  *
+ * <p>Stored hashes are compared with the {@link HashAlgorithm} they were computed with, so a change
+ * of <code>sync.hash.algorithm</code> does not trigger a full re-export.
+ *
+ * <p>For changed customers the per-column fingerprints are compared as well to report the changed
+ * {@link CustomerColumn}s. {@link DiffMode#IN_DATABASE} and {@link DiffMode#SNAPSHOT} do not load
+ * the stored fingerprints and report all columns as changed.
+ *
  * <p>Important: these helper methods only detect and return changed rows. They do not persist
  * tracking entries themselves
+ *
+ * <p>Configuration:
+ *
+ * <ul>
+ *   <li><code>sync.diff.mode</code> - {@link DiffMode} used to detect unsynced customers (default:
+ *       <code>per-row</code>).
+ *   <li><code>sync.journal.batch-size</code> - number of change journal entries consumed per batch
+ *       when the trigger-based change journal is used (default: <code>1000</code>).
+ *   <li><code>sync.watermark.overlap</code> - window below the order high-water mark that is
+ *       re-read on every watermark sync to catch late commits and clock skew (default: <code>5m
+ *       </code>).
+ *   <li><code>sync.diff.order-filter.enabled</code> - consult the {@link SyncedOrderIdFilter} Bloom
+ *       filter before looking up order tracking entries (default: <code>false</code>).
+ * </ul>
  */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class SyncDiffService {
 
+  /** Journal table name of customer changes. */
+  static final String CUSTOMER_TABLE = "kunde";
+
+  /** Journal table name of order changes. */
+  static final String ORDER_TABLE = "auftraege";
+
+  /** Maximum number of ids verified against the tracking table per query. */
+  static final int ORDER_LOOKUP_BATCH_SIZE = 1000;
+
   private final CustomerRepository customerRepository;
   private final OrderRepository orderRepository;
   private final SyncedCustomerHashRepository syncedCustomerHashRepository;
   private final SyncedOrderHashRepository syncedOrderHashRepository;
   private final HashService hashService;
+  private final ChangeJournalRepository changeJournalRepository;
+  private final SyncWatermarkRepository syncWatermarkRepository;
+  private final CustomerHashSnapshot customerHashSnapshot;
+  private final SyncedOrderIdFilter syncedOrderIdFilter;
+  private final CustomerBucketTree customerBucketTree;
+
+  /** Strategy used to detect unsynced customers (<code>sync.diff.mode</code>). */
+  @Value("${sync.diff.mode:per-row}")
+  private DiffMode diffMode = DiffMode.PER_ROW;
+
+  /** Number of change journal entries read per batch (<code>sync.journal.batch-size</code>). */
+  @Value("${sync.journal.batch-size:1000}")
+  private int journalBatchSize = 1000;
+
+  /** Re-read window below the order high-water mark (<code>sync.watermark.overlap</code>). */
+  @Value("${sync.watermark.overlap:5m}")
+  private Duration watermarkOverlap = Duration.ofMinutes(5);
+
+  /**
+   * Skip tracking lookups of definitely new orders (<code>sync.diff.order-filter.enabled</code>).
+   */
+  @Value("${sync.diff.order-filter.enabled:false}")
+  private boolean orderFilterEnabled;
+
+  /**
+   * Fail fast on a configuration that would re-export every customer: {@link DiffMode#IN_DATABASE}
+   * and {@link DiffMode#MERKLE} compare against SHA-256 hashes computed by Postgres, so new hashes
+   * must be SHA-256 as well.
+   */
+  @PostConstruct
+  void checkHashAlgorithm() {
+    if ((diffMode == DiffMode.IN_DATABASE || diffMode == DiffMode.MERKLE)
+        && hashService.algorithm() != HashAlgorithm.SHA256) {
+      throw new IllegalStateException(
+          "sync.diff.mode="
+              + diffMode.name().toLowerCase().replace('_', '-')
+              + " requires sync.hash.algorithm=sha256, got "
+              + hashService.algorithm());
+    }
+  }
 
   /**
    * Return a list of customers that should be synchronized.
    *
    * <p>This method iterates over all customers and computes a stable row-hash. If no entry exists
    * in the sync-tracking repository or the stored hash does not match the computed one, the
-   * customer is included in the returned list.
+   * customer is included in the returned list. How customers and stored hashes are loaded depends
+   * on the configured {@link DiffMode}.
    *
    * <p>Note: the method does not mutate the tracking table
    *
-   * @return list of {@link Customer} entities that require synchronization
+   * @return customers that require synchronization, with their current row hash
    */
-  public List<Customer> getUnsyncedCustomers() {
-    log.info("Checking for unsynced customers");
-    List<Customer> unsyncedCustomers = new ArrayList<>();
-    List<Customer> allCustomers = customerRepository.findAll();
+  public List<UnsyncedCustomer> getUnsyncedCustomers() {
+    log.info("Checking for unsynced customers (mode {})", diffMode);
+    List<UnsyncedCustomer> unsyncedCustomers =
+        switch (diffMode) {
+          case PER_ROW -> getUnsyncedCustomersPerRow();
+          case SET_BASED -> getUnsyncedCustomersSetBased();
+          case IN_DATABASE -> getUnsyncedCustomersInDatabase();
+          case SNAPSHOT -> getUnsyncedCustomersFromSnapshot();
+          case MERKLE -> getUnsyncedCustomersFromBuckets();
+        };
+    log.info("Found {} unsynced customers", unsyncedCustomers.size());
+    return unsyncedCustomers;
+  }
+
+  /**
+   * Per-row detection: load all customers and query the tracking table for each of them.
+   *
+   * @return customers without tracking entry or with a differing row hash
+   */
+  private List<UnsyncedCustomer> getUnsyncedCustomersPerRow() {
+    List<UnsyncedCustomer> unsyncedCustomers = new ArrayList<>();
+    List<Customer> allCustomers = customerRepository.findAllUnmanaged();
     for (Customer customer : allCustomers) {
-      if (!syncedCustomerHashRepository.existsById(customer.getId())
-          || !checkCustomerHash(customer)) {
-        unsyncedCustomers.add(customer);
+      UnsyncedCustomer unsynced =
+          syncedCustomerHashRepository.existsById(customer.getId())
+              ? checkCustomerHash(customer)
+              : new CustomerRowHash(customer).unsynced(null);
+      if (unsynced != null) {
+        unsyncedCustomers.add(unsynced);
+      }
+    }
+    return unsyncedCustomers;
+  }
+
+  /**
+   * Set-based detection: load all customers paired with their stored hash in one joined query and
+   * compare hashes in memory.
+   *
+   * @return customers without tracking entry or with a differing row hash
+   */
+  private List<UnsyncedCustomer> getUnsyncedCustomersSetBased() {
+    List<UnsyncedCustomer> unsyncedCustomers = new ArrayList<>();
+    for (CustomerWithSyncedHash row : customerRepository.findAllWithSyncedHash()) {
+      UnsyncedCustomer unsynced =
+          unsyncedCustomer(
+              row.customer(), row.syncedHashAlgo(), row.syncedRowHash(), row.syncedColumnHashes());
+      if (unsynced != null) {
+        unsyncedCustomers.add(unsynced);
       }
     }
-    log.info("Found {} unsynced customers", unsyncedCustomers.size());
+    return unsyncedCustomers;
+  }
+
+  /**
+   * In-database detection: Postgres computes and compares the row hashes and returns only the
+   * changed customers, which are hashed once more in Java for the tracking table. All columns are
+   * reported as changed.
+   *
+   * @return customers without tracking entry or with a differing row hash
+   */
+  private List<UnsyncedCustomer> getUnsyncedCustomersInDatabase() {
+    return customerRepository.findUnsyncedByDatabaseHash().stream()
+        .map(customer -> new CustomerRowHash(customer).unsynced(null))
+        .toList();
+  }
+
+  /**
+   * Snapshot detection: load all customers and compare their row hash against the in-memory {@link
+   * CustomerHashSnapshot} instead of querying the tracking table. The snapshot holds no column
+   * fingerprints, so all columns are reported as changed.
+   *
+   * @return customers without tracking entry or with a differing row hash
+   */
+  private List<UnsyncedCustomer> getUnsyncedCustomersFromSnapshot() {
+    List<UnsyncedCustomer> unsyncedCustomers = new ArrayList<>();
+    for (Customer customer : customerRepository.findAllUnmanaged()) {
+      CustomerRowHash rowHash = new CustomerRowHash(customer);
+      if (!customerHashSnapshot.isUnchanged(customer.getId(), rowHash)) {
+        unsyncedCustomers.add(rowHash.unsynced(null));
+      }
+    }
+    return unsyncedCustomers;
+  }
+
+  /**
+   * Merkle detection: let the {@link CustomerBucketTree} find the id ranges whose digest differs
+   * and diff only the customers of those ranges, one range at a time.
+   *
+   * @return customers without tracking entry or with a differing row hash
+   */
+  private List<UnsyncedCustomer> getUnsyncedCustomersFromBuckets() {
+    List<UnsyncedCustomer> unsyncedCustomers = new ArrayList<>();
+    for (long bucket : customerBucketTree.findChangedBuckets()) {
+      unsyncedCustomers.addAll(
+          filterUnsyncedCustomers(
+              customerRepository.findByIdGreaterThanEqualAndIdLessThanOrderByIdAsc(
+                  CustomerBucketTree.firstId(bucket), CustomerBucketTree.endId(bucket))));
+    }
     return unsyncedCustomers;
   }
 
@@ -75,15 +259,23 @@ public class SyncDiffService {
    *
    * <p>As with customers, this method does not persist tracking markers
    *
-   * @return list of {@link Order} entities that require synchronization
+   * @return orders that require synchronization, with their current marker hash
    */
-  public List<Order> getUnsyncedOrders() {
+  public List<UnsyncedOrder> getUnsyncedOrders() {
     log.info("Checking for unsynced orders");
-    List<Order> unsyncedOrders = new ArrayList<>();
-    List<Order> allOrders = orderRepository.findAll();
-    for (Order order : allOrders) {
-      if (!syncedOrderHashRepository.existsById(order.getId()) || !checkOrderHash(order)) {
-        unsyncedOrders.add(order);
+    List<UnsyncedOrder> unsyncedOrders = new ArrayList<>();
+    List<Order> allOrders = orderRepository.findAllUnmanaged();
+    if (orderFilterEnabled) {
+      unsyncedOrders = getUnsyncedOrdersWithFilter(allOrders);
+    } else {
+      for (Order order : allOrders) {
+        UnsyncedOrder unsynced =
+            syncedOrderHashRepository.existsById(order.getId())
+                ? checkOrderHash(order)
+                : unsyncedOrder(order, null);
+        if (unsynced != null) {
+          unsyncedOrders.add(unsynced);
+        }
       }
     }
     log.info("Found {} unsynced orders", unsyncedOrders.size());
@@ -91,47 +283,420 @@ public class SyncDiffService {
   }
 
   /**
-   * Verify whether the persisted customer row hash equals the computed one.
+   * Bloom-filter detection: orders the {@link SyncedOrderIdFilter} has never seen are new and are
+   * returned without a database lookup. Only possible hits are verified against the tracking table,
+   * {@link #ORDER_LOOKUP_BATCH_SIZE} ids per query.
+   *
+   * @param orders all orders
+   * @return orders without tracking entry or with a differing marker
+   */
+  private List<UnsyncedOrder> getUnsyncedOrdersWithFilter(List<Order> orders) {
+    List<UnsyncedOrder> unsyncedOrders = new ArrayList<>();
+    List<Order> possiblySynced = new ArrayList<>();
+    for (Order order : orders) {
+      if (syncedOrderIdFilter.mightBeSynced(order.getId())) {
+        possiblySynced.add(order);
+      } else {
+        unsyncedOrders.add(unsyncedOrder(order, null));
+      }
+    }
+    log.info("Order id filter ruled out {} of {} orders", unsyncedOrders.size(), orders.size());
+    for (int from = 0; from < possiblySynced.size(); from += ORDER_LOOKUP_BATCH_SIZE) {
+      List<Order> batch =
+          possiblySynced.subList(
+              from, Math.min(from + ORDER_LOOKUP_BATCH_SIZE, possiblySynced.size()));
+      Map<String, SyncedOrderHash> storedMarkers = storedOrderMarkers(batch);
+      for (Order order : batch) {
+        SyncedOrderHash storedMarker = storedMarkers.get(order.getId());
+        syncedOrderIdFilter.recordVerification(storedMarker != null);
+        UnsyncedOrder unsynced = unsyncedOrder(order, storedMarker);
+        if (unsynced != null) {
+          unsyncedOrders.add(unsynced);
+        }
+      }
+    }
+    return unsyncedOrders;
+  }
+
+  /**
+   * Hand the orders changed since the stored high-water mark to {@code sink} and advance the mark.
+   *
+   * <p>Instead of scanning all orders, only orders whose parsed {@code lastchange} lies between the
+   * mark minus <code>sync.watermark.overlap</code> and the newest {@code lastchange} at the start
+   * of the run are loaded through the {@code sync_lastchange_ts} expression index. The overlap
+   * re-reads rows that share the mark's timestamp or were committed late with an older {@code
+   * lastchange}; such rows are dropped again by the marker comparison, so the cost is proportional
+   * to the number of recent changes. Orders with an unparseable {@code lastchange} are always
+   * compared.
+   *
+   * <p>Without a stored mark all orders are compared once. The mark is advanced to the newest
+   * {@code lastchange} only after {@code sink} returned normally, and it never moves backwards.
+   *
+   * @param sink receives the unsynced orders, e.g. {@link OrderSyncService#syncAndUpload(List)}
+   */
+  public void consumeOrdersSinceWatermark(Consumer<List<UnsyncedOrder>> sink) {
+    Long newestMicros = orderRepository.findMaxLastchangeMicros();
+    Optional<SyncWatermark> watermark = syncWatermarkRepository.findById(ORDER_TABLE);
+    Instant newest =
+        newestMicros == null ? null : Instant.EPOCH.plus(newestMicros, ChronoUnit.MICROS);
+
+    List<Order> candidates;
+    if (watermark.isEmpty() || newest == null) {
+      log.info("Checking all orders for changes, no order watermark available");
+      candidates = orderRepository.findAllUnmanaged();
+    } else {
+      Instant from = watermark.get().getHighWater().minus(watermarkOverlap);
+      log.info("Checking orders changed after {} up to {}", from, newest);
+      candidates = orderRepository.findByLastchangeWindow(from, newest);
+    }
+
+    List<UnsyncedOrder> unsyncedOrders = filterUnsyncedOrders(candidates);
+    log.info(
+        "Found {} unsynced orders among {} candidates", unsyncedOrders.size(), candidates.size());
+    if (!unsyncedOrders.isEmpty()) {
+      sink.accept(unsyncedOrders);
+    }
+
+    if (newest != null && (watermark.isEmpty() || newest.isAfter(watermark.get().getHighWater()))) {
+      syncWatermarkRepository.save(
+          SyncWatermark.builder().tableName(ORDER_TABLE).highWater(newest).build());
+      log.info("Advanced order watermark to {}", newest);
+    }
+  }
+
+  /**
+   * Return the customers among the given ids that should be synchronized.
+   *
+   * <p>Used by change-driven sources (change journal, logical replication) that already know which
+   * rows changed. The customers and their stored hashes are loaded with one query each; ids of
+   * deleted customers are ignored.
+   *
+   * @param customerIds ids of possibly changed customers
+   * @return customers without tracking entry or with a differing row hash
+   */
+  public List<UnsyncedCustomer> getUnsyncedCustomers(Collection<Long> customerIds) {
+    if (customerIds.isEmpty()) {
+      return List.of();
+    }
+    return filterUnsyncedCustomers(customerRepository.findAllById(customerIds));
+  }
+
+  /**
+   * Return the orders among the given ids that should be synchronized.
+   *
+   * <p>Counterpart of {@link #getUnsyncedCustomers(Collection)} for orders.
+   *
+   * @param orderIds ids of possibly changed orders
+   * @return orders without tracking entry or with a differing marker
+   */
+  public List<UnsyncedOrder> getUnsyncedOrders(Collection<String> orderIds) {
+    if (orderIds.isEmpty()) {
+      return List.of();
+    }
+    return filterUnsyncedOrders(orderRepository.findAllById(orderIds));
+  }
+
+  /**
+   * Consume the change journal of {@code kunde} in batches and hand the unsynced customers of each
+   * batch to {@code sink}.
+   *
+   * <p>Only customers recorded in the journal are loaded, so the cost is proportional to the number
+   * of changes instead of the table size. Journaled customers are still compared against their
+   * stored row hash, and deleted customers are skipped. A batch is acknowledged (its journal
+   * entries deleted) only after {@code sink} returned normally; if it throws, the batch stays in
+   * the journal and is retried on the next run.
+   *
+   * <p>Every batch is handed over with the label {@code journal<id>}, where {@code id} is the id of
+   * its last journal entry. The label is unique across runs, so the files of a batch never replace
+   * those of an earlier batch of the same hour.
+   *
+   * @param sink receives the unsynced customers and the label of one batch, e.g. {@link
+   *     CustomerSyncService#syncAndUpload(List, String)}
+   */
+  public void consumeJournaledCustomers(BiConsumer<List<UnsyncedCustomer>, String> sink) {
+    log.info("Consuming customer change journal");
+    int count =
+        consumeJournal(CUSTOMER_TABLE, keys -> getUnsyncedCustomers(toCustomerIds(keys)), sink);
+    log.info("Found {} unsynced customers in change journal", count);
+  }
+
+  /**
+   * Consume the change journal of {@code auftraege} in batches and hand the unsynced orders of each
+   * batch to {@code sink}.
+   *
+   * <p>Behaves like {@link #consumeJournaledCustomers(BiConsumer)}.
+   *
+   * @param sink receives the unsynced orders and the label of one batch, e.g. {@link
+   *     OrderSyncService#syncAndUpload(List, String)}
+   */
+  public void consumeJournaledOrders(BiConsumer<List<UnsyncedOrder>, String> sink) {
+    log.info("Consuming order change journal");
+    int count = consumeJournal(ORDER_TABLE, this::getUnsyncedOrders, sink);
+    log.info("Found {} unsynced orders in change journal", count);
+  }
+
+  /**
+   * Read journal batches of the given table until it is drained.
+   *
+   * @param table source table name
+   * @param diff loads the rows for the journaled keys and keeps the unsynced ones
+   * @param sink receives the unsynced rows and the label of every non-empty batch
+   * @return total number of unsynced rows handed to {@code sink}
+   */
+  private <T> int consumeJournal(
+      String table, Function<List<String>, List<T>> diff, BiConsumer<List<T>, String> sink) {
+    int count = 0;
+    List<ChangeJournalEntry> batch;
+    while (!(batch =
+            changeJournalRepository.findByTableNameOrderByIdAsc(table, Limit.of(journalBatchSize)))
+        .isEmpty()) {
+      List<T> unsynced =
+          diff.apply(batch.stream().map(ChangeJournalEntry::getRowKey).distinct().toList());
+      if (!unsynced.isEmpty()) {
+        sink.accept(unsynced, "journal" + batch.getLast().getId());
+      }
+      changeJournalRepository.deleteAllByIdInBatch(
+          batch.stream().map(ChangeJournalEntry::getId).toList());
+      count += unsynced.size();
+    }
+    return count;
+  }
+
+  /**
+   * Keep the customers without tracking entry or with a differing row hash, looking up all stored
+   * hashes with one query.
+   *
+   * @param customers candidate customers
+   * @return customers that require synchronization, with their current row hash
+   */
+  List<UnsyncedCustomer> filterUnsyncedCustomers(List<Customer> customers) {
+    Map<Long, SyncedCustomerHash> storedHashes =
+        syncedCustomerHashRepository
+            .findAllById(customers.stream().map(Customer::getId).toList())
+            .stream()
+            .collect(Collectors.toMap(SyncedCustomerHash::getKundenId, Function.identity()));
+    List<UnsyncedCustomer> unsyncedCustomers = new ArrayList<>();
+    for (Customer customer : customers) {
+      SyncedCustomerHash storedHash = storedHashes.get(customer.getId());
+      UnsyncedCustomer unsynced =
+          storedHash == null
+              ? new CustomerRowHash(customer).unsynced(null)
+              : unsyncedCustomer(
+                  customer,
+                  storedHash.getHashAlgo(),
+                  storedHash.getRowHash(),
+                  storedHash.getColumnHashes());
+      if (unsynced != null) {
+        unsyncedCustomers.add(unsynced);
+      }
+    }
+    return unsyncedCustomers;
+  }
+
+  /**
+   * Keep the orders without tracking entry or with a differing marker, looking up all stored
+   * markers with one query.
+   *
+   * @param orders candidate orders
+   * @return orders that require synchronization, with their current marker hash
+   */
+  List<UnsyncedOrder> filterUnsyncedOrders(List<Order> orders) {
+    Map<String, SyncedOrderHash> storedMarkers = storedOrderMarkers(orders);
+    List<UnsyncedOrder> unsyncedOrders = new ArrayList<>();
+    for (Order order : orders) {
+      UnsyncedOrder unsynced = unsyncedOrder(order, storedMarkers.get(order.getId()));
+      if (unsynced != null) {
+        unsyncedOrders.add(unsynced);
+      }
+    }
+    return unsyncedOrders;
+  }
+
+  /**
+   * Load the stored markers of the given orders with one query.
+   *
+   * @param orders orders to look up
+   * @return tracking entries by order id; orders without tracking entry are absent
+   */
+  private Map<String, SyncedOrderHash> storedOrderMarkers(List<Order> orders) {
+    return syncedOrderHashRepository
+        .findAllById(orders.stream().map(Order::getId).toList())
+        .stream()
+        .collect(Collectors.toMap(SyncedOrderHash::getOrderId, Function.identity()));
+  }
+
+  /**
+   * Convert journal row keys of {@code kunde} to customer ids.
+   *
+   * @param keys journaled {@code kundenid} values as text
+   * @return customer ids
+   */
+  private static List<Long> toCustomerIds(List<String> keys) {
+    return keys.stream().map(Long::valueOf).toList();
+  }
+
+  /**
+   * Compare the persisted customer row hash with the computed one.
    *
    * <p>This method expects a tracking entry to exist for the provided customer's id; otherwise
    * {@link java.util.NoSuchElementException} will be thrown by the underlying repository call.
    *
    * @param customer the customer to check
-   * @return {@code true} when the stored hash matches the computed hash, {@code false} otherwise
+   * @return the customer with its current row hash when the hashes differ, {@code null} otherwise
    * @throws java.util.NoSuchElementException if no tracking entry exists for the given customer id
    */
-  private boolean checkCustomerHash(Customer customer) {
-    String hash =
-        hashService.customerRowHash(
-            customer.getFirmenname(),
-            customer.getStrasse(),
-            customer.getStrassenzusatz(),
-            customer.getOrt(),
-            customer.getLand(),
-            customer.getPlz(),
-            customer.getVorname(),
-            customer.getNachname(),
-            customer.getEmail(),
-            customer.getId().toString());
+  private UnsyncedCustomer checkCustomerHash(Customer customer) {
     SyncedCustomerHash syncedHash =
         syncedCustomerHashRepository.findById(customer.getId()).orElseThrow();
-    return syncedHash.getRowHash().equals(hash);
+    return unsyncedCustomer(
+        customer, syncedHash.getHashAlgo(), syncedHash.getRowHash(), syncedHash.getColumnHashes());
+  }
+
+  /**
+   * Compare a stored row hash with the customer's current row hash, computed with the algorithm of
+   * the stored hash.
+   *
+   * @param customer the customer to check
+   * @param storedAlgorithm algorithm of the stored hash
+   * @param storedHash stored row hash, {@code null} when the customer has never been synced
+   * @param storedColumnHashes stored column fingerprints, may be {@code null}
+   * @return the customer with its current row hash, or {@code null} when it is unchanged
+   */
+  private UnsyncedCustomer unsyncedCustomer(
+      Customer customer,
+      HashAlgorithm storedAlgorithm,
+      byte[] storedHash,
+      byte[] storedColumnHashes) {
+    CustomerRowHash rowHash = new CustomerRowHash(customer);
+    if (storedHash != null && Arrays.equals(storedHash, rowHash.apply(storedAlgorithm))) {
+      return null;
+    }
+    return rowHash.unsynced(storedColumnHashes);
+  }
+
+  /**
+   * Compare current and stored column fingerprints.
+   *
+   * @param columnHashes current fingerprints
+   * @param storedColumnHashes stored fingerprints, {@code null} when unknown
+   * @return columns whose fingerprints differ; all columns when the stored fingerprints are missing
+   *     or were written for a different column layout
+   */
+  static Set<CustomerColumn> changedColumns(byte[] columnHashes, byte[] storedColumnHashes) {
+    if (storedColumnHashes == null || storedColumnHashes.length != columnHashes.length) {
+      return EnumSet.allOf(CustomerColumn.class);
+    }
+    Set<CustomerColumn> changed = EnumSet.noneOf(CustomerColumn.class);
+    for (CustomerColumn column : CustomerColumn.values()) {
+      int from = column.ordinal() * CustomerColumn.FINGERPRINT_LENGTH;
+      int to = from + CustomerColumn.FINGERPRINT_LENGTH;
+      if (!Arrays.equals(columnHashes, from, to, storedColumnHashes, from, to)) {
+        changed.add(column);
+      }
+    }
+    return changed;
+  }
+
+  /**
+   * Compare a stored order marker with the order's current marker, computed with the algorithm of
+   * the stored marker.
+   *
+   * <p>When the stored marker was computed with the configured algorithm, the comparison marker is
+   * returned as the current marker instead of hashing again.
+   *
+   * @param order the order to check
+   * @param storedMarker tracking entry of the order, {@code null} when it has never been synced
+   * @return the order with its current marker hash, or {@code null} when it is unchanged
+   */
+  private UnsyncedOrder unsyncedOrder(Order order, SyncedOrderHash storedMarker) {
+    HashAlgorithm algorithm = hashService.algorithm();
+    if (storedMarker == null) {
+      return new UnsyncedOrder(
+          order, hashService.orderMarkerHash(algorithm, order.getLastchange()));
+    }
+    byte[] markerHash =
+        hashService.orderMarkerHash(storedMarker.getHashAlgo(), order.getLastchange());
+    if (Arrays.equals(storedMarker.getMarkerHash(), markerHash)) {
+      return null;
+    }
+    if (storedMarker.getHashAlgo() != algorithm) {
+      markerHash = hashService.orderMarkerHash(algorithm, order.getLastchange());
+    }
+    return new UnsyncedOrder(order, markerHash);
   }
 
   /**
-   * Verify whether the persisted order marker equals the computed marker.
+   * Compare the persisted order marker with the computed marker.
    *
    * <p>As above, a missing tracking entry will cause the repository call to throw {@link
    * java.util.NoSuchElementException}.
    *
    * @param order the order to check
-   * @return {@code true} when the stored marker matches the computed marker, {@code false}
-   *     otherwise
+   * @return the order with its current marker hash when the markers differ, {@code null} otherwise
    * @throws java.util.NoSuchElementException if no tracking entry exists for the given order id
    */
-  private boolean checkOrderHash(Order order) {
-    String hash = hashService.orderMarkerHash(order.getLastchange());
+  private UnsyncedOrder checkOrderHash(Order order) {
     SyncedOrderHash syncedHash = syncedOrderHashRepository.findById(order.getId()).orElseThrow();
-    return syncedHash.getMarkerHash().equals(hash);
+    return unsyncedOrder(order, syncedHash);
+  }
+
+  /**
+   * Current row hash of one customer, computed lazily with {@link HashService#customerRowHash} and
+   * reused while the same algorithm is requested again.
+   *
+   * <p>The diff hashes with the algorithm of the stored hash and the sync persists a hash of the
+   * configured algorithm. Both are the same unless <code>sync.hash.algorithm</code> was changed, so
+   * a changed customer is hashed exactly once per run.
+   */
+  private final class CustomerRowHash implements Function<HashAlgorithm, byte[]> {
+
+    private final Customer customer;
+    private HashAlgorithm algorithm;
+    private byte[] rowHash;
+
+    CustomerRowHash(Customer customer) {
+      this.customer = customer;
+    }
+
+    @Override
+    public byte[] apply(HashAlgorithm requested) {
+      if (requested != algorithm) {
+        rowHash =
+            hashService.customerRowHash(
+                requested,
+                customer.getFirmenname(),
+                customer.getStrasse(),
+                customer.getStrassenzusatz(),
+                customer.getOrt(),
+                customer.getLand(),
+                customer.getPlz(),
+                customer.getVorname(),
+                customer.getNachname(),
+                customer.getEmail(),
+                customer.getId().toString());
+        algorithm = requested;
+      }
+      return rowHash;
+    }
+
+    /**
+     * Pair the changed customer with its hashes. Only called once the row hash is known to differ,
+     * so when no column fingerprint differs, e.g. after a fingerprint collision or a change of the
+     * not exported e-mail, every column is reported as changed and the customer is exported in full
+     * rather than as an empty delta.
+     *
+     * @param storedColumnHashes stored column fingerprints, {@code null} for a new customer
+     * @return the customer paired with its row hash of the configured algorithm, its column
+     *     fingerprints and the columns that changed
+     */
+    UnsyncedCustomer unsynced(byte[] storedColumnHashes) {
+      byte[] columnHashes = hashService.customerColumnHashes(customer);
+      Set<CustomerColumn> changedColumns = changedColumns(columnHashes, storedColumnHashes);
+      return new UnsyncedCustomer(
+          customer,
+          apply(hashService.algorithm()),
+          columnHashes,
+          changedColumns.isEmpty() ? EnumSet.allOf(CustomerColumn.class) : changedColumns);
+    }
   }
 }
@@ -0,0 +1,131 @@
+package com.example.s3sync.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Startup check of the indexes the sync queries rely on.
+ *
+ * <p>The indexes are created by the schema migration {@code V2__sync_indexes.sql}. Once the
+ * application is ready the check reads {@code pg_stat_user_indexes} and logs
+ *
+ * <ul>
+ *   <li>a warning for every index that is missing, e.g. because it was dropped or an earlier {@code
+ *       CREATE INDEX CONCURRENTLY} failed, or that is invalid,
+ *   <li>an info message for every index that has not been scanned since the statistics were last
+ *       reset. Such an index only costs writes; it is expected for features that are switched off,
+ *       e.g. the {@code lastchange} index without <code>sync.watermark.enabled</code>.
+ * </ul>
+ *
+ * <p>The check never fails the startup; errors reading the catalog are logged.
+ *
+ * <p>Configuration:
+ *
+ * <ul>
+ *   <li><code>sync.index-check.enabled</code> - run the check on startup (default: <code>true
+ *       </code>).
+ * </ul>
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SyncIndexCheck {
+
+  /** Indexes the sync queries rely on. */
+  static final List<SyncIndex> EXPECTED_INDEXES =
+      List.of(
+          new SyncIndex("auftraege_kundeid_idx", "auftraege", "order-to-customer join"),
+          new SyncIndex("kunde_land_idx", "kunde", "country grouping"),
+          new SyncIndex("auftraege_lastchange_ts_idx", "auftraege", "lastchange ranges"));
+
+  private static final String INDEX_STATS =
+      "SELECT s.indexrelname, s.idx_scan, i.indisvalid FROM pg_stat_user_indexes s"
+          + " JOIN pg_index i ON i.indexrelid = s.indexrelid"
+          + " WHERE s.schemaname = current_schema() AND s.relname IN ('kunde', 'auftraege')";
+
+  private final JdbcTemplate jdbcTemplate;
+
+  /** Run the check on startup (<code>sync.index-check.enabled</code>). */
+  @Value("${sync.index-check.enabled:true}")
+  private boolean enabled = true;
+
+  /** Log the findings of the check once the application is ready. */
+  @EventListener(ApplicationReadyEvent.class)
+  public void checkOnStartup() {
+    if (!enabled) {
+      return;
+    }
+    try {
+      List<String> findings = check();
+      if (findings.isEmpty()) {
+        log.info("All {} sync indexes are present and in use", EXPECTED_INDEXES.size());
+      }
+    } catch (DataAccessException e) {
+      log.warn("Could not check the sync indexes: {}", e.getMessage());
+    }
+  }
+
+  /**
+   * Compare the expected indexes with the catalog and log every finding.
+   *
+   * @return one message per missing, invalid or unused index
+   */
+  List<String> check() {
+    Map<String, IndexStats> stats =
+        jdbcTemplate
+            .query(
+                INDEX_STATS,
+                (rs, rowNum) -> new IndexStats(rs.getString(1), rs.getLong(2), rs.getBoolean(3)))
+            .stream()
+            .collect(Collectors.toMap(IndexStats::name, Function.identity()));
+
+    List<String> findings = new ArrayList<>();
+    for (SyncIndex index : EXPECTED_INDEXES) {
+      IndexStats stat = stats.get(index.name());
+      String finding;
+      if (stat == null) {
+        finding = "Index " + index.name() + " for the " + index.purpose() + " is missing";
+        log.warn("{} on {}; run the schema migrations or create it", finding, index.table());
+      } else if (!stat.valid()) {
+        finding = "Index " + index.name() + " for the " + index.purpose() + " is invalid";
+        log.warn("{}; drop and recreate it", finding);
+      } else if (stat.scans() == 0) {
+        finding = "Index " + index.name() + " for the " + index.purpose() + " is unused";
+        log.info("{} since the statistics were last reset", finding);
+      } else {
+        continue;
+      }
+      findings.add(finding);
+    }
+    return findings;
+  }
+
+  /**
+   * Index the sync queries rely on.
+   *
+   * @param name index name
+   * @param table indexed table
+   * @param purpose access pattern the index serves
+   */
+  record SyncIndex(String name, String table, String purpose) {}
+
+  /**
+   * Catalog state of an index.
+   *
+   * @param name index name
+   * @param scans index scans since the statistics were last reset
+   * @param valid {@code false} when a failed concurrent build left the index unusable
+   */
+  private record IndexStats(String name, long scans, boolean valid) {}
+}
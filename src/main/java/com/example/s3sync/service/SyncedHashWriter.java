@@ -0,0 +1,281 @@
+package com.example.s3sync.service;
+
+import com.example.s3sync.domain.SyncedCustomerHash;
+import com.example.s3sync.domain.SyncedOrderHash;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.function.BiConsumer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+/**
+ * Writes the tracking rows of {@link CustomerSyncService} and {@link OrderSyncService} in bulk.
+ *
+ * <p>The tracking entities have assigned ids, so a repository {@code save} issues a {@code SELECT}
+ * per row to decide between {@code INSERT} and {@code UPDATE}. This writer avoids the per-row round
+ * trips with one of two {@link WriteMode}s:
+ *
+ * <ul>
+ *   <li>{@link WriteMode#BATCH} sends one {@code INSERT ... ON CONFLICT DO UPDATE} per row and
+ *       groups the statements into batches of <code>sync.write.batch-size</code> rows, so a sync of
+ *       {@code n} rows costs {@code n / batch-size} round trips.
+ *   <li>{@link WriteMode#COPY} streams the rows as CSV into a session-local temporary table ({@code
+ *       ON COMMIT DELETE ROWS}) through the {@code COPY FROM STDIN} protocol, flushing every <code>
+ *       sync.write.batch-size</code> rows, and merges the table into the tracking table with one
+ *       {@code INSERT ... SELECT ... ON CONFLICT DO UPDATE}. The temporary table is emptied after
+ *       the merge, so several writes may share a transaction.
+ * </ul>
+ *
+ * <p>{@code last_synced_at} is set by the database. The statements bypass the persistence context
+ * and run in the caller's transaction. Callers must not hold managed tracking entities that they
+ * expect to reflect the written values.
+ *
+ * <p>Configuration:
+ *
+ * <ul>
+ *   <li><code>sync.write.mode</code> - {@link WriteMode} (default: <code>batch</code>).
+ *   <li><code>sync.write.batch-size</code> - number of rows per JDBC batch or {@code COPY} flush
+ *       (default: <code>1000</code>). With {@code reWriteBatchedInserts=true} in the JDBC URL the
+ *       driver additionally folds each batch into multi-row {@code VALUES} statements.
+ * </ul>
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SyncedHashWriter {
+
+  private static final String UPSERT_CUSTOMER_HASH =
+      "INSERT INTO synced_kunde_hash"
+          + " (kundenid, row_hash, hash_algo, column_hashes, land, last_synced_at)"
+          + " VALUES (?, ?, ?, ?, ?, now())"
+          + " ON CONFLICT (kundenid) DO UPDATE SET row_hash = EXCLUDED.row_hash,"
+          + " hash_algo = EXCLUDED.hash_algo, column_hashes = EXCLUDED.column_hashes,"
+          + " land = EXCLUDED.land, last_synced_at = EXCLUDED.last_synced_at";
+
+  private static final String UPSERT_ORDER_HASH =
+      "INSERT INTO synced_auftrag_hash (auftragid, marker_hash, hash_algo, land, last_synced_at)"
+          + " VALUES (?, ?, ?, ?, now())"
+          + " ON CONFLICT (auftragid) DO UPDATE SET marker_hash = EXCLUDED.marker_hash,"
+          + " hash_algo = EXCLUDED.hash_algo, land = EXCLUDED.land,"
+          + " last_synced_at = EXCLUDED.last_synced_at";
+
+  private static final CopyTarget CUSTOMER_COPY =
+      new CopyTarget(
+          "synced_kunde_hash",
+          "kundenid",
+          "kundenid, row_hash, hash_algo, column_hashes, land",
+          "row_hash = EXCLUDED.row_hash, hash_algo = EXCLUDED.hash_algo,"
+              + " column_hashes = EXCLUDED.column_hashes, land = EXCLUDED.land,"
+              + " last_synced_at = EXCLUDED.last_synced_at");
+
+  private static final CopyTarget ORDER_COPY =
+      new CopyTarget(
+          "synced_auftrag_hash",
+          "auftragid",
+          "auftragid, marker_hash, hash_algo, land",
+          "marker_hash = EXCLUDED.marker_hash, hash_algo = EXCLUDED.hash_algo,"
+              + " land = EXCLUDED.land, last_synced_at = EXCLUDED.last_synced_at");
+
+  private final JdbcTemplate jdbcTemplate;
+
+  /** How tracking rows are written (<code>sync.write.mode</code>). */
+  @Value("${sync.write.mode:batch}")
+  private WriteMode writeMode = WriteMode.BATCH;
+
+  /** Number of rows per JDBC batch or {@code COPY} flush (<code>sync.write.batch-size</code>). */
+  @Value("${sync.write.batch-size:1000}")
+  private int batchSize = 1000;
+
+  /**
+   * Insert or update the given customer tracking rows. {@link SyncedCustomerHash#getLastSyncedAt()}
+   * is ignored.
+   *
+   * @param hashes tracking rows to write
+   */
+  public void upsertCustomerHashes(List<SyncedCustomerHash> hashes) {
+    if (hashes.isEmpty()) {
+      return;
+    }
+    if (writeMode == WriteMode.COPY) {
+      copy(
+          CUSTOMER_COPY,
+          hashes,
+          (csv, hash) -> {
+            appendCsv(csv, hash.getKundenId());
+            appendCsv(csv, hash.getRowHash());
+            appendCsv(csv, hash.getHashAlgo().name());
+            appendCsv(csv, hash.getColumnHashes());
+            appendCsv(csv, hash.getLand());
+          });
+    } else {
+      jdbcTemplate.batchUpdate(
+          UPSERT_CUSTOMER_HASH,
+          hashes,
+          batchSize,
+          (ps, hash) -> {
+            ps.setLong(1, hash.getKundenId());
+            ps.setBytes(2, hash.getRowHash());
+            ps.setString(3, hash.getHashAlgo().name());
+            ps.setBytes(4, hash.getColumnHashes());
+            ps.setString(5, hash.getLand());
+          });
+    }
+    log.info(
+        "Upserted {} customer hashes ({}, {} rows per batch)", hashes.size(), writeMode, batchSize);
+  }
+
+  /**
+   * Insert or update the given order tracking rows. {@link SyncedOrderHash#getLastSyncedAt()} is
+   * ignored.
+   *
+   * @param hashes tracking rows to write
+   */
+  public void upsertOrderHashes(List<SyncedOrderHash> hashes) {
+    if (hashes.isEmpty()) {
+      return;
+    }
+    if (writeMode == WriteMode.COPY) {
+      copy(
+          ORDER_COPY,
+          hashes,
+          (csv, hash) -> {
+            appendCsv(csv, hash.getOrderId());
+            appendCsv(csv, hash.getMarkerHash());
+            appendCsv(csv, hash.getHashAlgo().name());
+            appendCsv(csv, hash.getLand());
+          });
+    } else {
+      jdbcTemplate.batchUpdate(
+          UPSERT_ORDER_HASH,
+          hashes,
+          batchSize,
+          (ps, hash) -> {
+            ps.setString(1, hash.getOrderId());
+            ps.setBytes(2, hash.getMarkerHash());
+            ps.setString(3, hash.getHashAlgo().name());
+            ps.setString(4, hash.getLand());
+          });
+    }
+    log.info(
+        "Upserted {} order hashes ({}, {} rows per batch)", hashes.size(), writeMode, batchSize);
+  }
+
+  /**
+   * Stream the rows into the load table of the target with {@code COPY} and merge them.
+   *
+   * @param target tracking table and its load table
+   * @param rows rows to write
+   * @param toCsv appends the CSV fields of a row, each followed by a separator
+   */
+  private <T> void copy(CopyTarget target, List<T> rows, BiConsumer<StringBuilder, T> toCsv) {
+    jdbcTemplate.execute(
+        "CREATE TEMPORARY TABLE IF NOT EXISTS "
+            + target.loadTable()
+            + " (LIKE "
+            + target.table()
+            + " INCLUDING DEFAULTS) ON COMMIT DELETE ROWS");
+
+    jdbcTemplate.execute(
+        (ConnectionCallback<Void>)
+            connection -> {
+              CopyIn copyIn =
+                  connection
+                      .unwrap(PGConnection.class)
+                      .getCopyAPI()
+                      .copyIn(
+                          "COPY "
+                              + target.loadTable()
+                              + " ("
+                              + target.columns()
+                              + ") FROM STDIN (FORMAT csv)");
+              try {
+                StringBuilder csv = new StringBuilder();
+                int buffered = 0;
+                for (T row : rows) {
+                  toCsv.accept(csv, row);
+                  csv.setCharAt(csv.length() - 1, '\n');
+                  if (++buffered == batchSize) {
+                    write(copyIn, csv);
+                    buffered = 0;
+                  }
+                }
+                write(copyIn, csv);
+                copyIn.endCopy();
+              } finally {
+                if (copyIn.isActive()) {
+                  copyIn.cancelCopy();
+                }
+              }
+              return null;
+            });
+
+    jdbcTemplate.update(
+        "INSERT INTO "
+            + target.table()
+            + " ("
+            + target.columns()
+            + ", last_synced_at) SELECT "
+            + target.columns()
+            + ", now() FROM "
+            + target.loadTable()
+            + " ON CONFLICT ("
+            + target.key()
+            + ") DO UPDATE SET "
+            + target.updates());
+    jdbcTemplate.execute("TRUNCATE " + target.loadTable());
+  }
+
+  /** Send the buffered CSV lines and clear the buffer. */
+  private static void write(CopyIn copyIn, StringBuilder csv) throws SQLException {
+    if (csv.isEmpty()) {
+      return;
+    }
+    byte[] bytes = csv.toString().getBytes(StandardCharsets.UTF_8);
+    copyIn.writeToCopy(bytes, 0, bytes.length);
+    csv.setLength(0);
+  }
+
+  /**
+   * Append one field in Postgres CSV format followed by a comma: {@code null} as an empty unquoted
+   * field, {@code bytea} in hex format and text quoted.
+   *
+   * @param csv buffer of the current line
+   * @param value field value
+   */
+  static void appendCsv(StringBuilder csv, Object value) {
+    if (value instanceof byte[] bytes) {
+      csv.append("\\x").append(HexFormat.of().formatHex(bytes));
+    } else if (value instanceof Number number) {
+      csv.append(number);
+    } else if (value != null) {
+      csv.append('"').append(value.toString().replace("\"", "\"\"")).append('"');
+    }
+    csv.append(',');
+  }
+
+  /**
+   * Tracking table written by {@link WriteMode#COPY}.
+   *
+   * @param table tracking table
+   * @param key primary key column
+   * @param columns columns loaded with {@code COPY}, in CSV order
+   * @param updates {@code SET} list applied on conflict
+   */
+  private record CopyTarget(String table, String key, String columns, String updates) {
+
+    /**
+     * @return name of the temporary table the rows are copied into
+     */
+    String loadTable() {
+      return table + "_load";
+    }
+  }
+}
@@ -0,0 +1,201 @@
+package com.example.s3sync.service;
+
+import com.example.s3sync.util.BloomFilter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Collection;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.ToDoubleFunction;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Bloom-filter prefilter over the order ids in {@code synced_auftrag_hash}.
+ *
+ * <p>{@link SyncDiffService} asks {@link #mightBeSynced(String)} before looking up an order's
+ * tracking entry: orders the filter has never seen are new and need no database lookup, only
+ * possible hits are verified. {@link OrderSyncService} calls {@link #add(Collection)} after a sync
+ * transaction committed.
+ *
+ * <p>The filter is built lazily with one streamed query, sized for twice the current number of
+ * tracking rows. Once more ids were added than it was sized for, it is rebuilt on the next lookup.
+ * Ids cannot be removed from a Bloom filter, so {@link TombstoneSyncService} calls {@link
+ * #invalidate()} after it pruned the tracking rows of deleted orders.
+ *
+ * <p>Metrics:
+ *
+ * <ul>
+ *   <li><code>sync.order.filter.size</code> - bit array size in bytes.
+ *   <li><code>sync.order.filter.entries</code> - ids added to the filter.
+ *   <li><code>sync.order.filter.expected.fpp</code> - theoretical false-positive rate.
+ *   <li><code>sync.order.filter.lookups</code> - lookups tagged with <code>result</code> {@code
+ *       negative}, {@code hit} or {@code false-positive}; the observed false-positive rate is
+ *       {@code false-positive / (false-positive + negative)}.
+ * </ul>
+ */
+@Slf4j
+@Service
+public class SyncedOrderIdFilter {
+
+  private static final int FETCH_SIZE = 10_000;
+  private static final int MIN_CAPACITY = 1024;
+
+  private final JdbcTemplate jdbcTemplate;
+  private final PlatformTransactionManager transactionManager;
+  private final Counter negatives;
+  private final Counter hits;
+  private final Counter falsePositives;
+
+  /** Target false-positive rate (<code>sync.diff.order-filter.fpp</code>). */
+  @Value("${sync.diff.order-filter.fpp:0.01}")
+  private double falsePositiveRate = 0.01;
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private BloomFilter filter;
+
+  /**
+   * Create the filter service and register its metrics.
+   *
+   * @param jdbcTemplate template used to stream the synced order ids
+   * @param transactionManager transaction manager for the read-only load transaction
+   * @param meterRegistry registry receiving the filter gauges and lookup counters
+   */
+  public SyncedOrderIdFilter(
+      JdbcTemplate jdbcTemplate,
+      PlatformTransactionManager transactionManager,
+      MeterRegistry meterRegistry) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.transactionManager = transactionManager;
+    this.negatives = lookupCounter(meterRegistry, "negative");
+    this.hits = lookupCounter(meterRegistry, "hit");
+    this.falsePositives = lookupCounter(meterRegistry, "false-positive");
+    Gauge.builder("sync.order.filter.size", this, f -> f.stat(BloomFilter::sizeInBytes))
+        .baseUnit("bytes")
+        .description("Size of the synced order id Bloom filter")
+        .register(meterRegistry);
+    Gauge.builder("sync.order.filter.entries", this, f -> f.stat(BloomFilter::size))
+        .description("Order ids added to the Bloom filter")
+        .register(meterRegistry);
+    Gauge.builder(
+            "sync.order.filter.expected.fpp",
+            this,
+            f -> f.stat(BloomFilter::expectedFalsePositiveRate))
+        .description("Theoretical false-positive rate of the Bloom filter")
+        .register(meterRegistry);
+  }
+
+  /**
+   * @param orderId order id
+   * @return {@code false} when the order definitely has no tracking entry
+   */
+  public boolean mightBeSynced(String orderId) {
+    lock.readLock().lock();
+    try {
+      if (filter != null && filter.size() <= filter.capacity()) {
+        boolean result = filter.mightContain(orderId);
+        if (!result) {
+          negatives.increment();
+        }
+        return result;
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+    load();
+    return mightBeSynced(orderId);
+  }
+
+  /**
+   * Record the outcome of verifying a possible hit against the tracking table.
+   *
+   * @param synced {@code true} when a tracking entry existed, {@code false} for a false positive
+   */
+  public void recordVerification(boolean synced) {
+    (synced ? hits : falsePositives).increment();
+  }
+
+  /**
+   * Add the ids of a committed sync. Ignored before the filter was first built.
+   *
+   * @param orderIds synced order ids
+   */
+  public void add(Collection<String> orderIds) {
+    lock.writeLock().lock();
+    try {
+      if (filter != null) {
+        orderIds.forEach(filter::put);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** Drop the filter; the next lookup rebuilds it from {@code synced_auftrag_hash}. */
+  public void invalidate() {
+    lock.writeLock().lock();
+    try {
+      filter = null;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** Build a new filter from {@code synced_auftrag_hash} unless a usable one exists. */
+  private void load() {
+    lock.writeLock().lock();
+    try {
+      if (filter != null && filter.size() <= filter.capacity()) {
+        return;
+      }
+      TransactionTemplate tx = new TransactionTemplate(transactionManager);
+      tx.setReadOnly(true);
+      filter =
+          tx.execute(
+              status -> {
+                Integer count =
+                    jdbcTemplate.queryForObject(
+                        "SELECT count(*) FROM synced_auftrag_hash", Integer.class);
+                int capacity = Math.max(MIN_CAPACITY, 2 * (count == null ? 0 : count));
+                BloomFilter bloom = new BloomFilter(capacity, falsePositiveRate);
+                JdbcTemplate streaming = new JdbcTemplate(jdbcTemplate.getDataSource());
+                streaming.setFetchSize(FETCH_SIZE);
+                streaming.query(
+                    "SELECT auftragid FROM synced_auftrag_hash",
+                    (RowCallbackHandler) rs -> bloom.put(rs.getString(1)));
+                return bloom;
+              });
+      log.info("Built order id filter with {} ids ({} bytes)", filter.size(), filter.sizeInBytes());
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Read a statistic of the current filter for a gauge.
+   *
+   * @param stat statistic to read
+   * @return the statistic, {@code 0} before the filter was built
+   */
+  private double stat(ToDoubleFunction<BloomFilter> stat) {
+    lock.readLock().lock();
+    try {
+      return filter == null ? 0 : stat.applyAsDouble(filter);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private static Counter lookupCounter(MeterRegistry meterRegistry, String result) {
+    return Counter.builder("sync.order.filter.lookups")
+        .tag("result", result)
+        .description("Lookups of the synced order id Bloom filter")
+        .register(meterRegistry);
+  }
+}
@@ -0,0 +1,253 @@
+package com.example.s3sync.service;
+
+import com.example.s3sync.dto.TombstoneCsvDto;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Service that detects deleted customers and orders and exports tombstones for them.
+ *
+ * <p>A row is deleted when its tracking entry in {@code synced_kunde_hash} / {@code
+ * synced_auftrag_hash} has no counterpart in {@code kunde} / {@code auftraege} any more. Detection
+ * and pruning happen in one statement: an anti-join ({@code NOT EXISTS}) that deletes the orphaned
+ * tracking rows and returns their key and country. Neither table is loaded into memory; only the
+ * deleted keys are transferred.
+ *
+ * <p>The tombstones are grouped by the country stored with the tracking row and uploaded as {@code
+ * <table>_deleted_<land>_<yyyyMMdd_HH>.csv}; the CDC sync appends the label of its change set, so
+ * every poll of an hour gets its own files. As in {@link CustomerSyncService} the uploads run in
+ * {@code beforeCommit} and are removed again on rollback; a failed upload rolls the deletion back,
+ * so the tombstones are detected again on the next run. Tracking rows written before the {@code
+ * land} column existed are exported under {@value #UNKNOWN_COUNTRY}.
+ *
+ * <p>After the commit the pruned keys are evicted from the in-memory state of the diff: the {@link
+ * CustomerHashSnapshot} and the {@link CustomerLandCache} drop the deleted customers, and the
+ * {@link SyncedOrderIdFilter} is rebuilt without the deleted orders on its next lookup. A
+ * re-inserted id is therefore treated as new.
+ *
+ * <p>The periodic sync scans all tracking rows. The CDC sync only checks the keys of a change set,
+ * see {@link #syncDeletedCustomers(Collection, String)} and {@link #syncDeletedOrders(Collection,
+ * String)}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TombstoneSyncService {
+
+  /** Country used for tracking rows without a stored country. */
+  static final String UNKNOWN_COUNTRY = "unknown";
+
+  private static final String DELETE_ORPHANED_CUSTOMERS =
+      "DELETE FROM synced_kunde_hash h"
+          + " WHERE NOT EXISTS (SELECT 1 FROM kunde k WHERE k.kundenid = h.kundenid)"
+          + " RETURNING CAST(h.kundenid AS text), h.land";
+
+  private static final String DELETE_ORPHANED_ORDERS =
+      "DELETE FROM synced_auftrag_hash h"
+          + " WHERE NOT EXISTS (SELECT 1 FROM auftraege a WHERE a.auftragid = h.auftragid)"
+          + " RETURNING h.auftragid, h.land";
+
+  private static final String DELETE_ORPHANED_CUSTOMERS_IN =
+      "DELETE FROM synced_kunde_hash h"
+          + " WHERE h.kundenid = ANY(?)"
+          + " AND NOT EXISTS (SELECT 1 FROM kunde k WHERE k.kundenid = h.kundenid)"
+          + " RETURNING CAST(h.kundenid AS text), h.land";
+
+  private static final String DELETE_ORPHANED_ORDERS_IN =
+      "DELETE FROM synced_auftrag_hash h"
+          + " WHERE h.auftragid = ANY(?)"
+          + " AND NOT EXISTS (SELECT 1 FROM auftraege a WHERE a.auftragid = h.auftragid)"
+          + " RETURNING h.auftragid, h.land";
+
+  private final JdbcTemplate jdbcTemplate;
+  private final CsvService csvService;
+  private final S3UploaderService s3Uploader;
+  private final CustomerBucketTree customerBucketTree;
+  private final CustomerHashSnapshot customerHashSnapshot;
+  private final CustomerLandCache customerLandCache;
+  private final SyncedOrderIdFilter syncedOrderIdFilter;
+
+  /**
+   * Prune the tracking entries of deleted customers and upload per-country tombstone CSVs.
+   *
+   * @return number of deleted customers found
+   */
+  @Transactional
+  public int syncDeletedCustomers() {
+    return pruneCustomers(handler -> jdbcTemplate.query(DELETE_ORPHANED_CUSTOMERS, handler), "");
+  }
+
+  /**
+   * Prune the tracking entries of those of the given customers that were deleted and upload
+   * per-country tombstone CSVs. Used by the CDC sync with the keys of a change set.
+   *
+   * @param kundenIds ids of changed customers
+   * @param batch label appended to the file names, unique per change set
+   * @return number of deleted customers found
+   */
+  @Transactional
+  public int syncDeletedCustomers(Collection<Long> kundenIds, String batch) {
+    if (kundenIds.isEmpty()) {
+      return 0;
+    }
+    return pruneCustomers(
+        handler ->
+            jdbcTemplate.query(
+                DELETE_ORPHANED_CUSTOMERS_IN,
+                ps ->
+                    ps.setArray(1, ps.getConnection().createArrayOf("bigint", kundenIds.toArray())),
+                handler),
+        batch);
+  }
+
+  /**
+   * Prune the tracking entries of deleted orders and upload per-country tombstone CSVs.
+   *
+   * @return number of deleted orders found
+   */
+  @Transactional
+  public int syncDeletedOrders() {
+    return pruneOrders(handler -> jdbcTemplate.query(DELETE_ORPHANED_ORDERS, handler), "");
+  }
+
+  /**
+   * Prune the tracking entries of those of the given orders that were deleted and upload
+   * per-country tombstone CSVs. Used by the CDC sync with the keys of a change set.
+   *
+   * @param orderIds ids of changed orders
+   * @param batch label appended to the file names, unique per change set
+   * @return number of deleted orders found
+   */
+  @Transactional
+  public int syncDeletedOrders(Collection<String> orderIds, String batch) {
+    if (orderIds.isEmpty()) {
+      return 0;
+    }
+    return pruneOrders(
+        handler ->
+            jdbcTemplate.query(
+                DELETE_ORPHANED_ORDERS_IN,
+                ps ->
+                    ps.setArray(1, ps.getConnection().createArrayOf("varchar", orderIds.toArray())),
+                handler),
+        batch);
+  }
+
+  /**
+   * Prune deleted customers; the bucket tree is refreshed in the transaction, the snapshot and the
+   * land cache after the commit.
+   */
+  private int pruneCustomers(Consumer<RowCallbackHandler> deleteOrphans, String batch) {
+    return syncDeleted(
+        deleteOrphans,
+        "kunde",
+        batch,
+        keys -> customerBucketTree.refresh(keys.stream().map(Long::valueOf).toList()),
+        keys -> {
+          List<Long> kundenIds = keys.stream().map(Long::valueOf).toList();
+          customerHashSnapshot.remove(kundenIds);
+          customerLandCache.invalidateAll(kundenIds);
+        });
+  }
+
+  /** Prune deleted orders; the order id filter is rebuilt after the commit. */
+  private int pruneOrders(Consumer<RowCallbackHandler> deleteOrphans, String batch) {
+    return syncDeleted(
+        deleteOrphans, "auftraege", batch, keys -> {}, keys -> syncedOrderIdFilter.invalidate());
+  }
+
+  /**
+   * Run the pruning statement and schedule the tombstone uploads in the current transaction.
+   *
+   * @param deleteOrphans runs the {@code DELETE ... RETURNING key, land} statement with the given
+   *     row handler
+   * @param table file name prefix
+   * @param batch label appended to the file names, empty for none
+   * @param onDeleted receives the keys of the pruned tracking rows inside the transaction
+   * @param afterCommit receives the keys of the pruned tracking rows after the commit
+   * @return number of tombstones
+   */
+  private int syncDeleted(
+      Consumer<RowCallbackHandler> deleteOrphans,
+      String table,
+      String batch,
+      Consumer<List<String>> onDeleted,
+      Consumer<List<String>> afterCommit) {
+    Instant deletedAt = Instant.now();
+    Map<String, List<TombstoneCsvDto>> byCountry = new HashMap<>();
+    List<String> deletedKeys = new ArrayList<>();
+    deleteOrphans.accept(
+        rs -> {
+          String land = rs.getString(2);
+          deletedKeys.add(rs.getString(1));
+          byCountry
+              .computeIfAbsent(land == null ? UNKNOWN_COUNTRY : land, k -> new ArrayList<>())
+              .add(TombstoneCsvDto.builder().id(rs.getString(1)).deletedAt(deletedAt).build());
+        });
+
+    int count = deletedKeys.size();
+    if (count == 0) {
+      log.info("No deleted rows found in {}", table);
+      return 0;
+    }
+    log.info("Found {} deleted rows in {}", count, table);
+    onDeleted.accept(deletedKeys);
+
+    String hour = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HH"));
+    String batchSuffix = batch.isEmpty() ? "" : "_" + batch;
+    Map<String, S3UploaderService.CsvContent> csvToBeUploaded = new HashMap<>();
+    byCountry.forEach(
+        (country, tombstones) ->
+            csvToBeUploaded.put(
+                table + "_deleted_" + country + "_" + hour + batchSuffix + ".csv",
+                out -> csvService.writeTombstones(tombstones.stream(), out)));
+
+    TransactionSynchronizationManager.registerSynchronization(
+        new TransactionSynchronization() {
+          List<String> uploadedCsvFiles = new ArrayList<>();
+
+          @Override
+          public void beforeCommit(boolean readOnly) {
+            for (Map.Entry<String, S3UploaderService.CsvContent> entry :
+                csvToBeUploaded.entrySet()) {
+              s3Uploader.uploadCsv(entry.getKey(), entry.getValue());
+              uploadedCsvFiles.add(entry.getKey());
+            }
+          }
+
+          @Override
+          public void afterCommit() {
+            afterCommit.accept(deletedKeys);
+          }
+
+          @Override
+          public void afterCompletion(int status) {
+            if (status == STATUS_ROLLED_BACK) {
+              for (String key : uploadedCsvFiles) {
+                try {
+                  s3Uploader.delete(key);
+                } catch (Exception ignored) {
+                  log.warn("S3 cleanup failed for {}", key);
+                }
+              }
+            }
+          }
+        });
+    return count;
+  }
+}
@@ -0,0 +1,23 @@
+package com.example.s3sync.service;
+
+/**
+ * Strategy used by {@link SyncedHashWriter} to write the tracking rows of a sync.
+ *
+ * <p>The mode is selected with the <code>sync.write.mode</code> property. Values are matched
+ * leniently, so both <code>copy</code> and <code>COPY</code> are accepted.
+ */
+public enum WriteMode {
+
+  /**
+   * Send one {@code INSERT ... ON CONFLICT DO UPDATE} per row, grouped into JDBC batches of <code>
+   * sync.write.batch-size</code> rows.
+   */
+  BATCH,
+
+  /**
+   * Stream the rows into a temporary table with {@code COPY FROM STDIN} and merge them into the
+   * tracking table with a single {@code INSERT ... SELECT ... ON CONFLICT DO UPDATE}. Intended for
+   * large backfills, e.g. the first sync of a big table or a change of the hash algorithm.
+   */
+  COPY
+}
@@ -0,0 +1,129 @@
+package com.example.s3sync.util;
+
+/**
+ * Fixed-size Bloom filter for string keys.
+ *
+ * <p>The filter answers "definitely absent" or "possibly present". Bits are kept in a {@code
+ * long[]}; the {@code k} probe positions are derived from two 64-bit hashes of the key by double
+ * hashing. Size and number of hash functions are chosen from the expected number of keys and the
+ * target false-positive probability. Adding more keys than expected raises the false-positive rate
+ * (see {@link #expectedFalsePositiveRate()}); rebuild the filter in that case.
+ *
+ * <p>The class is not thread-safe; callers synchronize access.
+ */
+public final class BloomFilter {
+
+  private final long[] bits;
+  private final long bitCount;
+  private final int hashFunctions;
+  private final int capacity;
+  private int size;
+
+  /**
+   * Create an empty filter.
+   *
+   * @param expectedKeys number of keys the filter is sized for
+   * @param falsePositiveRate target false-positive probability at {@code expectedKeys}, in (0, 1)
+   */
+  public BloomFilter(int expectedKeys, double falsePositiveRate) {
+    if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+      throw new IllegalArgumentException("False-positive rate must be in (0, 1)");
+    }
+    this.capacity = Math.max(1, expectedKeys);
+    long optimalBits =
+        (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+    this.bits = new long[(int) Math.max(1, (optimalBits + 63) >>> 6)];
+    this.bitCount = (long) bits.length << 6;
+    this.hashFunctions = Math.max(1, (int) Math.round((double) bitCount / capacity * Math.log(2)));
+  }
+
+  /**
+   * Add a key.
+   *
+   * @param key the key
+   */
+  public void put(String key) {
+    long h1 = hash1(key);
+    long h2 = hash2(key);
+    for (int i = 0; i < hashFunctions; i++) {
+      long bit = Long.remainderUnsigned(h1 + i * h2, bitCount);
+      bits[(int) (bit >>> 6)] |= 1L << bit;
+    }
+    size++;
+  }
+
+  /**
+   * @param key the key
+   * @return {@code false} when the key was definitely never added, {@code true} when it possibly
+   *     was
+   */
+  public boolean mightContain(String key) {
+    long h1 = hash1(key);
+    long h2 = hash2(key);
+    for (int i = 0; i < hashFunctions; i++) {
+      long bit = Long.remainderUnsigned(h1 + i * h2, bitCount);
+      if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return number of {@link #put} calls, i.e. an upper bound of the distinct keys
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return number of keys the filter was sized for
+   */
+  public int capacity() {
+    return capacity;
+  }
+
+  /**
+   * @return size of the bit array in bytes
+   */
+  public long sizeInBytes() {
+    return (long) bits.length * Long.BYTES;
+  }
+
+  /**
+   * Theoretical false-positive probability for the current number of keys, {@code (1 - e^(-kn/m)) ^
+   * k}.
+   *
+   * @return expected false-positive rate
+   */
+  public double expectedFalsePositiveRate() {
+    return Math.pow(1 - Math.exp(-(double) hashFunctions * size / bitCount), hashFunctions);
+  }
+
+  /** FNV-1a over the UTF-16 code units, finalized with the MurmurHash3 64-bit mixer. */
+  private static long hash1(String key) {
+    long h = 0xCBF29CE484222325L;
+    for (int i = 0; i < key.length(); i++) {
+      h = (h ^ key.charAt(i)) * 0x100000001B3L;
+    }
+    return fmix64(h);
+  }
+
+  /** Independent multiply-rotate hash over the UTF-16 code units; always odd. */
+  private static long hash2(String key) {
+    long h = 0x9E3779B97F4A7C15L ^ key.length();
+    for (int i = 0; i < key.length(); i++) {
+      h = Long.rotateLeft(h ^ key.charAt(i), 31) * 0xC2B2AE3D27D4EB4FL;
+    }
+    return fmix64(h) | 1;
+  }
+
+  private static long fmix64(long h) {
+    h ^= h >>> 33;
+    h *= 0xFF51AFD7ED558CCDL;
+    h ^= h >>> 33;
+    h *= 0xC4CEB93FE1A85EC5L;
+    h ^= h >>> 33;
+    return h;
+  }
+}
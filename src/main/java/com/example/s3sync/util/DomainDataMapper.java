@@ -1,9 +1,13 @@
 package com.example.s3sync.util;
 
 import com.example.s3sync.domain.Customer;
+import com.example.s3sync.domain.CustomerColumn;
 import com.example.s3sync.domain.Order;
 import com.example.s3sync.dto.CustomerCsvDto;
+import com.example.s3sync.dto.CustomerDeltaCsvDto;
 import com.example.s3sync.dto.OrderCsvDto;
+import java.util.List;
+import java.util.Set;
 
 /**
  * Helper for mapping domain entities to CSV DTOs.
@@ -37,6 +41,27 @@ public class DomainDataMapper {
         .build();
   }
 
+  /**
+   * Map the changed columns of a {@link Customer} to {@link CustomerDeltaCsvDto}s.
+   *
+   * @param customer domain customer to map
+   * @param changedColumns columns to export
+   * @return one DTO per changed column, in column order
+   */
+  public static List<CustomerDeltaCsvDto> customerToDeltaDtos(
+      Customer customer, Set<CustomerColumn> changedColumns) {
+    String kundenId = customer.getId().toString();
+    return changedColumns.stream()
+        .map(
+            column ->
+                CustomerDeltaCsvDto.builder()
+                    .kundenId(kundenId)
+                    .column(column.csvName())
+                    .value(column.value(customer))
+                    .build())
+        .toList();
+  }
+
   /**
    * Map an {@link Order} domain object to an {@link OrderCsvDto}.
    *
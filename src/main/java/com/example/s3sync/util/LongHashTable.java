@@ -0,0 +1,248 @@
+package com.example.s3sync.util;
+
+import java.util.Arrays;
+
+/**
+ * Compact open-addressing table mapping primitive {@code long} keys to fixed-size byte values.
+ *
+ * <p>Keys live in one {@code long[]} and values in one contiguous {@code byte[]} at {@code slot *
+ * valueLength}, so with 32-byte values an entry costs 40 bytes of payload plus the free slots kept
+ * by the load factor (at most 0.75, i.e. roughly 55 bytes per entry on average) and no object per
+ * entry. Collisions are resolved by linear probing; removals shift the following entries of the
+ * probe sequence back instead of leaving tombstones.
+ *
+ * <p>Notes:
+ *
+ * <ul>
+ *   <li>{@link Long#MIN_VALUE} marks free slots; an entry with that key is stored separately.
+ *   <li>The capacity is limited by the maximum array length of the value array (about 50 million
+ *       entries with 32-byte values).
+ *   <li>The class is not thread-safe; callers synchronize access.
+ * </ul>
+ */
+public final class LongHashTable {
+
+  /** Default length of every value in bytes (a SHA-256 digest). */
+  public static final int DEFAULT_VALUE_LENGTH = 32;
+
+  private static final long FREE = Long.MIN_VALUE;
+  private static final double MAX_LOAD = 0.75;
+  private static final int MIN_CAPACITY = 16;
+
+  private final int valueLength;
+  private long[] keys;
+  private byte[] values;
+  private int size;
+  private int threshold;
+
+  private boolean hasFreeKey;
+  private final byte[] freeKeyValue;
+
+  /**
+   * Create a table with {@link #DEFAULT_VALUE_LENGTH}-byte values sized for the expected number of
+   * entries without rehashing.
+   *
+   * @param expectedSize number of entries the table should hold before it grows
+   */
+  public LongHashTable(int expectedSize) {
+    this(expectedSize, DEFAULT_VALUE_LENGTH);
+  }
+
+  /**
+   * Create a table sized for the expected number of entries without rehashing.
+   *
+   * @param expectedSize number of entries the table should hold before it grows
+   * @param valueLength length of every value in bytes
+   */
+  public LongHashTable(int expectedSize, int valueLength) {
+    this.valueLength = valueLength;
+    this.freeKeyValue = new byte[valueLength];
+    allocate(Math.max(MIN_CAPACITY, (int) Math.ceil(expectedSize / MAX_LOAD) + 1));
+  }
+
+  /**
+   * Insert or replace the value of {@code key}.
+   *
+   * @param key the key
+   * @param value exactly {@code valueLength} bytes; copied into the table
+   */
+  public void put(long key, byte[] value) {
+    if (value.length != valueLength) {
+      throw new IllegalArgumentException("Expected " + valueLength + " bytes, got " + value.length);
+    }
+    if (key == FREE) {
+      size += hasFreeKey ? 0 : 1;
+      hasFreeKey = true;
+      System.arraycopy(value, 0, freeKeyValue, 0, valueLength);
+      return;
+    }
+    int slot = slot(key);
+    if (keys[slot] == FREE) {
+      if (size >= threshold) {
+        grow();
+        slot = slot(key);
+      }
+      keys[slot] = key;
+      size++;
+    }
+    System.arraycopy(value, 0, values, slot * valueLength, valueLength);
+  }
+
+  /**
+   * Remove {@code key} and its value.
+   *
+   * @param key the key
+   * @return {@code false} when the table held no value for {@code key}
+   */
+  public boolean remove(long key) {
+    if (key == FREE) {
+      if (!hasFreeKey) {
+        return false;
+      }
+      hasFreeKey = false;
+      size--;
+      return true;
+    }
+    int slot = slot(key);
+    if (keys[slot] == FREE) {
+      return false;
+    }
+    int capacity = keys.length;
+    int free = slot;
+    for (int next = free + 1 == capacity ? 0 : free + 1;
+        keys[next] != FREE;
+        next = next + 1 == capacity ? 0 : next + 1) {
+      int home = home(keys[next]);
+      // The entry may move into the gap unless its home slot lies cyclically in (free, next].
+      boolean reachable = free <= next ? home > free && home <= next : home > free || home <= next;
+      if (!reachable) {
+        keys[free] = keys[next];
+        System.arraycopy(values, next * valueLength, values, free * valueLength, valueLength);
+        free = next;
+      }
+    }
+    keys[free] = FREE;
+    size--;
+    return true;
+  }
+
+  /**
+   * Check whether {@code key} is present and mapped to exactly {@code value}.
+   *
+   * @param key the key
+   * @param value value to compare with
+   * @return {@code true} when the stored value equals {@code value}
+   */
+  public boolean matches(long key, byte[] value) {
+    if (key == FREE) {
+      return hasFreeKey && Arrays.equals(freeKeyValue, value);
+    }
+    int slot = slot(key);
+    if (keys[slot] == FREE) {
+      return false;
+    }
+    int offset = slot * valueLength;
+    return Arrays.equals(values, offset, offset + valueLength, value, 0, value.length);
+  }
+
+  /**
+   * Copy the value of {@code key} into {@code target}.
+   *
+   * @param key the key
+   * @param target receives the value; at least {@code valueLength} bytes
+   * @return {@code false} when the table holds no value for {@code key}; {@code target} is left
+   *     unchanged then
+   */
+  public boolean get(long key, byte[] target) {
+    if (key == FREE) {
+      if (hasFreeKey) {
+        System.arraycopy(freeKeyValue, 0, target, 0, valueLength);
+      }
+      return hasFreeKey;
+    }
+    int slot = slot(key);
+    if (keys[slot] == FREE) {
+      return false;
+    }
+    System.arraycopy(values, slot * valueLength, target, 0, valueLength);
+    return true;
+  }
+
+  /**
+   * @param key the key
+   * @return {@code true} when the table holds a value for {@code key}
+   */
+  public boolean containsKey(long key) {
+    return key == FREE ? hasFreeKey : keys[slot(key)] != FREE;
+  }
+
+  /**
+   * @return number of entries
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Find the slot holding {@code key} or the free slot where it would be inserted.
+   *
+   * @param key key other than {@link #FREE}
+   * @return slot index
+   */
+  private int slot(long key) {
+    int capacity = keys.length;
+    int slot = home(key);
+    while (keys[slot] != FREE && keys[slot] != key) {
+      slot = slot + 1 == capacity ? 0 : slot + 1;
+    }
+    return slot;
+  }
+
+  /**
+   * @param key key other than {@link #FREE}
+   * @return first slot of the probe sequence of {@code key}
+   */
+  private int home(long key) {
+    return (int) Long.remainderUnsigned(mix(key), keys.length);
+  }
+
+  /**
+   * Spread sequential ids (as produced by {@code bigserial}) over the table.
+   *
+   * @param key the key
+   * @return mixed hash of the key
+   */
+  private static long mix(long key) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return h ^ (h >>> 32);
+  }
+
+  /** Rehash all entries into a table 1.5 times as large. */
+  private void grow() {
+    long[] oldKeys = keys;
+    byte[] oldValues = values;
+    allocate(oldKeys.length + (oldKeys.length >> 1));
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] != FREE) {
+        int slot = slot(oldKeys[i]);
+        keys[slot] = oldKeys[i];
+        System.arraycopy(oldValues, i * valueLength, values, slot * valueLength, valueLength);
+      }
+    }
+  }
+
+  /**
+   * Replace the arrays with empty ones of the given capacity; {@link #size} is left unchanged.
+   *
+   * @param capacity number of slots
+   */
+  private void allocate(int capacity) {
+    if ((long) capacity * valueLength > Integer.MAX_VALUE - 8) {
+      throw new IllegalStateException("Table capacity exceeded: " + capacity);
+    }
+    keys = new long[capacity];
+    Arrays.fill(keys, FREE);
+    values = new byte[capacity * valueLength];
+    threshold = (int) (capacity * MAX_LOAD);
+  }
+}
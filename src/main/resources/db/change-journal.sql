@@ -0,0 +1,37 @@
+-- Opt-in change journal (sync.journal.enabled=true).
+-- Triggers on kunde and auftraege record the primary key of every inserted,
+-- updated or deleted row. SyncDiffService reads the journal in batches and
+-- deletes the consumed entries once the batch has been synced.
+CREATE TABLE IF NOT EXISTS sync_change_journal (
+    id bigserial PRIMARY KEY,
+    table_name varchar(63) NOT NULL,
+    row_key varchar(255) NOT NULL,
+    changed_at TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+CREATE INDEX IF NOT EXISTS sync_change_journal_table_id_idx
+    ON sync_change_journal (table_name, id);
+
+-- TG_ARGV[0] names the primary key column of the triggering table.
+CREATE OR REPLACE FUNCTION sync_record_change() RETURNS trigger
+LANGUAGE plpgsql AS $$
+BEGIN
+    IF TG_OP IN ('UPDATE', 'DELETE') THEN
+        INSERT INTO sync_change_journal (table_name, row_key)
+        VALUES (TG_TABLE_NAME, to_jsonb(OLD) ->> TG_ARGV[0]);
+    END IF;
+    IF TG_OP = 'INSERT'
+        OR (TG_OP = 'UPDATE' AND to_jsonb(NEW) ->> TG_ARGV[0] <> to_jsonb(OLD) ->> TG_ARGV[0]) THEN
+        INSERT INTO sync_change_journal (table_name, row_key)
+        VALUES (TG_TABLE_NAME, to_jsonb(NEW) ->> TG_ARGV[0]);
+    END IF;
+    RETURN NULL;
+END;
+$$;
+
+CREATE OR REPLACE TRIGGER kunde_sync_change
+    AFTER INSERT OR UPDATE OR DELETE ON kunde
+    FOR EACH ROW EXECUTE FUNCTION sync_record_change('kundenid');
+
+CREATE OR REPLACE TRIGGER auftraege_sync_change
+    AFTER INSERT OR UPDATE OR DELETE ON auftraege
+    FOR EACH ROW EXECUTE FUNCTION sync_record_change('auftragid');
@@ -0,0 +1,32 @@
+-- Indexes for the access patterns of the sync. SyncIndexCheck reports on
+-- startup if one of them is missing, invalid or unused.
+--
+-- The statements run inside the migration transaction and lock the tables
+-- against writes while the indexes are built. On large tables create them
+-- beforehand with CREATE INDEX CONCURRENTLY and the same names; the migration
+-- then skips them.
+
+-- Order-to-customer join (auftraege.kundeid -> kunde.kundenid).
+CREATE INDEX IF NOT EXISTS auftraege_kundeid_idx ON auftraege (kundeid);
+
+-- Grouping and selecting customers by country.
+CREATE INDEX IF NOT EXISTS kunde_land_idx ON kunde (land);
+
+-- lastchange ranges of the high-water-mark order sync.
+-- sync_lastchange_ts parses the varchar lastchange column as a timestamp. It is
+-- pinned to UTC and ISO date order so it is IMMUTABLE and can back an
+-- expression index; unparseable values yield NULL instead of failing.
+CREATE OR REPLACE FUNCTION sync_lastchange_ts(lastchange text) RETURNS timestamptz
+LANGUAGE plpgsql IMMUTABLE PARALLEL SAFE
+SET timezone = 'UTC'
+SET datestyle = 'ISO, YMD'
+AS $$
+BEGIN
+    RETURN CAST(lastchange AS timestamptz);
+EXCEPTION WHEN invalid_datetime_format OR datetime_field_overflow THEN
+    RETURN NULL;
+END;
+$$;
+
+CREATE INDEX IF NOT EXISTS auftraege_lastchange_ts_idx
+    ON auftraege (sync_lastchange_ts(lastchange));
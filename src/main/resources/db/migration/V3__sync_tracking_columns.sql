@@ -0,0 +1,20 @@
+-- Columns added to the tracking tables after their first release. V1 creates
+-- them for new databases only; databases taken over at baseline version 0 get
+-- them here. Adding a nullable column or one with a constant default does not
+-- rewrite the table.
+
+-- Algorithm of the stored row hash / order marker (sync.hash.algorithm).
+ALTER TABLE synced_kunde_hash
+    ADD COLUMN IF NOT EXISTS hash_algo varchar(16) NOT NULL DEFAULT 'SHA256';
+ALTER TABLE synced_auftrag_hash
+    ADD COLUMN IF NOT EXISTS hash_algo varchar(16) NOT NULL DEFAULT 'SHA256';
+
+-- Country the row was last exported under, for the tombstone CSVs
+-- (sync.deletions.enabled). Rows synced before are exported under 'unknown'.
+ALTER TABLE synced_kunde_hash ADD COLUMN IF NOT EXISTS land varchar(255);
+ALTER TABLE synced_auftrag_hash ADD COLUMN IF NOT EXISTS land varchar(255);
+
+-- Per-column fingerprints of the customer delta export
+-- (sync.export.customer-delta.enabled). Rows synced before count as changed in
+-- every column once.
+ALTER TABLE synced_kunde_hash ADD COLUMN IF NOT EXISTS column_hashes bytea;
@@ -0,0 +1,61 @@
+-- Converts the tracking hashes from hex varchar to bytea, step 2 of 3. Does
+-- nothing unless V4 added shadow columns.
+--
+-- Backfills the shadow columns in primary key order, 10000 rows per
+-- transaction, so no lock is held for longer than one batch and vacuum can
+-- keep up while the previous application version keeps syncing. Runs outside
+-- the migration transaction (see the .conf file) so that every batch commits.
+-- Safe to interrupt: after a flyway repair the next start skips the filled
+-- rows. Afterwards the check constraints are validated, which scans the tables
+-- without blocking writes.
+DO $$
+DECLARE
+    batch_size CONSTANT int := 10000;
+    last_kunde bigint;
+    next_kunde bigint;
+    last_auftrag varchar := '';
+    next_auftrag varchar;
+BEGIN
+    IF EXISTS (SELECT 1 FROM information_schema.columns
+               WHERE table_schema = current_schema()
+               AND table_name = 'synced_kunde_hash' AND column_name = 'row_hash_bin') THEN
+        last_kunde := (SELECT coalesce(min(kundenid), 0) - 1 FROM synced_kunde_hash);
+        LOOP
+            WITH batch AS (
+                SELECT kundenid FROM synced_kunde_hash
+                WHERE kundenid > last_kunde ORDER BY kundenid LIMIT batch_size
+            ), filled AS (
+                UPDATE synced_kunde_hash h SET row_hash_bin = decode(h.row_hash, 'hex')
+                FROM batch b WHERE h.kundenid = b.kundenid AND h.row_hash_bin IS NULL
+            )
+            SELECT max(kundenid) INTO next_kunde FROM batch;
+            EXIT WHEN next_kunde IS NULL;
+            last_kunde := next_kunde;
+            COMMIT;
+        END LOOP;
+        ALTER TABLE synced_kunde_hash VALIDATE CONSTRAINT synced_kunde_hash_row_hash_bin_nn;
+        COMMIT;
+    END IF;
+
+    IF EXISTS (SELECT 1 FROM information_schema.columns
+               WHERE table_schema = current_schema()
+               AND table_name = 'synced_auftrag_hash' AND column_name = 'marker_hash_bin') THEN
+        LOOP
+            WITH batch AS (
+                SELECT auftragid FROM synced_auftrag_hash
+                WHERE auftragid > last_auftrag ORDER BY auftragid LIMIT batch_size
+            ), filled AS (
+                UPDATE synced_auftrag_hash h SET marker_hash_bin = decode(h.marker_hash, 'hex')
+                FROM batch b WHERE h.auftragid = b.auftragid AND h.marker_hash_bin IS NULL
+            )
+            SELECT max(auftragid) INTO next_auftrag FROM batch;
+            EXIT WHEN next_auftrag IS NULL;
+            last_auftrag := next_auftrag;
+            COMMIT;
+        END LOOP;
+        ALTER TABLE synced_auftrag_hash
+            VALIDATE CONSTRAINT synced_auftrag_hash_marker_hash_bin_nn;
+        COMMIT;
+    END IF;
+END;
+$$;
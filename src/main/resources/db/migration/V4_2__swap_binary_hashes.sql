@@ -0,0 +1,52 @@
+-- Converts the tracking hashes from hex varchar to bytea, step 3 of 3. Swaps
+-- the shadow columns filled by V4.1 in for the hex columns.
+--
+-- Runs in one short transaction: apart from the rows written since V4.1 no
+-- table is scanned or rewritten, and SET NOT NULL relies on the validated check
+-- constraint. The exclusive locks are given up after lock_timeout instead of
+-- queueing every other access behind a long-running transaction; the
+-- migration is then repeated on the next start. Once swapped, writes of the
+-- previous application version fail and are rolled back, so stop it soon
+-- after the new version started.
+--
+-- The dropped hex columns stay on disk until the rows are rewritten; use
+-- pg_repack (online) or VACUUM FULL (exclusive lock) to reclaim the space.
+SET LOCAL lock_timeout = '10s';
+
+DO $$
+BEGIN
+    IF EXISTS (SELECT 1 FROM information_schema.columns
+               WHERE table_schema = current_schema()
+               AND table_name IN ('synced_kunde_hash', 'synced_auftrag_hash')
+               AND column_name IN ('row_hash_bin', 'marker_hash_bin')) THEN
+        LOCK TABLE synced_kunde_hash, synced_auftrag_hash IN ACCESS EXCLUSIVE MODE;
+    END IF;
+
+    IF EXISTS (SELECT 1 FROM information_schema.columns
+               WHERE table_schema = current_schema()
+               AND table_name = 'synced_kunde_hash' AND column_name = 'row_hash_bin') THEN
+        UPDATE synced_kunde_hash SET row_hash_bin = decode(row_hash, 'hex')
+        WHERE row_hash_bin IS NULL;
+        DROP TRIGGER synced_kunde_hash_decode ON synced_kunde_hash;
+        ALTER TABLE synced_kunde_hash DROP COLUMN row_hash;
+        ALTER TABLE synced_kunde_hash RENAME COLUMN row_hash_bin TO row_hash;
+        ALTER TABLE synced_kunde_hash ALTER COLUMN row_hash SET NOT NULL;
+        ALTER TABLE synced_kunde_hash DROP CONSTRAINT synced_kunde_hash_row_hash_bin_nn;
+    END IF;
+
+    IF EXISTS (SELECT 1 FROM information_schema.columns
+               WHERE table_schema = current_schema()
+               AND table_name = 'synced_auftrag_hash' AND column_name = 'marker_hash_bin') THEN
+        UPDATE synced_auftrag_hash SET marker_hash_bin = decode(marker_hash, 'hex')
+        WHERE marker_hash_bin IS NULL;
+        DROP TRIGGER synced_auftrag_hash_decode ON synced_auftrag_hash;
+        ALTER TABLE synced_auftrag_hash DROP COLUMN marker_hash;
+        ALTER TABLE synced_auftrag_hash RENAME COLUMN marker_hash_bin TO marker_hash;
+        ALTER TABLE synced_auftrag_hash ALTER COLUMN marker_hash SET NOT NULL;
+        ALTER TABLE synced_auftrag_hash DROP CONSTRAINT synced_auftrag_hash_marker_hash_bin_nn;
+    END IF;
+END;
+$$;
+
+DROP FUNCTION IF EXISTS sync_decode_row_hash();
+DROP FUNCTION IF EXISTS sync_decode_marker_hash();
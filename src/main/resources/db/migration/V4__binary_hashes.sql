@@ -0,0 +1,63 @@
+-- Converts the tracking hashes of databases created before the switch from hex
+-- varchar to raw bytea digests, step 1 of 3. Does nothing where the columns are
+-- bytea already, e.g. on databases created by V1.
+--
+-- Empty tables are converted in place with a single ALTER. Filled tables are
+-- converted online while the previous application version keeps syncing: this
+-- step adds a bytea shadow column, a trigger that fills it on every insert and
+-- update, and a NOT VALID check constraint so that the swap in V4.2 can set the
+-- column NOT NULL without a table scan. It only takes brief locks. V4.1
+-- backfills the shadow columns in batches, V4.2 swaps them in.
+CREATE OR REPLACE FUNCTION sync_decode_row_hash() RETURNS trigger
+LANGUAGE plpgsql AS $$
+BEGIN
+    NEW.row_hash_bin := decode(NEW.row_hash, 'hex');
+    RETURN NEW;
+END;
+$$;
+
+CREATE OR REPLACE FUNCTION sync_decode_marker_hash() RETURNS trigger
+LANGUAGE plpgsql AS $$
+BEGIN
+    NEW.marker_hash_bin := decode(NEW.marker_hash, 'hex');
+    RETURN NEW;
+END;
+$$;
+
+DO $$
+BEGIN
+    IF (SELECT data_type FROM information_schema.columns
+        WHERE table_schema = current_schema()
+        AND table_name = 'synced_kunde_hash' AND column_name = 'row_hash') = 'bytea' THEN
+        NULL;
+    ELSIF NOT EXISTS (SELECT 1 FROM synced_kunde_hash) THEN
+        ALTER TABLE synced_kunde_hash ALTER COLUMN row_hash TYPE bytea USING decode(row_hash, 'hex');
+    ELSE
+        ALTER TABLE synced_kunde_hash ADD COLUMN IF NOT EXISTS row_hash_bin bytea;
+        CREATE OR REPLACE TRIGGER synced_kunde_hash_decode
+            BEFORE INSERT OR UPDATE ON synced_kunde_hash
+            FOR EACH ROW EXECUTE FUNCTION sync_decode_row_hash();
+        ALTER TABLE synced_kunde_hash DROP CONSTRAINT IF EXISTS synced_kunde_hash_row_hash_bin_nn;
+        ALTER TABLE synced_kunde_hash ADD CONSTRAINT synced_kunde_hash_row_hash_bin_nn
+            CHECK (row_hash_bin IS NOT NULL) NOT VALID;
+    END IF;
+
+    IF (SELECT data_type FROM information_schema.columns
+        WHERE table_schema = current_schema()
+        AND table_name = 'synced_auftrag_hash' AND column_name = 'marker_hash') = 'bytea' THEN
+        NULL;
+    ELSIF NOT EXISTS (SELECT 1 FROM synced_auftrag_hash) THEN
+        ALTER TABLE synced_auftrag_hash
+            ALTER COLUMN marker_hash TYPE bytea USING decode(marker_hash, 'hex');
+    ELSE
+        ALTER TABLE synced_auftrag_hash ADD COLUMN IF NOT EXISTS marker_hash_bin bytea;
+        CREATE OR REPLACE TRIGGER synced_auftrag_hash_decode
+            BEFORE INSERT OR UPDATE ON synced_auftrag_hash
+            FOR EACH ROW EXECUTE FUNCTION sync_decode_marker_hash();
+        ALTER TABLE synced_auftrag_hash
+            DROP CONSTRAINT IF EXISTS synced_auftrag_hash_marker_hash_bin_nn;
+        ALTER TABLE synced_auftrag_hash ADD CONSTRAINT synced_auftrag_hash_marker_hash_bin_nn
+            CHECK (marker_hash_bin IS NOT NULL) NOT VALID;
+    END IF;
+END;
+$$;
@@ -0,0 +1,13 @@
+-- Merkle tree of customer bucket digests (sync.diff.mode=merkle). The table is
+-- only filled in merkle mode.
+-- Level 0 buckets cover 1024 consecutive kundenid values (kundenid >> 10); every
+-- level above groups 16 buckets of the level below (bucket >> 4). A level 0
+-- digest is the SHA-256 of the concatenated row hashes of its range in
+-- kundenid order, a digest above that the SHA-256 of the concatenated child
+-- digests in bucket order. Empty buckets have no row.
+CREATE TABLE IF NOT EXISTS synced_kunde_bucket (
+    level smallint NOT NULL,
+    bucket bigint NOT NULL,
+    digest bytea NOT NULL,
+    CONSTRAINT synced_kunde_bucket_pkey PRIMARY KEY (level, bucket)
+);
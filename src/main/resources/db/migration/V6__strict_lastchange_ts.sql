@@ -0,0 +1,47 @@
+-- Restricts sync_lastchange_ts (V2) to ISO 8601 timestamps.
+--
+-- The function is declared IMMUTABLE so that it can back the expression index
+-- auftraege_lastchange_ts_idx, but CAST(... AS timestamptz) also accepts the
+-- special inputs now, today, tomorrow and yesterday, whose result depends on
+-- the time of the call. An index entry computed from them silently disagrees
+-- with a later evaluation. The function now only casts values of the form
+-- YYYY-MM-DD, optionally followed by a time with seconds and fraction and by Z
+-- or a UTC offset; every other value, special inputs included, yields NULL
+-- and is treated as unparseable by the watermark sync.
+--
+-- Index entries of rows whose result changes are stale afterwards, so the
+-- index is rebuilt if such rows exist. Checking for them is a plain read of
+-- auftraege; only the rebuild locks the table against writes.
+DO $$
+DECLARE
+    iso CONSTANT text :=
+        '^\d{4}-\d{2}-\d{2}([Tt ]\d{2}:\d{2}(:\d{2}(\.\d+)?)?)? *([Zz]|[+-]\d{2}(:?\d{2})?)?$';
+    stale boolean;
+BEGIN
+    SELECT EXISTS (
+        SELECT 1 FROM auftraege
+        WHERE lastchange !~ iso AND sync_lastchange_ts(lastchange) IS NOT NULL
+    ) INTO stale;
+
+    EXECUTE format($fn$
+        CREATE OR REPLACE FUNCTION sync_lastchange_ts(lastchange text) RETURNS timestamptz
+        LANGUAGE plpgsql IMMUTABLE PARALLEL SAFE
+        SET timezone = 'UTC'
+        SET datestyle = 'ISO, YMD'
+        AS $body$
+        BEGIN
+            IF lastchange !~ %L THEN
+                RETURN NULL;
+            END IF;
+            RETURN CAST(lastchange AS timestamptz);
+        EXCEPTION WHEN invalid_datetime_format OR datetime_field_overflow THEN
+            RETURN NULL;
+        END;
+        $body$
+    $fn$, iso);
+
+    IF stale AND to_regclass('auftraege_lastchange_ts_idx') IS NOT NULL THEN
+        REINDEX INDEX auftraege_lastchange_ts_idx;
+    END IF;
+END;
+$$;
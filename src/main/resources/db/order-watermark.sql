@@ -0,0 +1,11 @@
+-- Opt-in high-water-mark order sync (sync.watermark.enabled=true).
+-- The sync_lastchange_ts function and the auftraege_lastchange_ts_idx
+-- expression index the sync queries with are created by the migration
+-- V2__sync_indexes.sql.
+
+-- Highest lastchange exported per source table.
+CREATE TABLE IF NOT EXISTS sync_watermark (
+    table_name varchar(63) PRIMARY KEY,
+    high_water TIMESTAMPTZ NOT NULL,
+    updated_at TIMESTAMPTZ NOT NULL DEFAULT now()
+);
@@ -0,0 +1,143 @@
+package com.example.s3sync.benchmark;
+
+import com.example.s3sync.domain.Customer;
+import com.example.s3sync.repository.CustomerRepository;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.List;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+/**
+ * Heap and GC benchmark of loading all customers for the diff as managed entities ({@code
+ * findAll()}) against the unmanaged constructor-expression projection of {@link
+ * CustomerRepository#findAllUnmanaged()}.
+ *
+ * <p>Not part of the test suite; it starts a Postgres container and therefore needs Docker. Run
+ * from the IDE or with:
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.example.s3sync.benchmark.DiffProjectionBenchmark
+ * </pre>
+ *
+ * <p>{@value #ROWS} customers are loaded per round inside an open session, as in the diff. For
+ * every variant the benchmark reports the bytes allocated by the loading thread, the heap retained
+ * after a full GC while the result and the session are still reachable, and the count and time of
+ * the collections during the load. Give the JVM enough heap (e.g. {@code -Xmx4g}) for the managed
+ * variant, and run each variant a few times, as the first round includes warm-up.
+ */
+public class DiffProjectionBenchmark {
+
+  private static final int ROWS = 1_000_000;
+  private static final int ROUNDS = 3;
+
+  public static void main(String[] args) throws Exception {
+    try (PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:18")) {
+      postgres.start();
+      try (Connection connection =
+              DriverManager.getConnection(
+                  postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+          Statement statement = connection.createStatement()) {
+        ScriptUtils.executeSqlScript(connection, new ClassPathResource("create_tables.sql"));
+        statement.execute(
+            "INSERT INTO kunde (vorname, nachname, email, strasse, strassenzusatz, ort, land, plz,"
+                + " firmenname) SELECT 'Jörg', 'Müller-' || i, 'kunde' || i || '@example.com',"
+                + " 'Hauptstraße ' || i, '', 'Köln', 'DE', '50667', 'Muster GmbH ' || i"
+                + " FROM generate_series(1, "
+                + ROWS
+                + ") i");
+      }
+
+      try (SessionFactory sessionFactory =
+          new Configuration()
+              .addAnnotatedClass(Customer.class)
+              .setProperty("hibernate.connection.url", postgres.getJdbcUrl())
+              .setProperty("hibernate.connection.username", postgres.getUsername())
+              .setProperty("hibernate.connection.password", postgres.getPassword())
+              .buildSessionFactory()) {
+        for (int round = 0; round < ROUNDS; round++) {
+          run(
+              "findAll",
+              sessionFactory,
+              session -> session.createQuery("from Customer c", Customer.class).getResultList());
+          run(
+              "unmanaged",
+              sessionFactory,
+              session ->
+                  session
+                      .createQuery(
+                          "select new com.example.s3sync.domain.Customer("
+                              + CustomerRepository.CUSTOMER_COLUMNS
+                              + ") from Customer c",
+                          Customer.class)
+                      .getResultList());
+        }
+      }
+    }
+  }
+
+  private static void run(String name, SessionFactory sessionFactory, Loader loader) {
+    com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    long threadId = Thread.currentThread().threadId();
+
+    try (Session session = sessionFactory.openSession()) {
+      session.beginTransaction();
+      System.gc();
+      long heapBefore = memory.getHeapMemoryUsage().getUsed();
+      long gcCountBefore = gcCount();
+      long gcTimeBefore = gcTime();
+      long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+      long start = System.nanoTime();
+
+      List<Customer> customers = loader.load(session);
+
+      long elapsed = System.nanoTime() - start;
+      long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+      long gcCount = gcCount() - gcCountBefore;
+      long gcTime = gcTime() - gcTimeBefore;
+      System.gc();
+      long retained = memory.getHeapMemoryUsage().getUsed() - heapBefore;
+      session.getTransaction().commit();
+
+      double millions = customers.size() / 1e6;
+      System.out.printf(
+          "%-10s %,9d rows %8.0f ms %,8.0f MB allocated/1M %,8.0f MB retained/1M"
+              + " %4d GCs %6d ms GC%n",
+          name,
+          customers.size(),
+          elapsed / 1e6,
+          allocated / 1e6 / millions,
+          retained / 1e6 / millions,
+          gcCount,
+          gcTime);
+    }
+  }
+
+  private static long gcCount() {
+    return ManagementFactory.getGarbageCollectorMXBeans().stream()
+        .mapToLong(GarbageCollectorMXBean::getCollectionCount)
+        .sum();
+  }
+
+  private static long gcTime() {
+    return ManagementFactory.getGarbageCollectorMXBeans().stream()
+        .mapToLong(GarbageCollectorMXBean::getCollectionTime)
+        .sum();
+  }
+
+  @FunctionalInterface
+  private interface Loader {
+    List<Customer> load(Session session);
+  }
+}
@@ -0,0 +1,105 @@
+package com.example.s3sync.benchmark;
+
+import com.example.s3sync.domain.HashAlgorithm;
+import com.example.s3sync.service.HashService;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+
+/**
+ * Throughput and allocation benchmark of {@link HashService#customerRowHash} for every {@link
+ * HashAlgorithm} against the previous implementation (trimmed substrings, joined string, new
+ * SHA-256 digest per call).
+ *
+ * <p>Not part of the test suite. Run from the IDE or with:
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.example.s3sync.benchmark.HashServiceBenchmark
+ * </pre>
+ *
+ * <p>Run it with debug logging disabled, otherwise the log statements dominate. Allocation is
+ * measured with {@code com.sun.management.ThreadMXBean#getThreadAllocatedBytes} on the benchmark
+ * thread; each variant is warmed up before it is measured.
+ */
+public class HashServiceBenchmark {
+
+  private static final int ROWS = 1_000;
+  private static final int WARMUP_ROUNDS = 200;
+  private static final int ROUNDS = 500;
+
+  public static void main(String[] args) throws Exception {
+    String[][] rows = new String[ROWS][];
+    for (int i = 0; i < ROWS; i++) {
+      rows[i] =
+          new String[] {
+            " Muster GmbH " + i,
+            "Hauptstraße " + i,
+            "",
+            "Köln",
+            "DE",
+            " 50667 ",
+            "Jörg",
+            "Müller-" + i,
+            "kunde" + i + "@example.com",
+            Integer.toString(i)
+          };
+    }
+    HashService hashService = new HashService();
+
+    run(
+        "legacy",
+        rows,
+        r -> legacyCustomerRowHash(r[0], r[1], r[2], r[3], r[4], r[5], r[6], r[7], r[8], r[9]));
+    for (HashAlgorithm algorithm : HashAlgorithm.values()) {
+      run(
+          algorithm.name().toLowerCase(),
+          rows,
+          r ->
+              hashService.customerRowHash(
+                  algorithm, r[0], r[1], r[2], r[3], r[4], r[5], r[6], r[7], r[8], r[9]));
+    }
+  }
+
+  private static void run(String name, String[][] rows, RowHasher hasher) throws Exception {
+    long sink = 0;
+    for (int round = 0; round < WARMUP_ROUNDS; round++) {
+      for (String[] row : rows) {
+        sink += hasher.hash(row).hashCode();
+      }
+    }
+    com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long threadId = Thread.currentThread().threadId();
+    long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+    long start = System.nanoTime();
+    for (int round = 0; round < ROUNDS; round++) {
+      for (String[] row : rows) {
+        sink += hasher.hash(row).hashCode();
+      }
+    }
+    long elapsed = System.nanoTime() - start;
+    long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+    long hashes = (long) ROWS * ROUNDS;
+    System.out.printf(
+        "%-12s %,12.0f hashes/s %8.1f ns/hash %8.1f bytes/hash (sink %d)%n",
+        name, hashes * 1e9 / elapsed, (double) elapsed / hashes, (double) allocated / hashes, sink);
+  }
+
+  /** The implementation before the streaming rewrite, kept for comparison. */
+  private static String legacyCustomerRowHash(String... fields) throws Exception {
+    String[] trimmed = new String[fields.length];
+    for (int i = 0; i < fields.length; i++) {
+      trimmed[i] = fields[i].trim();
+    }
+    MessageDigest digest = MessageDigest.getInstance("SHA-256");
+    return HexFormat.of()
+        .formatHex(digest.digest(String.join("|", trimmed).getBytes(StandardCharsets.UTF_8)));
+  }
+
+  @FunctionalInterface
+  private interface RowHasher {
+    Object hash(String[] row) throws Exception;
+  }
+}
@@ -0,0 +1,128 @@
+package com.example.s3sync.benchmark;
+
+import com.example.s3sync.domain.HashAlgorithm;
+import com.example.s3sync.domain.SyncedCustomerHash;
+import com.example.s3sync.repository.SyncedCustomerHashRepository;
+import com.example.s3sync.service.SyncedHashWriter;
+import com.example.s3sync.service.WriteMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+/**
+ * Throughput benchmark of writing {@code synced_kunde_hash} rows with the previous per-row {@link
+ * SyncedCustomerHashRepository#save(Object)} path and with both {@link WriteMode}s of {@link
+ * SyncedHashWriter}.
+ *
+ * <p>Not part of the test suite; it starts a Postgres container and therefore needs Docker. Run
+ * from the IDE or with:
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.example.s3sync.benchmark.SyncedHashWriterBenchmark
+ * </pre>
+ *
+ * <p>The benchmark boots a Spring context with the application's JPA, Hibernate and Flyway
+ * configuration, but none of its services, so the repository runs exactly as it did in the sync.
+ * Every variant writes {@value #ROWS} rows into an empty table ({@code insert}) and then again with
+ * new hashes ({@code update}), each in one transaction.
+ */
+public class SyncedHashWriterBenchmark {
+
+  private static final int ROWS = 100_000;
+
+  public static void main(String[] args) {
+    System.setProperty("spring.devtools.restart.enabled", "false");
+    try (PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:18")) {
+      postgres.start();
+      try (ConfigurableApplicationContext context =
+          new SpringApplicationBuilder(JpaContext.class)
+              .web(WebApplicationType.NONE)
+              .run(
+                  "--spring.datasource.url=" + postgres.getJdbcUrl(),
+                  "--spring.datasource.username=" + postgres.getUsername(),
+                  "--spring.datasource.password=" + postgres.getPassword(),
+                  "--spring.docker.compose.enabled=false",
+                  "--logging.level.root=WARN")) {
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        TransactionTemplate transactionTemplate =
+            new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        SyncedCustomerHashRepository repository =
+            context.getBean(SyncedCustomerHashRepository.class);
+
+        run(
+            "per-row save",
+            jdbcTemplate,
+            transactionTemplate,
+            hashes -> hashes.forEach(repository::save));
+        for (WriteMode mode : WriteMode.values()) {
+          SyncedHashWriter writer = new SyncedHashWriter(jdbcTemplate);
+          ReflectionTestUtils.setField(writer, "writeMode", mode);
+          run(
+              mode.name().toLowerCase(),
+              jdbcTemplate,
+              transactionTemplate,
+              writer::upsertCustomerHashes);
+        }
+      }
+    }
+  }
+
+  private static void run(
+      String name,
+      JdbcTemplate jdbcTemplate,
+      TransactionTemplate transactionTemplate,
+      Consumer<List<SyncedCustomerHash>> writer) {
+    jdbcTemplate.execute("TRUNCATE synced_kunde_hash");
+    for (String phase : List.of("insert", "update")) {
+      List<SyncedCustomerHash> hashes = hashes();
+      long start = System.nanoTime();
+      transactionTemplate.executeWithoutResult(status -> writer.accept(hashes));
+      long elapsed = System.nanoTime() - start;
+      System.out.printf(
+          "%-14s %-6s %,12.0f rows/s %8.1f ms%n", name, phase, ROWS * 1e9 / elapsed, elapsed / 1e6);
+    }
+  }
+
+  private static List<SyncedCustomerHash> hashes() {
+    List<SyncedCustomerHash> hashes = new ArrayList<>(ROWS);
+    for (long id = 1; id <= ROWS; id++) {
+      byte[] rowHash = new byte[32];
+      byte[] columnHashes = new byte[32];
+      ThreadLocalRandom.current().nextBytes(rowHash);
+      ThreadLocalRandom.current().nextBytes(columnHashes);
+      hashes.add(
+          SyncedCustomerHash.builder()
+              .kundenId(id)
+              .rowHash(rowHash)
+              .hashAlgo(HashAlgorithm.SHA256)
+              .columnHashes(columnHashes)
+              .land(id % 2 == 0 ? "DE" : "AT")
+              .build());
+    }
+    return hashes;
+  }
+
+  /**
+   * Application context with the auto-configured data source, JPA and Flyway and the application's
+   * entities and repositories only.
+   */
+  @SpringBootConfiguration
+  @EnableAutoConfiguration
+  @EntityScan(basePackageClasses = SyncedCustomerHash.class)
+  @EnableJpaRepositories(basePackageClasses = SyncedCustomerHashRepository.class)
+  static class JpaContext {}
+}
@@ -0,0 +1,76 @@
+package com.example.s3sync.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+@ExtendWith(MockitoExtension.class)
+public class ReplicaLagGuardTest {
+
+  @Mock JdbcTemplate replicaJdbcTemplate;
+  @Mock Clock clock;
+
+  SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  Instant now = Instant.parse("2025-01-01T00:00:00Z");
+  ReplicaLagGuard guard;
+
+  @BeforeEach
+  void setUp() {
+    when(clock.instant()).thenAnswer(invocation -> now);
+    guard =
+        new ReplicaLagGuard(
+            replicaJdbcTemplate,
+            Duration.ofSeconds(30),
+            Duration.ofSeconds(10),
+            meterRegistry,
+            clock);
+  }
+
+  /** The replica is used while its lag is within the limit and the lag is measured per interval. */
+  @Test
+  void isReplicaUsable_cachesLagPerInterval() {
+    when(replicaJdbcTemplate.queryForObject(ReplicaLagGuard.LAG_QUERY, Double.class))
+        .thenReturn(2.5, 45.0);
+
+    assertThat(guard.isReplicaUsable()).isTrue();
+    now = now.plusSeconds(9);
+    assertThat(guard.isReplicaUsable()).isTrue();
+    verify(replicaJdbcTemplate, times(1)).queryForObject(ReplicaLagGuard.LAG_QUERY, Double.class);
+    assertThat(meterRegistry.get("sync.replica.lag").gauge().value()).isEqualTo(2.5);
+
+    now = now.plusSeconds(1);
+    assertThat(guard.isReplicaUsable()).isFalse();
+    assertThat(meterRegistry.get("sync.replica.lag").gauge().value()).isEqualTo(45.0);
+    assertThat(meterRegistry.get("sync.replica.usable").gauge().value()).isZero();
+  }
+
+  /** A replica whose lag cannot be determined is not used until a later check succeeds. */
+  @Test
+  void isReplicaUsable_fallsBackWhenLagUnknown() {
+    when(replicaJdbcTemplate.queryForObject(ReplicaLagGuard.LAG_QUERY, Double.class))
+        .thenThrow(new DataAccessResourceFailureException("connection refused"))
+        .thenReturn(null)
+        .thenReturn(0.0);
+
+    assertThat(guard.isReplicaUsable()).isFalse();
+    now = now.plusSeconds(10);
+    assertThat(guard.isReplicaUsable()).isFalse();
+    assertThat(meterRegistry.get("sync.replica.lag").gauge().value()).isNaN();
+    now = now.plusSeconds(10);
+    assertThat(guard.isReplicaUsable()).isTrue();
+    assertThat(meterRegistry.get("sync.replica.usable").gauge().value()).isEqualTo(1);
+  }
+}
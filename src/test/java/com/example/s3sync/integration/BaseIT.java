@@ -111,7 +111,7 @@ abstract class BaseIT {
   }
 
   void storeCustomerAsSynced(Customer customer) {
-    String hash =
+    byte[] hash =
         hashService.customerRowHash(
             customer.getFirmenname(),
             customer.getStrasse(),
@@ -124,12 +124,20 @@ abstract class BaseIT {
             customer.getEmail(),
             String.valueOf(customer.getId()));
     syncedCustomerRepository.save(
-        SyncedCustomerHash.builder().kundenId(customer.getId()).rowHash(hash).build());
+        SyncedCustomerHash.builder()
+            .kundenId(customer.getId())
+            .rowHash(hash)
+            .hashAlgo(hashService.algorithm())
+            .build());
   }
 
   void storeOrderAsSynced(Order order) {
-    String hash = hashService.orderMarkerHash(order.getLastchange());
+    byte[] hash = hashService.orderMarkerHash(order.getLastchange());
     syncedOrderRepository.save(
-        SyncedOrderHash.builder().orderId(order.getId()).markerHash(hash).build());
+        SyncedOrderHash.builder()
+            .orderId(order.getId())
+            .markerHash(hash)
+            .hashAlgo(hashService.algorithm())
+            .build());
   }
 }
@@ -0,0 +1,119 @@
+package com.example.s3sync.integration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.s3sync.domain.ChangeJournalEntry;
+import com.example.s3sync.domain.Customer;
+import com.example.s3sync.domain.Order;
+import com.example.s3sync.repository.ChangeJournalRepository;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+
+@TestPropertySource(properties = {"sync.journal.enabled=true", "sync.journal.batch-size=2"})
+class ChangeJournalIT extends BaseIT {
+
+  @Autowired ChangeJournalRepository changeJournalRepository;
+
+  /**
+   * With the change journal enabled the installed triggers record new customers and orders, the job
+   * exports exactly those rows and the consumed journal entries are deleted afterwards.
+   */
+  @Test
+  void runITFlow_journal() {
+    changeJournalRepository.deleteAll();
+
+    Customer customer =
+        customerRepository.save(
+            Customer.builder()
+                .vorname("journaled customer")
+                .nachname("b")
+                .firmenname("c")
+                .strasse("d")
+                .strassenzusatz("e")
+                .plz("f")
+                .ort("g")
+                .land("journal")
+                .email("i")
+                .build());
+    Order order =
+        orderRepository.save(
+            Order.builder()
+                .kundeid(customer.getId().toString())
+                .created("2025-01-01T00:00:00Z")
+                .lastchange("2025-01-02T00:00:00Z")
+                .artikelnummer("journaled order")
+                .build());
+
+    assertThat(changeJournalRepository.count()).isEqualTo(2);
+    long customerEntry = journalIds("kunde").getLast();
+    long orderEntry = journalIds("auftraege").getLast();
+
+    syncJob.runSyncJob();
+
+    String hour = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HH"));
+    assertThat(getValueOfCsv("kunde_journal_" + hour + "_journal" + customerEntry + ".csv"))
+        .contains(customer.getVorname());
+    assertThat(getValueOfCsv("auftraege_journal_" + hour + "_journal" + orderEntry + ".csv"))
+        .contains(order.getArtikelnummer());
+    assertThat(changeJournalRepository.count()).isZero();
+    assertThat(syncedCustomerRepository.count()).isEqualTo(1);
+    assertThat(syncedOrderRepository.count()).isEqualTo(1);
+  }
+
+  /**
+   * With more journaled changes of one country than fit into a batch, every batch is uploaded to
+   * its own file, so no batch overwrites the export of an earlier one.
+   */
+  @Test
+  void runITFlow_journal_severalBatchesPerCountry() {
+    changeJournalRepository.deleteAll();
+
+    List<Customer> customers =
+        IntStream.range(0, 3)
+            .mapToObj(
+                i ->
+                    customerRepository.save(
+                        Customer.builder()
+                            .vorname("batched customer " + i)
+                            .nachname("b")
+                            .firmenname("c")
+                            .strasse("d")
+                            .strassenzusatz("e")
+                            .plz("f")
+                            .ort("g")
+                            .land("batched")
+                            .email("i")
+                            .build()))
+            .toList();
+    List<Long> entries = journalIds("kunde");
+    assertThat(entries).hasSize(3);
+
+    syncJob.runSyncJob();
+
+    String prefix =
+        "kunde_batched_"
+            + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HH"))
+            + "_journal";
+    String firstBatch = getValueOfCsv(prefix + entries.get(1) + ".csv");
+    String secondBatch = getValueOfCsv(prefix + entries.get(2) + ".csv");
+    assertThat(firstBatch.lines()).hasSize(2);
+    assertThat(secondBatch.lines()).hasSize(1);
+    assertThat(firstBatch + secondBatch)
+        .contains(customers.stream().map(Customer::getVorname).toArray(String[]::new));
+    assertThat(syncedCustomerRepository.count()).isEqualTo(3);
+    assertThat(changeJournalRepository.count()).isZero();
+  }
+
+  private List<Long> journalIds(String table) {
+    return changeJournalRepository.findAll().stream()
+        .filter(entry -> entry.getTableName().equals(table))
+        .map(ChangeJournalEntry::getId)
+        .sorted()
+        .toList();
+  }
+}
@@ -0,0 +1,121 @@
+package com.example.s3sync.integration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.s3sync.domain.Customer;
+import com.example.s3sync.repository.CustomerRepository;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+class DatabaseRowHashIT extends BaseIT {
+
+  @Autowired NamedParameterJdbcTemplate jdbc;
+
+  private Customer save(
+      String vorname,
+      String nachname,
+      String firma,
+      String strasse,
+      String strassenzusatz,
+      String plz,
+      String ort,
+      String land,
+      String email) {
+    return customerRepository.save(
+        Customer.builder()
+            .vorname(vorname)
+            .nachname(nachname)
+            .firmenname(firma)
+            .strasse(strasse)
+            .strassenzusatz(strassenzusatz)
+            .plz(plz)
+            .ort(ort)
+            .land(land)
+            .email(email)
+            .build());
+  }
+
+  private byte[] databaseRowHash(Customer customer) {
+    return jdbc.queryForObject(
+        "SELECT " + CustomerRepository.DATABASE_ROW_HASH + " FROM kunde k WHERE k.kundenid = :id",
+        Map.of("trimChars", CustomerRepository.JAVA_TRIM_CHARACTERS, "id", customer.getId()),
+        byte[].class);
+  }
+
+  private byte[] javaRowHash(Customer customer) {
+    return hashService.customerRowHash(
+        customer.getFirmenname(),
+        customer.getStrasse(),
+        customer.getStrassenzusatz(),
+        customer.getOrt(),
+        customer.getLand(),
+        customer.getPlz(),
+        customer.getVorname(),
+        customer.getNachname(),
+        customer.getEmail(),
+        customer.getId().toString());
+  }
+
+  /**
+   * The row hash computed inside Postgres must equal the one computed by {@code HashService} byte
+   * for byte, including trimming of tabs, line breaks and control characters, non-breaking spaces
+   * (kept), empty fields, pipes inside values and non-ASCII characters.
+   */
+  @Test
+  void databaseRowHash_matchesHashService() {
+    List<Customer> customers =
+        List.of(
+            save("a", "b", "c", "d", "e", "f", "g", "h", "i"),
+            save(
+                " Anna ",
+                "Müller",
+                "Müller Consulting GmbH",
+                "Hauptstr. 12",
+                "",
+                "10115",
+                "Berlin",
+                "Deutschland",
+                "anna.mueller@example.com"),
+            save(
+                "\tTab\t",
+                "\nNewline\r\n",
+                "\u0001ctrl\u001f",
+                "  ",
+                "a|b",
+                "|",
+                "Łódź",
+                "Ελλάδα",
+                "名前@example.com"),
+            save("", "", "", "", "", "", "", "", ""),
+            save("\u00a0nbsp\u00a0", "x", "y", "z", "w", "v", "u", "t", "s"));
+
+    for (Customer customer : customers) {
+      assertThat(databaseRowHash(customer))
+          .as("row hash of customer %s", customer.getId())
+          .isEqualTo(javaRowHash(customer));
+    }
+  }
+
+  /**
+   * Customers stored with the Java row hash are not returned by the in-database diff; new and
+   * changed customers are.
+   */
+  @Test
+  void findUnsyncedByDatabaseHash_returnsOnlyNewOrChanged() {
+    Customer unchanged = save(" a ", "b", "c", "d", "", "f", "g", "h", "i");
+    Customer changed = save("j", "k", "l", "m", "n", "o", "p", "q", "r");
+    Customer fresh = save("s", "t", "u", "v", "w", "x", "y", "z", "0");
+
+    storeCustomerAsSynced(unchanged);
+    storeCustomerAsSynced(changed);
+    changed.setOrt("moved");
+    customerRepository.save(changed);
+
+    assertThat(customerRepository.findUnsyncedByDatabaseHash())
+        .extracting(Customer::getId)
+        .containsExactlyInAnyOrder(changed.getId(), fresh.getId());
+  }
+}
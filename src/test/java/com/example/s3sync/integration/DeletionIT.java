@@ -0,0 +1,59 @@
+package com.example.s3sync.integration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.s3sync.domain.Customer;
+import com.example.s3sync.domain.Order;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.context.TestPropertySource;
+
+@TestPropertySource(properties = "sync.deletions.enabled=true")
+class DeletionIT extends BaseIT {
+
+  /**
+   * After a customer and its order were synced and then deleted, the next run exports tombstones
+   * into the country of the deleted rows and prunes their tracking entries.
+   */
+  @Test
+  void runITFlow_deletions() {
+    Customer customer =
+        customerRepository.save(
+            Customer.builder()
+                .vorname("deleted customer")
+                .nachname("b")
+                .firmenname("c")
+                .strasse("d")
+                .strassenzusatz("e")
+                .plz("f")
+                .ort("g")
+                .land("tombstone")
+                .email("i")
+                .build());
+    Order order =
+        orderRepository.save(
+            Order.builder()
+                .kundeid(customer.getId().toString())
+                .created("2025-01-01T00:00:00Z")
+                .lastchange("2025-01-02T00:00:00Z")
+                .artikelnummer("deleted order")
+                .build());
+    syncJob.runSyncJob();
+    assertThat(syncedCustomerRepository.findById(customer.getId()).orElseThrow().getLand())
+        .isEqualTo("tombstone");
+
+    orderRepository.delete(order);
+    customerRepository.delete(customer);
+    syncJob.runSyncJob();
+
+    String suffix =
+        "_deleted_tombstone_"
+            + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HH"))
+            + ".csv";
+    assertThat(getValueOfCsv("kunde" + suffix)).startsWith(customer.getId() + ",");
+    assertThat(getValueOfCsv("auftraege" + suffix)).startsWith(order.getId() + ",");
+    assertThat(syncedCustomerRepository.count()).isZero();
+    assertThat(syncedOrderRepository.count()).isZero();
+  }
+}
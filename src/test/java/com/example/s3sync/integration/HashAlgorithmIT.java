@@ -0,0 +1,73 @@
+package com.example.s3sync.integration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.s3sync.domain.Customer;
+import com.example.s3sync.domain.HashAlgorithm;
+import com.example.s3sync.domain.SyncedCustomerHash;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.context.TestPropertySource;
+
+@TestPropertySource(properties = "sync.hash.algorithm=murmur3-128")
+class HashAlgorithmIT extends BaseIT {
+
+  /**
+   * A row synced with SHA-256 stays valid after switching to MurmurHash3: it is not exported again
+   * while unchanged, and it is stored with the new algorithm once it changed and was synced.
+   */
+  @Test
+  void runITFlow_switchAlgorithm() {
+    Customer customer =
+        customerRepository.save(
+            Customer.builder()
+                .vorname("legacy")
+                .nachname("b")
+                .firmenname("c")
+                .strasse("d")
+                .strassenzusatz("e")
+                .plz("f")
+                .ort("g")
+                .land("algo")
+                .email("i")
+                .build());
+    syncedCustomerRepository.save(
+        SyncedCustomerHash.builder()
+            .kundenId(customer.getId())
+            .rowHash(
+                hashService.customerRowHash(
+                    HashAlgorithm.SHA256,
+                    customer.getFirmenname(),
+                    customer.getStrasse(),
+                    customer.getStrassenzusatz(),
+                    customer.getOrt(),
+                    customer.getLand(),
+                    customer.getPlz(),
+                    customer.getVorname(),
+                    customer.getNachname(),
+                    customer.getEmail(),
+                    String.valueOf(customer.getId())))
+            .hashAlgo(HashAlgorithm.SHA256)
+            .build());
+    String key =
+        "kunde_algo_"
+            + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HH"))
+            + ".csv";
+
+    syncJob.runSyncJob();
+
+    checkIfExists(key);
+    assertThat(syncedCustomerRepository.findById(customer.getId()).orElseThrow().getHashAlgo())
+        .isEqualTo(HashAlgorithm.SHA256);
+
+    customer.setVorname("migrated");
+    customerRepository.save(customer);
+    syncJob.runSyncJob();
+
+    SyncedCustomerHash migrated = syncedCustomerRepository.findById(customer.getId()).orElseThrow();
+    assertThat(migrated.getHashAlgo()).isEqualTo(HashAlgorithm.MURMUR3_128);
+    assertThat(migrated.getRowHash()).hasSize(16);
+    assertThat(getValueOfCsv(key)).contains("migrated");
+  }
+}
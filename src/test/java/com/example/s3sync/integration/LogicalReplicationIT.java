@@ -0,0 +1,123 @@
+package com.example.s3sync.integration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.s3sync.domain.Customer;
+import com.example.s3sync.domain.Order;
+import com.example.s3sync.scheduling.CdcSyncJob;
+import com.example.s3sync.service.LogicalReplicationChangeSource;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.TestPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+
+/**
+ * Runs the CDC flow against a dedicated Postgres container started with {@code wal_level=logical};
+ * the shared Testcontainers JDBC URL cannot pass server options.
+ */
+@TestPropertySource(properties = "sync.cdc.enabled=true")
+class LogicalReplicationIT extends BaseIT {
+
+  @Container
+  static final PostgreSQLContainer<?> LOGICAL_POSTGRES =
+      new PostgreSQLContainer<>("postgres:18")
+          .withCommand("postgres", "-c", "wal_level=logical")
+          .withInitScript("create_tables.sql");
+
+  @DynamicPropertySource
+  static void datasource(DynamicPropertyRegistry r) {
+    r.add("spring.datasource.url", LOGICAL_POSTGRES::getJdbcUrl);
+    r.add("spring.datasource.username", LOGICAL_POSTGRES::getUsername);
+    r.add("spring.datasource.password", LOGICAL_POSTGRES::getPassword);
+    r.add("spring.datasource.driver-class-name", LOGICAL_POSTGRES::getDriverClassName);
+  }
+
+  @Autowired CdcSyncJob cdcSyncJob;
+  @Autowired LogicalReplicationChangeSource changeSource;
+
+  /**
+   * Changes decoded from the replication slot are exported, the slot is advanced afterwards and the
+   * regular sync job does not scan while CDC is enabled.
+   */
+  @Test
+  void runITFlow_cdc() {
+    cdcSyncJob.pollChanges();
+
+    Customer customer =
+        customerRepository.save(
+            Customer.builder()
+                .vorname("replicated customer")
+                .nachname("b")
+                .firmenname("c")
+                .strasse("d")
+                .strassenzusatz("e")
+                .plz("f")
+                .ort("g")
+                .land("cdc")
+                .email("i")
+                .build());
+    Order order =
+        orderRepository.save(
+            Order.builder()
+                .kundeid(customer.getId().toString())
+                .created("2025-01-01T00:00:00Z")
+                .lastchange("2025-01-02T00:00:00Z")
+                .artikelnummer("replicated order")
+                .build());
+
+    syncJob.runSyncJob();
+    assertThat(syncedCustomerRepository.count()).isZero();
+
+    LogicalReplicationChangeSource.ChangeSet pending = changeSource.peekChanges();
+    assertThat(pending.customerIds()).contains(customer.getId());
+    cdcSyncJob.pollChanges();
+
+    String hour = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HH"));
+    String suffix = "_cdc_" + hour + "_" + pending.batchLabel() + ".csv";
+    assertThat(getValueOfCsv("kunde" + suffix)).contains(customer.getVorname());
+    assertThat(getValueOfCsv("auftraege" + suffix)).contains(order.getArtikelnummer());
+    assertThat(syncedCustomerRepository.count()).isEqualTo(1);
+    assertThat(syncedOrderRepository.count()).isEqualTo(1);
+
+    LogicalReplicationChangeSource.ChangeSet remaining = changeSource.peekChanges();
+    assertThat(remaining.customerIds()).doesNotContain(customer.getId());
+    assertThat(remaining.orderIds()).doesNotContain(order.getId());
+  }
+
+  /** A second poll within the same hour exports to new files and keeps the first poll's ones. */
+  @Test
+  void runITFlow_cdc_twoPollsInOneHour() {
+    cdcSyncJob.pollChanges();
+    Customer customer =
+        customerRepository.save(
+            Customer.builder()
+                .vorname("first poll")
+                .nachname("b")
+                .firmenname("c")
+                .strasse("d")
+                .strassenzusatz("e")
+                .plz("f")
+                .ort("g")
+                .land("cdcpolls")
+                .email("i")
+                .build());
+    String firstLabel = changeSource.peekChanges().batchLabel();
+    cdcSyncJob.pollChanges();
+
+    customer.setVorname("second poll");
+    customerRepository.save(customer);
+    String secondLabel = changeSource.peekChanges().batchLabel();
+    cdcSyncJob.pollChanges();
+
+    String prefix =
+        "kunde_cdcpolls_" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HH"));
+    assertThat(secondLabel).isNotEqualTo(firstLabel);
+    assertThat(getValueOfCsv(prefix + "_" + firstLabel + ".csv")).contains("first poll");
+    assertThat(getValueOfCsv(prefix + "_" + secondLabel + ".csv")).contains("second poll");
+  }
+}
@@ -0,0 +1,66 @@
+package com.example.s3sync.integration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.s3sync.domain.Customer;
+import com.example.s3sync.service.CustomerBucketTree;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+@TestPropertySource(properties = "sync.diff.mode=merkle")
+class MerkleDiffIT extends BaseIT {
+
+  @Autowired JdbcTemplate jdbcTemplate;
+  @Autowired CustomerBucketTree customerBucketTree;
+
+  /**
+   * The first run exports every customer and stores the bucket digests; afterwards an unchanged
+   * table yields no differing bucket, and a single changed customer is found by descending into its
+   * bucket only.
+   */
+  @Test
+  void runITFlow_merkle() {
+    jdbcTemplate.update("DELETE FROM synced_kunde_bucket");
+    List<Customer> customers =
+        IntStream.range(0, 5)
+            .mapToObj(
+                i ->
+                    customerRepository.save(
+                        Customer.builder()
+                            .vorname("merkle " + i)
+                            .nachname("b")
+                            .firmenname("c")
+                            .strasse("d")
+                            .strassenzusatz("e")
+                            .plz("f")
+                            .ort("g")
+                            .land("merkle")
+                            .email("i")
+                            .build()))
+            .toList();
+
+    syncJob.runSyncJob();
+    assertThat(syncedCustomerRepository.count()).isEqualTo(5);
+    assertThat(customerBucketTree.findChangedBuckets()).isEmpty();
+
+    Customer changed = customers.get(2);
+    changed.setVorname("merkle changed");
+    customerRepository.save(changed);
+    assertThat(customerBucketTree.findChangedBuckets()).hasSize(1);
+
+    syncJob.runSyncJob();
+
+    assertThat(customerBucketTree.findChangedBuckets()).isEmpty();
+    String key =
+        "kunde_merkle_"
+            + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HH"))
+            + ".csv";
+    assertThat(getValueOfCsv(key)).contains("merkle changed").doesNotContain("merkle 0");
+  }
+}
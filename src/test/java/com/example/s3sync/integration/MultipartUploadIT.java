@@ -0,0 +1,66 @@
+package com.example.s3sync.integration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.example.s3sync.service.S3UploaderService;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import software.amazon.awssdk.services.s3.model.ListMultipartUploadsRequest;
+
+/** Streams CSV content larger than one part to LocalStack as a multipart upload. */
+class MultipartUploadIT extends BaseIT {
+
+  @DynamicPropertySource
+  static void partSize(DynamicPropertyRegistry r) {
+    r.add("aws.s3.part-size", () -> "5MB");
+  }
+
+  @Autowired S3UploaderService s3Uploader;
+
+  /** 12 MB of CSV are uploaded in three parts and stored as one object. */
+  @Test
+  void uploadCsv_multipleParts() {
+    String line = "1,123,1\n";
+    int lines = 12 * 1024 * 1024 / line.length();
+
+    String eTag =
+        s3Uploader.uploadCsv(
+            "multipart.csv",
+            out -> {
+              for (int i = 0; i < lines; i++) {
+                out.write(line.getBytes(StandardCharsets.UTF_8));
+              }
+            });
+
+    assertThat(eTag).contains("-3");
+    assertThat(getMetaData("multipart.csv").contentLength())
+        .isEqualTo((long) lines * line.length());
+    assertThat(getMetaData("multipart.csv").contentType()).isEqualTo("text/csv");
+    assertThat(getValueOfCsv("multipart.csv").lines()).hasSize(lines).allMatch("1,123,1"::equals);
+  }
+
+  /** A failure while writing aborts the multipart upload and creates no object. */
+  @Test
+  void uploadCsv_abortsOnFailure() {
+    assertThatThrownBy(
+            () ->
+                s3Uploader.uploadCsv(
+                    "failed.csv",
+                    out -> {
+                      out.write(new byte[6 * 1024 * 1024]);
+                      throw new IOException("database gone");
+                    }))
+        .hasRootCauseMessage("database gone");
+
+    checkIfExists("failed.csv");
+    assertThat(
+            s3.listMultipartUploads(ListMultipartUploadsRequest.builder().bucket(bucket).build())
+                .uploads())
+        .noneMatch(upload -> upload.key().equals("failed.csv"));
+  }
+}
@@ -0,0 +1,68 @@
+package com.example.s3sync.integration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.s3sync.domain.Customer;
+import com.example.s3sync.domain.Order;
+import com.example.s3sync.repository.SyncWatermarkRepository;
+import java.time.Instant;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+
+@TestPropertySource(properties = "sync.watermark.enabled=true")
+class OrderWatermarkIT extends BaseIT {
+
+  @Autowired SyncWatermarkRepository syncWatermarkRepository;
+
+  Customer customer;
+
+  /**
+   * The first run exports every order and stores the newest lastchange as watermark. Later runs
+   * only read orders above the watermark minus the overlap window, so an order whose lastchange
+   * lies far below the mark is not looked at, while a newer one is exported.
+   */
+  @Test
+  void runITFlow_watermark() {
+    syncWatermarkRepository.deleteAll();
+    customer =
+        customerRepository.save(
+            Customer.builder()
+                .vorname("a")
+                .nachname("b")
+                .firmenname("c")
+                .strasse("d")
+                .strassenzusatz("e")
+                .plz("f")
+                .ort("g")
+                .land("watermark")
+                .email("i")
+                .build());
+    Order first = orderRepository.save(order("2025-01-02T00:00:00+0000", "first order"));
+
+    syncJob.runSyncJob();
+
+    assertThat(syncedOrderRepository.existsById(first.getId())).isTrue();
+    assertThat(syncWatermarkRepository.findById("auftraege").orElseThrow().getHighWater())
+        .isEqualTo(Instant.parse("2025-01-02T00:00:00Z"));
+
+    Order stale = orderRepository.save(order("2024-06-01T00:00:00Z", "stale order"));
+    Order newer = orderRepository.save(order("2025-01-03T12:00:00Z", "newer order"));
+
+    syncJob.runSyncJob();
+
+    assertThat(syncedOrderRepository.existsById(newer.getId())).isTrue();
+    assertThat(syncedOrderRepository.existsById(stale.getId())).isFalse();
+    assertThat(syncWatermarkRepository.findById("auftraege").orElseThrow().getHighWater())
+        .isEqualTo(Instant.parse("2025-01-03T12:00:00Z"));
+  }
+
+  private Order order(String lastchange, String artikelnummer) {
+    return Order.builder()
+        .kundeid(customer.getId().toString())
+        .created("2025-01-01T00:00:00Z")
+        .lastchange(lastchange)
+        .artikelnummer(artikelnummer)
+        .build();
+  }
+}
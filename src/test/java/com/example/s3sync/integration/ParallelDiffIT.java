@@ -0,0 +1,64 @@
+package com.example.s3sync.integration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.s3sync.domain.Customer;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.context.TestPropertySource;
+
+@TestPropertySource(
+    properties = {
+      "sync.diff.parallel.enabled=true",
+      "sync.diff.parallel.workers=3",
+      "sync.diff.chunk-size=2"
+    })
+class ParallelDiffIT extends BaseIT {
+
+  /**
+   * The parallel diff finds every new customer across all ranges and, after the sync, reports only
+   * the one customer changed afterwards.
+   */
+  @Test
+  void runITFlow_parallel() {
+    List<Customer> customers =
+        IntStream.range(0, 7)
+            .mapToObj(
+                i ->
+                    customerRepository.save(
+                        Customer.builder()
+                            .vorname("parallel " + i)
+                            .nachname("b")
+                            .firmenname("c")
+                            .strasse("d")
+                            .strassenzusatz("e")
+                            .plz("f")
+                            .ort("g")
+                            .land("parallel")
+                            .email("i")
+                            .build()))
+            .toList();
+
+    syncJob.runSyncJob();
+    assertThat(syncedCustomerRepository.count()).isEqualTo(7);
+
+    Customer changed = customers.get(4);
+    changed.setVorname("parallel changed");
+    customerRepository.save(changed);
+    byte[] hashBefore =
+        syncedCustomerRepository.findById(changed.getId()).orElseThrow().getRowHash();
+
+    syncJob.runSyncJob();
+
+    assertThat(syncedCustomerRepository.findById(changed.getId()).orElseThrow().getRowHash())
+        .isNotEqualTo(hashBefore);
+    String key =
+        "kunde_parallel_"
+            + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HH"))
+            + ".csv";
+    assertThat(getValueOfCsv(key)).contains("parallel changed").doesNotContain("parallel 0");
+  }
+}
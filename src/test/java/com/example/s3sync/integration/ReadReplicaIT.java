@@ -0,0 +1,73 @@
+package com.example.s3sync.integration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+
+/**
+ * Runs the sync with a second Postgres container as read replica. The containers do not replicate;
+ * rows inserted into the "replica" only show which database a statement went to.
+ */
+class ReadReplicaIT extends BaseIT {
+
+  @Container
+  static final PostgreSQLContainer<?> REPLICA =
+      new PostgreSQLContainer<>("postgres:18").withInitScript("create_tables.sql");
+
+  @DynamicPropertySource
+  static void replica(DynamicPropertyRegistry r) {
+    r.add("sync.replica.enabled", () -> "true");
+    r.add("sync.replica.url", REPLICA::getJdbcUrl);
+    r.add("sync.replica.username", REPLICA::getUsername);
+    r.add("sync.replica.password", REPLICA::getPassword);
+  }
+
+  @Autowired
+  @Qualifier("primaryDataSource")
+  DataSource primaryDataSource;
+
+  /**
+   * The diff scans read the replica, while the tracking rows of the exported customer are written
+   * to the primary.
+   */
+  @Test
+  void runITFlow_readReplica() {
+    JdbcTemplate replica =
+        new JdbcTemplate(
+            new DriverManagerDataSource(
+                REPLICA.getJdbcUrl(), REPLICA.getUsername(), REPLICA.getPassword()));
+    JdbcTemplate primary = new JdbcTemplate(primaryDataSource);
+    replica.update("TRUNCATE kunde, auftraege, synced_kunde_hash, synced_auftrag_hash");
+    Long kundenId =
+        replica.queryForObject(
+            "INSERT INTO kunde (vorname, nachname, email, strasse, strassenzusatz, ort, land, plz,"
+                + " firmenname) VALUES ('replica only', 'b', 'c', 'd', 'e', 'f', 'replica', 'h',"
+                + " 'i') RETURNING kundenid",
+            Long.class);
+
+    syncJob.runSyncJob();
+
+    String customerCsvFile =
+        "kunde_replica_"
+            + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HH"))
+            + ".csv";
+    assertThat(getValueOfCsv(customerCsvFile)).contains("replica only");
+    assertThat(
+            primary.queryForObject(
+                "SELECT count(*) FROM synced_kunde_hash WHERE kundenid = ?", Long.class, kundenId))
+        .isEqualTo(1);
+    assertThat(replica.queryForObject("SELECT count(*) FROM synced_kunde_hash", Long.class))
+        .isZero();
+  }
+}
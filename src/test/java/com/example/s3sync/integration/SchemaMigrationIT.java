@@ -0,0 +1,128 @@
+package com.example.s3sync.integration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HexFormat;
+import java.util.List;
+import javax.sql.DataSource;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+class SchemaMigrationIT extends BaseIT {
+
+  @Autowired JdbcTemplate jdbcTemplate;
+  @Autowired DataSource dataSource;
+
+  /** The migrations create the tables and the sync indexes on an empty database. */
+  @Test
+  void migrationsCreateSchemaAndIndexes() {
+    assertThat(
+            jdbcTemplate.queryForList(
+                "SELECT version FROM flyway_schema_history WHERE success ORDER BY installed_rank",
+                String.class))
+        .containsExactly("1", "2", "3", "4", "4.1", "4.2", "5", "6");
+    assertThat(
+            jdbcTemplate.queryForList(
+                "SELECT indexname FROM pg_indexes WHERE tablename IN ('kunde', 'auftraege')",
+                String.class))
+        .contains("auftraege_kundeid_idx", "kunde_land_idx", "auftraege_lastchange_ts_idx");
+    assertThat(
+            jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM information_schema.tables"
+                    + " WHERE table_name = 'synced_kunde_bucket'",
+                Integer.class))
+        .isEqualTo(1);
+  }
+
+  /**
+   * The indexed {@code sync_lastchange_ts} parses ISO 8601 values only, so relative inputs whose
+   * result depends on the current time are treated as unparseable.
+   */
+  @Test
+  void lastchangeTs_rejectsRelativeValues() {
+    for (String value : List.of("now", "today", "tomorrow", "yesterday", "epoch", "2025-13-01")) {
+      assertThat(
+              jdbcTemplate.queryForObject(
+                  "SELECT sync_lastchange_ts(?) IS NULL", Boolean.class, value))
+          .as(value)
+          .isTrue();
+    }
+    assertThat(
+            jdbcTemplate.queryForObject(
+                "SELECT CAST(EXTRACT(EPOCH FROM sync_lastchange_ts(?)) AS bigint)",
+                Long.class,
+                "2025-01-02T03:04:05Z"))
+        .isEqualTo(1735787045L);
+  }
+
+  /**
+   * A database from before the migrations, with hex hashes and without the later tracking columns,
+   * is taken over at baseline version 0 and brought up to date. The filled hash tables are
+   * converted through shadow columns, which are swapped in without leaving triggers behind.
+   */
+  @Test
+  void migrationsUpgradeLegacySchema() {
+    jdbcTemplate.execute("DROP SCHEMA IF EXISTS legacy CASCADE");
+    jdbcTemplate.execute("CREATE SCHEMA legacy");
+    jdbcTemplate.execute(
+        "CREATE TABLE legacy.synced_kunde_hash ("
+            + "kundenid BIGINT PRIMARY KEY, row_hash varchar(64) NOT NULL,"
+            + " last_synced_at TIMESTAMPTZ NOT NULL DEFAULT now())");
+    jdbcTemplate.execute(
+        "CREATE TABLE legacy.synced_auftrag_hash ("
+            + "auftragid varchar(255) PRIMARY KEY, marker_hash varchar(64) NOT NULL,"
+            + " last_synced_at TIMESTAMPTZ NOT NULL DEFAULT now())");
+    jdbcTemplate.update(
+        "INSERT INTO legacy.synced_kunde_hash (kundenid, row_hash) VALUES (1, '00ff10')");
+    jdbcTemplate.update(
+        "INSERT INTO legacy.synced_auftrag_hash (auftragid, marker_hash) VALUES ('A', 'abcd')");
+
+    Flyway.configure()
+        .dataSource(dataSource)
+        .schemas("legacy")
+        .baselineOnMigrate(true)
+        .baselineVersion("0")
+        .load()
+        .migrate();
+
+    assertThat(
+            jdbcTemplate.queryForList(
+                "SELECT column_name || ':' || data_type FROM information_schema.columns"
+                    + " WHERE table_schema = 'legacy' AND table_name = 'synced_kunde_hash'",
+                String.class))
+        .contains(
+            "row_hash:bytea",
+            "hash_algo:character varying",
+            "land:character varying",
+            "column_hashes:bytea");
+    assertThat(
+            jdbcTemplate.queryForObject(
+                "SELECT row_hash FROM legacy.synced_kunde_hash WHERE kundenid = 1", byte[].class))
+        .isEqualTo(HexFormat.of().parseHex("00ff10"));
+    assertThat(
+            jdbcTemplate.queryForObject(
+                "SELECT hash_algo FROM legacy.synced_kunde_hash WHERE kundenid = 1", String.class))
+        .isEqualTo("SHA256");
+    assertThat(
+            jdbcTemplate.queryForObject(
+                "SELECT marker_hash FROM legacy.synced_auftrag_hash WHERE auftragid = 'A'",
+                byte[].class))
+        .isEqualTo(HexFormat.of().parseHex("abcd"));
+    assertThat(
+            jdbcTemplate.queryForList(
+                "SELECT column_name FROM information_schema.columns"
+                    + " WHERE table_schema = 'legacy' AND column_name LIKE '%_bin'",
+                String.class))
+        .isEmpty();
+    assertThat(
+            jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM pg_trigger t JOIN pg_class c ON c.oid = t.tgrelid"
+                    + " JOIN pg_namespace n ON n.oid = c.relnamespace"
+                    + " WHERE n.nspname = 'legacy' AND NOT t.tgisinternal",
+                Integer.class))
+        .isZero();
+    jdbcTemplate.execute("DROP SCHEMA legacy CASCADE");
+  }
+}
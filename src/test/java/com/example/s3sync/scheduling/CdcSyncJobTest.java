@@ -0,0 +1,75 @@
+package com.example.s3sync.scheduling;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import com.example.s3sync.dto.UnsyncedCustomer;
+import com.example.s3sync.dto.UnsyncedOrder;
+import com.example.s3sync.service.CustomerSyncService;
+import com.example.s3sync.service.LogicalReplicationChangeSource;
+import com.example.s3sync.service.LogicalReplicationChangeSource.ChangeSet;
+import com.example.s3sync.service.OrderSyncService;
+import com.example.s3sync.service.SyncDiffService;
+import com.example.s3sync.service.TombstoneSyncService;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@ExtendWith(MockitoExtension.class)
+class CdcSyncJobTest {
+
+  @Mock LogicalReplicationChangeSource changeSource;
+  @Mock SyncDiffService syncDiffService;
+  @Mock CustomerSyncService customerSyncService;
+  @Mock OrderSyncService orderSyncService;
+  @Mock TombstoneSyncService tombstoneSyncService;
+
+  @InjectMocks private CdcSyncJob job;
+
+  /**
+   * Two polls within the same hour label their customer, order and tombstone files with their own
+   * LSN, so the second poll does not overwrite the first one's exports.
+   */
+  @Test
+  void pollChanges_twoPollsInOneHour_useDistinctLabels() {
+    ReflectionTestUtils.setField(job, "deletionsEnabled", true);
+    ChangeSet first = new ChangeSet(Set.of(1L), Set.of("A-1"), "0/16B3748");
+    ChangeSet second = new ChangeSet(Set.of(1L), Set.of("A-1"), "0/16B3890");
+    when(changeSource.peekChanges()).thenReturn(first, second);
+    List<UnsyncedCustomer> customers = List.of(mock(UnsyncedCustomer.class));
+    List<UnsyncedOrder> orders = List.of(mock(UnsyncedOrder.class));
+    when(syncDiffService.getUnsyncedCustomers(Set.of(1L))).thenReturn(customers);
+    when(syncDiffService.getUnsyncedOrders(Set.of("A-1"))).thenReturn(orders);
+
+    job.pollChanges();
+    job.pollChanges();
+
+    ArgumentCaptor<String> labels = ArgumentCaptor.forClass(String.class);
+    verify(customerSyncService, times(2)).syncAndUpload(eq(customers), labels.capture());
+    assertThat(labels.getAllValues()).containsExactly("lsn00000000016B3748", "lsn00000000016B3890");
+    verify(orderSyncService).syncAndUpload(orders, "lsn00000000016B3748");
+    verify(orderSyncService).syncAndUpload(orders, "lsn00000000016B3890");
+    verify(tombstoneSyncService).syncDeletedCustomers(Set.of(1L), "lsn00000000016B3748");
+    verify(tombstoneSyncService).syncDeletedOrders(Set.of("A-1"), "lsn00000000016B3890");
+    verify(changeSource).acknowledge(first);
+    verify(changeSource).acknowledge(second);
+  }
+
+  /** A poll without decoded changes neither syncs nor advances the slot. */
+  @Test
+  void pollChanges_nothingDecoded() {
+    when(changeSource.peekChanges()).thenReturn(new ChangeSet(Set.of(), Set.of(), null));
+
+    job.pollChanges();
+
+    verifyNoInteractions(syncDiffService, customerSyncService, orderSyncService);
+    verify(changeSource, never()).acknowledge(any());
+  }
+}
@@ -2,17 +2,22 @@ package com.example.s3sync.scheduling;
 
 import static org.mockito.Mockito.*;
 
-import com.example.s3sync.domain.Customer;
-import com.example.s3sync.domain.Order;
+import com.example.s3sync.dto.UnsyncedCustomer;
+import com.example.s3sync.dto.UnsyncedOrder;
 import com.example.s3sync.service.CustomerSyncService;
 import com.example.s3sync.service.OrderSyncService;
+import com.example.s3sync.service.ParallelSyncDiffService;
+import com.example.s3sync.service.StreamingSyncDiffService;
 import com.example.s3sync.service.SyncDiffService;
+import com.example.s3sync.service.TombstoneSyncService;
 import java.util.List;
+import java.util.stream.Stream;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 
 @ExtendWith(MockitoExtension.class)
 class SyncJobTest {
@@ -20,6 +25,9 @@ class SyncJobTest {
   @Mock SyncDiffService syncDiffService;
   @Mock CustomerSyncService customerSyncService;
   @Mock OrderSyncService orderSyncService;
+  @Mock StreamingSyncDiffService streamingSyncDiffService;
+  @Mock ParallelSyncDiffService parallelSyncDiffService;
+  @Mock TombstoneSyncService tombstoneSyncService;
 
   @InjectMocks private SyncJob job;
 
@@ -29,8 +37,9 @@ class SyncJobTest {
    */
   @Test
   void runSyncJob_withUnsyncedCustomersAndOrders() {
-    List<Customer> customers = List.of(mock(Customer.class), mock(Customer.class));
-    List<Order> orders = List.of(mock(Order.class));
+    List<UnsyncedCustomer> customers =
+        List.of(mock(UnsyncedCustomer.class), mock(UnsyncedCustomer.class));
+    List<UnsyncedOrder> orders = List.of(mock(UnsyncedOrder.class));
 
     when(syncDiffService.getUnsyncedCustomers()).thenReturn(customers);
     when(syncDiffService.getUnsyncedOrders()).thenReturn(orders);
@@ -47,8 +56,8 @@ class SyncJobTest {
    */
   @Test
   void runSyncJob_withNoUnsyncedCustomers_butWithUnsyncedOrders() {
-    List<Customer> emptyCustomers = List.of();
-    List<Order> orders = List.of(mock(Order.class));
+    List<UnsyncedCustomer> emptyCustomers = List.of();
+    List<UnsyncedOrder> orders = List.of(mock(UnsyncedOrder.class));
 
     when(syncDiffService.getUnsyncedCustomers()).thenReturn(emptyCustomers);
     when(syncDiffService.getUnsyncedOrders()).thenReturn(orders);
@@ -65,8 +74,8 @@ class SyncJobTest {
    */
   @Test
   void runSyncJob_withNoUnsyncedOrders_butWithUnsyncedCustomers() {
-    List<Customer> customers = List.of(mock(Customer.class));
-    List<Order> emptyOrders = List.of();
+    List<UnsyncedCustomer> customers = List.of(mock(UnsyncedCustomer.class));
+    List<UnsyncedOrder> emptyOrders = List.of();
 
     when(syncDiffService.getUnsyncedCustomers()).thenReturn(customers);
     when(syncDiffService.getUnsyncedOrders()).thenReturn(emptyOrders);
@@ -90,4 +99,96 @@ class SyncJobTest {
 
     verifyNoInteractions(customerSyncService, orderSyncService);
   }
+
+  /**
+   * In streaming mode the job hands the streams of the streaming diff directly to the sync services
+   * and never materializes the full lists through {@link SyncDiffService}.
+   */
+  @Test
+  void runSyncJob_streaming_passesStreamsToSyncServices() {
+    ReflectionTestUtils.setField(job, "streamingDiff", true);
+    Stream<UnsyncedCustomer> customers = Stream.of(mock(UnsyncedCustomer.class));
+    Stream<UnsyncedOrder> orders = Stream.of(mock(UnsyncedOrder.class));
+
+    when(streamingSyncDiffService.streamUnsyncedCustomers()).thenReturn(customers);
+    when(streamingSyncDiffService.streamUnsyncedOrders()).thenReturn(orders);
+
+    job.runSyncJob();
+
+    verify(customerSyncService).syncAndUpload(customers);
+    verify(orderSyncService).syncAndUpload(orders);
+    verifyNoInteractions(syncDiffService);
+  }
+
+  /**
+   * In journal mode the job lets {@link SyncDiffService} consume the change journal and does not
+   * scan the tables.
+   */
+  @Test
+  void runSyncJob_journal_consumesChangeJournal() {
+    ReflectionTestUtils.setField(job, "journalEnabled", true);
+
+    job.runSyncJob();
+
+    verify(syncDiffService).consumeJournaledCustomers(any());
+    verify(syncDiffService).consumeJournaledOrders(any());
+    verify(syncDiffService, never()).getUnsyncedCustomers();
+    verify(syncDiffService, never()).getUnsyncedOrders();
+    verifyNoInteractions(streamingSyncDiffService);
+  }
+
+  /** With CDC enabled the periodic job leaves syncing to the CDC job and touches nothing. */
+  @Test
+  void runSyncJob_cdc_skipsScan() {
+    ReflectionTestUtils.setField(job, "cdcEnabled", true);
+
+    job.runSyncJob();
+
+    verifyNoInteractions(
+        syncDiffService, streamingSyncDiffService, customerSyncService, orderSyncService);
+  }
+
+  /** In watermark mode customers are diffed as usual while orders are read since the mark. */
+  @Test
+  void runSyncJob_watermark_readsOrdersSinceMark() {
+    ReflectionTestUtils.setField(job, "orderWatermark", true);
+    List<UnsyncedCustomer> customers = List.of(mock(UnsyncedCustomer.class));
+    when(syncDiffService.getUnsyncedCustomers()).thenReturn(customers);
+
+    job.runSyncJob();
+
+    verify(customerSyncService).syncAndUpload(customers);
+    verify(syncDiffService).consumeOrdersSinceWatermark(any());
+    verify(syncDiffService, never()).getUnsyncedOrders();
+  }
+
+  /** In parallel mode both diffs are computed by the range-partitioned parallel service. */
+  @Test
+  void runSyncJob_parallel_usesParallelDiff() {
+    ReflectionTestUtils.setField(job, "parallelDiff", true);
+    List<UnsyncedCustomer> customers = List.of(mock(UnsyncedCustomer.class));
+    List<UnsyncedOrder> orders = List.of(mock(UnsyncedOrder.class));
+    when(parallelSyncDiffService.getUnsyncedCustomers()).thenReturn(customers);
+    when(parallelSyncDiffService.getUnsyncedOrders()).thenReturn(orders);
+
+    job.runSyncJob();
+
+    verify(customerSyncService).syncAndUpload(customers);
+    verify(orderSyncService).syncAndUpload(orders);
+    verify(syncDiffService, never()).getUnsyncedCustomers();
+    verify(syncDiffService, never()).getUnsyncedOrders();
+  }
+
+  /** With deletion detection enabled the run ends with the tombstone pass for both tables. */
+  @Test
+  void runSyncJob_deletions_exportsTombstones() {
+    ReflectionTestUtils.setField(job, "deletionsEnabled", true);
+    when(syncDiffService.getUnsyncedCustomers()).thenReturn(List.of());
+    when(syncDiffService.getUnsyncedOrders()).thenReturn(List.of());
+
+    job.runSyncJob();
+
+    verify(tombstoneSyncService).syncDeletedCustomers();
+    verify(tombstoneSyncService).syncDeletedOrders();
+  }
 }
@@ -3,9 +3,15 @@ package com.example.s3sync.service;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import com.example.s3sync.dto.CustomerCsvDto;
+import com.example.s3sync.dto.CustomerDeltaCsvDto;
 import com.example.s3sync.dto.OrderCsvDto;
+import com.example.s3sync.dto.TombstoneCsvDto;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.util.List;
+import java.util.stream.Stream;
 import org.junit.jupiter.api.Test;
 
 public class CsvServiceTest {
@@ -17,7 +23,7 @@ public class CsvServiceTest {
    * and UTF-8 encoding. The test asserts the exact output.
    */
   @Test
-  void CustomerCsvDto_writesToCsv_inExpectedFormat() {
+  void CustomerCsvDto_writesToCsv_inExpectedFormat() throws IOException {
     List<CustomerCsvDto> customerCsvDtos =
         List.of(
             CustomerCsvDto.builder()
@@ -43,8 +49,9 @@ public class CsvServiceTest {
                 .kundenId("2")
                 .build());
 
-    byte[] bytes = csvService.customersToCsv(customerCsvDtos);
-    String csv = new String(bytes, StandardCharsets.UTF_8);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    csvService.writeCustomers(customerCsvDtos.stream(), out);
+    String csv = out.toString(StandardCharsets.UTF_8);
 
     assertThat(csv)
         .isEqualTo(
@@ -55,20 +62,77 @@ public class CsvServiceTest {
                 ""));
   }
 
+  /** Verify that customer deltas are rendered as kundenId, column name and new value. */
+  @Test
+  void customerDeltaCsvDto_writesToCsv_inExpectedFormat() throws IOException {
+    List<CustomerDeltaCsvDto> rows =
+        List.of(
+            CustomerDeltaCsvDto.builder()
+                .kundenId("1")
+                .column("strasse")
+                .value("Werfthallenstraße 9")
+                .build(),
+            CustomerDeltaCsvDto.builder().kundenId("1").column("strassenzusatz").value("").build());
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    csvService.writeCustomerDeltas(rows.stream(), out);
+    String csv = out.toString(StandardCharsets.UTF_8);
+
+    assertThat(csv)
+        .isEqualTo(String.join("\n", "1,strasse,Werfthallenstraße 9", "1,strassenzusatz,", ""));
+  }
+
   /**
    * Verify that a list of {@link OrderCsvDto} is rendered to CSV with the expected column order
    * (auftragId, artikelnummer, kundeId).
    */
   @Test
-  void orderCsvDto_writesToCsv_inExpectedFormat() {
+  void orderCsvDto_writesToCsv_inExpectedFormat() throws IOException {
     List<OrderCsvDto> csvRows =
         List.of(
             OrderCsvDto.builder().auftragId("1").artikelnummer("123").kundeId("1").build(),
             OrderCsvDto.builder().auftragId("2").artikelnummer("456").kundeId("2").build());
 
-    byte[] bytes = csvService.ordersToCsv(csvRows);
-    String csv = new String(bytes, StandardCharsets.UTF_8);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    csvService.writeOrders(csvRows.stream(), out);
+    String csv = out.toString(StandardCharsets.UTF_8);
 
     assertThat(csv).isEqualTo(String.join("\n", "1,123,1", "2,456,2", ""));
   }
+
+  /**
+   * Verify that streamed orders are flushed to the target stream by every call, so several writes
+   * can go to one stream.
+   */
+  @Test
+  void writeOrders_flushesWithoutClosingStream() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    csvService.writeOrders(
+        Stream.of(OrderCsvDto.builder().auftragId("1").artikelnummer("123").kundeId("1").build()),
+        out);
+    assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo("1,123,1\n");
+    csvService.writeOrders(
+        Stream.of(OrderCsvDto.builder().auftragId("2").artikelnummer("Ä").kundeId("2").build()),
+        out);
+
+    assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo("1,123,1\n2,Ä,2\n");
+  }
+
+  /** Verify that tombstones are rendered as id and ISO-8601 deletion time. */
+  @Test
+  void tombstoneCsvDto_writesToCsv_inExpectedFormat() throws IOException {
+    Instant deletedAt = Instant.parse("2025-01-02T03:04:05Z");
+    List<TombstoneCsvDto> csvRows =
+        List.of(
+            TombstoneCsvDto.builder().id("1").deletedAt(deletedAt).build(),
+            TombstoneCsvDto.builder().id("2").deletedAt(deletedAt).build());
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    csvService.writeTombstones(csvRows.stream(), out);
+    String csv = out.toString(StandardCharsets.UTF_8);
+
+    assertThat(csv)
+        .isEqualTo(String.join("\n", "1,2025-01-02T03:04:05Z", "2,2025-01-02T03:04:05Z", ""));
+  }
 }
@@ -0,0 +1,81 @@
+package com.example.s3sync.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.example.s3sync.dto.CustomerLand;
+import com.example.s3sync.repository.CustomerRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.LongStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+public class CustomerLandCacheTest {
+
+  @Mock CustomerRepository customerRepository;
+
+  SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  CustomerLandCache cache;
+
+  @BeforeEach
+  void setUp() {
+    cache = new CustomerLandCache(customerRepository, meterRegistry, 10_000);
+  }
+
+  /** Uncached customers are read with one query per batch; later lookups are served from memory. */
+  @Test
+  void getLands_loadsMissesInBatchesOnce() {
+    List<Long> ids =
+        LongStream.rangeClosed(1, CustomerLandCache.LOOKUP_BATCH_SIZE + 1).boxed().toList();
+    when(customerRepository.findLandsByIdIn(any()))
+        .thenAnswer(
+            invocation ->
+                invocation.<List<Long>>getArgument(0).stream()
+                    .map(id -> new CustomerLand(id, "DE"))
+                    .toList());
+
+    assertThat(cache.getLands(ids)).hasSize(ids.size()).containsEntry(1L, "DE");
+    assertThat(cache.getLands(ids)).hasSize(ids.size());
+
+    verify(customerRepository, times(2)).findLandsByIdIn(any());
+    assertThat(meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count())
+        .isEqualTo(ids.size());
+    assertThat(meterRegistry.get("cache.gets").tag("result", "miss").functionCounter().count())
+        .isEqualTo(ids.size());
+  }
+
+  /** Ids without a customer are absent from the result and looked up again on the next call. */
+  @Test
+  void getLands_doesNotCacheMissingCustomers() {
+    when(customerRepository.findLandsByIdIn(any())).thenReturn(List.of());
+
+    assertThat(cache.getLands(List.of(7L))).isEmpty();
+    assertThat(cache.getLands(List.of(7L))).isEmpty();
+
+    verify(customerRepository, times(2)).findLandsByIdIn(List.of(7L));
+  }
+
+  /** Countries of exported customers replace cached ones without a query. */
+  @Test
+  void putAll_updatesEntries() {
+    when(customerRepository.findLandsByIdIn(List.of(1L)))
+        .thenReturn(List.of(new CustomerLand(1L, "DE")));
+    cache.getLands(List.of(1L));
+
+    cache.putAll(Map.of(1L, "AT", 2L, "US"));
+
+    assertThat(cache.getLands(List.of(1L, 2L)))
+        .containsOnly(Map.entry(1L, "AT"), Map.entry(2L, "US"));
+    verify(customerRepository, never()).findLandsByIdIn(List.of(2L));
+  }
+}
@@ -5,24 +5,41 @@ import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 import com.example.s3sync.domain.Customer;
+import com.example.s3sync.domain.CustomerColumn;
+import com.example.s3sync.domain.HashAlgorithm;
 import com.example.s3sync.domain.SyncedCustomerHash;
-import com.example.s3sync.dto.CustomerCsvDto;
-import com.example.s3sync.repository.SyncedCustomerHashRepository;
+import com.example.s3sync.dto.UnsyncedCustomer;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
 import org.assertj.core.groups.Tuple;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.*;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 @ExtendWith(MockitoExtension.class)
 class CustomerSyncServiceUnitTest {
 
-  @Mock SyncedCustomerHashRepository syncedCustomerHashRepository;
+  @Mock SyncedHashWriter syncedHashWriter;
   @Mock HashService hashService;
-  @Mock CsvService csvService;
+  @Spy CsvService csvService = new CsvService();
   @Mock S3UploaderService s3Uploader;
+  @Mock CustomerHashSnapshot customerHashSnapshot;
+  @Mock CustomerBucketTree customerBucketTree;
+  @Mock CustomerLandCache customerLandCache;
+  @Mock PlatformTransactionManager transactionManager;
+  @Spy SyncChunker syncChunker = new SyncChunker();
 
   @InjectMocks CustomerSyncService service;
 
@@ -40,37 +57,53 @@ class CustomerSyncServiceUnitTest {
     Customer mockedCustomer = mock(Customer.class);
     when(mockedCustomer.getId()).thenReturn(id);
     when(mockedCustomer.getLand()).thenReturn(land);
-    when(mockedCustomer.getFirmenname()).thenReturn(name);
+    lenient().when(mockedCustomer.getFirmenname()).thenReturn(name);
     return mockedCustomer;
   }
 
+  private static UnsyncedCustomer unsynced(Customer customer, String rowHash) {
+    return unsynced(customer, rowHash, EnumSet.allOf(CustomerColumn.class));
+  }
+
+  private static UnsyncedCustomer unsynced(
+      Customer customer, String rowHash, Set<CustomerColumn> changedColumns) {
+    return new UnsyncedCustomer(
+        customer, bytes(rowHash), bytes("columns-" + rowHash), changedColumns);
+  }
+
   /**
-   * Persist computed row-hashes for each unsynced customer and save a corresponding tracking entry
-   * per customer.
+   * Persist the row-hashes computed by the diff for each unsynced customer, without hashing again,
+   * and save a corresponding tracking entry per customer.
    */
   @Test
   void persistsUnsyncedCustomers() {
-    List<Customer> customers =
+    List<UnsyncedCustomer> customers =
         List.of(
-            createCustomer(1, "DE", "ascasc"),
-            createCustomer(2, "DE", "sadasd"),
-            createCustomer(3, "US", "asfafsaf"));
+            unsynced(createCustomer(1, "DE", "ascasc"), "hash1"),
+            unsynced(createCustomer(2, "DE", "sadasd"), "hash2"),
+            unsynced(createCustomer(3, "US", "asfafsaf"), "hash3"));
 
-    when(hashService.customerRowHash(
-            any(), any(), any(), any(), any(), any(), any(), any(), any(), any()))
-        .thenReturn("hash1", "hash2", "hash3");
+    when(hashService.algorithm()).thenReturn(HashAlgorithm.MURMUR3_128);
 
     service.syncAndUpload(customers);
 
-    verify(hashService, times(3))
-        .customerRowHash(any(), any(), any(), any(), any(), any(), any(), any(), any(), any());
+    verify(hashService, never())
+        .customerRowHash(
+            any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any());
 
-    ArgumentCaptor<SyncedCustomerHash> saved = ArgumentCaptor.forClass(SyncedCustomerHash.class);
-    verify(syncedCustomerHashRepository, times(3)).save(saved.capture());
-    assertThat(saved.getAllValues())
-        .extracting(SyncedCustomerHash::getKundenId, SyncedCustomerHash::getRowHash)
+    ArgumentCaptor<List<SyncedCustomerHash>> saved = ArgumentCaptor.forClass(List.class);
+    verify(syncedHashWriter).upsertCustomerHashes(saved.capture());
+    assertThat(saved.getValue())
+        .extracting(
+            SyncedCustomerHash::getKundenId,
+            SyncedCustomerHash::getRowHash,
+            SyncedCustomerHash::getHashAlgo,
+            SyncedCustomerHash::getColumnHashes)
         .containsExactlyInAnyOrder(
-            Tuple.tuple(1L, "hash1"), Tuple.tuple(2L, "hash2"), Tuple.tuple(3L, "hash3"));
+            Tuple.tuple(1L, bytes("hash1"), HashAlgorithm.MURMUR3_128, bytes("columns-hash1")),
+            Tuple.tuple(2L, bytes("hash2"), HashAlgorithm.MURMUR3_128, bytes("columns-hash2")),
+            Tuple.tuple(3L, bytes("hash3"), HashAlgorithm.MURMUR3_128, bytes("columns-hash3")));
+    verify(customerBucketTree).refresh(argThat(ids -> ids.size() == 3));
   }
 
   /**
@@ -79,18 +112,177 @@ class CustomerSyncServiceUnitTest {
    */
   @Test
   void groupsByCountry() {
-    List<Customer> customers =
+    List<UnsyncedCustomer> customers =
+        List.of(
+            unsynced(createCustomer(1, "DE", "ascasc"), "hash1"),
+            unsynced(createCustomer(2, "DE", "sadasd"), "hash2"),
+            unsynced(createCustomer(3, "US", "asfafsaf"), "hash3"));
+
+    service.syncAndUpload(customers);
+
+    Map<String, String> csvs = uploadCsvs();
+    assertThat(csvs).hasSize(2);
+    assertThat(csvs.entrySet())
+        .anySatisfy(
+            csv -> {
+              assertThat(csv.getKey()).startsWith("kunde_DE_");
+              assertThat(csv.getValue().lines()).hasSize(2);
+            })
+        .anySatisfy(
+            csv -> {
+              assertThat(csv.getKey()).startsWith("kunde_US_");
+              assertThat(csv.getValue().lines()).hasSize(1);
+            });
+  }
+
+  /**
+   * With delta export enabled, customers with all columns changed go to the full CSV, partially
+   * changed customers to the delta CSV with one record per changed column, and customers without
+   * changed exported columns to neither; all of them are tracked.
+   */
+  @Test
+  void deltaExport_splitsFullAndPartialChanges() {
+    ReflectionTestUtils.setField(service, "deltaExport", true);
+    Customer moved = createCustomer(2, "DE", "sadasd");
+    when(moved.getStrasse()).thenReturn("Neue Str. 1");
+    when(moved.getPlz()).thenReturn("68159");
+    List<UnsyncedCustomer> customers =
+        List.of(
+            unsynced(createCustomer(1, "DE", "ascasc"), "hash1"),
+            unsynced(moved, "hash2", EnumSet.of(CustomerColumn.STRASSE, CustomerColumn.PLZ)),
+            unsynced(
+                createCustomer(3, "DE", "asfafsaf"),
+                "hash3",
+                EnumSet.noneOf(CustomerColumn.class)));
+
+    service.syncAndUpload(customers);
+
+    verify(syncedHashWriter).upsertCustomerHashes(argThat(hashes -> hashes.size() == 3));
+    Map<String, String> csvs = uploadCsvs();
+    assertThat(csvs).hasSize(2);
+    assertThat(csvs.entrySet())
+        .anySatisfy(
+            csv -> {
+              assertThat(csv.getKey()).startsWith("kunde_DE_");
+              assertThat(csv.getValue().lines()).singleElement().asString().endsWith(",1");
+            })
+        .anySatisfy(
+            csv -> {
+              assertThat(csv.getKey()).startsWith("kunde_delta_DE_");
+              assertThat(csv.getValue()).isEqualTo("2,strasse,Neue Str. 1\n2,plz,68159\n");
+            });
+  }
+
+  /**
+   * The persisted row hashes reach the in-memory snapshot, and the countries the land cache, only
+   * once the transaction committed.
+   */
+  @Test
+  void updatesSnapshotAfterCommit() {
+    List<UnsyncedCustomer> customers =
+        List.of(unsynced(createCustomer(1, "DE", "ascasc"), "hash1"));
+    when(hashService.algorithm()).thenReturn(HashAlgorithm.SHA256);
+
+    service.syncAndUpload(customers);
+    verifyNoInteractions(customerHashSnapshot, customerLandCache);
+
+    TransactionSynchronizationManager.getSynchronizations()
+        .forEach(TransactionSynchronization::afterCommit);
+    verify(customerHashSnapshot)
+        .update(
+            argThat(hashes -> hashes.size() == 1 && Arrays.equals(hashes.get(1L), bytes("hash1"))),
+            eq(HashAlgorithm.SHA256));
+    verify(customerLandCache).putAll(Map.of(1L, "DE"));
+  }
+
+  /**
+   * With a chunk size every chunk is written and committed in its own transaction, and a country
+   * split into several chunks is uploaded as numbered parts.
+   */
+  @Test
+  void chunkSize_commitsEveryChunkSeparately() {
+    ReflectionTestUtils.setField(syncChunker, "chunkSize", 2);
+    List<UnsyncedCustomer> customers =
         List.of(
-            createCustomer(1, "DE", "ascasc"),
-            createCustomer(2, "DE", "sadasd"),
-            createCustomer(3, "US", "asfafsaf"));
+            unsynced(createCustomer(1, "DE", "ascasc"), "hash1"),
+            unsynced(createCustomer(2, "DE", "sadasd"), "hash2"),
+            unsynced(createCustomer(3, "DE", "asfafsaf"), "hash3"),
+            unsynced(createCustomer(4, "US", "qwerty"), "hash4"));
 
     service.syncAndUpload(customers);
 
-    ArgumentCaptor<List<CustomerCsvDto>> csvArg = ArgumentCaptor.forClass(List.class);
-    verify(csvService, times(2)).customersToCsv(csvArg.capture());
-    List<List<CustomerCsvDto>> allDtos = csvArg.getAllValues();
-    assertThat(allDtos).hasSize(2);
-    assertThat(allDtos.stream().map(List::size)).containsExactlyInAnyOrder(2, 1);
+    verify(transactionManager, times(3)).commit(any());
+    ArgumentCaptor<List<SyncedCustomerHash>> saved = ArgumentCaptor.forClass(List.class);
+    verify(syncedHashWriter, times(3)).upsertCustomerHashes(saved.capture());
+    assertThat(saved.getAllValues()).extracting(List::size).containsExactly(2, 1, 1);
+    verify(customerBucketTree, times(3)).refresh(any());
+
+    assertThat(uploadCsvs().keySet())
+        .satisfiesExactly(
+            name -> assertThat(name).startsWith("kunde_DE_").endsWith("_part1.csv"),
+            name -> assertThat(name).startsWith("kunde_DE_").endsWith("_part2.csv"),
+            name -> assertThat(name).startsWith("kunde_US_").doesNotContain("_part"));
+  }
+
+  /** Batches of the same hour, e.g. journal batches, are uploaded under distinct file names. */
+  @Test
+  void batch_labelsFileNames() {
+    service.syncAndUpload(
+        List.of(unsynced(createCustomer(1, "DE", "ascasc"), "hash1")), "journal10");
+    service.syncAndUpload(
+        List.of(unsynced(createCustomer(2, "DE", "sadasd"), "hash2")), "journal20");
+
+    assertThat(uploadCsvs().keySet())
+        .satisfiesExactlyInAnyOrder(
+            name -> assertThat(name).startsWith("kunde_DE_").endsWith("_journal10.csv"),
+            name -> assertThat(name).startsWith("kunde_DE_").endsWith("_journal20.csv"));
+  }
+
+  /**
+   * A stream with more changed customers than one page is synced page by page, every page in its
+   * own transaction and files.
+   */
+  @Test
+  void stream_syncsPageByPage() {
+    ReflectionTestUtils.setField(syncChunker, "pageSize", 2);
+
+    service.syncAndUpload(
+        Stream.of(
+            unsynced(createCustomer(1, "DE", "ascasc"), "hash1"),
+            unsynced(createCustomer(2, "DE", "sadasd"), "hash2"),
+            unsynced(createCustomer(3, "DE", "asfafsaf"), "hash3")));
+
+    verify(transactionManager, times(2)).commit(any());
+    ArgumentCaptor<List<SyncedCustomerHash>> saved = ArgumentCaptor.forClass(List.class);
+    verify(syncedHashWriter, times(2)).upsertCustomerHashes(saved.capture());
+    assertThat(saved.getAllValues()).extracting(List::size).containsExactly(2, 1);
+    assertThat(uploadCsvs().keySet())
+        .satisfiesExactly(
+            name -> assertThat(name).startsWith("kunde_DE_").endsWith("_page1.csv"),
+            name -> assertThat(name).startsWith("kunde_DE_").endsWith("_page2.csv"));
+  }
+
+  /**
+   * Run the uploads scheduled in {@code beforeCommit} and collect the streamed CSVs.
+   *
+   * @return CSV content by file name, in upload order
+   */
+  private Map<String, String> uploadCsvs() {
+    Map<String, String> csvs = new LinkedHashMap<>();
+    when(s3Uploader.uploadCsv(anyString(), any()))
+        .thenAnswer(
+            invocation -> {
+              ByteArrayOutputStream out = new ByteArrayOutputStream();
+              invocation.<S3UploaderService.CsvContent>getArgument(1).writeTo(out);
+              csvs.put(invocation.getArgument(0), out.toString(StandardCharsets.UTF_8));
+              return "etag";
+            });
+    TransactionSynchronizationManager.getSynchronizations()
+        .forEach(synchronization -> synchronization.beforeCommit(false));
+    return csvs;
+  }
+
+  private static byte[] bytes(String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
   }
 }
@@ -2,7 +2,24 @@ package com.example.s3sync.service;
 
 import static org.assertj.core.api.Assertions.*;
 
+import com.example.s3sync.domain.Customer;
+import com.example.s3sync.domain.CustomerColumn;
+import com.example.s3sync.domain.HashAlgorithm;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.apache.commons.codec.digest.Blake3;
+import org.apache.commons.codec.digest.MurmurHash3;
 import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
 
 public class HashServiceTest {
 
@@ -13,19 +30,19 @@ public class HashServiceTest {
    * hashes
    */
   // "a|b||c|d|e|f|g|h|1"
-  private static final String EXPECT_CUSTOMER_HASH =
-      "8216357bbee10bfe493bb998aaf2d823195a424c74501ee7005513aabfddc7ac";
+  private static final byte[] EXPECT_CUSTOMER_HASH =
+      HexFormat.of().parseHex("8216357bbee10bfe493bb998aaf2d823195a424c74501ee7005513aabfddc7ac");
   // "2025-11-05T21:15:30Z"
-  private static final String EXPECT_ORDER_MARKER_HASH =
-      "620b5893fdf75700f00e595de879c351f8ddbccc4a3e77a9c626dea79391f700";
+  private static final byte[] EXPECT_ORDER_MARKER_HASH =
+      HexFormat.of().parseHex("620b5893fdf75700f00e595de879c351f8ddbccc4a3e77a9c626dea79391f700");
 
   /**
    * Ensure that customerRowHash trims and normalizes input fields (removes surrounding spaces) and
-   * produces the expected SHA-256 hex digest for the input.
+   * produces the expected SHA-256 digest for the input.
    */
   @Test
   void customerRowHash_with_Spaces() {
-    String hash =
+    byte[] hash =
         svc.customerRowHash(" a ", " b ", " ", " c ", " d ", " e ", " f ", " g ", " h ", " 1 ");
     assertThat(hash).isEqualTo(EXPECT_CUSTOMER_HASH);
   }
@@ -33,18 +50,37 @@ public class HashServiceTest {
   /** Verify that changing one or more fields results in a different customer row hash. */
   @Test
   void customerRowHash_field_changed() {
-    String base = svc.customerRowHash("", "b", "", "c", "d", "e", "f", "g", "h", "1");
-    String changed = svc.customerRowHash("a", "b", "c", "d", "e", "f", "g", "h", "i", "1");
+    byte[] base = svc.customerRowHash("", "b", "", "c", "d", "e", "f", "g", "h", "1");
+    byte[] changed = svc.customerRowHash("a", "b", "c", "d", "e", "f", "g", "h", "i", "1");
     assertThat(changed).isNotEqualTo(base);
   }
 
+  /**
+   * A hash that fails halfway, e.g. on a {@code null} field, must not leave bytes in the per-thread
+   * buffer that end up in the next hash of the thread.
+   */
+  @Test
+  void customerRowHash_failedHashDoesNotLeak() {
+    byte[] before =
+        svc.customerRowHash(" a ", " b ", " ", " c ", " d ", " e ", " f ", " g ", " h ", " 1 ");
+
+    assertThatNullPointerException()
+        .isThrownBy(() -> svc.customerRowHash("a", "b", null, "c", "d", "e", "f", "g", "h", "1"));
+
+    assertThat(
+            svc.customerRowHash(" a ", " b ", " ", " c ", " d ", " e ", " f ", " g ", " h ", " 1 "))
+        .isEqualTo(before)
+        .isEqualTo(EXPECT_CUSTOMER_HASH);
+    assertThat(svc.orderMarkerHash(" 2025-11-05T21:15:30Z ")).isEqualTo(EXPECT_ORDER_MARKER_HASH);
+  }
+
   /**
    * Ensure that orderMarkerHash trims surrounding whitespace and computes the expected SHA-256
    * digest for a normalized marker string.
    */
   @Test
   void orderMarkerHash_with_Spaces() {
-    String hash = svc.orderMarkerHash(" 2025-11-05T21:15:30Z ");
+    byte[] hash = svc.orderMarkerHash(" 2025-11-05T21:15:30Z ");
     assertThat(hash).isEqualTo(EXPECT_ORDER_MARKER_HASH);
   }
 
@@ -54,8 +90,177 @@ public class HashServiceTest {
    */
   @Test
   void orderMarkerHash_marker_modified() {
-    String base = svc.orderMarkerHash("2025-11-05T21:15:30Z");
-    String changed = svc.orderMarkerHash("2025-11-05T21:15:30Z_modified");
+    byte[] base = svc.orderMarkerHash("2025-11-05T21:15:30Z");
+    byte[] changed = svc.orderMarkerHash("2025-11-05T21:15:30Z_modified");
     assertThat(changed).isNotEqualTo(base);
   }
+
+  /**
+   * The streaming implementation must produce the digest of the UTF-8 bytes of the trimmed, joined
+   * fields for arbitrary input: multi-byte characters, unpaired surrogates (replaced by {@code ?}),
+   * control characters and fields longer than the internal buffers.
+   */
+  @Test
+  void customerRowHash_matchesJoinedStringDigest() throws Exception {
+    Random random = new Random(42);
+    for (int i = 0; i < 2_000; i++) {
+      String[] fields = new String[10];
+      for (int f = 0; f < fields.length; f++) {
+        fields[f] = randomField(random);
+      }
+      assertThat(
+              svc.customerRowHash(
+                  fields[0], fields[1], fields[2], fields[3], fields[4], fields[5], fields[6],
+                  fields[7], fields[8], fields[9]))
+          .as("fields %s", List.of(fields))
+          .isEqualTo(referenceCustomerHash(fields));
+    }
+  }
+
+  /** Hashing from several threads at once must not mix up the per-thread digest state. */
+  @Test
+  void customerRowHash_concurrentCallers() throws Exception {
+    String[] fields = {"Firma", "Straße", "", "Köln", "DE", "50667", "Jörg", "Müller", "e@x", "7"};
+    byte[] expected = referenceCustomerHash(fields);
+    try (ExecutorService executor = Executors.newFixedThreadPool(4)) {
+      List<Future<Boolean>> results =
+          executor.invokeAll(
+              Collections.nCopies(
+                  8,
+                  () -> {
+                    for (int i = 0; i < 1_000; i++) {
+                      byte[] hash =
+                          svc.customerRowHash(
+                              fields[0], fields[1], fields[2], fields[3], fields[4], fields[5],
+                              fields[6], fields[7], fields[8], fields[9]);
+                      if (!Arrays.equals(hash, expected)) {
+                        return false;
+                      }
+                    }
+                    return true;
+                  }));
+      for (Future<Boolean> result : results) {
+        assertThat(result.get()).isTrue();
+      }
+    }
+  }
+
+  private static String randomField(Random random) {
+    int length = random.nextInt(10) == 0 ? 300 + random.nextInt(800) : random.nextInt(20);
+    StringBuilder sb = new StringBuilder(length);
+    for (int i = 0; i < length; i++) {
+      switch (random.nextInt(6)) {
+        case 0 -> sb.append(' ');
+        case 1 -> sb.append((char) random.nextInt(0x20));
+        case 2 -> sb.append((char) (0x80 + random.nextInt(0x780)));
+        case 3 -> sb.append((char) (0xD800 + random.nextInt(0x800)));
+        case 4 -> sb.appendCodePoint(0x10000 + random.nextInt(0x1000));
+        default -> sb.append((char) ('a' + random.nextInt(26)));
+      }
+    }
+    return sb.toString();
+  }
+
+  private static byte[] referenceCustomerHash(String... fields) throws Exception {
+    String[] trimmed = new String[fields.length];
+    for (int i = 0; i < fields.length; i++) {
+      trimmed[i] = fields[i].trim();
+    }
+    byte[] bytes = String.join("|", trimmed).getBytes(StandardCharsets.UTF_8);
+    return MessageDigest.getInstance("SHA-256").digest(bytes);
+  }
+
+  /**
+   * Every algorithm hashes the UTF-8 bytes of the trimmed, joined fields; the overload without
+   * algorithm uses the configured one.
+   */
+  @Test
+  void customerRowHash_supportsAllAlgorithms() throws Exception {
+    String[] fields = {
+      " Firma ", "Straße", "", "Köln", "DE", "50667", "Jörg", "Müller", "e@x", "7"
+    };
+    byte[] joined =
+        "Firma|Straße||Köln|DE|50667|Jörg|Müller|e@x|7".getBytes(StandardCharsets.UTF_8);
+    long[] murmur = MurmurHash3.hash128x64(joined, 0, joined.length, 0);
+    byte[] expectedMurmur = ByteBuffer.allocate(16).putLong(murmur[0]).putLong(murmur[1]).array();
+    byte[] expectedBlake3 = Blake3.hash(joined);
+
+    assertThat(customerRowHash(svc, HashAlgorithm.SHA256, fields))
+        .isEqualTo(referenceCustomerHash(fields))
+        .hasSize(32);
+    assertThat(customerRowHash(svc, HashAlgorithm.MURMUR3_128, fields))
+        .isEqualTo(expectedMurmur)
+        .hasSize(16);
+    assertThat(customerRowHash(svc, HashAlgorithm.BLAKE3, fields))
+        .isEqualTo(expectedBlake3)
+        .hasSize(32);
+
+    HashService murmurService = new HashService();
+    ReflectionTestUtils.setField(murmurService, "algorithm", HashAlgorithm.MURMUR3_128);
+    assertThat(murmurService.algorithm()).isEqualTo(HashAlgorithm.MURMUR3_128);
+    assertThat(
+            murmurService.customerRowHash(
+                fields[0], fields[1], fields[2], fields[3], fields[4], fields[5], fields[6],
+                fields[7], fields[8], fields[9]))
+        .isEqualTo(expectedMurmur);
+    assertThat(svc.algorithm()).isEqualTo(HashAlgorithm.SHA256);
+  }
+
+  /** Order markers honour the requested algorithm as well. */
+  @Test
+  void orderMarkerHash_supportsAllAlgorithms() {
+    byte[] marker = "2025-11-05T21:15:30Z".getBytes(StandardCharsets.UTF_8);
+
+    assertThat(svc.orderMarkerHash(HashAlgorithm.SHA256, " 2025-11-05T21:15:30Z "))
+        .isEqualTo(EXPECT_ORDER_MARKER_HASH);
+    assertThat(svc.orderMarkerHash(HashAlgorithm.BLAKE3, " 2025-11-05T21:15:30Z "))
+        .isEqualTo(Blake3.hash(marker));
+    assertThat(svc.orderMarkerHash(HashAlgorithm.MURMUR3_128, "2025-11-05T21:15:30Z"))
+        .isNotEqualTo(svc.orderMarkerHash(HashAlgorithm.MURMUR3_128, "2025-11-05T21:15:31Z"));
+  }
+
+  /**
+   * Column fingerprints are 32-bit Murmur3 hashes of the trimmed columns; changing one column only
+   * changes its own fingerprint.
+   */
+  @Test
+  void customerColumnHashes_changeOnlyWithTheirColumn() {
+    Customer customer =
+        Customer.builder()
+            .id(7L)
+            .firmenname(" Firma ")
+            .strasse("Straße")
+            .strassenzusatz("")
+            .ort("Köln")
+            .land("DE")
+            .plz("50667")
+            .vorname("Jörg")
+            .nachname("Müller")
+            .email("e@x")
+            .build();
+
+    byte[] hashes = svc.customerColumnHashes(customer);
+    assertThat(hashes)
+        .hasSize(CustomerColumn.values().length * CustomerColumn.FINGERPRINT_LENGTH)
+        .startsWith(
+            ByteBuffer.allocate(4)
+                .putInt(MurmurHash3.hash32x86("Firma".getBytes(StandardCharsets.UTF_8)))
+                .array());
+
+    customer.setOrt("Bonn");
+    customer.setEmail("other@x");
+    byte[] changed = svc.customerColumnHashes(customer);
+    for (CustomerColumn column : CustomerColumn.values()) {
+      int from = column.ordinal() * CustomerColumn.FINGERPRINT_LENGTH;
+      int to = from + CustomerColumn.FINGERPRINT_LENGTH;
+      assertThat(Arrays.equals(hashes, from, to, changed, from, to))
+          .as(column.name())
+          .isEqualTo(column != CustomerColumn.ORT);
+    }
+  }
+
+  private static byte[] customerRowHash(HashService svc, HashAlgorithm algorithm, String[] f) {
+    return svc.customerRowHash(
+        algorithm, f[0], f[1], f[2], f[3], f[4], f[5], f[6], f[7], f[8], f[9]);
+  }
 }
@@ -0,0 +1,89 @@
+package com.example.s3sync.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import com.example.s3sync.service.LogicalReplicationChangeSource.ChangeSet;
+import com.example.s3sync.service.LogicalReplicationChangeSource.DecodedChange;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+@ExtendWith(MockitoExtension.class)
+class LogicalReplicationChangeSourceTest {
+
+  @Mock JdbcTemplate jdbcTemplate;
+
+  @InjectMocks LogicalReplicationChangeSource changeSource;
+
+  @Test
+  void parse_extractsCustomerAndOrderKeys() {
+    ChangeSet changes =
+        LogicalReplicationChangeSource.parse(
+            List.of(
+                new DecodedChange("0/1", "BEGIN"),
+                new DecodedChange(
+                    "0/2",
+                    "table public.kunde: INSERT: kundenid[bigint]:7"
+                        + " vorname[character varying]:'kundenid[bigint]:99'"),
+                new DecodedChange(
+                    "0/3",
+                    "table public.kunde: UPDATE: old-key: kundenid[bigint]:8"
+                        + " new-tuple: kundenid[bigint]:9 vorname[character varying]:'x'"),
+                new DecodedChange("0/4", "table public.kunde: DELETE: kundenid[bigint]:7"),
+                new DecodedChange(
+                    "0/5",
+                    "table public.auftraege: UPDATE: auftragid[character varying]:'A''1 2'"
+                        + " kundeid[character varying]:'7'"),
+                new DecodedChange(
+                    "0/6",
+                    "table public.synced_kunde_hash: INSERT: kundenid[bigint]:42"
+                        + " row_hash[character varying]:'abc'"),
+                new DecodedChange("0/7", "COMMIT")));
+
+    assertThat(changes.customerIds()).containsExactly(7L, 8L, 9L);
+    assertThat(changes.orderIds()).containsExactly("A'1 2");
+    assertThat(changes.lastLsn()).isEqualTo("0/7");
+  }
+
+  @Test
+  void parse_emptyWhenNothingDecoded() {
+    ChangeSet changes = LogicalReplicationChangeSource.parse(List.of());
+
+    assertThat(changes.isEmpty()).isTrue();
+    assertThat(changes.customerIds()).isEmpty();
+  }
+
+  @Test
+  void batchLabel_padsLsnToSortInCommitOrder() {
+    assertThat(
+            LogicalReplicationChangeSource.parse(List.of(new DecodedChange("0/16B3748", "COMMIT")))
+                .batchLabel())
+        .isEqualTo("lsn00000000016B3748");
+    assertThat(
+            LogicalReplicationChangeSource.parse(List.of(new DecodedChange("1A/F", "COMMIT")))
+                .batchLabel())
+        .isEqualTo("lsn0000001A0000000F");
+  }
+
+  @Test
+  void acknowledge_skipsEmptyChangeSet() {
+    changeSource.acknowledge(LogicalReplicationChangeSource.parse(List.of()));
+
+    verifyNoInteractions(jdbcTemplate);
+  }
+
+  @Test
+  void acknowledge_advancesSlotToLastLsn() {
+    changeSource.acknowledge(
+        LogicalReplicationChangeSource.parse(List.of(new DecodedChange("0/16B3748", "COMMIT"))));
+
+    verify(jdbcTemplate)
+        .queryForList(contains("pg_replication_slot_advance"), eq("s3sync"), eq("0/16B3748"));
+  }
+}
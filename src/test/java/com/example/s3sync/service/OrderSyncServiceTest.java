@@ -1,18 +1,24 @@
 package com.example.s3sync.service;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.example.s3sync.domain.HashAlgorithm;
 import com.example.s3sync.domain.Order;
 import com.example.s3sync.domain.SyncedOrderHash;
-import com.example.s3sync.dto.OrderCsvDto;
-import com.example.s3sync.repository.CustomerRepository;
-import com.example.s3sync.repository.SyncedOrderHashRepository;
+import com.example.s3sync.dto.UnsyncedOrder;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import org.assertj.core.groups.Tuple;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -21,19 +27,22 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
-import org.mockito.Mockito;
 import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 @ExtendWith(MockitoExtension.class)
 public class OrderSyncServiceTest {
 
-  @Mock SyncedOrderHashRepository syncedOrderHashRepository;
+  @Mock SyncedHashWriter syncedHashWriter;
   @Mock HashService hashService;
-  @Mock CsvService csvService;
+  @Spy CsvService csvService = new CsvService();
   @Mock S3UploaderService s3Uploader;
-  @Mock CustomerRepository customerRepository;
+  @Mock CustomerLandCache customerLandCache;
+  @Mock SyncedOrderIdFilter syncedOrderIdFilter;
+  @Mock PlatformTransactionManager transactionManager;
+  @Spy SyncChunker syncChunker = new SyncChunker();
 
   @Spy @InjectMocks OrderSyncService service;
 
@@ -48,58 +57,140 @@ public class OrderSyncServiceTest {
   }
 
   private Order createOrder(String id, String lastchange) {
+    return createOrder(id, lastchange, id);
+  }
+
+  private Order createOrder(String id, String lastchange, String kundeId) {
     Order mockedOrder = mock(Order.class);
-    when(mockedOrder.getId()).thenReturn(id);
-    when(mockedOrder.getLastchange()).thenReturn(lastchange);
+    lenient().when(mockedOrder.getId()).thenReturn(id);
+    lenient().when(mockedOrder.getKundeid()).thenReturn(kundeId);
+    lenient().when(mockedOrder.getLastchange()).thenReturn(lastchange);
     return mockedOrder;
   }
 
+  private static UnsyncedOrder unsynced(Order order, String markerHash) {
+    return new UnsyncedOrder(order, bytes(markerHash));
+  }
+
   /**
-   * Persist marker hashes for each unsynced order and save a corresponding tracking entry per
-   * order.
+   * Persist the marker hashes computed by the diff for each unsynced order, without hashing again,
+   * and save a corresponding tracking entry per order.
    */
   @Test
   void persistsUnsyncedOrders() {
-    List<Order> orders =
+    List<UnsyncedOrder> orders =
         List.of(
-            createOrder("1", "2024-01-01T12:00:00"),
-            createOrder("2", "2024-01-01T13:00:00"),
-            createOrder("3", "2024-01-01T14:00:00"));
+            unsynced(createOrder("1", "2024-01-01T12:00:00"), "hash1"),
+            unsynced(createOrder("2", "2024-01-01T13:00:00"), "hash2"),
+            unsynced(createOrder("3", "2024-01-01T14:00:00"), "hash3"));
 
-    when(hashService.orderMarkerHash(anyString())).thenReturn("hash1", "hash2", "hash3");
+    when(hashService.algorithm()).thenReturn(HashAlgorithm.MURMUR3_128);
 
-    Mockito.doReturn("DE", "DE", "US").when(service).getLand(Mockito.any());
+    when(customerLandCache.getLands(any())).thenReturn(Map.of(1L, "DE", 2L, "DE", 3L, "US"));
     service.syncAndUpload(orders);
 
-    verify(hashService, times(3)).orderMarkerHash(anyString());
+    verify(hashService, never()).orderMarkerHash(any(), any());
 
-    ArgumentCaptor<SyncedOrderHash> saved = ArgumentCaptor.forClass(SyncedOrderHash.class);
-    verify(syncedOrderHashRepository, times(3)).save(saved.capture());
-    assertThat(saved.getAllValues())
+    ArgumentCaptor<List<SyncedOrderHash>> saved = ArgumentCaptor.forClass(List.class);
+    verify(syncedHashWriter).upsertOrderHashes(saved.capture());
+    assertThat(saved.getValue())
         .extracting(SyncedOrderHash::getOrderId, SyncedOrderHash::getMarkerHash)
         .containsExactlyInAnyOrder(
-            Tuple.tuple("1", "hash1"), Tuple.tuple("2", "hash2"), Tuple.tuple("3", "hash3"));
+            Tuple.tuple("1", bytes("hash1")),
+            Tuple.tuple("2", bytes("hash2")),
+            Tuple.tuple("3", bytes("hash3")));
   }
 
   /**
-   * Ensure orders are grouped by the customer country (via getLand) so that separate CSVs are
-   * produced per country.
+   * Ensure orders are grouped by the customer country (resolved with one batched lookup) so that
+   * separate CSVs are produced per country.
    */
   @Test
   void groupsByCountry() {
-    List<Order> orders =
+    List<UnsyncedOrder> orders =
+        List.of(
+            unsynced(createOrder("1", "2024-01-01T12:00:00"), "hash1"),
+            unsynced(createOrder("2", "2024-01-01T13:00:00"), "hash2"),
+            unsynced(createOrder("3", "2024-01-01T14:00:00"), "hash3"));
+
+    when(customerLandCache.getLands(any())).thenReturn(Map.of(1L, "DE", 2L, "DE", 3L, "US"));
+    service.syncAndUpload(orders);
+
+    Map<String, String> csvs = uploadCsvs();
+    assertThat(csvs).hasSize(2);
+    assertThat(csvs.entrySet())
+        .anySatisfy(
+            csv -> {
+              assertThat(csv.getKey()).startsWith("auftraege_DE_");
+              assertThat(csv.getValue().lines()).hasSize(2);
+            })
+        .anySatisfy(
+            csv -> {
+              assertThat(csv.getKey()).startsWith("auftraege_US_");
+              assertThat(csv.getValue().lines()).hasSize(1);
+            });
+  }
+
+  /**
+   * Orders whose customer does not exist, or whose customer id is not numeric, are exported and
+   * tracked under the orphaned bucket instead of failing the run.
+   */
+  @Test
+  void orphanedOrders_exportedSeparately() {
+    List<UnsyncedOrder> orders =
         List.of(
-            createOrder("1", "2024-01-01T12:00:00"),
-            createOrder("2", "2024-01-01T13:00:00"),
-            createOrder("3", "2024-01-01T14:00:00"));
+            unsynced(createOrder("1", "2024-01-01T12:00:00", "7"), "hash1"),
+            unsynced(createOrder("2", "2024-01-01T13:00:00", "8"), "hash2"),
+            unsynced(createOrder("3", "2024-01-01T14:00:00", "n/a"), "hash3"));
+    when(customerLandCache.getLands(Set.of(7L, 8L))).thenReturn(Map.of(7L, "DE"));
 
-    Mockito.doReturn("DE", "DE", "US").when(service).getLand(Mockito.any());
     service.syncAndUpload(orders);
 
-    ArgumentCaptor<List<OrderCsvDto>> csvArg = ArgumentCaptor.forClass(List.class);
-    verify(csvService, times(2)).ordersToCsv(csvArg.capture());
-    List<List<OrderCsvDto>> allDtos = csvArg.getAllValues();
-    assertThat(allDtos).hasSize(2);
-    assertThat(allDtos.stream().map(List::size)).containsExactlyInAnyOrder(2, 1);
+    ArgumentCaptor<List<SyncedOrderHash>> saved = ArgumentCaptor.forClass(List.class);
+    verify(syncedHashWriter).upsertOrderHashes(saved.capture());
+    assertThat(saved.getValue())
+        .extracting(SyncedOrderHash::getOrderId, SyncedOrderHash::getLand)
+        .containsExactlyInAnyOrder(
+            Tuple.tuple("1", "DE"),
+            Tuple.tuple("2", OrderSyncService.ORPHANED),
+            Tuple.tuple("3", OrderSyncService.ORPHANED));
+    assertThat(uploadCsvs().keySet())
+        .satisfiesExactlyInAnyOrder(
+            name -> assertThat(name).startsWith("auftraege_DE_"),
+            name -> assertThat(name).startsWith("auftraege_orphaned_"));
+  }
+
+  /** Customer ids are looked up once, trimmed; non-numeric ids are not looked up. */
+  @Test
+  void getLands_mapsKundeIds() {
+    when(customerLandCache.getLands(Set.of(1L, 2L))).thenReturn(Map.of(1L, "DE"));
+
+    Map<String, String> lands = service.getLands(List.of("1", " 1", "2", "n/a"));
+
+    assertThat(lands).containsOnly(Map.entry("1", "DE"), Map.entry(" 1", "DE"));
+  }
+
+  /**
+   * Run the uploads scheduled in {@code beforeCommit} and collect the streamed CSVs.
+   *
+   * @return CSV content by file name, in upload order
+   */
+  private Map<String, String> uploadCsvs() {
+    Map<String, String> csvs = new LinkedHashMap<>();
+    when(s3Uploader.uploadCsv(anyString(), any()))
+        .thenAnswer(
+            invocation -> {
+              ByteArrayOutputStream out = new ByteArrayOutputStream();
+              invocation.<S3UploaderService.CsvContent>getArgument(1).writeTo(out);
+              csvs.put(invocation.getArgument(0), out.toString(StandardCharsets.UTF_8));
+              return "etag";
+            });
+    TransactionSynchronizationManager.getSynchronizations()
+        .forEach(synchronization -> synchronization.beforeCommit(false));
+    return csvs;
+  }
+
+  private static byte[] bytes(String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
   }
 }
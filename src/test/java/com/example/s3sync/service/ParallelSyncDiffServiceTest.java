@@ -0,0 +1,108 @@
+package com.example.s3sync.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import com.example.s3sync.domain.Customer;
+import com.example.s3sync.domain.CustomerColumn;
+import com.example.s3sync.dto.UnsyncedCustomer;
+import com.example.s3sync.dto.UnsyncedOrder;
+import com.example.s3sync.repository.CustomerRepository;
+import com.example.s3sync.repository.OrderRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.persistence.EntityManager;
+import java.util.EnumSet;
+import java.util.List;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+@ExtendWith(MockitoExtension.class)
+class ParallelSyncDiffServiceTest {
+
+  @Mock CustomerRepository customerRepository;
+  @Mock OrderRepository orderRepository;
+  @Mock SyncDiffService syncDiffService;
+  @Mock PlatformTransactionManager transactionManager;
+  @Mock DataSource dataSource;
+  @Mock EntityManager entityManager;
+
+  @InjectMocks ParallelSyncDiffService service;
+
+  @BeforeEach
+  void setUp() {
+    ReflectionTestUtils.setField(service, "entityManager", entityManager);
+    ReflectionTestUtils.setField(service, "workers", 2);
+    ReflectionTestUtils.setField(service, "chunkSize", 2);
+  }
+
+  private Customer customer(long id) {
+    Customer customer = mock(Customer.class, "Customer" + id);
+    lenient().when(customer.getId()).thenReturn(id);
+    return customer;
+  }
+
+  private static List<UnsyncedCustomer> unsynced(Customer customer) {
+    return List.of(
+        new UnsyncedCustomer(
+            customer, new byte[32], new byte[32], EnumSet.allOf(CustomerColumn.class)));
+  }
+
+  /**
+   * Every range is walked in keyset pages bounded by its upper key, and the unsynced customers of
+   * all ranges are merged in key order.
+   */
+  @Test
+  void getUnsyncedCustomers_diffsRangesAndMergesInKeyOrder() {
+    Customer c1 = customer(1);
+    Customer c2 = customer(2);
+    Customer c3 = customer(3);
+    Customer c5 = customer(5);
+    when(customerRepository.findRangeUpperBounds(2)).thenReturn(List.of(3L, 5L));
+    when(customerRepository.findByIdLessThanEqualOrderByIdAsc(3L, Limit.of(2)))
+        .thenReturn(List.of(c1, c2));
+    when(customerRepository.findByIdGreaterThanAndIdLessThanEqualOrderByIdAsc(2L, 3L, Limit.of(2)))
+        .thenReturn(List.of(c3));
+    when(customerRepository.findByIdGreaterThanAndIdLessThanEqualOrderByIdAsc(3L, 5L, Limit.of(2)))
+        .thenReturn(List.of(c5));
+    when(syncDiffService.filterUnsyncedCustomers(List.of(c1, c2))).thenReturn(unsynced(c2));
+    when(syncDiffService.filterUnsyncedCustomers(List.of(c3))).thenReturn(unsynced(c3));
+    when(syncDiffService.filterUnsyncedCustomers(List.of(c5))).thenReturn(unsynced(c5));
+
+    List<UnsyncedCustomer> result = service.getUnsyncedCustomers();
+
+    assertThat(result).extracting(UnsyncedCustomer::customer).containsExactly(c2, c3, c5);
+    verify(transactionManager, times(2)).getTransaction(any());
+    verify(transactionManager, times(2)).commit(any());
+  }
+
+  @Test
+  void getUnsyncedOrders_emptyTable() {
+    when(orderRepository.findRangeUpperBounds(2)).thenReturn(List.of());
+
+    List<UnsyncedOrder> result = service.getUnsyncedOrders();
+
+    assertThat(result).isEmpty();
+    verifyNoInteractions(syncDiffService, transactionManager);
+  }
+
+  /** The worker count never exceeds the connection pool, keeping one connection free. */
+  @Test
+  void effectiveWorkers_cappedByHikariPool() {
+    try (HikariDataSource hikari = new HikariDataSource()) {
+      hikari.setMaximumPoolSize(4);
+      ReflectionTestUtils.setField(service, "dataSource", hikari);
+      ReflectionTestUtils.setField(service, "workers", 16);
+
+      assertThat(service.effectiveWorkers()).isEqualTo(3);
+    }
+  }
+}
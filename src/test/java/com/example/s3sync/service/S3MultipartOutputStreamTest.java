@@ -0,0 +1,179 @@
+package com.example.s3sync.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+
+@ExtendWith(MockitoExtension.class)
+class S3MultipartOutputStreamTest {
+
+  @Mock S3Client s3;
+
+  private S3MultipartOutputStream stream(int partSize) {
+    return new S3MultipartOutputStream(s3, "bucket", "file.csv", "text/csv", partSize);
+  }
+
+  private static String read(RequestBody body) {
+    try {
+      return new String(
+          body.contentStreamProvider().newStream().readAllBytes(), StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /** Stub a started multipart upload and record the content of every uploaded part. */
+  private List<String> multipartUpload() {
+    List<String> parts = new ArrayList<>();
+    when(s3.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+        .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload-1").build());
+    when(s3.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+        .thenAnswer(
+            invocation -> {
+              parts.add(read(invocation.getArgument(1)));
+              return UploadPartResponse.builder().eTag("part-" + parts.size()).build();
+            });
+    return parts;
+  }
+
+  /** Content that fits into one part is stored with a single PutObject. */
+  @Test
+  void close_withinOnePart_putsObject() throws IOException {
+    List<String> bodies = new ArrayList<>();
+    when(s3.putObject(any(PutObjectRequest.class), any(RequestBody.class)))
+        .thenAnswer(
+            invocation -> {
+              bodies.add(read(invocation.getArgument(1)));
+              return PutObjectResponse.builder().eTag("etag").build();
+            });
+
+    S3MultipartOutputStream out = stream(4);
+    out.write("abcd".getBytes(StandardCharsets.UTF_8));
+    out.close();
+
+    assertThat(bodies).containsExactly("abcd");
+    assertThat(out.eTag()).isEqualTo("etag");
+    verify(s3, never()).createMultipartUpload(any(CreateMultipartUploadRequest.class));
+  }
+
+  /** A part is uploaded only once more bytes follow a full buffer, so no empty last part exists. */
+  @Test
+  void close_atPartBoundary_completesWithFullParts() throws IOException {
+    List<String> parts = multipartUpload();
+    ArgumentCaptor<CompleteMultipartUploadRequest> complete =
+        ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+    when(s3.completeMultipartUpload(complete.capture()))
+        .thenReturn(CompleteMultipartUploadResponse.builder().eTag("etag-2").build());
+
+    S3MultipartOutputStream out = stream(4);
+    out.write("abcde".getBytes(StandardCharsets.UTF_8));
+    out.write('f');
+    out.write("gh".getBytes(StandardCharsets.UTF_8));
+    out.close();
+
+    assertThat(parts).containsExactly("abcd", "efgh");
+    assertThat(complete.getValue().uploadId()).isEqualTo("upload-1");
+    assertThat(complete.getValue().multipartUpload().parts())
+        .extracting(p -> p.partNumber() + ":" + p.eTag())
+        .containsExactly("1:part-1", "2:part-2");
+    assertThat(out.eTag()).isEqualTo("etag-2");
+    verify(s3, never()).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+  }
+
+  /** The buffer starts small and grows with the content, up to the part size. */
+  @Test
+  void write_growsBufferUpToPartSize() {
+    int partSize = 4 * S3MultipartOutputStream.INITIAL_BUFFER_SIZE;
+    List<String> parts = multipartUpload();
+    when(s3.completeMultipartUpload(any(CompleteMultipartUploadRequest.class)))
+        .thenReturn(CompleteMultipartUploadResponse.builder().eTag("etag").build());
+
+    S3MultipartOutputStream out = stream(partSize);
+    assertThat((byte[]) ReflectionTestUtils.getField(out, "buffer"))
+        .hasSize(S3MultipartOutputStream.INITIAL_BUFFER_SIZE);
+
+    String content = "x".repeat(partSize) + "y";
+    for (byte b : content.getBytes(StandardCharsets.UTF_8)) {
+      out.write(b);
+    }
+    assertThat((byte[]) ReflectionTestUtils.getField(out, "buffer")).hasSize(partSize);
+    out.close();
+
+    assertThat(parts).containsExactly("x".repeat(partSize), "y");
+  }
+
+  /** A failed part upload aborts the multipart upload and closes the stream. */
+  @Test
+  void write_failedUploadPart_abortsUpload() {
+    when(s3.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+        .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload-1").build());
+    when(s3.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+        .thenThrow(SdkClientException.create("boom"));
+
+    S3MultipartOutputStream out = stream(4);
+    assertThatThrownBy(() -> out.write("abcde".getBytes(StandardCharsets.UTF_8)))
+        .isInstanceOf(SdkClientException.class);
+
+    ArgumentCaptor<AbortMultipartUploadRequest> abort =
+        ArgumentCaptor.forClass(AbortMultipartUploadRequest.class);
+    verify(s3).abortMultipartUpload(abort.capture());
+    assertThat(abort.getValue().uploadId()).isEqualTo("upload-1");
+    assertThatThrownBy(() -> out.write('f')).isInstanceOf(IllegalStateException.class);
+    out.close();
+    verify(s3, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+  }
+
+  /** A failed completion aborts the multipart upload. */
+  @Test
+  void close_failedComplete_abortsUpload() throws IOException {
+    multipartUpload();
+    when(s3.completeMultipartUpload(any(CompleteMultipartUploadRequest.class)))
+        .thenThrow(SdkClientException.create("boom"));
+
+    S3MultipartOutputStream out = stream(4);
+    out.write("abcde".getBytes(StandardCharsets.UTF_8));
+    assertThatThrownBy(out::close).isInstanceOf(SdkClientException.class);
+
+    verify(s3).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+    assertThat(out.eTag()).isNull();
+  }
+
+  /** An aborted stream rejects further writes and creates no object. */
+  @Test
+  void write_afterAbort_fails() {
+    S3MultipartOutputStream out = stream(4);
+    out.write('a');
+    out.abort();
+
+    assertThatThrownBy(() -> out.write('b'))
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessageContaining("file.csv");
+    out.close();
+    verifyNoInteractions(s3);
+  }
+}
@@ -8,5 +8,8 @@ package com.example.s3sync.service;
  * tests against an S3-like endpoint (for example LocalStack or a real S3 bucket). These integration
  * tests provide more meaningful coverage than isolated unit tests that would need extensive mocking
  * of the SDK.
+ *
+ * <p>The part buffering, multipart completion and abort handling of streamed uploads are covered
+ * against a mocked client by {@link S3MultipartOutputStreamTest}.
  */
 public class S3UploaderServiceTest {}
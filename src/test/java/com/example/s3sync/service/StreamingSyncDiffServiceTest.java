@@ -0,0 +1,134 @@
+package com.example.s3sync.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import com.example.s3sync.domain.Customer;
+import com.example.s3sync.domain.CustomerColumn;
+import com.example.s3sync.domain.Order;
+import com.example.s3sync.dto.UnsyncedCustomer;
+import com.example.s3sync.dto.UnsyncedOrder;
+import com.example.s3sync.repository.CustomerRepository;
+import com.example.s3sync.repository.OrderRepository;
+import jakarta.persistence.EntityManager;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+@ExtendWith(MockitoExtension.class)
+class StreamingSyncDiffServiceTest {
+
+  @Mock private CustomerRepository customerRepository;
+  @Mock private OrderRepository orderRepository;
+  @Mock private SyncDiffService syncDiffService;
+  @Mock private PlatformTransactionManager transactionManager;
+  @Mock private EntityManager entityManager;
+
+  @InjectMocks private StreamingSyncDiffService service;
+
+  @BeforeEach
+  void configure() {
+    ReflectionTestUtils.setField(service, "entityManager", entityManager);
+    ReflectionTestUtils.setField(service, "chunkSize", 2);
+  }
+
+  private Customer customer(Long id) {
+    Customer customer = mock(Customer.class, "Customer" + id);
+    lenient().when(customer.getId()).thenReturn(id);
+    return customer;
+  }
+
+  private Order order(String id) {
+    Order order = mock(Order.class, "Order" + id);
+    lenient().when(order.getId()).thenReturn(id);
+    return order;
+  }
+
+  private static UnsyncedCustomer unsynced(Customer customer) {
+    return new UnsyncedCustomer(
+        customer, new byte[32], new byte[32], EnumSet.allOf(CustomerColumn.class));
+  }
+
+  private static UnsyncedOrder unsynced(Order order) {
+    return new UnsyncedOrder(order, new byte[32]);
+  }
+
+  /**
+   * Customers are read page by page using the last id of the previous page as keyset position.
+   * Every page is diffed by {@link SyncDiffService}, only its changed customers are streamed, and
+   * the persistence context is cleared after every page.
+   */
+  @Test
+  void streamsChangedCustomersPageByPage() {
+    Customer unchanged = customer(1L);
+    Customer fresh = customer(2L);
+    Customer changed = customer(3L);
+
+    when(customerRepository.findAllByOrderByIdAsc(Limit.of(2)))
+        .thenReturn(List.of(unchanged, fresh));
+    when(customerRepository.findByIdGreaterThanOrderByIdAsc(2L, Limit.of(2)))
+        .thenReturn(List.of(changed));
+    when(syncDiffService.filterUnsyncedCustomers(List.of(unchanged, fresh)))
+        .thenReturn(List.of(unsynced(fresh)));
+    when(syncDiffService.filterUnsyncedCustomers(List.of(changed)))
+        .thenReturn(List.of(unsynced(changed)));
+
+    List<UnsyncedCustomer> result = service.streamUnsyncedCustomers().toList();
+
+    assertThat(result).extracting(UnsyncedCustomer::customer).containsExactly(fresh, changed);
+    verify(entityManager, times(2)).clear();
+    verify(customerRepository, never()).findAllUnmanaged();
+  }
+
+  /**
+   * The stream is lazy: creating it reads no page, and every page is only read when the consumer
+   * pulls more rows.
+   */
+  @Test
+  void readsNextPageOnlyWhenConsumed() {
+    Customer first = customer(1L);
+    Customer second = customer(2L);
+
+    when(customerRepository.findAllByOrderByIdAsc(Limit.of(2))).thenReturn(List.of(first, second));
+    when(syncDiffService.filterUnsyncedCustomers(List.of(first, second)))
+        .thenReturn(List.of(unsynced(first), unsynced(second)));
+
+    Stream<UnsyncedCustomer> stream = service.streamUnsyncedCustomers();
+
+    verifyNoInteractions(customerRepository, transactionManager);
+    assertThat(stream.limit(2).map(UnsyncedCustomer::customer).toList())
+        .containsExactly(first, second);
+    verify(customerRepository, never()).findByIdGreaterThanOrderByIdAsc(any(), any());
+  }
+
+  /** Orders are paged by their string id and every page is diffed by {@link SyncDiffService}. */
+  @Test
+  void streamsChangedOrdersPageByPage() {
+    Order unchanged = order("A");
+    Order changed = order("B");
+    Order fresh = order("C");
+
+    when(orderRepository.findAllByOrderByIdAsc(Limit.of(2)))
+        .thenReturn(List.of(unchanged, changed));
+    when(orderRepository.findByIdGreaterThanOrderByIdAsc("B", Limit.of(2)))
+        .thenReturn(List.of(fresh));
+    when(syncDiffService.filterUnsyncedOrders(List.of(unchanged, changed)))
+        .thenReturn(List.of(unsynced(changed)));
+    when(syncDiffService.filterUnsyncedOrders(List.of(fresh))).thenReturn(List.of(unsynced(fresh)));
+
+    List<UnsyncedOrder> result = service.streamUnsyncedOrders().toList();
+
+    assertThat(result).extracting(UnsyncedOrder::order).containsExactly(changed, fresh);
+    verify(entityManager, times(2)).clear();
+  }
+}
@@ -0,0 +1,100 @@
+package com.example.s3sync.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class SyncChunkerTest {
+
+  private final SyncChunker chunker = new SyncChunker();
+
+  private static Map<String, List<Integer>> byCountry() {
+    Map<String, List<Integer>> byCountry = new LinkedHashMap<>();
+    byCountry.put("US", List.of(6));
+    byCountry.put("DE", List.of(1, 2, 3, 4, 5));
+    return byCountry;
+  }
+
+  /** Without chunking the whole run is one transaction and no file gets a part suffix. */
+  @Test
+  void default_singleTransaction() {
+    List<List<SyncChunker.Part<Integer>>> chunks = chunker.split(byCountry());
+
+    assertThat(chunks).hasSize(1);
+    assertThat(chunks.getFirst())
+        .containsExactlyInAnyOrder(
+            new SyncChunker.Part<>("US", "", List.of(6)),
+            new SyncChunker.Part<>("DE", "", List.of(1, 2, 3, 4, 5)));
+  }
+
+  /** Per-country chunking commits every country on its own, in country order. */
+  @Test
+  void perCountry_oneTransactionPerCountry() {
+    ReflectionTestUtils.setField(chunker, "perCountry", true);
+
+    assertThat(chunker.split(byCountry()))
+        .containsExactly(
+            List.of(new SyncChunker.Part<>("DE", "", List.of(1, 2, 3, 4, 5))),
+            List.of(new SyncChunker.Part<>("US", "", List.of(6))));
+  }
+
+  /** A chunk size splits large countries into numbered parts of at most that many rows. */
+  @Test
+  void chunkSize_splitsCountriesIntoParts() {
+    ReflectionTestUtils.setField(chunker, "chunkSize", 2);
+
+    assertThat(chunker.split(byCountry()))
+        .containsExactly(
+            List.of(new SyncChunker.Part<>("DE", "_part1", List.of(1, 2))),
+            List.of(new SyncChunker.Part<>("DE", "_part2", List.of(3, 4))),
+            List.of(new SyncChunker.Part<>("DE", "_part3", List.of(5))),
+            List.of(new SyncChunker.Part<>("US", "", List.of(6))));
+  }
+
+  /** A batch label is added to every file name, before the part number. */
+  @Test
+  void batch_labelsEveryFile() {
+    ReflectionTestUtils.setField(chunker, "chunkSize", 3);
+
+    assertThat(chunker.split(byCountry(), "journal42"))
+        .containsExactly(
+            List.of(new SyncChunker.Part<>("DE", "_journal42_part1", List.of(1, 2, 3))),
+            List.of(new SyncChunker.Part<>("DE", "_journal42_part2", List.of(4, 5))),
+            List.of(new SyncChunker.Part<>("US", "_journal42", List.of(6))));
+  }
+
+  /**
+   * A stream is handed on one page at a time, reading the next page only after the previous one was
+   * synced, and the pages are labeled once there is more than one.
+   */
+  @Test
+  void page_syncsEveryPageBeforeReadingTheNext() {
+    ReflectionTestUtils.setField(chunker, "pageSize", 2);
+    AtomicInteger read = new AtomicInteger();
+    List<String> synced = new ArrayList<>();
+
+    chunker.page(
+        Stream.of(1, 2, 3, 4, 5).peek(row -> read.incrementAndGet()),
+        (rows, batch) -> synced.add(batch + rows + "@" + read.get()));
+
+    assertThat(synced).containsExactly("page1[1, 2]@3", "page2[3, 4]@4", "page3[5]@5");
+  }
+
+  /** A stream that fits into one page is synced without a label; an empty one as one empty page. */
+  @Test
+  void page_singlePageUnlabeled() {
+    List<String> synced = new ArrayList<>();
+
+    chunker.page(Stream.of(1, 2), (rows, batch) -> synced.add(batch + rows));
+    chunker.page(Stream.<Integer>empty(), (rows, batch) -> synced.add(batch + rows));
+
+    assertThat(synced).containsExactly("[1, 2]", "[]");
+  }
+}
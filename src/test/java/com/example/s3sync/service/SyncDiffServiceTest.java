@@ -1,24 +1,44 @@
 package com.example.s3sync.service;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
+import com.example.s3sync.domain.ChangeJournalEntry;
 import com.example.s3sync.domain.Customer;
+import com.example.s3sync.domain.CustomerColumn;
+import com.example.s3sync.domain.HashAlgorithm;
 import com.example.s3sync.domain.Order;
+import com.example.s3sync.domain.SyncWatermark;
 import com.example.s3sync.domain.SyncedCustomerHash;
 import com.example.s3sync.domain.SyncedOrderHash;
+import com.example.s3sync.dto.CustomerWithSyncedHash;
+import com.example.s3sync.dto.UnsyncedCustomer;
+import com.example.s3sync.dto.UnsyncedOrder;
+import com.example.s3sync.repository.ChangeJournalRepository;
 import com.example.s3sync.repository.CustomerRepository;
 import com.example.s3sync.repository.OrderRepository;
+import com.example.s3sync.repository.SyncWatermarkRepository;
 import com.example.s3sync.repository.SyncedCustomerHashRepository;
 import com.example.s3sync.repository.SyncedOrderHashRepository;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Function;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
 
 @ExtendWith(MockitoExtension.class)
 class SyncDiffServiceTest {
@@ -28,13 +48,17 @@ class SyncDiffServiceTest {
   @Mock private SyncedCustomerHashRepository syncedCustomerRepository;
   @Mock private SyncedOrderHashRepository syncedOrderRepository;
   @Mock private HashService hashService;
+  @Mock private ChangeJournalRepository changeJournalRepository;
+  @Mock private SyncWatermarkRepository syncWatermarkRepository;
+  @Mock private CustomerHashSnapshot customerHashSnapshot;
+  @Mock private SyncedOrderIdFilter syncedOrderIdFilter;
+  @Mock private CustomerBucketTree customerBucketTree;
 
   @InjectMocks private SyncDiffService service;
 
-  private Customer customerWithIdOnly(Long id) {
-    Customer customer = mock(Customer.class, "Customer" + id);
-    when(customer.getId()).thenReturn(id);
-    return customer;
+  @BeforeEach
+  void configureAlgorithm() {
+    lenient().when(hashService.algorithm()).thenReturn(HashAlgorithm.SHA256);
   }
 
   private Customer customerForHash(
@@ -75,6 +99,10 @@ class SyncDiffServiceTest {
     return order;
   }
 
+  private static byte[] bytes(String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+
   /**
    * When the persisted customer row hash equals the freshly computed one, the customer should not
    * be returned as unsynced.
@@ -83,32 +111,34 @@ class SyncDiffServiceTest {
   void skipCustomer_whenHashMatches() {
     Customer customer = customerForHash(1L, "a", "b", "c", "d", "e", "f", "g", "h", "i");
 
-    when(customerRepository.findAll()).thenReturn(List.of(customer));
+    when(customerRepository.findAllUnmanaged()).thenReturn(List.of(customer));
     when(syncedCustomerRepository.existsById(1L)).thenReturn(true);
 
-    when(hashService.customerRowHash("a", "b", "c", "d", "e", "f", "g", "h", "i", "1"))
-        .thenReturn("hash-same");
+    when(hashService.customerRowHash(
+            HashAlgorithm.SHA256, "a", "b", "c", "d", "e", "f", "g", "h", "i", "1"))
+        .thenReturn(bytes("hash-same"));
 
     SyncedCustomerHash alreadyStored =
-        SyncedCustomerHash.builder().kundenId(1L).rowHash("hash-same").build();
+        SyncedCustomerHash.builder().kundenId(1L).rowHash(bytes("hash-same")).build();
     when(syncedCustomerRepository.findById(1L)).thenReturn(Optional.of(alreadyStored));
 
-    List<Customer> result = service.getUnsyncedCustomers();
+    List<UnsyncedCustomer> result = service.getUnsyncedCustomers();
     assertThat(result).isEmpty();
   }
 
   /**
    * When the computed customer row hash differs from the stored value the customer must be returned
-   * in the list of unsynced customers.
+   * in the list of unsynced customers, together with the hash that was computed for the comparison.
    */
   @Test
   void returnCustomer_whenHashDiffers() {
     Customer customer = customerForHash(2L, "a", "b", "c", "d", "e", "f", "g", "h", "i");
 
-    when(customerRepository.findAll()).thenReturn(List.of(customer));
+    when(customerRepository.findAllUnmanaged()).thenReturn(List.of(customer));
     when(syncedCustomerRepository.existsById(2L)).thenReturn(true);
 
     when(hashService.customerRowHash(
+            eq(HashAlgorithm.SHA256),
             anyString(),
             anyString(),
             anyString(),
@@ -119,29 +149,164 @@ class SyncDiffServiceTest {
             anyString(),
             anyString(),
             anyString()))
-        .thenReturn("hash-modified");
+        .thenReturn(bytes("hash-modified"));
 
     SyncedCustomerHash alreadyStored =
-        SyncedCustomerHash.builder().kundenId(2L).rowHash("hash-stored").build();
+        SyncedCustomerHash.builder().kundenId(2L).rowHash(bytes("hash-stored")).build();
     when(syncedCustomerRepository.findById(2L)).thenReturn(Optional.of(alreadyStored));
 
-    List<Customer> result = service.getUnsyncedCustomers();
-    assertThat(result).containsExactly(customer);
+    List<UnsyncedCustomer> result = service.getUnsyncedCustomers();
+    assertThat(result).extracting(UnsyncedCustomer::customer).containsExactly(customer);
+    assertThat(result.getFirst().rowHash()).isEqualTo(bytes("hash-modified"));
+    verify(hashService, times(1))
+        .customerRowHash(
+            eq(HashAlgorithm.SHA256),
+            anyString(),
+            anyString(),
+            anyString(),
+            anyString(),
+            anyString(),
+            anyString(),
+            anyString(),
+            anyString(),
+            anyString(),
+            anyString());
+  }
+
+  /**
+   * A changed customer with stored column fingerprints is reported with exactly the columns whose
+   * fingerprints differ; the current fingerprints are returned for persisting.
+   */
+  @Test
+  void returnCustomer_reportsChangedColumns() {
+    Customer customer = customerForHash(4L, "a", "b", "c", "d", "e", "f", "g", "h", "i");
+    when(customerRepository.findAllUnmanaged()).thenReturn(List.of(customer));
+    when(syncedCustomerRepository.existsById(4L)).thenReturn(true);
+    when(hashService.customerRowHash(
+            HashAlgorithm.SHA256, "a", "b", "c", "d", "e", "f", "g", "h", "i", "4"))
+        .thenReturn(bytes("hash-modified"));
+
+    byte[] stored = new byte[CustomerColumn.values().length * CustomerColumn.FINGERPRINT_LENGTH];
+    byte[] current = stored.clone();
+    current[CustomerColumn.STRASSE.ordinal() * CustomerColumn.FINGERPRINT_LENGTH] = 1;
+    current[CustomerColumn.PLZ.ordinal() * CustomerColumn.FINGERPRINT_LENGTH + 3] = 1;
+    when(hashService.customerColumnHashes(customer)).thenReturn(current);
+    when(syncedCustomerRepository.findById(4L))
+        .thenReturn(
+            Optional.of(
+                SyncedCustomerHash.builder()
+                    .kundenId(4L)
+                    .rowHash(bytes("hash-stored"))
+                    .columnHashes(stored)
+                    .build()));
+
+    List<UnsyncedCustomer> result = service.getUnsyncedCustomers();
+
+    assertThat(result).hasSize(1);
+    assertThat(result.getFirst().changedColumns())
+        .containsExactly(CustomerColumn.STRASSE, CustomerColumn.PLZ);
+    assertThat(result.getFirst().columnHashes()).isEqualTo(current);
+    assertThat(result.getFirst().allColumnsChanged()).isFalse();
+  }
+
+  /**
+   * A customer whose row hash changed although no column fingerprint did, e.g. after a fingerprint
+   * collision, is reported with all columns changed, so it is exported in full instead of as an
+   * empty delta.
+   */
+  @Test
+  void returnCustomer_allColumnsChangedWhenNoFingerprintDiffers() {
+    Customer customer = customerForHash(4L, "a", "b", "c", "d", "e", "f", "g", "h", "i");
+    when(customerRepository.findAllUnmanaged()).thenReturn(List.of(customer));
+    when(syncedCustomerRepository.existsById(4L)).thenReturn(true);
+    when(hashService.customerRowHash(
+            HashAlgorithm.SHA256, "a", "b", "c", "d", "e", "f", "g", "h", "i", "4"))
+        .thenReturn(bytes("hash-modified"));
+
+    byte[] stored = new byte[CustomerColumn.values().length * CustomerColumn.FINGERPRINT_LENGTH];
+    when(hashService.customerColumnHashes(customer)).thenReturn(stored.clone());
+    when(syncedCustomerRepository.findById(4L))
+        .thenReturn(
+            Optional.of(
+                SyncedCustomerHash.builder()
+                    .kundenId(4L)
+                    .rowHash(bytes("hash-stored"))
+                    .columnHashes(stored)
+                    .build()));
+
+    List<UnsyncedCustomer> result = service.getUnsyncedCustomers();
+
+    assertThat(result)
+        .singleElement()
+        .satisfies(
+            unsynced -> {
+              assertThat(unsynced.changedColumns()).isEqualTo(EnumSet.allOf(CustomerColumn.class));
+              assertThat(unsynced.allColumnsChanged()).isTrue();
+            });
+  }
+
+  /**
+   * Missing fingerprints or fingerprints of a different column layout mark every column changed.
+   */
+  @Test
+  void changedColumns_allWhenStoredFingerprintsUnusable() {
+    byte[] current = new byte[CustomerColumn.values().length * CustomerColumn.FINGERPRINT_LENGTH];
+
+    assertThat(SyncDiffService.changedColumns(current, null))
+        .isEqualTo(EnumSet.allOf(CustomerColumn.class));
+    assertThat(SyncDiffService.changedColumns(current, new byte[4]))
+        .isEqualTo(EnumSet.allOf(CustomerColumn.class));
+    assertThat(SyncDiffService.changedColumns(current, current.clone())).isEmpty();
+  }
+
+  /**
+   * In Merkle mode only the customers of the leaf buckets reported by the {@link
+   * CustomerBucketTree} are loaded and compared, with one tracking query per bucket.
+   */
+  @Test
+  void merkle_diffsOnlyChangedBuckets() {
+    ReflectionTestUtils.setField(service, "diffMode", DiffMode.MERKLE);
+    Customer changed = customerForHash(2050L, "a", "b", "c", "d", "e", "f", "g", "h", "i");
+    when(customerBucketTree.findChangedBuckets()).thenReturn(List.of(2L));
+    when(customerRepository.findByIdGreaterThanEqualAndIdLessThanOrderByIdAsc(2048L, 3072L))
+        .thenReturn(List.of(changed));
+    when(syncedCustomerRepository.findAllById(List.of(2050L)))
+        .thenReturn(
+            List.of(
+                SyncedCustomerHash.builder()
+                    .kundenId(2050L)
+                    .rowHash(bytes("hash-stored"))
+                    .build()));
+    when(hashService.customerRowHash(
+            HashAlgorithm.SHA256, "a", "b", "c", "d", "e", "f", "g", "h", "i", "2050"))
+        .thenReturn(bytes("hash-modified"));
+
+    List<UnsyncedCustomer> result = service.getUnsyncedCustomers();
+
+    assertThat(result)
+        .extracting(UnsyncedCustomer::customer, UnsyncedCustomer::rowHash)
+        .containsExactly(tuple(changed, bytes("hash-modified")));
+    verify(customerRepository, never()).findAllUnmanaged();
   }
 
   /**
    * When a customer has no tracking entry (new customer) it should be considered unsynced and
-   * returned; computing a hash is not required in this case.
+   * returned with its row hash; no tracking lookup is required in this case.
    */
   @Test
   void returnCustomer_newCustomer() {
-    Customer customer = customerWithIdOnly(3L);
+    Customer customer = customerForHash(3L, "a", "b", "c", "d", "e", "f", "g", "h", "i");
 
-    when(customerRepository.findAll()).thenReturn(List.of(customer));
+    when(customerRepository.findAllUnmanaged()).thenReturn(List.of(customer));
     when(syncedCustomerRepository.existsById(3L)).thenReturn(false);
-    List<Customer> result = service.getUnsyncedCustomers();
-    verifyNoInteractions(hashService);
-    assertThat(result).containsExactly(customer);
+    when(hashService.customerRowHash(
+            HashAlgorithm.SHA256, "a", "b", "c", "d", "e", "f", "g", "h", "i", "3"))
+        .thenReturn(bytes("hash-new"));
+
+    List<UnsyncedCustomer> result = service.getUnsyncedCustomers();
+    verify(syncedCustomerRepository, never()).findById(any());
+    assertThat(result).extracting(UnsyncedCustomer::customer).containsExactly(customer);
+    assertThat(result.getFirst().rowHash()).isEqualTo(bytes("hash-new"));
   }
 
   /**
@@ -152,15 +317,16 @@ class SyncDiffServiceTest {
   void skipOrder_whenMarkerHashMatches() {
     Order order = orderForHash("1", "a");
 
-    when(orderRepository.findAll()).thenReturn(List.of(order));
+    when(orderRepository.findAllUnmanaged()).thenReturn(List.of(order));
     when(syncedOrderRepository.existsById("1")).thenReturn(true);
-    when(hashService.orderMarkerHash("a")).thenReturn("markerhash-same");
+    when(hashService.orderMarkerHash(HashAlgorithm.SHA256, "a"))
+        .thenReturn(bytes("markerhash-same"));
 
     SyncedOrderHash stored =
-        SyncedOrderHash.builder().orderId("1").markerHash("markerhash-same").build();
+        SyncedOrderHash.builder().orderId("1").markerHash(bytes("markerhash-same")).build();
     when(syncedOrderRepository.findById("1")).thenReturn(Optional.of(stored));
 
-    List<Order> result = service.getUnsyncedOrders();
+    List<UnsyncedOrder> result = service.getUnsyncedOrders();
     assertThat(result).isEmpty();
   }
 
@@ -172,31 +338,345 @@ class SyncDiffServiceTest {
   void returnOrder_whenMarkerHashDiffers() {
     Order order = orderForHash("2", "b");
 
-    when(orderRepository.findAll()).thenReturn(List.of(order));
+    when(orderRepository.findAllUnmanaged()).thenReturn(List.of(order));
     when(syncedOrderRepository.existsById("2")).thenReturn(true);
-    when(hashService.orderMarkerHash("b")).thenReturn("hash-modified");
+    when(hashService.orderMarkerHash(HashAlgorithm.SHA256, "b")).thenReturn(bytes("hash-modified"));
 
     SyncedOrderHash stored =
-        SyncedOrderHash.builder().orderId("2").markerHash("hash-stored").build();
+        SyncedOrderHash.builder().orderId("2").markerHash(bytes("hash-stored")).build();
     when(syncedOrderRepository.findById("2")).thenReturn(Optional.of(stored));
 
-    List<Order> result = service.getUnsyncedOrders();
-    assertThat(result).containsExactly(order);
+    List<UnsyncedOrder> result = service.getUnsyncedOrders();
+    assertThat(result).extracting(UnsyncedOrder::order).containsExactly(order);
+    assertThat(result.getFirst().markerHash()).isEqualTo(bytes("hash-modified"));
+    verify(hashService, times(1)).orderMarkerHash(any(), any());
   }
 
   /**
-   * When an order has no tracking entry (new order) it should be returned as unsynced and no marker
-   * computation should be required.
+   * When an order has no tracking entry (new order) it should be returned as unsynced with its
+   * marker; no tracking lookup is required in this case.
    */
   @Test
   void returrnOrder_newOrder() {
-    Order order = orderWithIdOnly("3");
+    Order order = orderForHash("3", "c");
 
-    when(orderRepository.findAll()).thenReturn(List.of(order));
+    when(orderRepository.findAllUnmanaged()).thenReturn(List.of(order));
     when(syncedOrderRepository.existsById("3")).thenReturn(false);
+    when(hashService.orderMarkerHash(HashAlgorithm.SHA256, "c")).thenReturn(bytes("marker-new"));
+
+    List<UnsyncedOrder> result = service.getUnsyncedOrders();
+    verify(syncedOrderRepository, never()).findById(any());
+    assertThat(result).extracting(UnsyncedOrder::order).containsExactly(order);
+    assertThat(result.getFirst().markerHash()).isEqualTo(bytes("marker-new"));
+  }
+
+  /**
+   * In set-based mode customers and stored hashes come from one joined query: a customer without
+   * stored hash is returned, a matching hash is skipped and a differing hash is returned. The
+   * per-row tracking lookups must not be used.
+   */
+  @Test
+  void setBased_returnsNewAndChangedCustomers() {
+    ReflectionTestUtils.setField(service, "diffMode", DiffMode.SET_BASED);
+    Customer unchanged = customerForHash(1L, "a", "b", "c", "d", "e", "f", "g", "h", "i");
+    Customer changed = customerForHash(2L, "j", "k", "l", "m", "n", "o", "p", "q", "r");
+    Customer fresh = customerForHash(3L, "s", "t", "u", "v", "w", "x", "y", "z", "0");
+
+    when(customerRepository.findAllWithSyncedHash())
+        .thenReturn(
+            List.of(
+                new CustomerWithSyncedHash(
+                    unchanged, bytes("hash-same"), HashAlgorithm.SHA256, null),
+                new CustomerWithSyncedHash(
+                    changed, bytes("hash-stored"), HashAlgorithm.SHA256, null),
+                new CustomerWithSyncedHash(fresh, null, null, null)));
+    when(hashService.customerRowHash(
+            HashAlgorithm.SHA256, "a", "b", "c", "d", "e", "f", "g", "h", "i", "1"))
+        .thenReturn(bytes("hash-same"));
+    when(hashService.customerRowHash(
+            HashAlgorithm.SHA256, "j", "k", "l", "m", "n", "o", "p", "q", "r", "2"))
+        .thenReturn(bytes("hash-modified"));
+    when(hashService.customerRowHash(
+            HashAlgorithm.SHA256, "s", "t", "u", "v", "w", "x", "y", "z", "0", "3"))
+        .thenReturn(bytes("hash-new"));
+
+    List<UnsyncedCustomer> result = service.getUnsyncedCustomers();
+
+    assertThat(result)
+        .extracting(UnsyncedCustomer::customer, UnsyncedCustomer::rowHash)
+        .containsExactly(tuple(changed, bytes("hash-modified")), tuple(fresh, bytes("hash-new")));
+    verify(customerRepository, never()).findAllUnmanaged();
+    verifyNoInteractions(syncedCustomerRepository);
+  }
+
+  /**
+   * In in-database mode the repository already returns only new or changed customers, so the
+   * service must not query the tracking table and only hashes the returned rows for persisting.
+   */
+  @Test
+  void inDatabase_returnsRowsSelectedByDatabaseHash() {
+    ReflectionTestUtils.setField(service, "diffMode", DiffMode.IN_DATABASE);
+    Customer changed = customerForHash(1L, "a", "b", "c", "d", "e", "f", "g", "h", "i");
+    when(customerRepository.findUnsyncedByDatabaseHash()).thenReturn(List.of(changed));
+    when(hashService.customerRowHash(
+            HashAlgorithm.SHA256, "a", "b", "c", "d", "e", "f", "g", "h", "i", "1"))
+        .thenReturn(bytes("hash-db"));
+
+    List<UnsyncedCustomer> result = service.getUnsyncedCustomers();
+
+    assertThat(result)
+        .extracting(UnsyncedCustomer::customer, UnsyncedCustomer::rowHash)
+        .containsExactly(tuple(changed, bytes("hash-db")));
+    verifyNoInteractions(syncedCustomerRepository);
+  }
+
+  /**
+   * In snapshot mode stored hashes come from the in-memory snapshot, so the tracking table is not
+   * queried at all. The hash computed for the comparison is returned without hashing again.
+   */
+  @Test
+  void snapshot_comparesAgainstInMemoryHashes() {
+    ReflectionTestUtils.setField(service, "diffMode", DiffMode.SNAPSHOT);
+    Customer unchanged = customerForHash(1L, "a", "b", "c", "d", "e", "f", "g", "h", "i");
+    Customer changed = customerForHash(2L, "j", "k", "l", "m", "n", "o", "p", "q", "r");
+    when(customerRepository.findAllUnmanaged()).thenReturn(List.of(unchanged, changed));
+    when(hashService.customerRowHash(
+            HashAlgorithm.SHA256, "a", "b", "c", "d", "e", "f", "g", "h", "i", "1"))
+        .thenReturn(bytes("hash-same"));
+    when(hashService.customerRowHash(
+            HashAlgorithm.SHA256, "j", "k", "l", "m", "n", "o", "p", "q", "r", "2"))
+        .thenReturn(bytes("hash-modified"));
+    when(customerHashSnapshot.isUnchanged(eq(1L), any()))
+        .thenAnswer(
+            invocation ->
+                Arrays.equals(
+                    invocation
+                        .<Function<HashAlgorithm, byte[]>>getArgument(1)
+                        .apply(HashAlgorithm.SHA256),
+                    bytes("hash-same")));
+    when(customerHashSnapshot.isUnchanged(eq(2L), any()))
+        .thenAnswer(
+            invocation ->
+                Arrays.equals(
+                    invocation
+                        .<Function<HashAlgorithm, byte[]>>getArgument(1)
+                        .apply(HashAlgorithm.SHA256),
+                    bytes("hash-stored")));
+
+    List<UnsyncedCustomer> result = service.getUnsyncedCustomers();
+
+    assertThat(result)
+        .extracting(UnsyncedCustomer::customer, UnsyncedCustomer::rowHash)
+        .containsExactly(tuple(changed, bytes("hash-modified")));
+    verify(hashService, times(1))
+        .customerRowHash(HashAlgorithm.SHA256, "j", "k", "l", "m", "n", "o", "p", "q", "r", "2");
+    verifyNoInteractions(syncedCustomerRepository);
+  }
+
+  /**
+   * With the order id filter enabled, orders the filter rules out are returned without any tracking
+   * lookup and only possible hits are verified, recording false positives.
+   */
+  @Test
+  void orderFilter_skipsLookupOfDefinitelyNewOrders() {
+    ReflectionTestUtils.setField(service, "orderFilterEnabled", true);
+    Order fresh = orderForHash("N-1", "2025-01-03T00:00:00Z");
+    Order unchanged = orderForHash("A-1", "2025-01-01T00:00:00Z");
+    Order falsePositive = orderForHash("F-1", "2025-01-02T00:00:00Z");
+    when(orderRepository.findAllUnmanaged()).thenReturn(List.of(fresh, unchanged, falsePositive));
+    when(syncedOrderIdFilter.mightBeSynced("N-1")).thenReturn(false);
+    when(syncedOrderIdFilter.mightBeSynced("A-1")).thenReturn(true);
+    when(syncedOrderIdFilter.mightBeSynced("F-1")).thenReturn(true);
+    when(syncedOrderRepository.findAllById(List.of("A-1", "F-1")))
+        .thenReturn(
+            List.of(SyncedOrderHash.builder().orderId("A-1").markerHash(bytes("marker")).build()));
+    when(hashService.orderMarkerHash(HashAlgorithm.SHA256, "2025-01-01T00:00:00Z"))
+        .thenReturn(bytes("marker"));
+    when(hashService.orderMarkerHash(HashAlgorithm.SHA256, "2025-01-02T00:00:00Z"))
+        .thenReturn(bytes("marker-f"));
+    when(hashService.orderMarkerHash(HashAlgorithm.SHA256, "2025-01-03T00:00:00Z"))
+        .thenReturn(bytes("marker-n"));
+
+    List<UnsyncedOrder> result = service.getUnsyncedOrders();
+
+    assertThat(result).extracting(UnsyncedOrder::order).containsExactly(fresh, falsePositive);
+    verify(syncedOrderIdFilter).recordVerification(true);
+    verify(syncedOrderIdFilter).recordVerification(false);
+    verify(syncedOrderRepository, never()).existsById(any());
+  }
+
+  private ChangeJournalEntry journalEntry(long id, String table, String key) {
+    return ChangeJournalEntry.builder().id(id).tableName(table).rowKey(key).build();
+  }
+
+  /**
+   * Journal mode loads only journaled customers, keeps the changed ones, hands them to the sink and
+   * acknowledges every consumed entry, including duplicates and deleted rows, until the journal is
+   * drained. The batch is labeled with its last journal id.
+   */
+  @Test
+  void consumeJournaledCustomers_syncsChangedAndAcknowledgesBatch() {
+    ReflectionTestUtils.setField(service, "journalBatchSize", 3);
+    Customer changed = customerForHash(1L, "a", "b", "c", "d", "e", "f", "g", "h", "i");
+    Customer unchanged = customerForHash(2L, "j", "k", "l", "m", "n", "o", "p", "q", "r");
+
+    when(changeJournalRepository.findByTableNameOrderByIdAsc("kunde", Limit.of(3)))
+        .thenReturn(
+            List.of(
+                journalEntry(10, "kunde", "1"),
+                journalEntry(11, "kunde", "1"),
+                journalEntry(12, "kunde", "2")),
+            List.of(journalEntry(13, "kunde", "99")),
+            List.of());
+    when(customerRepository.findAllById(List.of(1L, 2L))).thenReturn(List.of(changed, unchanged));
+    when(customerRepository.findAllById(List.of(99L))).thenReturn(List.of());
+    when(syncedCustomerRepository.findAllById(List.of(1L, 2L)))
+        .thenReturn(
+            List.of(
+                SyncedCustomerHash.builder().kundenId(1L).rowHash(bytes("old")).build(),
+                SyncedCustomerHash.builder().kundenId(2L).rowHash(bytes("same")).build()));
+    when(hashService.customerRowHash(
+            HashAlgorithm.SHA256, "a", "b", "c", "d", "e", "f", "g", "h", "i", "1"))
+        .thenReturn(bytes("new"));
+    when(hashService.customerRowHash(
+            HashAlgorithm.SHA256, "j", "k", "l", "m", "n", "o", "p", "q", "r", "2"))
+        .thenReturn(bytes("same"));
+
+    List<List<UnsyncedCustomer>> batches = new ArrayList<>();
+    List<String> labels = new ArrayList<>();
+    service.consumeJournaledCustomers(
+        (batch, label) -> {
+          batches.add(batch);
+          labels.add(label);
+        });
+
+    assertThat(batches).hasSize(1);
+    assertThat(labels).containsExactly("journal12");
+    assertThat(batches.getFirst())
+        .extracting(UnsyncedCustomer::customer, UnsyncedCustomer::rowHash)
+        .containsExactly(tuple(changed, bytes("new")));
+    verify(changeJournalRepository).deleteAllByIdInBatch(List.of(10L, 11L, 12L));
+    verify(changeJournalRepository).deleteAllByIdInBatch(List.of(13L));
+    verify(customerRepository, never()).findAllUnmanaged();
+  }
+
+  /** A failing sink leaves the batch in the journal so it is retried on the next run. */
+  @Test
+  void consumeJournaledOrders_doesNotAcknowledgeWhenSinkFails() {
+    Order order = orderWithIdOnly("A-1");
+    when(changeJournalRepository.findByTableNameOrderByIdAsc("auftraege", Limit.of(1000)))
+        .thenReturn(List.of(journalEntry(1, "auftraege", "A-1")));
+    when(orderRepository.findAllById(List.of("A-1"))).thenReturn(List.of(order));
+    when(syncedOrderRepository.findAllById(List.of("A-1"))).thenReturn(List.of());
+
+    assertThatThrownBy(
+            () ->
+                service.consumeJournaledOrders(
+                    (orders, batch) -> {
+                      throw new IllegalStateException("upload failed");
+                    }))
+        .isInstanceOf(IllegalStateException.class);
+
+    verify(changeJournalRepository, never()).deleteAllByIdInBatch(any());
+  }
+
+  /**
+   * Without a stored watermark all orders are compared once and the mark is set to the newest
+   * lastchange after the sink returned.
+   */
+  @Test
+  void consumeOrdersSinceWatermark_firstRun_comparesAllAndStoresMark() {
+    Instant newest = Instant.parse("2025-01-02T00:00:00.000001Z");
+    Order order = orderWithIdOnly("A-1");
+    when(orderRepository.findMaxLastchangeMicros())
+        .thenReturn(newest.getEpochSecond() * 1_000_000 + 1);
+    when(syncWatermarkRepository.findById("auftraege")).thenReturn(Optional.empty());
+    when(orderRepository.findAllUnmanaged()).thenReturn(List.of(order));
+    when(syncedOrderRepository.findAllById(List.of("A-1"))).thenReturn(List.of());
+    List<UnsyncedOrder> synced = new ArrayList<>();
+
+    service.consumeOrdersSinceWatermark(synced::addAll);
+
+    assertThat(synced).extracting(UnsyncedOrder::order).containsExactly(order);
+    verify(syncWatermarkRepository).save(argThat(mark -> mark.getHighWater().equals(newest)));
+  }
+
+  /**
+   * With a stored watermark only the overlap window up to the newest lastchange is loaded, re-read
+   * orders with an unchanged marker are dropped and the mark does not move backwards.
+   */
+  @Test
+  void consumeOrdersSinceWatermark_readsOverlapWindowOnly() {
+    Instant mark = Instant.parse("2025-01-02T00:00:00Z");
+    Order unchanged = orderForHash("A-1", "2025-01-01T23:58:00Z");
+    when(orderRepository.findMaxLastchangeMicros()).thenReturn(mark.toEpochMilli() * 1000);
+    when(syncWatermarkRepository.findById("auftraege"))
+        .thenReturn(
+            Optional.of(SyncWatermark.builder().tableName("auftraege").highWater(mark).build()));
+    when(orderRepository.findByLastchangeWindow(mark.minusSeconds(300), mark))
+        .thenReturn(List.of(unchanged));
+    when(syncedOrderRepository.findAllById(List.of("A-1")))
+        .thenReturn(
+            List.of(SyncedOrderHash.builder().orderId("A-1").markerHash(bytes("marker")).build()));
+    when(hashService.orderMarkerHash(HashAlgorithm.SHA256, "2025-01-01T23:58:00Z"))
+        .thenReturn(bytes("marker"));
+    List<UnsyncedOrder> synced = new ArrayList<>();
+
+    service.consumeOrdersSinceWatermark(synced::addAll);
+
+    assertThat(synced).isEmpty();
+    verify(orderRepository, never()).findAllUnmanaged();
+    verify(syncWatermarkRepository, never()).save(any());
+  }
+
+  /**
+   * Stored hashes are compared with the algorithm they were computed with, so rows hashed with
+   * another algorithm than the configured one are not reported as changed. Changed rows are
+   * returned with a hash of the configured algorithm.
+   */
+  @Test
+  void getUnsyncedCustomersByIds_comparesWithStoredAlgorithm() {
+    Customer legacy = customerForHash(1L, "a", "b", "c", "d", "e", "f", "g", "h", "i");
+    Customer changed = customerForHash(2L, "j", "k", "l", "m", "n", "o", "p", "q", "r");
+    when(customerRepository.findAllById(List.of(1L, 2L))).thenReturn(List.of(legacy, changed));
+    when(syncedCustomerRepository.findAllById(List.of(1L, 2L)))
+        .thenReturn(
+            List.of(
+                SyncedCustomerHash.builder()
+                    .kundenId(1L)
+                    .rowHash(bytes("blake3-same"))
+                    .hashAlgo(HashAlgorithm.BLAKE3)
+                    .build(),
+                SyncedCustomerHash.builder()
+                    .kundenId(2L)
+                    .rowHash(bytes("murmur-old"))
+                    .hashAlgo(HashAlgorithm.MURMUR3_128)
+                    .build()));
+    when(hashService.customerRowHash(
+            HashAlgorithm.BLAKE3, "a", "b", "c", "d", "e", "f", "g", "h", "i", "1"))
+        .thenReturn(bytes("blake3-same"));
+    when(hashService.customerRowHash(
+            HashAlgorithm.MURMUR3_128, "j", "k", "l", "m", "n", "o", "p", "q", "r", "2"))
+        .thenReturn(bytes("murmur-new"));
+    when(hashService.customerRowHash(
+            HashAlgorithm.SHA256, "j", "k", "l", "m", "n", "o", "p", "q", "r", "2"))
+        .thenReturn(bytes("sha-new"));
+
+    assertThat(service.getUnsyncedCustomers(List.of(1L, 2L)))
+        .extracting(UnsyncedCustomer::customer, UnsyncedCustomer::rowHash)
+        .containsExactly(tuple(changed, bytes("sha-new")));
+  }
+
+  /**
+   * In-database mode hashes with SHA-256 in Postgres and rejects any other configured algorithm.
+   */
+  @Test
+  void inDatabase_requiresSha256() {
+    ReflectionTestUtils.setField(service, "diffMode", DiffMode.IN_DATABASE);
+    when(hashService.algorithm()).thenReturn(HashAlgorithm.MURMUR3_128);
 
-    List<Order> result = service.getUnsyncedOrders();
-    verifyNoInteractions(hashService);
-    assertThat(result).containsExactly(order);
+    assertThatThrownBy(service::checkHashAlgorithm)
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessageContaining("sync.hash.algorithm=sha256");
   }
 }
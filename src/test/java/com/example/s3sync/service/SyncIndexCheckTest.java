@@ -0,0 +1,86 @@
+package com.example.s3sync.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+@ExtendWith(MockitoExtension.class)
+public class SyncIndexCheckTest {
+
+  @Mock JdbcTemplate jdbcTemplate;
+
+  @InjectMocks SyncIndexCheck check;
+
+  /** Missing, invalid and unscanned indexes are reported; used ones are not. */
+  @Test
+  void check_reportsMissingInvalidAndUnusedIndexes() throws Exception {
+    stubIndexStats(
+        new Object[] {"auftraege_kundeid_idx", 0L, true},
+        new Object[] {"kunde_land_idx", 12L, false},
+        new Object[] {"kunde_pkey", 40L, true});
+
+    assertThat(check.check())
+        .containsExactly(
+            "Index auftraege_kundeid_idx for the order-to-customer join is unused",
+            "Index kunde_land_idx for the country grouping is invalid",
+            "Index auftraege_lastchange_ts_idx for the lastchange ranges is missing");
+  }
+
+  /** Nothing is reported when every index exists and has been scanned. */
+  @Test
+  void check_acceptsUsedIndexes() throws Exception {
+    stubIndexStats(
+        SyncIndexCheck.EXPECTED_INDEXES.stream()
+            .map(index -> new Object[] {index.name(), 1L, true})
+            .toArray(Object[][]::new));
+
+    assertThat(check.check()).isEmpty();
+  }
+
+  /** A catalog that cannot be read does not fail the startup. */
+  @Test
+  @SuppressWarnings("unchecked")
+  void checkOnStartup_ignoresCatalogErrors() {
+    when(jdbcTemplate.query(anyString(), any(RowMapper.class)))
+        .thenThrow(new DataAccessResourceFailureException("permission denied"));
+
+    check.checkOnStartup();
+  }
+
+  /**
+   * Answer the catalog query with the given rows.
+   *
+   * @param rows index name, scan count and validity per index
+   */
+  @SuppressWarnings("unchecked")
+  private void stubIndexStats(Object[]... rows) throws Exception {
+    when(jdbcTemplate.query(anyString(), any(RowMapper.class)))
+        .thenAnswer(
+            invocation -> {
+              RowMapper<?> mapper = invocation.getArgument(1);
+              List<Object> mapped = new ArrayList<>();
+              for (int i = 0; i < rows.length; i++) {
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getString(1)).thenReturn((String) rows[i][0]);
+                when(rs.getLong(2)).thenReturn((Long) rows[i][1]);
+                when(rs.getBoolean(3)).thenReturn((Boolean) rows[i][2]);
+                mapped.add(mapper.mapRow(rs, i));
+              }
+              return mapped;
+            });
+  }
+}
@@ -0,0 +1,197 @@
+package com.example.s3sync.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.example.s3sync.domain.HashAlgorithm;
+import com.example.s3sync.domain.SyncedCustomerHash;
+import com.example.s3sync.domain.SyncedOrderHash;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@ExtendWith(MockitoExtension.class)
+public class SyncedHashWriterTest {
+
+  @Mock JdbcTemplate jdbcTemplate;
+
+  @InjectMocks SyncedHashWriter writer;
+
+  /**
+   * All customer hashes are sent as one batched upsert with the configured batch size, binding
+   * every tracking column.
+   */
+  @Test
+  @SuppressWarnings("unchecked")
+  void upsertCustomerHashes_batchesUpserts() throws Exception {
+    ReflectionTestUtils.setField(writer, "batchSize", 2);
+    List<SyncedCustomerHash> hashes =
+        List.of(
+            SyncedCustomerHash.builder()
+                .kundenId(1L)
+                .rowHash(bytes("hash1"))
+                .hashAlgo(HashAlgorithm.BLAKE3)
+                .columnHashes(bytes("columns1"))
+                .land("DE")
+                .build(),
+            SyncedCustomerHash.builder().kundenId(2L).rowHash(bytes("hash2")).land("US").build(),
+            SyncedCustomerHash.builder().kundenId(3L).rowHash(bytes("hash3")).land("US").build());
+
+    writer.upsertCustomerHashes(hashes);
+
+    ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+    ArgumentCaptor<ParameterizedPreparedStatementSetter<SyncedCustomerHash>> setter =
+        ArgumentCaptor.forClass(ParameterizedPreparedStatementSetter.class);
+    verify(jdbcTemplate).batchUpdate(sql.capture(), eq(hashes), eq(2), setter.capture());
+    assertThat(sql.getValue())
+        .startsWith("INSERT INTO synced_kunde_hash")
+        .contains("ON CONFLICT (kundenid) DO UPDATE");
+
+    PreparedStatement ps = mock(PreparedStatement.class);
+    setter.getValue().setValues(ps, hashes.getFirst());
+    verify(ps).setLong(1, 1L);
+    verify(ps).setBytes(2, bytes("hash1"));
+    verify(ps).setString(3, "BLAKE3");
+    verify(ps).setBytes(4, bytes("columns1"));
+    verify(ps).setString(5, "DE");
+  }
+
+  /** Order hashes are upserted on the order id. */
+  @Test
+  @SuppressWarnings("unchecked")
+  void upsertOrderHashes_batchesUpserts() throws Exception {
+    List<SyncedOrderHash> hashes =
+        List.of(SyncedOrderHash.builder().orderId("A1").markerHash(bytes("hash1")).build());
+
+    writer.upsertOrderHashes(hashes);
+
+    ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+    ArgumentCaptor<ParameterizedPreparedStatementSetter<SyncedOrderHash>> setter =
+        ArgumentCaptor.forClass(ParameterizedPreparedStatementSetter.class);
+    verify(jdbcTemplate).batchUpdate(sql.capture(), eq(hashes), eq(1000), setter.capture());
+    assertThat(sql.getValue())
+        .startsWith("INSERT INTO synced_auftrag_hash")
+        .contains("ON CONFLICT (auftragid) DO UPDATE");
+
+    PreparedStatement ps = mock(PreparedStatement.class);
+    setter.getValue().setValues(ps, hashes.getFirst());
+    verify(ps).setString(1, "A1");
+    verify(ps).setBytes(2, bytes("hash1"));
+    verify(ps).setString(3, "SHA256");
+    verify(ps).setString(4, null);
+  }
+
+  /**
+   * In COPY mode the rows are streamed as CSV into the load table in flushes of the batch size and
+   * merged into the tracking table with one upsert.
+   */
+  @Test
+  @SuppressWarnings("unchecked")
+  void copyMode_streamsRowsAndMerges() throws Exception {
+    ReflectionTestUtils.setField(writer, "writeMode", WriteMode.COPY);
+    ReflectionTestUtils.setField(writer, "batchSize", 2);
+    List<SyncedCustomerHash> hashes =
+        List.of(
+            SyncedCustomerHash.builder()
+                .kundenId(1L)
+                .rowHash(new byte[] {(byte) 0xab, 0x01})
+                .land("DE")
+                .build(),
+            SyncedCustomerHash.builder()
+                .kundenId(2L)
+                .rowHash(new byte[] {0x02})
+                .columnHashes(new byte[] {0x03})
+                .build(),
+            SyncedCustomerHash.builder()
+                .kundenId(3L)
+                .rowHash(new byte[] {0x04})
+                .land("Saint \"Kitts\"")
+                .build());
+
+    writer.upsertCustomerHashes(hashes);
+
+    ArgumentCaptor<ConnectionCallback<Void>> callback =
+        ArgumentCaptor.forClass(ConnectionCallback.class);
+    verify(jdbcTemplate).execute(callback.capture());
+    Connection connection = mock(Connection.class);
+    PGConnection pgConnection = mock(PGConnection.class);
+    CopyManager copyManager = mock(CopyManager.class);
+    CopyIn copyIn = mock(CopyIn.class);
+    when(connection.unwrap(PGConnection.class)).thenReturn(pgConnection);
+    when(pgConnection.getCopyAPI()).thenReturn(copyManager);
+    when(copyManager.copyIn(anyString())).thenReturn(copyIn);
+    List<String> flushes = new ArrayList<>();
+    doAnswer(
+            invocation ->
+                flushes.add(
+                    new String(
+                        invocation.getArgument(0, byte[].class),
+                        invocation.getArgument(1, Integer.class),
+                        invocation.getArgument(2, Integer.class),
+                        StandardCharsets.UTF_8)))
+        .when(copyIn)
+        .writeToCopy(any(byte[].class), anyInt(), anyInt());
+
+    callback.getValue().doInConnection(connection);
+
+    verify(copyManager)
+        .copyIn(
+            "COPY synced_kunde_hash_load (kundenid, row_hash, hash_algo, column_hashes, land)"
+                + " FROM STDIN (FORMAT csv)");
+    assertThat(flushes)
+        .containsExactly(
+            "1,\\xab01,\"SHA256\",,\"DE\"\n2,\\x02,\"SHA256\",\\x03,\n",
+            "3,\\x04,\"SHA256\",,\"Saint \"\"Kitts\"\"\"\n");
+    verify(copyIn).endCopy();
+
+    ArgumentCaptor<String> merge = ArgumentCaptor.forClass(String.class);
+    verify(jdbcTemplate).update(merge.capture());
+    assertThat(merge.getValue())
+        .startsWith("INSERT INTO synced_kunde_hash (kundenid, row_hash")
+        .contains("FROM synced_kunde_hash_load ON CONFLICT (kundenid) DO UPDATE");
+    verify(jdbcTemplate).execute("TRUNCATE synced_kunde_hash_load");
+    verify(jdbcTemplate, never()).batchUpdate(anyString(), any(Collection.class), anyInt(), any());
+  }
+
+  /** Nothing is sent to the database for an empty sync. */
+  @Test
+  void emptyInput_skipsDatabase() {
+    writer.upsertCustomerHashes(List.of());
+    writer.upsertOrderHashes(List.of());
+
+    verify(jdbcTemplate, never())
+        .batchUpdate(
+            anyString(),
+            any(Collection.class),
+            anyInt(),
+            any(ParameterizedPreparedStatementSetter.class));
+  }
+
+  private static byte[] bytes(String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,202 @@
+package com.example.s3sync.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+@ExtendWith(MockitoExtension.class)
+class TombstoneSyncServiceTest {
+
+  @Mock JdbcTemplate jdbcTemplate;
+  @Spy CsvService csvService = new CsvService();
+  @Mock S3UploaderService s3Uploader;
+  @Mock CustomerBucketTree customerBucketTree;
+  @Mock CustomerHashSnapshot customerHashSnapshot;
+  @Mock CustomerLandCache customerLandCache;
+  @Mock SyncedOrderIdFilter syncedOrderIdFilter;
+
+  @InjectMocks TombstoneSyncService service;
+
+  @BeforeEach
+  void enableTransactionSync() {
+    TransactionSynchronizationManager.initSynchronization();
+  }
+
+  @AfterEach
+  void disableTransactionSync() {
+    TransactionSynchronizationManager.clearSynchronization();
+  }
+
+  /** Stub the pruning statement to return the given (key, land) rows. */
+  private void deletedRows(String[]... rows) {
+    doAnswer(
+            invocation -> {
+              RowCallbackHandler handler = invocation.getArgument(1);
+              for (String[] row : rows) {
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getString(1)).thenReturn(row[0]);
+                when(rs.getString(2)).thenReturn(row[1]);
+                handler.processRow(rs);
+              }
+              return null;
+            })
+        .when(jdbcTemplate)
+        .query(anyString(), any(RowCallbackHandler.class));
+  }
+
+  /**
+   * Deleted customers are grouped by their stored country, rows without country go to the unknown
+   * bucket, and the tombstone files are uploaded before commit.
+   */
+  @Test
+  void syncDeletedCustomers_exportsTombstonesPerCountry() {
+    deletedRows(new String[] {"1", "DE"}, new String[] {"2", "DE"}, new String[] {"3", null});
+
+    int count = service.syncDeletedCustomers();
+
+    assertThat(count).isEqualTo(3);
+    verifyNoInteractions(s3Uploader);
+
+    Map<String, String> csvs = uploadCsvs();
+    assertThat(csvs.entrySet())
+        .satisfiesExactlyInAnyOrder(
+            csv -> {
+              assertThat(csv.getKey()).startsWith("kunde_deleted_DE_");
+              assertThat(csv.getValue().lines())
+                  .hasSize(2)
+                  .allMatch(line -> line.matches("[12],.+"));
+            },
+            csv -> {
+              assertThat(csv.getKey()).startsWith("kunde_deleted_unknown_");
+              assertThat(csv.getValue()).startsWith("3,");
+            });
+    verify(customerBucketTree).refresh(List.of(1L, 2L, 3L));
+  }
+
+  /**
+   * The pruned customers are evicted from the snapshot and the country cache, and the order id
+   * filter is rebuilt, but only once the pruning transaction committed.
+   */
+  @Test
+  void syncDeleted_evictsPrunedKeysAfterCommit() {
+    deletedRows(new String[] {"1", "DE"}, new String[] {"2", "DE"});
+
+    service.syncDeletedCustomers();
+    service.syncDeletedOrders();
+    verifyNoInteractions(customerHashSnapshot, customerLandCache, syncedOrderIdFilter);
+
+    TransactionSynchronizationManager.getSynchronizations()
+        .forEach(TransactionSynchronization::afterCommit);
+    verify(customerHashSnapshot).remove(List.of(1L, 2L));
+    verify(customerLandCache).invalidateAll(List.of(1L, 2L));
+    verify(syncedOrderIdFilter).invalidate();
+  }
+
+  /**
+   * The CDC variant only checks the tracking rows of the given keys, bound as one array, and labels
+   * the files with the change set.
+   */
+  @Test
+  void syncDeletedCustomers_restrictedToKeys() throws Exception {
+    doAnswer(
+            invocation -> {
+              PreparedStatement ps = mock(PreparedStatement.class);
+              Connection connection = mock(Connection.class);
+              Array array = mock(Array.class);
+              when(ps.getConnection()).thenReturn(connection);
+              when(connection.createArrayOf("bigint", new Object[] {7L})).thenReturn(array);
+              invocation.<PreparedStatementSetter>getArgument(1).setValues(ps);
+              verify(ps).setArray(1, array);
+              ResultSet rs = mock(ResultSet.class);
+              when(rs.getString(1)).thenReturn("7");
+              when(rs.getString(2)).thenReturn("DE");
+              invocation.<RowCallbackHandler>getArgument(2).processRow(rs);
+              return null;
+            })
+        .when(jdbcTemplate)
+        .query(
+            contains("h.kundenid = ANY(?)"),
+            any(PreparedStatementSetter.class),
+            any(RowCallbackHandler.class));
+
+    assertThat(service.syncDeletedCustomers(Set.of(7L), "lsn1")).isEqualTo(1);
+    assertThat(service.syncDeletedOrders(Set.of(), "lsn1")).isZero();
+    verify(customerBucketTree).refresh(List.of(7L));
+    verify(jdbcTemplate, never()).query(anyString(), any(RowCallbackHandler.class));
+
+    assertThat(uploadCsvs())
+        .containsOnlyKeys(
+            "kunde_deleted_DE_"
+                + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HH"))
+                + "_lsn1.csv");
+  }
+
+  /** Uploaded tombstone files are removed again when the pruning transaction rolls back. */
+  @Test
+  void syncDeletedOrders_cleansUpOnRollback() {
+    deletedRows(new String[] {"A-1", "US"});
+
+    service.syncDeletedOrders();
+    List<TransactionSynchronization> syncs =
+        TransactionSynchronizationManager.getSynchronizations();
+    syncs.forEach(sync -> sync.beforeCommit(false));
+    syncs.forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+    verify(s3Uploader).delete(startsWith("auftraege_deleted_US_"));
+  }
+
+  @Test
+  void syncDeletedOrders_nothingDeleted() {
+    deletedRows();
+
+    assertThat(service.syncDeletedOrders()).isZero();
+    verifyNoInteractions(csvService, s3Uploader);
+    assertThat(TransactionSynchronizationManager.getSynchronizations()).isEmpty();
+  }
+
+  /**
+   * Run the uploads scheduled in {@code beforeCommit} and collect the streamed CSVs.
+   *
+   * @return CSV content by file name
+   */
+  private Map<String, String> uploadCsvs() {
+    Map<String, String> csvs = new HashMap<>();
+    when(s3Uploader.uploadCsv(anyString(), any()))
+        .thenAnswer(
+            invocation -> {
+              ByteArrayOutputStream out = new ByteArrayOutputStream();
+              invocation.<S3UploaderService.CsvContent>getArgument(1).writeTo(out);
+              csvs.put(invocation.getArgument(0), out.toString(StandardCharsets.UTF_8));
+              return "etag";
+            });
+    TransactionSynchronizationManager.getSynchronizations()
+        .forEach(sync -> sync.beforeCommit(false));
+    return csvs;
+  }
+}
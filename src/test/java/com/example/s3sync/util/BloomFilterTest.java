@@ -0,0 +1,41 @@
+package com.example.s3sync.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.UUID;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class BloomFilterTest {
+
+  /** Added keys are always reported as possibly present. */
+  @Test
+  void mightContain_hasNoFalseNegatives() {
+    BloomFilter filter = new BloomFilter(10_000, 0.01);
+    var keys = IntStream.range(0, 10_000).mapToObj(i -> UUID.randomUUID().toString()).toList();
+    keys.forEach(filter::put);
+
+    assertThat(keys).allMatch(filter::mightContain);
+    assertThat(filter.size()).isEqualTo(10_000);
+  }
+
+  /** At the expected number of keys the observed false-positive rate stays near the target. */
+  @Test
+  void mightContain_falsePositiveRateNearTarget() {
+    BloomFilter filter = new BloomFilter(10_000, 0.01);
+    IntStream.range(0, 10_000).forEach(i -> filter.put("synced-" + i));
+
+    long falsePositives =
+        IntStream.range(0, 100_000).filter(i -> filter.mightContain("new-" + i)).count();
+
+    assertThat(falsePositives / 100_000.0).isLessThan(0.02);
+    assertThat(filter.expectedFalsePositiveRate()).isBetween(0.005, 0.015);
+    assertThat(filter.sizeInBytes()).isLessThan(16_000);
+  }
+
+  @Test
+  void constructor_rejectsInvalidRate() {
+    assertThatThrownBy(() -> new BloomFilter(10, 1.0)).isInstanceOf(IllegalArgumentException.class);
+  }
+}
@@ -0,0 +1,98 @@
+package com.example.s3sync.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+class LongHashTableTest {
+
+  private static byte[] hash(int seed) {
+    byte[] hash = new byte[LongHashTable.DEFAULT_VALUE_LENGTH];
+    Arrays.fill(hash, (byte) seed);
+    return hash;
+  }
+
+  /** Entries survive several rehashes and replaced values are matched by their latest content. */
+  @Test
+  void putAndMatch_acrossGrowth() {
+    LongHashTable table = new LongHashTable(0);
+    for (long id = 1; id <= 10_000; id++) {
+      table.put(id, hash((int) id));
+    }
+    table.put(42, hash(7));
+
+    assertThat(table.size()).isEqualTo(10_000);
+    assertThat(table.matches(1, hash(1))).isTrue();
+    assertThat(table.matches(10_000, hash(10_000))).isTrue();
+    assertThat(table.matches(42, hash(42))).isFalse();
+    assertThat(table.matches(42, hash(7))).isTrue();
+    assertThat(table.containsKey(10_001)).isFalse();
+    assertThat(table.matches(10_001, hash(1))).isFalse();
+  }
+
+  /** The free-slot sentinel and negative keys are valid keys as well. */
+  @Test
+  void put_supportsSentinelAndNegativeKeys() {
+    LongHashTable table = new LongHashTable(4);
+    table.put(Long.MIN_VALUE, hash(1));
+    table.put(-1, hash(2));
+
+    assertThat(table.size()).isEqualTo(2);
+    assertThat(table.matches(Long.MIN_VALUE, hash(1))).isTrue();
+    assertThat(table.matches(-1, hash(2))).isTrue();
+  }
+
+  @Test
+  void put_rejectsValuesOfWrongLength() {
+    LongHashTable table = new LongHashTable(4);
+
+    assertThatThrownBy(() -> table.put(1, new byte[16]))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  /** Values of a custom length are copied out unchanged; absent keys leave the target untouched. */
+  @Test
+  void get_copiesValueOfCustomLength() {
+    LongHashTable table = new LongHashTable(4, 3);
+    table.put(7, new byte[] {1, 2, 3});
+    table.put(Long.MIN_VALUE, new byte[] {4, 5, 6});
+    byte[] target = new byte[3];
+
+    assertThat(table.get(7, target)).isTrue();
+    assertThat(target).containsExactly(1, 2, 3);
+    assertThat(table.get(Long.MIN_VALUE, target)).isTrue();
+    assertThat(target).containsExactly(4, 5, 6);
+    assertThat(table.get(8, target)).isFalse();
+    assertThat(target).containsExactly(4, 5, 6);
+  }
+
+  /**
+   * Removed keys are gone while the keys probed past them stay reachable, also across the wrap
+   * around of the slot array, and the sentinel key can be removed as well.
+   */
+  @Test
+  void remove_keepsProbeSequencesIntact() {
+    LongHashTable table = new LongHashTable(0);
+    for (long id = 1; id <= 2_000; id++) {
+      table.put(id, hash((int) id));
+    }
+    table.put(Long.MIN_VALUE, hash(1));
+
+    for (long id = 1; id <= 2_000; id += 3) {
+      assertThat(table.remove(id)).isTrue();
+    }
+    assertThat(table.remove(1)).isFalse();
+    assertThat(table.remove(Long.MIN_VALUE)).isTrue();
+    assertThat(table.remove(Long.MIN_VALUE)).isFalse();
+
+    assertThat(table.size()).isEqualTo(2_000 - 667);
+    for (long id = 1; id <= 2_000; id++) {
+      assertThat(table.matches(id, hash((int) id))).isEqualTo(id % 3 != 1);
+    }
+    assertThat(table.containsKey(Long.MIN_VALUE)).isFalse();
+    table.put(1, hash(9));
+    assertThat(table.matches(1, hash(9))).isTrue();
+  }
+}
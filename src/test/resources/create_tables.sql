@@ -21,11 +21,16 @@ CREATE TABLE IF NOT EXISTS kunde (
 );
 CREATE TABLE IF NOT EXISTS synced_kunde_hash (
     kundenid BIGINT PRIMARY KEY,
-    row_hash varchar(255) NOT NULL,
+    row_hash bytea NOT NULL,
+    hash_algo varchar(16) NOT NULL DEFAULT 'SHA256',
+    column_hashes bytea,
+    land varchar(255),
     last_synced_at TIMESTAMPTZ NOT NULL DEFAULT now()
 );
 CREATE TABLE IF NOT EXISTS synced_auftrag_hash (
     auftragid varchar(255) PRIMARY KEY,
-    marker_hash varchar(255) NOT NULL,
+    marker_hash bytea NOT NULL,
+    hash_algo varchar(16) NOT NULL DEFAULT 'SHA256',
+    land varchar(255),
     last_synced_at TIMESTAMPTZ NOT NULL DEFAULT now()
 );
\ No newline at end of file